@@ -0,0 +1,273 @@
+package com.zarbosoft.merman.cli;
+
+import com.zarbosoft.interface1.Configuration;
+import com.zarbosoft.merman.document.Document;
+import com.zarbosoft.merman.editor.serialization.Compression;
+import com.zarbosoft.merman.editor.serialization.Load;
+import com.zarbosoft.merman.editor.serialization.Write;
+import com.zarbosoft.merman.syntax.AtomType;
+import com.zarbosoft.merman.syntax.Syntax;
+import com.zarbosoft.pidgooncommand.Command;
+import org.reflections.Reflections;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static com.zarbosoft.rendaw.common.Common.uncheck;
+
+/**
+ * Converts, re-saves, or validates many documents of one syntax without the editor.  The syntax is loaded once and
+ * shared by all workers; each file is loaded and written on a single worker.
+ * <p>
+ * Files are read in the format indicated by their extension (.luxem, .json, or .bin), falling back to the syntax's
+ * format.  Converted files are written next to the source (or into the output directory) with the target format's
+ * extension; a conversion that would replace its own source fails rather than overwriting it.  Compressed files (see
+ * Compression) stay compressed the same way.
+ * Re-saved files are replaced in place.
+ */
+public class Main {
+	@Configuration
+	public static enum Action {
+		@Configuration(name = "convert")
+		CONVERT,
+		@Configuration(name = "resave")
+		RESAVE,
+		@Configuration(name = "validate")
+		VALIDATE
+	}
+
+	@Configuration
+	public static class CommandLine {
+		@Configuration
+		@Command.Argument(index = 0)
+		public Action action;
+
+		@Configuration
+		@Command.Argument(index = 1)
+		public String syntax;
+
+		@Configuration
+		@Command.Argument(index = 2)
+		public List<String> files = new ArrayList<>();
+
+		/**
+		 * The format to convert to.  Defaults to the syntax's format.
+		 */
+		@Configuration(optional = true)
+		public Syntax.BackType to = null;
+
+		/**
+		 * Indent output.  Defaults to the syntax's pretty_save setting.
+		 */
+		@Configuration(optional = true)
+		public Boolean pretty = null;
+
+		/**
+		 * Where to place converted files.  Defaults to the source file's directory.
+		 */
+		@Configuration(optional = true)
+		public String output = null;
+
+		/**
+		 * Defaults to the number of processors.
+		 */
+		@Configuration(optional = true)
+		public Integer threads = null;
+	}
+
+	private static class Result {
+		final Path path;
+		final long size;
+		final long loadNanos;
+		final long writeNanos;
+		final String error;
+
+		private Result(
+				final Path path, final long size, final long loadNanos, final long writeNanos, final String error
+		) {
+			this.path = path;
+			this.size = size;
+			this.loadNanos = loadNanos;
+			this.writeNanos = writeNanos;
+			this.error = error;
+		}
+	}
+
+	public static void main(final String[] args) {
+		final CommandLine commandLine =
+				Command.parse(new Reflections("com.zarbosoft.merman.cli"), CommandLine.class, args);
+		final Path syntaxPath = Paths.get(commandLine.syntax);
+		final String syntaxId = syntaxPath.getFileName().toString().replaceFirst("\\.[^.]*$", "");
+		final Syntax syntax = Syntax.loadSyntax(syntaxId, syntaxPath);
+		System.exit(run(syntax, commandLine, System.out, System.err));
+	}
+
+	/**
+	 * @param syntax      Used instead of commandLine.syntax
+	 * @param commandLine
+	 * @param out         Per file statistics and the summary
+	 * @param err         Per file errors
+	 * @return The exit code: 0 if every file succeeded, otherwise 1
+	 */
+	public static int run(
+			final Syntax syntax, final CommandLine commandLine, final PrintStream out, final PrintStream err
+	) {
+		prepare(syntax);
+		final Syntax.BackType to = commandLine.to == null ? syntax.backType : commandLine.to;
+		final boolean pretty = commandLine.pretty == null ? syntax.prettySave : commandLine.pretty;
+		final Path output = commandLine.output == null ? null : Paths.get(commandLine.output);
+		final int threads =
+				commandLine.threads == null ? Runtime.getRuntime().availableProcessors() : commandLine.threads;
+
+		final ExecutorService workers = Executors.newFixedThreadPool(threads);
+		final long start = System.nanoTime();
+		final List<Future<Result>> futures = new ArrayList<>();
+		for (final String file : commandLine.files) {
+			final Path path = Paths.get(file);
+			futures.add(workers.submit(() -> process(syntax, commandLine.action, path, to, pretty, output)));
+		}
+		workers.shutdown();
+
+		long totalSize = 0;
+		int failed = 0;
+		for (final Future<Result> future : futures) {
+			final Result result = uncheck(() -> future.get());
+			totalSize += result.size;
+			if (result.error != null) {
+				failed += 1;
+				err.format("%s: %s\n", result.path, result.error);
+			} else {
+				out.format("%s: %d bytes, load %.1f ms (%.1f MB/s), write %.1f ms\n",
+						result.path,
+						result.size,
+						result.loadNanos / 1e6,
+						throughput(result.size, result.loadNanos),
+						result.writeNanos / 1e6
+				);
+			}
+		}
+		final long elapsed = System.nanoTime() - start;
+		out.format("%d files, %d failed, %d bytes in %.1f ms (%.1f MB/s) on %d threads\n",
+				futures.size(),
+				failed,
+				totalSize,
+				elapsed / 1e6,
+				throughput(totalSize, elapsed),
+				threads
+		);
+		return failed == 0 ? 0 : 1;
+	}
+
+	/**
+	 * Build everything the syntax constructs lazily up front so workers only read shared state.
+	 *
+	 * @param syntax
+	 */
+	private static void prepare(final Syntax syntax) {
+		syntax.getGrammar();
+		syntax.getDirectLoad();
+		Stream
+				.concat(syntax.types.stream(),
+						Stream.of(syntax.root, syntax.gap, syntax.prefixGap, syntax.suffixGap)
+				)
+				.forEach(AtomType::writePlan);
+	}
+
+	private static double throughput(final long size, final long nanos) {
+		if (nanos == 0)
+			return 0;
+		return size / (nanos / 1e9) / (1024 * 1024);
+	}
+
+	private static Syntax.BackType format(final Path path, final Syntax syntax) {
+		final String name = Compression.strip(path.getFileName().toString());
+		if (name.endsWith(".luxem"))
+			return Syntax.BackType.LUXEM;
+		if (name.endsWith(".json"))
+			return Syntax.BackType.JSON;
+		if (name.endsWith(".bin"))
+			return Syntax.BackType.BINARY;
+		return syntax.backType;
+	}
+
+	private static String extension(final Syntax.BackType format) {
+		switch (format) {
+			case LUXEM:
+				return ".luxem";
+			case JSON:
+				return ".json";
+			default:
+				return ".bin";
+		}
+	}
+
+	private static Result process(
+			final Syntax syntax,
+			final Action action,
+			final Path path,
+			final Syntax.BackType to,
+			final boolean pretty,
+			final Path output
+	) {
+		long size = 0;
+		try {
+			size = Files.size(path);
+			final Syntax.BackType from = format(path, syntax);
+			final long loadStart = System.nanoTime();
+			final Document document;
+			try (
+					InputStream data = Load.open(syntax, path)
+			) {
+				document = Load.load(syntax, from, data);
+			}
+			final long loadNanos = System.nanoTime() - loadStart;
+			final Path destination;
+			final Syntax.BackType format;
+			switch (action) {
+				case CONVERT: {
+					final String sourceName = path.getFileName().toString();
+					final String stripped = Compression.strip(sourceName);
+					final String name = stripped.replaceFirst("\\.[^.]*$", "") +
+							extension(to) +
+							sourceName.substring(stripped.length());
+					destination = (output == null ? path.toAbsolutePath().getParent() : output).resolve(name);
+					if (destination.toAbsolutePath().normalize().equals(path.toAbsolutePath().normalize()))
+						return new Result(path,
+								size,
+								loadNanos,
+								0,
+								"Converting would overwrite the source; use resave or choose an output directory"
+						);
+					format = to;
+					break;
+				}
+				case RESAVE:
+					destination = path;
+					format = from;
+					break;
+				case VALIDATE:
+					return new Result(path, size, loadNanos, 0, null);
+				default:
+					throw new AssertionError();
+			}
+			final long writeStart = System.nanoTime();
+			Write.replace(syntax, destination, stream -> Write.write(document.root, syntax, format, pretty, stream));
+			return new Result(path, size, loadNanos, System.nanoTime() - writeStart, null);
+		} catch (final IOException e) {
+			return new Result(path, size, 0, 0, e.toString());
+		} catch (final Throwable e) {
+			// Anything else, including errors like running out of memory, fails just this file
+			return new Result(path, size, 0, 0, e.getMessage() == null ? e.toString() : e.getMessage());
+		}
+	}
+}
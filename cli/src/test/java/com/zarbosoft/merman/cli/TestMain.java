@@ -0,0 +1,195 @@
+package com.zarbosoft.merman.cli;
+
+import com.google.common.collect.ImmutableList;
+import com.zarbosoft.merman.document.Document;
+import com.zarbosoft.merman.editor.serialization.Load;
+import com.zarbosoft.merman.helper.SyntaxFlatRoot;
+import com.zarbosoft.merman.syntax.Syntax;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.zarbosoft.merman.helper.Helper.assertTreeEqual;
+import static com.zarbosoft.merman.helper.Helper.rootArray;
+import static com.zarbosoft.rendaw.common.Common.uncheck;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class TestMain {
+	private static final String document = "a,[b,c],{k:d},";
+
+	private Path directory;
+	private String out;
+	private String err;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("merman");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try (
+				Stream<Path> paths = Files.walk(directory)
+		) {
+			for (final Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+				Files.delete(path);
+		}
+	}
+
+	private Path file(final String name, final String text) throws IOException {
+		final Path path = directory.resolve(name);
+		Files.write(path, text.getBytes(StandardCharsets.UTF_8));
+		return path;
+	}
+
+	private static Main.CommandLine commandLine(final Main.Action action, final Path... files) {
+		final Main.CommandLine out = new Main.CommandLine();
+		out.action = action;
+		out.syntax = "unused";
+		out.files = Stream.of(files).map(Path::toString).collect(Collectors.toList());
+		out.threads = 2;
+		return out;
+	}
+
+	private int run(final Main.CommandLine commandLine) {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final ByteArrayOutputStream err = new ByteArrayOutputStream();
+		final int code = Main.run(SyntaxFlatRoot.luxem,
+				commandLine,
+				new PrintStream(out, true),
+				new PrintStream(err, true)
+		);
+		this.out = new String(out.toByteArray(), StandardCharsets.UTF_8);
+		this.err = new String(err.toByteArray(), StandardCharsets.UTF_8);
+		return code;
+	}
+
+	private static Document load(final Syntax.BackType format, final Path path) {
+		return uncheck(() -> {
+			try (
+					InputStream data = Files.newInputStream(path)
+			) {
+				return Load.load(SyntaxFlatRoot.luxem, format, data);
+			}
+		});
+	}
+
+	@Test
+	public void testValidate() throws IOException {
+		final Path first = file("first.luxem", document);
+		final Path second = file("second.luxem", document);
+		assertThat(run(commandLine(Main.Action.VALIDATE, first, second)), equalTo(0));
+		assertThat(out, containsString("2 files, 0 failed"));
+		assertThat(err, equalTo(""));
+	}
+
+	@Test
+	public void testValidateFailures() throws IOException {
+		final Path valid = file("valid.luxem", document);
+		final Path invalid = file("invalid.luxem", "a,[b,");
+		final Path missing = directory.resolve("missing.luxem");
+		assertThat(run(commandLine(Main.Action.VALIDATE, valid, invalid, missing)), equalTo(1));
+		assertThat(out, containsString("3 files, 2 failed"));
+		assertThat(err, containsString(invalid.toString()));
+		assertThat(err, containsString(missing.toString()));
+		assertThat(err, not(containsString(valid.toString())));
+	}
+
+	@Test
+	public void testErrorFailsOneFile() throws IOException {
+		final Path valid = file("valid.luxem", document);
+		final StringBuilder deep = new StringBuilder();
+		for (int i = 0; i < 1000000; ++i)
+			deep.append('[');
+		final Path overflow = file("deep.luxem", deep.toString());
+		assertThat(run(commandLine(Main.Action.VALIDATE, valid, overflow)), equalTo(1));
+		assertThat(out, containsString("2 files, 1 failed"));
+		assertThat(err, containsString(overflow.toString()));
+		assertThat(err, not(containsString(valid.toString())));
+	}
+
+	@Test
+	public void testConvert() throws IOException {
+		final Path source = file("doc.luxem", document);
+		final Path output = Files.createDirectory(directory.resolve("out"));
+		final Main.CommandLine commandLine = commandLine(Main.Action.CONVERT, source);
+		commandLine.to = Syntax.BackType.JSON;
+		commandLine.output = output.toString();
+		assertThat(run(commandLine), equalTo(0));
+		assertThat(out, containsString("1 files, 0 failed"));
+		final Path converted = output.resolve("doc.json");
+		assertTrue(Files.exists(converted));
+		assertTreeEqual(rootArray(load(Syntax.BackType.LUXEM, source)),
+				rootArray(load(Syntax.BackType.JSON, converted))
+		);
+	}
+
+	@Test
+	public void testConvertBinary() throws IOException {
+		final Path source = file("doc.luxem", document);
+		final Path binary = Files.createDirectory(directory.resolve("binary"));
+		final Path luxem = Files.createDirectory(directory.resolve("luxem"));
+		final Main.CommandLine toBinary = commandLine(Main.Action.CONVERT, source);
+		toBinary.to = Syntax.BackType.BINARY;
+		toBinary.output = binary.toString();
+		assertThat(run(toBinary), equalTo(0));
+		final Path converted = binary.resolve("doc.bin");
+		assertTrue(Files.exists(converted));
+		assertThat(run(commandLine(Main.Action.VALIDATE, converted)), equalTo(0));
+		final Main.CommandLine toLuxem = commandLine(Main.Action.CONVERT, converted);
+		toLuxem.output = luxem.toString();
+		assertThat(run(toLuxem), equalTo(0));
+		assertTreeEqual(rootArray(load(Syntax.BackType.LUXEM, source)),
+				rootArray(load(Syntax.BackType.LUXEM, luxem.resolve("doc.luxem")))
+		);
+	}
+
+	@Test
+	public void testConvertOverSource() throws IOException {
+		final String text = " a , [ b , c ] ";
+		final Path source = file("doc.luxem", text);
+		assertThat(run(commandLine(Main.Action.CONVERT, source)), equalTo(1));
+		assertThat(out, containsString("1 files, 1 failed"));
+		assertThat(err, containsString(source.toString()));
+		assertThat(new String(Files.readAllBytes(source), StandardCharsets.UTF_8), equalTo(text));
+	}
+
+	@Test
+	public void testConvertFailure() throws IOException {
+		final Path source = file("doc.luxem", "{k:");
+		final Path output = Files.createDirectory(directory.resolve("out"));
+		final Main.CommandLine commandLine = commandLine(Main.Action.CONVERT, source);
+		commandLine.output = output.toString();
+		assertThat(run(commandLine), equalTo(1));
+		assertThat(out, containsString("1 files, 1 failed"));
+		try (
+				Stream<Path> written = Files.list(output)
+		) {
+			assertThat(written.collect(Collectors.toList()), equalTo(ImmutableList.of()));
+		}
+	}
+
+	@Test
+	public void testResave() throws IOException {
+		final Path source = file("doc.luxem", " a , [ b , c ] , { k : d } ");
+		final Document before = load(Syntax.BackType.LUXEM, source);
+		assertThat(run(commandLine(Main.Action.RESAVE, source)), equalTo(0));
+		assertThat(new String(Files.readAllBytes(source), StandardCharsets.UTF_8), not(containsString(" ")));
+		assertTreeEqual(rootArray(before), rootArray(load(Syntax.BackType.LUXEM, source)));
+	}
+}
@@ -3,50 +3,243 @@ package com.zarbosoft.merman.document;
 import com.zarbosoft.merman.document.values.Value;
 import com.zarbosoft.merman.editor.Context;
 import com.zarbosoft.merman.editor.Path;
+import com.zarbosoft.merman.editor.serialization.WriteCache;
 import com.zarbosoft.merman.editor.visual.Alignment;
 import com.zarbosoft.merman.editor.visual.Visual;
 import com.zarbosoft.merman.editor.visual.VisualParent;
 import com.zarbosoft.merman.editor.visual.tags.Tag;
-import com.zarbosoft.merman.editor.visual.tags.TypeTag;
 import com.zarbosoft.merman.editor.visual.visuals.VisualAtom;
 import com.zarbosoft.merman.syntax.AtomType;
 import org.pcollections.PSet;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
 
 public class Atom {
 	public Value.Parent parent;
 	public AtomType type;
+	/**
+	 * The values by middle id.  A read-only view of the value array.
+	 */
 	public final Map<String, Value> data;
 	public VisualAtom visual;
 	public PSet<Tag> tags;
 
+	/**
+	 * Indexed by the type's slot ordinals
+	 */
+	private final Value[] values;
+
+	/**
+	 * Incremented whenever this atom or any descendant changes
+	 */
+	public int version = 0;
+	/**
+	 * Where this atom was placed in a previous save, if it was saved
+	 */
+	public WriteCache.Entry written;
+	/**
+	 * Cached content hash, cleared by changed()
+	 */
+	private long hash;
+	private boolean hashValid = false;
+
+	/**
+	 * Cached path, see Value.getPath
+	 */
+	private Path path = null;
+	private Value pathParentValue = null;
+	private Path pathParent = null;
+	private long pathVersion;
+
 	public Atom(final AtomType type, final Map<String, Value> data) {
+		this(type, toSlots(type, data));
+	}
+
+	/**
+	 * @param type
+	 * @param values Indexed by type's slot ordinals (see AtomType.slot).  Owned by the atom afterwards.
+	 */
+	public Atom(final AtomType type, final Value[] values) {
 		this.type = type;
-		this.data = data;
-		tags = Context.asFreeTags(type.tags).plus(new TypeTag(type.id()));
+		this.values = values;
+		this.data = new Data();
+		tags = type.baseTags();
+		final Parent valueParent = new Parent() {
+			@Override
+			public Atom atom() {
+				return Atom.this;
+			}
+
+			@Override
+			public boolean selectUp(final Context context) {
+				if (Atom.this.parent == null)
+					return false;
+				return Atom.this.parent.selectUp(context);
+			}
+		};
+		for (final Value value : values)
+			if (value != null)
+				value.setParent(valueParent);
+	}
+
+	private static Value[] toSlots(final AtomType type, final Map<String, Value> data) {
+		final Value[] out = new Value[type.slotCount()];
 		data.forEach((k, v) -> {
-			v.setParent(new Parent() {
+			final int slot = type.slot(k);
+			if (slot < 0)
+				throw new AssertionError(String.format("No middle element [%s] in [%s]", k, type.id()));
+			out[slot] = v;
+		});
+		return out;
+	}
+
+	/**
+	 * @param slot An ordinal from type.slot
+	 * @return The value stored in the slot
+	 */
+	public Value get(final int slot) {
+		return values[slot];
+	}
+
+	/**
+	 * The copy is independent of the original and may be inserted into a document.
+	 *
+	 * @return A detached copy of this atom and its values
+	 */
+	public Atom copy() {
+		final Value[] copy = new Value[values.length];
+		for (int i = 0; i < values.length; ++i)
+			if (values[i] != null)
+				copy[i] = values[i].copy();
+		return new Atom(type, copy);
+	}
+
+	/**
+	 * Record that this atom's data has been modified.
+	 */
+	public void changed() {
+		Atom at = this;
+		while (true) {
+			at.version += 1;
+			at.hashValid = false;
+			if (at.parent == null)
+				break;
+			at.parent.childChanged();
+			at = at.parent.value().parent.atom();
+		}
+	}
+
+	/**
+	 * Computed lazily and cached until this atom or a descendant changes, so after an edit only the atoms from the
+	 * edit up to the root are rehashed.  Atoms with equal hashes almost certainly have the same type and contents.
+	 *
+	 * @return A hash of the type, primitive contents, and child hashes
+	 */
+	public long hash() {
+		if (!hashValid) {
+			long out = ContentHash.mix(ContentHash.start(0), ContentHash.string(type.id()));
+			for (final Value value : values)
+				out = ContentHash.mix(out, value == null ? 0 : value.hash());
+			hash = out;
+			hashValid = true;
+		}
+		return hash;
+	}
+
+	private class Data extends AbstractMap<String, Value> {
+		@Override
+		public Value get(final Object key) {
+			if (!(key instanceof String))
+				return null;
+			final int slot = type.slot((String) key);
+			return slot < 0 ? null : values[slot];
+		}
+
+		@Override
+		public boolean containsKey(final Object key) {
+			return get(key) != null;
+		}
+
+		@Override
+		public int size() {
+			int out = 0;
+			for (final Value value : values)
+				if (value != null)
+					out += 1;
+			return out;
+		}
+
+		@Override
+		public void forEach(final BiConsumer<? super String, ? super Value> action) {
+			for (int i = 0; i < values.length; ++i)
+				if (values[i] != null)
+					action.accept(type.slotId(i), values[i]);
+		}
+
+		@Override
+		public Set<Entry<String, Value>> entrySet() {
+			return new AbstractSet<Entry<String, Value>>() {
 				@Override
-				public Atom atom() {
-					return Atom.this;
+				public Iterator<Entry<String, Value>> iterator() {
+					return new Iterator<Entry<String, Value>>() {
+						private int next = advance(0);
+
+						private int advance(int at) {
+							while (at < values.length && values[at] == null)
+								at += 1;
+							return at;
+						}
+
+						@Override
+						public boolean hasNext() {
+							return next < values.length;
+						}
+
+						@Override
+						public Entry<String, Value> next() {
+							if (next >= values.length)
+								throw new NoSuchElementException();
+							final Entry<String, Value> out = new SimpleImmutableEntry<>(type.slotId(next), values[next]);
+							next = advance(next + 1);
+							return out;
+						}
+					};
 				}
 
 				@Override
-				public boolean selectUp(final Context context) {
-					if (parent == null)
-						return false;
-					return Atom.this.parent.selectUp(context);
+				public int size() {
+					return Data.this.size();
 				}
-			});
-		});
+			};
+		}
 	}
 
+	/**
+	 * Cached until the structure of an ancestor value changes (see Value.getPath).
+	 *
+	 * @return
+	 */
 	public Path getPath() {
 		if (parent == null)
 			return new Path();
-		else
-			return parent.path();
+		final Value parentValue = parent.value();
+		final Path parentPath = parentValue.getPath();
+		if (path != null &&
+				pathParentValue == parentValue &&
+				pathParent == parentPath &&
+				pathVersion == parentValue.structureVersion())
+			return path;
+		path = parent.path();
+		pathParentValue = parentValue;
+		pathParent = parentPath;
+		pathVersion = parentValue.structureVersion();
+		return path;
 	}
 
 	public Visual createVisual(
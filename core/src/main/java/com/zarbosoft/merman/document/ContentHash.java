@@ -0,0 +1,37 @@
+package com.zarbosoft.merman.document;
+
+/**
+ * 64 bit hashing for document contents (see Atom.hash).  Not cryptographic - equal hashes mean the contents are
+ * almost certainly equal, which is enough to skip work.
+ */
+public class ContentHash {
+	private ContentHash() {
+	}
+
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	public static long start(final int kind) {
+		return mix(FNV_OFFSET, kind);
+	}
+
+	/**
+	 * @param hash
+	 * @param value
+	 * @return The hash combined with value, order dependent
+	 */
+	public static long mix(final long hash, final long value) {
+		long out = (hash ^ value) * 0x9e3779b97f4a7c15L;
+		out ^= out >>> 29;
+		return out;
+	}
+
+	public static long string(final String text) {
+		long out = FNV_OFFSET;
+		for (int i = 0; i < text.length(); ++i) {
+			out ^= text.charAt(i);
+			out *= FNV_PRIME;
+		}
+		return mix(out, text.length());
+	}
+}
@@ -1,21 +1,68 @@
 package com.zarbosoft.merman.document;
 
+import com.zarbosoft.merman.document.values.Value;
 import com.zarbosoft.merman.editor.serialization.Write;
+import com.zarbosoft.merman.editor.serialization.WriteCache;
 import com.zarbosoft.merman.syntax.Syntax;
 
 import java.io.OutputStream;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 public class Document {
 
 	final public Syntax syntax;
 	final public Atom root;
+	final public WriteCache writeCache = new WriteCache();
+
+	/**
+	 * Held while editing and while snapshots read shared state
+	 */
+	final Object lock = new Object();
+	final List<Snapshot> snapshots = new ArrayList<>();
 
 	public Document(final Syntax syntax, final Atom root) {
 		this.syntax = syntax;
 		this.root = root;
 	}
 
+	/**
+	 * O(1).  Must be called from the thread that edits the document.
+	 *
+	 * @return A view of the document as it is now for serializing off the ui thread.  Must be closed.
+	 */
+	public Snapshot snapshot() {
+		final Snapshot out = new Snapshot(this);
+		synchronized (lock) {
+			snapshots.add(out);
+		}
+		return out;
+	}
+
+	/**
+	 * Modify the document.  All modifications must be made through this (see Change) so open snapshots keep the
+	 * state from before the edit.
+	 *
+	 * @param value The value being modified
+	 * @param atoms Atoms whose versions the edit changes, other than the value's atom and its ancestors
+	 * @param edit
+	 */
+	public void edit(final Value value, final List<Atom> atoms, final Runnable edit) {
+		synchronized (lock) {
+			for (final Snapshot snapshot : snapshots)
+				snapshot.preserve(value, atoms);
+			edit.run();
+		}
+	}
+
+	/**
+	 * @return The content hash of the whole document (see Atom.hash)
+	 */
+	public long hash() {
+		return root.hash();
+	}
+
 	public void write(final Path out) {
 		Write.write(this, out);
 	}
@@ -1,6 +1,8 @@
 package com.zarbosoft.merman.document;
 
 public class InvalidDocument extends Error {
+	private static final long serialVersionUID = 1L;
+
 	public InvalidDocument(final String text) {
 		super(text);
 	}
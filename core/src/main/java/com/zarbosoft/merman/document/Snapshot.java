@@ -0,0 +1,91 @@
+package com.zarbosoft.merman.document;
+
+import com.zarbosoft.merman.document.values.Value;
+import com.zarbosoft.merman.document.values.ValueArray;
+import com.zarbosoft.merman.document.values.ValueAtom;
+import com.zarbosoft.merman.document.values.ValuePrimitive;
+import com.zarbosoft.merman.syntax.Syntax;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The state of a document at the time the snapshot was taken, readable from another thread while editing continues.
+ * <p>
+ * Taking a snapshot is O(1) - the atoms and values are shared with the document.  While the snapshot is open each
+ * edit first stores the previous state of the value it modifies and the versions of the atoms it changes (see
+ * Document.edit), so copying is proportional to what's edited during the snapshot's lifetime.  Close the snapshot
+ * when finished with it.
+ */
+public class Snapshot {
+	private final Document document;
+	public final Syntax syntax;
+	public final Atom root;
+
+	// Guarded by document.lock
+	private final Map<Value, Object> values = new HashMap<>();
+	private final Map<Atom, Integer> versions = new HashMap<>();
+
+	Snapshot(final Document document) {
+		this.document = document;
+		this.syntax = document.syntax;
+		this.root = document.root;
+	}
+
+	public Document document() {
+		return document;
+	}
+
+	void preserve(final Value value, final List<Atom> atoms) {
+		if (!values.containsKey(value))
+			values.put(value, value.state());
+		for (Atom at = value.parent.atom(); ; at = at.parent.value().parent.atom()) {
+			versions.putIfAbsent(at, at.version);
+			if (at.parent == null)
+				break;
+		}
+		for (final Atom atom : atoms)
+			versions.putIfAbsent(atom, atom.version);
+	}
+
+	private Object state(final Value value) {
+		synchronized (document.lock) {
+			final Object preserved = values.get(value);
+			return preserved != null ? preserved : value.state();
+		}
+	}
+
+	public String primitive(final ValuePrimitive value) {
+		return state(value).toString();
+	}
+
+	public Atom atom(final ValueAtom value) {
+		return (Atom) state(value);
+	}
+
+	/**
+	 * @param value
+	 * @return The elements as ValueArray.elements returns them
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Object> array(final ValueArray value) {
+		return (List<Object>) state(value);
+	}
+
+	public int version(final Atom atom) {
+		synchronized (document.lock) {
+			final Integer preserved = versions.get(atom);
+			return preserved != null ? preserved : atom.version;
+		}
+	}
+
+	/**
+	 * Stop preserving state for this snapshot.  May be called from any thread.
+	 */
+	public void close() {
+		synchronized (document.lock) {
+			document.snapshots.remove(this);
+		}
+	}
+}
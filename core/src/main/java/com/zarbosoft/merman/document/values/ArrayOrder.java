@@ -0,0 +1,272 @@
+package com.zarbosoft.merman.document.values;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Positions of array elements as an implicit treap over the elements' parents, so an element's index and back index
+ * (the sum of the back widths of the elements before it) can be found, and elements inserted or removed, in
+ * O(log n) expected time.
+ * <p>
+ * Each node is an ArrayParent; the tree is ordered by position and heap ordered by a random priority.  Nodes store
+ * the count and total back width of their subtree, and cache a hash of the elements in their subtree.
+ * <p>
+ * The subtree hash is polynomial in the element hashes (each element's hash times HASH_BASE to the number of
+ * elements after it), so the hash of two adjacent subtrees can be combined without revisiting their elements.
+ */
+class ArrayOrder {
+	private ArrayOrder() {
+	}
+
+	private static final long HASH_BASE = 0x9e3779b97f4a7c15L;
+
+	static int size(final ValueArray.ArrayParent node) {
+		return node == null ? 0 : node.size;
+	}
+
+	private static int width(final ValueArray.ArrayParent node) {
+		return node == null ? 0 : node.subtreeWidth;
+	}
+
+	private static void update(final ValueArray.ArrayParent node) {
+		node.size = 1 + size(node.left) + size(node.right);
+		node.subtreeWidth = node.width + width(node.left) + width(node.right);
+		node.subtreeHashValid = false;
+		if (node.left != null)
+			node.left.up = node;
+		if (node.right != null)
+			node.right.up = node;
+	}
+
+	/**
+	 * @param nodes In order, not in any tree
+	 * @return The root of a tree of the nodes, built in linear time
+	 */
+	static ValueArray.ArrayParent build(final List<ValueArray.ArrayParent> nodes) {
+		// Cartesian tree construction along the right spine
+		final Deque<ValueArray.ArrayParent> spine = new ArrayDeque<>();
+		for (final ValueArray.ArrayParent node : nodes) {
+			node.priority = ThreadLocalRandom.current().nextInt();
+			node.left = null;
+			node.right = null;
+			node.up = null;
+			ValueArray.ArrayParent last = null;
+			while (!spine.isEmpty() && spine.peekLast().priority < node.priority)
+				last = spine.pollLast();
+			node.left = last;
+			if (!spine.isEmpty())
+				spine.peekLast().right = node;
+			spine.addLast(node);
+		}
+		if (spine.isEmpty())
+			return null;
+		final ValueArray.ArrayParent root = spine.peekFirst();
+		// Compute subtree sums bottom up
+		final Deque<ValueArray.ArrayParent> stack = new ArrayDeque<>();
+		final Deque<ValueArray.ArrayParent> post = new ArrayDeque<>();
+		stack.addLast(root);
+		while (!stack.isEmpty()) {
+			final ValueArray.ArrayParent node = stack.pollLast();
+			post.addLast(node);
+			if (node.left != null)
+				stack.addLast(node.left);
+			if (node.right != null)
+				stack.addLast(node.right);
+		}
+		while (!post.isEmpty())
+			update(post.pollLast());
+		root.up = null;
+		return root;
+	}
+
+	static ValueArray.ArrayParent merge(final ValueArray.ArrayParent left, final ValueArray.ArrayParent right) {
+		if (left == null)
+			return right;
+		if (right == null)
+			return left;
+		if (left.priority > right.priority) {
+			left.right = merge(left.right, right);
+			update(left);
+			left.up = null;
+			return left;
+		} else {
+			right.left = merge(left, right.left);
+			update(right);
+			right.up = null;
+			return right;
+		}
+	}
+
+	/**
+	 * @param root
+	 * @param count
+	 * @param out   Receives the roots of the first count nodes and the rest
+	 */
+	static void split(
+			final ValueArray.ArrayParent root, final int count, final ValueArray.ArrayParent[] out
+	) {
+		if (root == null) {
+			out[0] = null;
+			out[1] = null;
+			return;
+		}
+		if (size(root.left) >= count) {
+			split(root.left, count, out);
+			root.left = out[1];
+			update(root);
+			root.up = null;
+			out[1] = root;
+		} else {
+			split(root.right, count - size(root.left) - 1, out);
+			root.right = out[0];
+			update(root);
+			root.up = null;
+			out[0] = root;
+		}
+		if (out[0] != null)
+			out[0].up = null;
+		if (out[1] != null)
+			out[1].up = null;
+	}
+
+	/**
+	 * @param root
+	 * @param index Less than the size of the tree
+	 * @return The node at index
+	 */
+	static ValueArray.ArrayParent find(ValueArray.ArrayParent root, int index) {
+		while (true) {
+			final int before = size(root.left);
+			if (index < before) {
+				root = root.left;
+			} else if (index == before) {
+				return root;
+			} else {
+				index -= before + 1;
+				root = root.right;
+			}
+		}
+	}
+
+	/**
+	 * @param root
+	 * @return The first node in the tree, or null if it's empty
+	 */
+	static ValueArray.ArrayParent first(ValueArray.ArrayParent root) {
+		if (root == null)
+			return null;
+		while (root.left != null)
+			root = root.left;
+		return root;
+	}
+
+	/**
+	 * Amortized O(1) when iterating over the whole tree.
+	 *
+	 * @param node
+	 * @return The node after node, or null if node is the last
+	 */
+	static ValueArray.ArrayParent next(ValueArray.ArrayParent node) {
+		if (node.right != null)
+			return first(node.right);
+		while (node.up != null && node.up.right == node)
+			node = node.up;
+		return node.up;
+	}
+
+	/**
+	 * @param root
+	 * @param actualIndex
+	 * @return The last node whose back index is at most actualIndex, or null if there is none
+	 */
+	static ValueArray.ArrayParent findActual(ValueArray.ArrayParent root, int actualIndex) {
+		if (actualIndex < 0)
+			return null;
+		ValueArray.ArrayParent found = null;
+		while (root != null) {
+			final int before = width(root.left);
+			if (actualIndex < before) {
+				root = root.left;
+			} else {
+				found = root;
+				actualIndex -= before + root.width;
+				if (actualIndex < 0)
+					break;
+				root = root.right;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * @param node
+	 * @return The number of nodes before node
+	 */
+	static int index(ValueArray.ArrayParent node) {
+		int out = size(node.left);
+		while (node.up != null) {
+			if (node.up.right == node)
+				out += size(node.up.left) + 1;
+			node = node.up;
+		}
+		return out;
+	}
+
+	/**
+	 * @param node
+	 * @return The sum of the widths of the nodes before node
+	 */
+	static int actualIndex(ValueArray.ArrayParent node) {
+		int out = width(node.left);
+		while (node.up != null) {
+			if (node.up.right == node)
+				out += width(node.up.left) + node.up.width;
+			node = node.up;
+		}
+		return out;
+	}
+
+	/**
+	 * Mark the subtree hashes containing node as stale, after the node's element changes.  O(log n).
+	 * <p>
+	 * Stops at the first stale node - update marks every node whose children change, and those are always on a
+	 * path from the root, so the ancestors of a stale node are stale.
+	 *
+	 * @param node
+	 */
+	static void hashChanged(ValueArray.ArrayParent node) {
+		while (node != null && node.subtreeHashValid) {
+			node.subtreeHashValid = false;
+			node = node.up;
+		}
+	}
+
+	/**
+	 * Only stale subtrees are recomputed, so after k element edits this is O(k log n).
+	 *
+	 * @param node
+	 * @return The order dependent hash of the element hashes in the subtree, 0 if empty
+	 */
+	static long hash(final ValueArray.ArrayParent node) {
+		if (node == null)
+			return 0;
+		if (!node.subtreeHashValid) {
+			final long left = hash(node.left);
+			final long right = hash(node.right);
+			node.subtreeHash = (left * HASH_BASE + node.atom().hash()) * power(node.right) + right;
+			node.subtreePower = power(node.left) * HASH_BASE * power(node.right);
+			node.subtreeHashValid = true;
+		}
+		return node.subtreeHash;
+	}
+
+	/**
+	 * @param node A node whose hash is valid, or null
+	 * @return HASH_BASE to the power of the subtree size
+	 */
+	private static long power(final ValueArray.ArrayParent node) {
+		return node == null ? 1 : node.subtreePower;
+	}
+}
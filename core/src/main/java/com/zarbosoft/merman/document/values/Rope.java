@@ -0,0 +1,157 @@
+package com.zarbosoft.merman.document.values;
+
+/**
+ * Immutable text as a height balanced tree of string leaves, so inserts and removes are O(log n) and earlier versions
+ * can be kept without copying.  Used by ValuePrimitive for large values.
+ * <p>
+ * The empty rope is null.
+ */
+class Rope {
+	/**
+	 * Leaves are split to at most this many characters, and adjacent leaves smaller than this are combined.
+	 */
+	static final int LEAF = 1024;
+
+	final int length;
+	final int height;
+	final String text;
+	final Rope left;
+	final Rope right;
+
+	private Rope(final String text) {
+		this.length = text.length();
+		this.height = 0;
+		this.text = text;
+		this.left = null;
+		this.right = null;
+	}
+
+	private Rope(final Rope left, final Rope right) {
+		this.length = left.length + right.length;
+		this.height = Math.max(left.height, right.height) + 1;
+		this.text = null;
+		this.left = left;
+		this.right = right;
+	}
+
+	private static int height(final Rope rope) {
+		return rope == null ? -1 : rope.height;
+	}
+
+	static Rope of(final String text) {
+		if (text.isEmpty())
+			return null;
+		return build(text, 0, text.length());
+	}
+
+	private static Rope build(final String text, final int begin, final int end) {
+		if (end - begin <= LEAF)
+			return new Rope(text.substring(begin, end));
+		final int middle = begin + (end - begin) / 2;
+		return new Rope(build(text, begin, middle), build(text, middle, end));
+	}
+
+	/**
+	 * Combine two balanced ropes whose heights differ by at most 2, rotating if necessary.
+	 */
+	private static Rope balance(final Rope left, final Rope right) {
+		if (left.height > right.height + 1) {
+			if (height(left.left) >= height(left.right))
+				return new Rope(left.left, new Rope(left.right, right));
+			return new Rope(new Rope(left.left, left.right.left), new Rope(left.right.right, right));
+		}
+		if (right.height > left.height + 1) {
+			if (height(right.right) >= height(right.left))
+				return new Rope(new Rope(left, right.left), right.right);
+			return new Rope(new Rope(left, right.left.left), new Rope(right.left.right, right.right));
+		}
+		return new Rope(left, right);
+	}
+
+	static Rope concat(final Rope left, final Rope right) {
+		if (left == null)
+			return right;
+		if (right == null)
+			return left;
+		if (left.text != null && right.text != null && left.length + right.length <= LEAF)
+			return new Rope(left.text + right.text);
+		if (left.height > right.height + 1)
+			return balance(left.left, concat(left.right, right));
+		if (right.height > left.height + 1)
+			return balance(concat(left, right.left), right.right);
+		return new Rope(left, right);
+	}
+
+	/**
+	 * @param rope
+	 * @param index
+	 * @param out   Receives the text before index and the text from index on
+	 */
+	static void split(final Rope rope, final int index, final Rope[] out) {
+		if (rope == null || index <= 0) {
+			out[0] = null;
+			out[1] = rope;
+			return;
+		}
+		if (index >= rope.length) {
+			out[0] = rope;
+			out[1] = null;
+			return;
+		}
+		if (rope.text != null) {
+			out[0] = new Rope(rope.text.substring(0, index));
+			out[1] = new Rope(rope.text.substring(index));
+			return;
+		}
+		if (index < rope.left.length) {
+			split(rope.left, index, out);
+			out[1] = concat(out[1], rope.right);
+		} else {
+			split(rope.right, index - rope.left.length, out);
+			out[0] = concat(rope.left, out[0]);
+		}
+	}
+
+	static Rope insert(final Rope rope, final int index, final String text) {
+		final Rope[] split = new Rope[2];
+		split(rope, index, split);
+		return concat(concat(split[0], of(text)), split[1]);
+	}
+
+	static Rope delete(final Rope rope, final int begin, final int end) {
+		final Rope[] split = new Rope[2];
+		split(rope, end, split);
+		final Rope after = split[1];
+		split(split[0], begin, split);
+		return concat(split[0], after);
+	}
+
+	static int length(final Rope rope) {
+		return rope == null ? 0 : rope.length;
+	}
+
+	private void append(final StringBuilder out, final int begin, final int end) {
+		if (begin >= end)
+			return;
+		if (text != null) {
+			out.append(text, begin, end);
+			return;
+		}
+		left.append(out, begin, Math.min(end, left.length));
+		right.append(out, Math.max(begin - left.length, 0), end - left.length);
+	}
+
+	static String substring(final Rope rope, final int begin, final int end) {
+		if (begin < 0 || end > length(rope) || begin > end)
+			throw new StringIndexOutOfBoundsException();
+		final StringBuilder out = new StringBuilder(end - begin);
+		if (rope != null)
+			rope.append(out, begin, end);
+		return out.toString();
+	}
+
+	@Override
+	public String toString() {
+		return substring(this, 0, length);
+	}
+}
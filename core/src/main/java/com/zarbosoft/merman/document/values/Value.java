@@ -13,28 +13,68 @@ import com.zarbosoft.rendaw.common.Pair;
 public abstract class Value {
 	public Atom.Parent parent = null;
 
+	private static final Path rootPath = new Path();
+
+	/**
+	 * Incremented whenever an edit here may change the paths of the atoms below - when elements are added to or
+	 * removed from this array, the atom is replaced, or the key of an element of this record changes.
+	 */
+	private long structureVersion = 0;
+	/**
+	 * Cached path, valid while the parent value, its path, and its structure version are unchanged.  Versions are
+	 * counted per value, so the parent value itself is part of the key.
+	 */
+	private Path path = null;
+	private Value pathParentValue = null;
+	private Path pathParent = null;
+	private long pathVersion;
+
+	public long structureVersion() {
+		return structureVersion;
+	}
+
+	public void structureChanged() {
+		structureVersion += 1;
+	}
+
 	public void setParent(final Atom.Parent parent) {
 		this.parent = parent;
 	}
 
 	public abstract MiddlePart middle();
 
+	/**
+	 * Cached until the structure of an ancestor value changes (see structureChanged), so edits only invalidate
+	 * the paths below them.  Checking the cache is O(depth) without allocation.
+	 *
+	 * @return
+	 */
 	final public Path getPath() {
 		final Atom atom = parent.atom();
 		if (atom.parent == null)
-			return new Path();
-		final Pair<Integer, Path> subpath = atom.type.getBackPart(middle().id).getSubpath();
+			return rootPath;
 		final Value parentValue = atom.parent.value();
 		final Path parentPath = parentValue.getPath();
-		if (atom.parent.value().middle() instanceof MiddleArray) {
-			final com.zarbosoft.merman.document.values.ValueArray.ArrayParent arrayParent =
-					(com.zarbosoft.merman.document.values.ValueArray.ArrayParent) atom.parent;
-			return parentPath.add(String.valueOf(arrayParent.actualIndex + subpath.first)).add(subpath.second);
-		} else if (atom.parent.value().middle() instanceof MiddleRecord) {
+		if (path != null &&
+				pathParentValue == parentValue &&
+				pathParent == parentPath &&
+				pathVersion == parentValue.structureVersion)
+			return path;
+		path = computePath(atom, parentValue, parentPath);
+		pathParentValue = parentValue;
+		pathParent = parentPath;
+		pathVersion = parentValue.structureVersion;
+		return path;
+	}
+
+	private Path computePath(final Atom atom, final Value parentValue, final Path parentPath) {
+		final Pair<Integer, Path> subpath = atom.type.getSubpath(middle().id);
+		if (parentValue.middle() instanceof MiddleArray) {
+			final ValueArray.ArrayParent arrayParent = (ValueArray.ArrayParent) atom.parent;
+			return parentPath.add(String.valueOf(arrayParent.actualIndex() + subpath.first)).add(subpath.second);
+		} else if (parentValue.middle() instanceof MiddleRecord) {
 			final String key = (
-					(com.zarbosoft.merman.document.values.ValuePrimitive) atom.data.get((
-							(BackDataKey) atom.type.back().get(0)
-					).middle)
+					(ValuePrimitive) atom.data.get(((BackDataKey) atom.type.back().get(0)).middle)
 			).get();
 			return parentPath.add(key).add(subpath.second);
 		} else {
@@ -44,6 +84,23 @@ public abstract class Value {
 
 	public abstract boolean selectDown(Context context);
 
+	/**
+	 * @return A hash of the value's contents including everything below it (see Atom.hash)
+	 */
+	public abstract long hash();
+
+	/**
+	 * Not including the values of child atoms.  See Snapshot.
+	 *
+	 * @return An immutable copy of the value's contents
+	 */
+	public abstract Object state();
+
+	/**
+	 * @return A detached copy of this value and everything below it, for inserting elsewhere
+	 */
+	public abstract Value copy();
+
 	public abstract class Parent {
 
 		/**
@@ -76,5 +133,11 @@ public abstract class Value {
 		public abstract Path path();
 
 		public abstract boolean selectUp(final Context context);
+
+		/**
+		 * Called when the child or one of its descendants changes (see Atom.changed).
+		 */
+		public void childChanged() {
+		}
 	}
 }
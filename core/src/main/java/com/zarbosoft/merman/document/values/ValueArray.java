@@ -2,9 +2,11 @@ package com.zarbosoft.merman.document.values;
 
 import com.google.common.collect.ImmutableList;
 import com.zarbosoft.merman.document.Atom;
+import com.zarbosoft.merman.document.ContentHash;
 import com.zarbosoft.merman.editor.Context;
 import com.zarbosoft.merman.editor.Path;
 import com.zarbosoft.merman.editor.history.changes.ChangeArray;
+import com.zarbosoft.merman.editor.serialization.LazyLoad;
 import com.zarbosoft.merman.editor.visual.Visual;
 import com.zarbosoft.merman.editor.visual.visuals.VisualArray;
 import com.zarbosoft.merman.editor.visual.visuals.VisualNestedFromArray;
@@ -12,22 +14,34 @@ import com.zarbosoft.merman.syntax.FreeAtomType;
 import com.zarbosoft.merman.syntax.middle.MiddleArrayBase;
 import com.zarbosoft.merman.syntax.middle.MiddlePart;
 import com.zarbosoft.rendaw.common.DeadCode;
-import com.zarbosoft.rendaw.common.Pair;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.stream.Collectors;
 
-import static com.zarbosoft.rendaw.common.Common.enumerate;
-import static com.zarbosoft.rendaw.common.Common.iterable;
-
 public class ValueArray extends Value {
 	public Visual visual = null;
 	private final MiddleArrayBase middle;
-	public final List<Atom> data = new ArrayList<>();
+	/**
+	 * The elements, read from the position tree.  Indexing is O(log n), iterating O(1) per element.  Read only;
+	 * modify with splice.  Elements that haven't been parsed (see LazyLoad) are parsed when read.
+	 */
+	public final List<Atom> data = new View<Atom>() {
+		@Override
+		Atom element(final ArrayParent node) {
+			return node.atom();
+		}
+	};
 	public final Set<Listener> listeners = new HashSet<>();
+	/**
+	 * Root of the element position tree, null if empty
+	 */
+	private ArrayParent order;
 
 	public MiddlePart middle() {
 		return middle;
@@ -39,18 +53,81 @@ public class ValueArray extends Value {
 	}
 
 	public class ArrayParent extends Parent {
-		public int index = 0;
-		public int actualIndex = 0;
+		/**
+		 * Null until parsed if unparsed isn't null
+		 */
+		private Atom atom;
+		private LazyLoad.Unparsed unparsed;
+
+		// Position tree (see ArrayOrder)
+		ArrayParent left;
+		ArrayParent right;
+		ArrayParent up;
+		int priority;
+		int size;
+		final int width;
+		int subtreeWidth;
+		long subtreeHash;
+		long subtreePower;
+		boolean subtreeHashValid = false;
+
+		ArrayParent(final Atom atom) {
+			this.atom = atom;
+			this.width = atom.type.back().size();
+		}
+
+		/**
+		 * Unparsed elements are always root array elements, which serialize as a single value.
+		 *
+		 * @param unparsed
+		 */
+		ArrayParent(final LazyLoad.Unparsed unparsed) {
+			this.unparsed = unparsed;
+			this.width = 1;
+		}
+
+		/**
+		 * @return The element, parsed if it wasn't already
+		 */
+		Atom atom() {
+			if (atom == null) {
+				final Atom parsed = unparsed.parse();
+				unparsed.attach(ValueArray.this, () -> {
+					parsed.setParent(this);
+					atom = parsed;
+					unparsed = null;
+				});
+			}
+			return atom;
+		}
+
+		/**
+		 * O(log n) in the length of the array.
+		 *
+		 * @return The position of the element in the array
+		 */
+		public int index() {
+			return ArrayOrder.index(this);
+		}
+
+		/**
+		 * O(log n) in the length of the array.
+		 *
+		 * @return The position of the element's first back part in the serialized array
+		 */
+		public int actualIndex() {
+			return ArrayOrder.actualIndex(this);
+		}
 
 		@Override
 		public void replace(final Context context, final Atom atom) {
-			final int index = this.index;
+			final int index = index();
 			context.history.apply(context, new ChangeArray(ValueArray.this, index, 1, ImmutableList.of(atom)));
 		}
 
 		@Override
 		public void delete(final Context context) {
-			context.history.apply(context, new ChangeArray(ValueArray.this, index, 1, ImmutableList.of()));
+			context.history.apply(context, new ChangeArray(ValueArray.this, index(), 1, ImmutableList.of()));
 		}
 
 		@Override
@@ -60,16 +137,59 @@ public class ValueArray extends Value {
 
 		@Override
 		public Path path() {
-			return middle.getPath(ValueArray.this, actualIndex);
+			return middle.getPath(ValueArray.this, actualIndex());
+		}
+
+		@Override
+		public void childChanged() {
+			ArrayOrder.hashChanged(this);
 		}
 
 		@Override
 		public boolean selectUp(final Context context) {
+			final int index = index();
 			select(context, true, index, index);
 			return true;
 		}
 	}
 
+	private abstract class View<T> extends AbstractList<T> {
+		abstract T element(ArrayParent node);
+
+		@Override
+		public T get(final int index) {
+			if (index < 0 || index >= size())
+				throw new IndexOutOfBoundsException(String.format("Index %s, size %s", index, size()));
+			return element(ArrayOrder.find(order, index));
+		}
+
+		@Override
+		public int size() {
+			return ArrayOrder.size(order);
+		}
+
+		@Override
+		public Iterator<T> iterator() {
+			return new Iterator<T>() {
+				ArrayParent next = ArrayOrder.first(order);
+
+				@Override
+				public boolean hasNext() {
+					return next != null;
+				}
+
+				@Override
+				public T next() {
+					if (next == null)
+						throw new NoSuchElementException();
+					final T out = element(next);
+					next = ArrayOrder.next(next);
+					return out;
+				}
+			};
+		}
+	}
+
 	public void addListener(final Listener listener) {
 		listeners.add(listener);
 	}
@@ -80,11 +200,31 @@ public class ValueArray extends Value {
 
 	public ValueArray(final MiddleArrayBase middle, final List<Atom> data) {
 		this.middle = middle;
-		this.data.addAll(data);
-		data.stream().forEach(v -> {
-			v.setParent(new ArrayParent());
-		});
-		renumber(0);
+		order = ArrayOrder.build(adopt(data));
+	}
+
+	/**
+	 * @param middle
+	 * @param elements Root elements read by LazyLoad
+	 * @return An array of the elements, each parsed when first read
+	 */
+	public static ValueArray unparsed(final MiddleArrayBase middle, final List<LazyLoad.Unparsed> elements) {
+		final ValueArray out = new ValueArray(middle);
+		final List<ArrayParent> order = new ArrayList<>(elements.size());
+		for (final LazyLoad.Unparsed element : elements)
+			order.add(out.new ArrayParent(element));
+		out.order = ArrayOrder.build(order);
+		return out;
+	}
+
+	private List<ArrayParent> adopt(final List<Atom> atoms) {
+		final List<ArrayParent> out = new ArrayList<>(atoms.size());
+		for (final Atom atom : atoms) {
+			final ArrayParent parent = new ArrayParent(atom);
+			atom.setParent(parent);
+			out.add(parent);
+		}
+		return out;
 	}
 
 	public void sideload(final Atom value) {
@@ -92,26 +232,51 @@ public class ValueArray extends Value {
 			throw new AssertionError();
 		if (parent.atom().parent != null)
 			throw new AssertionError();
-		data.add(value);
-		value.setParent(new ArrayParent());
-		renumber(0);
+		splice(0, 0, ImmutableList.of(value));
 	}
 
-	public void renumber(final int from) {
-		int sum;
-		if (from == 0) {
-			sum = 0;
-		} else {
-			final Atom prior = data.get(from - 1);
-			final ArrayParent parent = (ArrayParent) prior.parent;
-			sum = parent.actualIndex + prior.type.back().size();
-		}
-		for (final Pair<Integer, Atom> p : iterable(enumerate(data.stream().skip(from), from))) {
-			final ArrayParent parent = ((ArrayParent) p.second.parent);
-			parent.index = p.first;
-			parent.actualIndex = sum;
-			sum += p.second.type.back().size();
-		}
+	/**
+	 * Replace a range of elements, updating the positions of the elements that follow and invalidating cached paths.
+	 * Doesn't create history or notify listeners.  O(log n + k) in the length of the array and the number of elements
+	 * removed and added.
+	 *
+	 * @param index
+	 * @param remove Number of elements to remove starting at index
+	 * @param add    Elements to insert at index
+	 */
+	public void splice(final int index, final int remove, final List<Atom> add) {
+		structureChanged();
+		final ArrayParent[] split = new ArrayParent[2];
+		ArrayOrder.split(order, index, split);
+		final ArrayParent before = split[0];
+		ArrayOrder.split(split[1], remove, split);
+		final ArrayParent after = split[1];
+		for (ArrayParent removed = ArrayOrder.first(split[0]); removed != null; removed = ArrayOrder.next(removed))
+			if (removed.atom != null)
+				removed.atom.setParent(null);
+		order = ArrayOrder.merge(ArrayOrder.merge(before, ArrayOrder.build(adopt(add))), after);
+	}
+
+	/**
+	 * O(log n) in the length of the array.
+	 *
+	 * @param actualIndex A position in the serialized array
+	 * @return The index of the last element starting at or before actualIndex, or -1 if there is none
+	 */
+	public int indexOfActual(final int actualIndex) {
+		if (actualIndex < 0 || data.isEmpty())
+			return -1;
+		return ArrayOrder.index(ArrayOrder.findActual(order, actualIndex));
+	}
+
+	/**
+	 * O(k log n) after k elements change - the position tree caches hashes of its subtrees.
+	 *
+	 * @return
+	 */
+	@Override
+	public long hash() {
+		return ContentHash.mix(ContentHash.mix(ContentHash.start(2), ArrayOrder.hash(order)), data.size());
 	}
 
 	public ValueArray(final MiddleArrayBase middle) {
@@ -150,6 +315,38 @@ public class ValueArray extends Value {
 			throw new DeadCode();
 	}
 
+	/**
+	 * O(n) in the length of the array.
+	 *
+	 * @return The elements as an immutable list, as elements returns them
+	 */
+	@Override
+	public Object state() {
+		return ImmutableList.copyOf(elements());
+	}
+
+	/**
+	 * Read the elements without parsing them, for serializing.
+	 *
+	 * @return A read only view of the elements - each an Atom, or a LazyLoad.Unparsed if it hasn't been parsed
+	 */
+	public List<Object> elements() {
+		return new View<Object>() {
+			@Override
+			Object element(final ArrayParent node) {
+				return node.atom == null ? node.unparsed : node.atom;
+			}
+		};
+	}
+
+	@Override
+	public Value copy() {
+		final List<Atom> copy = new ArrayList<>(data.size());
+		for (final Atom atom : data)
+			copy.add(atom.copy());
+		return new ValueArray(middle, copy);
+	}
+
 	@Override
 	public boolean selectDown(final Context context) {
 		select(context, true, 0, 0);
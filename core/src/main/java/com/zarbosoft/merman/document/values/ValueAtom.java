@@ -1,6 +1,7 @@
 package com.zarbosoft.merman.document.values;
 
 import com.zarbosoft.merman.document.Atom;
+import com.zarbosoft.merman.document.ContentHash;
 import com.zarbosoft.merman.editor.Context;
 import com.zarbosoft.merman.editor.Path;
 import com.zarbosoft.merman.editor.history.changes.ChangeNodeSet;
@@ -66,6 +67,19 @@ public class ValueAtom extends Value {
 			data.setParent(new NodeParent());
 	}
 
+	/**
+	 * @return The atom
+	 */
+	@Override
+	public Object state() {
+		return data;
+	}
+
+	@Override
+	public Value copy() {
+		return new ValueAtom(middle, data == null ? null : data.copy());
+	}
+
 	@Override
 	public boolean selectDown(final Context context) {
 		select(context);
@@ -89,6 +103,11 @@ public class ValueAtom extends Value {
 		listeners.remove(listener);
 	}
 
+	@Override
+	public long hash() {
+		return ContentHash.mix(ContentHash.start(3), data.hash());
+	}
+
 	public Atom get() {
 		return data;
 	}
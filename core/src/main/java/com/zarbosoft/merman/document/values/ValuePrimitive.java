@@ -1,12 +1,17 @@
 package com.zarbosoft.merman.document.values;
 
+import com.zarbosoft.merman.document.Atom;
+import com.zarbosoft.merman.document.ContentHash;
 import com.zarbosoft.merman.editor.Context;
 import com.zarbosoft.merman.editor.history.Change;
 import com.zarbosoft.merman.editor.history.changes.ChangePrimitiveAdd;
 import com.zarbosoft.merman.editor.history.changes.ChangePrimitiveRemove;
 import com.zarbosoft.merman.editor.visual.visuals.VisualPrimitive;
+import com.zarbosoft.merman.syntax.back.BackDataKey;
+import com.zarbosoft.merman.syntax.back.BackPart;
 import com.zarbosoft.merman.syntax.middle.MiddlePart;
 import com.zarbosoft.merman.syntax.middle.MiddlePrimitive;
+import com.zarbosoft.merman.syntax.middle.MiddleRecord;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -14,12 +19,61 @@ import java.util.Set;
 public class ValuePrimitive extends Value {
 	public VisualPrimitive visual;
 	public final MiddlePrimitive middle;
-	public StringBuilder data = new StringBuilder();
+	/**
+	 * Values larger than this are edited as a Rope rather than in a StringBuilder.
+	 */
+	public static final int ROPE_THRESHOLD = 64 * 1024;
+
+	/**
+	 * The current value as a string, or null if it hasn't been computed since the last modification.  Loaded values
+	 * are interned (see Interner) so this may be shared with other primitives; modifications are made to buffer or
+	 * rope, which are private to this primitive.  At most one of buffer and rope is set.
+	 */
+	private String value;
+	private StringBuilder buffer = null;
+	private Rope rope = null;
+	private long hash;
+	private boolean hashValid = false;
 	public final Set<Listener> listeners = new HashSet<>();
 
 	public ValuePrimitive(final MiddlePrimitive middle, final String data) {
 		this.middle = middle;
-		this.data = new StringBuilder(data);
+		this.value = data;
+	}
+
+	private ValuePrimitive(final MiddlePrimitive middle, final Rope rope) {
+		this.middle = middle;
+		this.rope = rope;
+		this.value = rope == null ? "" : null;
+	}
+
+	/**
+	 * Copies share the original's text while it's a rope (ropes are immutable) so this is cheap even for large
+	 * values.
+	 */
+	private ValuePrimitive duplicate() {
+		if (rope != null)
+			return new ValuePrimitive(middle, rope);
+		return new ValuePrimitive(middle, get());
+	}
+
+	/**
+	 * O(1) for large values - ropes are immutable and shared.
+	 *
+	 * @return An object whose toString is the text
+	 */
+	@Override
+	public Object state() {
+		if (value != null)
+			return value;
+		if (rope != null)
+			return rope;
+		return get();
+	}
+
+	@Override
+	public Value copy() {
+		return duplicate();
 	}
 
 	@Override
@@ -29,7 +83,7 @@ public class ValuePrimitive extends Value {
 				context.createWindowForSelection(this, context.syntax.ellipsizeThreshold);
 			}
 		}
-		final int length = data.length();
+		final int length = length();
 		visual.select(context, true, length, length);
 		return true;
 	}
@@ -42,12 +96,107 @@ public class ValuePrimitive extends Value {
 		listeners.remove(listener);
 	}
 
+	/**
+	 * The result is cached until the next modification.
+	 *
+	 * @return
+	 */
 	public String get() {
-		return data.toString();
+		if (value == null)
+			value = rope != null ? rope.toString() : buffer.toString();
+		return value;
+	}
+
+	@Override
+	public long hash() {
+		if (!hashValid) {
+			hash = ContentHash.mix(ContentHash.start(1), ContentHash.string(get()));
+			hashValid = true;
+		}
+		return hash;
 	}
 
 	public int length() {
-		return data.length();
+		if (rope != null)
+			return rope.length;
+		if (buffer != null)
+			return buffer.length();
+		return value.length();
+	}
+
+	public String substring(final int begin, final int end) {
+		if (value != null)
+			return value.substring(begin, end);
+		if (rope != null)
+			return Rope.substring(rope, begin, end);
+		return buffer.substring(begin, end);
+	}
+
+	private StringBuilder buffer() {
+		if (buffer == null)
+			buffer = new StringBuilder(value);
+		value = null;
+		return buffer;
+	}
+
+	/**
+	 * Record element paths include the key, so invalidate cached paths if this is one.
+	 */
+	private void keyChanged() {
+		if (parent == null)
+			return;
+		final Atom atom = parent.atom();
+		if (atom.parent == null || !(atom.parent.value().middle() instanceof MiddleRecord))
+			return;
+		final BackPart first = atom.type.back().get(0);
+		if (first instanceof BackDataKey && ((BackDataKey) first).middle.equals(middle.id))
+			atom.parent.value().structureChanged();
+	}
+
+	/**
+	 * Modify the value without creating history or notifying listeners - use changes instead.
+	 *
+	 * @param index
+	 * @param text
+	 */
+	public void insert(final int index, final String text) {
+		if (rope != null || length() + text.length() > ROPE_THRESHOLD) {
+			rope = Rope.insert(rope != null ? rope : Rope.of(get()), index, text);
+			buffer = null;
+			value = null;
+		} else
+			buffer().insert(index, text);
+		hashValid = false;
+		keyChanged();
+	}
+
+	/**
+	 * Modify the value without creating history or notifying listeners - use changes instead.
+	 *
+	 * @param begin
+	 * @param end
+	 */
+	public void delete(final int begin, final int end) {
+		if (rope != null) {
+			rope = Rope.delete(rope, begin, end);
+			value = rope == null ? "" : null;
+		} else
+			buffer().delete(begin, end);
+		hashValid = false;
+		keyChanged();
+	}
+
+	/**
+	 * Replace the value without creating history or notifying listeners - use changes instead.
+	 *
+	 * @param text
+	 */
+	public void set(final String text) {
+		value = text;
+		buffer = null;
+		rope = null;
+		hashValid = false;
+		keyChanged();
 	}
 
 	@Override
@@ -1,11 +1,45 @@
 package com.zarbosoft.merman.editor;
 
+import com.zarbosoft.merman.document.Atom;
+import com.zarbosoft.merman.syntax.Syntax;
+
+import java.util.List;
+import java.util.function.Supplier;
+
 public abstract class ClipboardEngine {
-	public abstract void set(byte[] bytes);
+	/**
+	 * @param backType The format of bytes.  Binary data must not be offered to other applications as text.
+	 * @param bytes
+	 */
+	public abstract void set(Syntax.BackType backType, byte[] bytes);
 
 	public abstract void setString(String string);
 
-	public abstract byte[] get();
+	/**
+	 * @param backType
+	 * @return Serialized data in the format, or null
+	 */
+	public abstract byte[] get(Syntax.BackType backType);
 
 	public abstract String getString();
+
+	/**
+	 * Copy atoms within this process.  The atoms are detached copies owned by the clipboard.  Engines that can keep
+	 * them should only call serialize when another application needs the data.
+	 *
+	 * @param atoms
+	 * @param backType  The format serialize produces
+	 * @param serialize produces the serialized form of atoms, as passed to set
+	 */
+	public void setAtoms(final List<Atom> atoms, final Syntax.BackType backType, final Supplier<byte[]> serialize) {
+		set(backType, serialize.get());
+	}
+
+	/**
+	 * @return The atoms from the last setAtoms if they're still the clipboard contents, otherwise null.  The atoms
+	 * must not be modified or inserted directly.
+	 */
+	public List<Atom> getAtoms() {
+		return null;
+	}
 }
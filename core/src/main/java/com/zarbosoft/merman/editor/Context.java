@@ -30,6 +30,7 @@ import com.zarbosoft.merman.editor.wall.Attachment;
 import com.zarbosoft.merman.editor.wall.Brick;
 import com.zarbosoft.merman.editor.wall.Wall;
 import com.zarbosoft.merman.modules.Module;
+import com.zarbosoft.merman.syntax.AtomType;
 import com.zarbosoft.merman.syntax.Syntax;
 import com.zarbosoft.merman.syntax.back.*;
 import com.zarbosoft.merman.syntax.front.FrontGapBase;
@@ -101,7 +102,7 @@ public class Context {
 	boolean debugInHover = false;
 
 	public static PSet<Tag> asFreeTags(final Set<String> tags) {
-		return HashTreePSet.from(tags.stream().map(tag -> new FreeTag(tag)).collect(Collectors.toList()));
+		return HashTreePSet.from(tags.stream().map(tag -> FreeTag.of(tag)).collect(Collectors.toList()));
 	}
 
 	public static interface GapChoiceListener {
@@ -170,9 +171,12 @@ public class Context {
 	}
 
 	public void copy(final List<Atom> atoms) {
-		final ByteArrayOutputStream stream = new ByteArrayOutputStream();
-		Write.write(atoms, document.syntax, stream);
-		clipboardEngine.set(stream.toByteArray());
+		final List<Atom> copies = atoms.stream().map(Atom::copy).collect(Collectors.toList());
+		clipboardEngine.setAtoms(copies, syntax.backType, () -> {
+			final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+			Write.write(copies, syntax, stream);
+			return stream.toByteArray();
+		});
 	}
 
 	public void copy(final String string) {
@@ -180,17 +184,35 @@ public class Context {
 	}
 
 	public List<Atom> uncopy(final String type) {
-		final byte[] bytes = clipboardEngine.get();
-		if (bytes == null)
-			return ImmutableList.of();
-		try {
-			return Load.loadMultiple(syntax, type, new ByteArrayInputStream(bytes));
-		} catch (final InvalidStream e) {
+		final List<Atom> atoms = clipboardEngine.getAtoms();
+		if (atoms != null) {
+			final Set<AtomType> allowed = syntax.getLeafTypes(type).collect(Collectors.toCollection(HashSet::new));
+			// Gaps may be placed anywhere
+			allowed.add(syntax.gap);
+			allowed.add(syntax.prefixGap);
+			allowed.add(syntax.suffixGap);
+			if (!atoms.stream().allMatch(atom -> allowed.contains(atom.type)))
+				return ImmutableList.of();
+			return atoms.stream().map(Atom::copy).collect(Collectors.toList());
+		}
+		final byte[] bytes = clipboardEngine.get(syntax.backType);
+		if (bytes != null) {
+			try {
+				return Load.loadMultiple(syntax, type, new ByteArrayInputStream(bytes));
+			} catch (final InvalidStream e) {
 
-		} catch (final InvalidDocument e) {
+			} catch (final InvalidDocument e) {
 
+			}
 		}
-		return ImmutableList.of();
+		// Text copied from elsewhere, as displayed
+		final String text = clipboardEngine.getString();
+		if (text == null)
+			return ImmutableList.of();
+		final Atom atom = syntax.getFrontGrammar().parse(type, text);
+		if (atom == null)
+			return ImmutableList.of();
+		return ImmutableList.of(atom);
 	}
 
 	public String uncopyString() {
@@ -339,16 +361,16 @@ public class Context {
 									new Path(TreePVector.from(segments.subList(0, pathIndex)))
 							));
 						}
-						atom = ((ValueArray) value).data.stream().filter(child -> (
-								((ValueArray.ArrayParent) child.parent).actualIndex <= index
-						)).reduce((a, b) -> b).orElseThrow(() -> new InvalidPath(String.format(
-								"Invalid index %d at [%s].",
-								index,
-								new Path(TreePVector.from(segments.subList(0, tempPathIndex)))
-						)));
+						final int found = ((ValueArray) value).indexOfActual(index);
+						if (found < 0)
+							throw new InvalidPath(String.format("Invalid index %d at [%s].",
+									index,
+									new Path(TreePVector.from(segments.subList(0, tempPathIndex)))
+							));
+						atom = ((ValueArray) value).data.get(found);
 						if (!goLong && pathIndex + 1 == segments.size())
 							return atom;
-						part = atom.type.back().get(index - ((ValueArray.ArrayParent) atom.parent).actualIndex);
+						part = atom.type.back().get(index - ((ValueArray.ArrayParent) atom.parent).actualIndex());
 					}
 				} else if (value instanceof ValueAtom) {
 					atom = ((ValueAtom) value).get();
@@ -691,10 +713,10 @@ public class Context {
 		TagsChange tagsChange = new TagsChange();
 		if (!window) {
 			window = true;
-			tagsChange = tagsChange.add(new StateTag("windowed"));
+			tagsChange = tagsChange.add(StateTag.of("windowed"));
 		}
 		if (windowAtom == null)
-			tagsChange = tagsChange.remove(new StateTag("root_window"));
+			tagsChange = tagsChange.remove(StateTag.of("root_window"));
 		final Visual oldWindow = windowAtom == null ? document.root.visual : windowAtom.visual;
 		windowAtom = atom;
 		final Visual windowVisual = atom.createVisual(this, null, ImmutableMap.of(), 0, 0);
@@ -831,7 +853,7 @@ public class Context {
 		windowAtom = null;
 		document.root.createVisual(this, null, ImmutableMap.of(), 0, 0);
 		changeGlobalTags(new TagsChange(ImmutableSet.of(),
-				ImmutableSet.of(new StateTag("windowed"), new StateTag("root_window"))
+				ImmutableSet.of(StateTag.of("windowed"), StateTag.of("root_window"))
 		));
 	}
 
@@ -873,7 +895,7 @@ public class Context {
 		details = new Details(this);
 		this.history = history;
 		history.addModifiedStateListener(modified -> {
-			final Tag tag = new GlobalTag("modified");
+			final Tag tag = GlobalTag.of("modified");
 			if (modified)
 				changeGlobalTags(new TagsChange().add(tag));
 			else
@@ -976,7 +998,7 @@ public class Context {
 			window = true;
 			windowAtom = null;
 			document.root.createVisual(this, null, ImmutableMap.of(), 0, 0);
-			changeGlobalTags(new TagsChange(ImmutableSet.of(new StateTag("windowed"), new StateTag("root_window")),
+			changeGlobalTags(new TagsChange(ImmutableSet.of(StateTag.of("windowed"), StateTag.of("root_window")),
 					ImmutableSet.of()
 			));
 		}
@@ -2,17 +2,25 @@ package com.zarbosoft.merman.editor;
 
 import com.google.common.collect.ImmutableList;
 import com.zarbosoft.merman.document.Document;
+import com.zarbosoft.merman.document.Snapshot;
 import com.zarbosoft.merman.editor.display.Display;
 import com.zarbosoft.merman.editor.history.History;
+import com.zarbosoft.merman.editor.history.Journal;
+import com.zarbosoft.merman.editor.serialization.StreamLoad;
+import com.zarbosoft.merman.editor.serialization.Write;
 import com.zarbosoft.merman.syntax.Syntax;
 
 import java.nio.file.Path;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
+import static com.zarbosoft.rendaw.common.Common.uncheck;
+
 public class Editor {
 	/**
 	 * Invariants and inner workings
@@ -21,7 +29,9 @@ public class Editor {
 	 * -- when the window expands
 	 * -- when the model changes, at the visual level where the change occurs
 	 * <p>
-	 * The whole document is always loaded.
+	 * The whole document is loaded, except for root array elements of streamed documents which are appended as
+	 * they're parsed, and root array elements of lazily loaded documents which are parsed when first read (see
+	 * LazyLoad).
 	 * Visuals exist for everything in the window.
 	 * Bricks eventually exist for everything on screen.
 	 * <p>
@@ -36,6 +46,11 @@ public class Editor {
 	public static Supplier<Set> createSet = () -> new HashSet<>();
 	private final Context context;
 	private final Display visual;
+	private Journal journal;
+	/**
+	 * The load appending to the document, if it hasn't finished
+	 */
+	private StreamLoad streaming;
 
 	public Editor(
 			final Syntax syntax,
@@ -54,14 +69,92 @@ public class Editor {
 	}
 
 	public void destroy() {
+		if (streaming != null) {
+			streaming.cancel();
+			streaming = null;
+		}
 		context.modules.forEach(p -> p.destroy(context));
 		context.banner.destroy(context);
 		context.foreground.clear(context);
 	}
 
+	/**
+	 * Replay any changes recovered by the journal, then journal all further changes.
+	 *
+	 * @param journal
+	 */
+	public void setJournal(final Journal journal) {
+		journal.replay(context);
+		context.history.setJournal(journal);
+		this.journal = journal;
+	}
+
+	/**
+	 * Append the rest of a streamed document as it's parsed.  Saving is refused until the load completes
+	 * successfully.  Must be called from the ui thread.
+	 *
+	 * @param load   A load whose document is this editor's document
+	 * @param worker Runs the parsing
+	 * @param ui     Runs tasks on the ui thread
+	 * @return Completes on the ui thread once the whole document has been appended
+	 */
+	public CompletableFuture<Void> stream(final StreamLoad load, final Executor worker, final Executor ui) {
+		if (load.complete())
+			return CompletableFuture.completedFuture(null);
+		streaming = load;
+		return CompletableFuture
+				.runAsync(() -> uncheck(() -> load.run(batch -> ui.execute(() -> {
+					if (streaming == load)
+						load.append(context, batch);
+				}))),
+						worker
+				)
+				.thenRunAsync(() -> streaming = null, ui);
+	}
+
+	private static IllegalStateException notLoaded() {
+		return new IllegalStateException("The document hasn't finished loading.");
+	}
+
 	public void save(final Path dest) {
+		if (streaming != null)
+			throw notLoaded();
+		final long mark = journal == null ? 0 : journal.mark();
 		context.document.write(dest);
 		context.history.clearModified(context);
+		if (journal != null)
+			journal.saved(mark, dest);
+	}
+
+	/**
+	 * Save without blocking the ui thread.  The document is snapshotted immediately and written from the worker;
+	 * editing may continue in the meantime.  Must be called from the ui thread.
+	 *
+	 * @param dest
+	 * @param worker Runs the serialization.  Should be sequential if saves to the same file can overlap.
+	 * @param ui     Runs tasks on the ui thread
+	 * @return Completes on the ui thread after the modified state has been updated, or exceptionally if the write
+	 * failed (in which case dest is untouched)
+	 */
+	public CompletableFuture<Void> saveBackground(final Path dest, final Executor worker, final Executor ui) {
+		if (streaming != null)
+			return CompletableFuture.failedFuture(notLoaded());
+		final Snapshot snapshot = context.document.snapshot();
+		final Integer level = context.history.saveLevel(context);
+		final long mark = journal == null ? 0 : journal.mark();
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return Write.writeCached(snapshot, dest);
+			} finally {
+				snapshot.close();
+			}
+		}, worker).thenAcceptAsync(session -> {
+			if (session != null)
+				session.commit();
+			context.history.clearModified(context, level);
+			if (journal != null)
+				journal.saved(mark, dest);
+		}, ui);
 	}
 
 	public void addActions(final Object key, final List<Action> actions) {
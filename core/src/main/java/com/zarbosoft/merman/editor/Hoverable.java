@@ -21,7 +21,7 @@ public abstract class Hoverable {
 	);
 
 	public Style.Baked getBorderStyle(final Context context, final PSet<Tag> tags) {
-		return context.getStyle(context.globalTags.plusAll(tags).plus(new PartTag("hover")));
+		return context.getStyle(context.globalTags.plusAll(tags).plus(PartTag.of("hover")));
 	}
 
 }
@@ -1,6 +1,8 @@
 package com.zarbosoft.merman.editor;
 
 public class InvalidPath extends Error {
+	private static final long serialVersionUID = 1L;
+
 	public InvalidPath(final String text) {
 		super(text);
 	}
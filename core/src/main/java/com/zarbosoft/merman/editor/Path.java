@@ -35,6 +35,11 @@ public class Path {
 		return true;
 	}
 
+	@Override
+	public int hashCode() {
+		return segments.hashCode();
+	}
+
 	public boolean contains(final Path other) {
 		if (other.segments.size() > segments.size())
 			return false;
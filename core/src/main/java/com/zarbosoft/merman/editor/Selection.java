@@ -29,7 +29,7 @@ public abstract class Selection {
 	}
 
 	public Style.Baked getBorderStyle(final Context context, final PSet<Tag> tags) {
-		return context.getStyle(context.globalTags.plusAll(tags).plus(new PartTag("selection")));
+		return context.getStyle(context.globalTags.plusAll(tags).plus(PartTag.of("selection")));
 	}
 
 	public abstract PSet<Tag> getTags(Context context);
@@ -1,34 +1,155 @@
 package com.zarbosoft.merman.editor;
 
+import com.zarbosoft.merman.document.Atom;
+import com.zarbosoft.merman.syntax.Syntax;
+import com.zarbosoft.rendaw.common.DeadCode;
+import javafx.application.Platform;
 import javafx.scene.input.Clipboard;
 import javafx.scene.input.ClipboardContent;
 import javafx.scene.input.DataFormat;
 
 import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 
 public class SimpleClipboardEngine extends ClipboardEngine {
 	Clipboard clipboard = Clipboard.getSystemClipboard();
-	DataFormat dataFormat = new DataFormat("application/luxem");
+	private static final DataFormat luxemFormat = new DataFormat("application/luxem");
+	private static final DataFormat jsonFormat = new DataFormat("application/json");
+	private static final DataFormat binaryFormat = new DataFormat("application/x-merman-binary");
+	private static final DataFormat ownerFormat = new DataFormat("application/x-merman-owner");
+	private static final ExecutorService serializer = Executors.newSingleThreadExecutor(r -> {
+		final Thread thread = new Thread(r, "clipboard");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * The atoms from the last setAtoms, valid while the system clipboard still holds owner
+	 */
+	private List<Atom> atoms;
+	private Syntax.BackType backType;
+	private String owner;
+	private Supplier<byte[]> serialize;
+	private CompletableFuture<byte[]> serialized;
+
+	private static DataFormat format(final Syntax.BackType backType) {
+		switch (backType) {
+			case LUXEM:
+				return luxemFormat;
+			case JSON:
+				return jsonFormat;
+			case BINARY:
+				return binaryFormat;
+			default:
+				throw new DeadCode();
+		}
+	}
+
+	/**
+	 * @param backType
+	 * @return True if the format is text that other applications can show
+	 */
+	private static boolean text(final Syntax.BackType backType) {
+		return backType != Syntax.BackType.BINARY;
+	}
+
+	private static void put(final ClipboardContent content, final Syntax.BackType backType, final byte[] bytes) {
+		content.put(format(backType), bytes);
+		if (text(backType))
+			content.putString(new String(bytes, StandardCharsets.UTF_8));
+	}
 
 	@Override
-	public void set(final byte[] bytes) {
+	public void set(final Syntax.BackType backType, final byte[] bytes) {
+		release();
 		final ClipboardContent content = new ClipboardContent();
-		content.put(dataFormat, bytes);
-		content.putString(new String(bytes, StandardCharsets.UTF_8));
+		put(content, backType, bytes);
 		clipboard.setContent(content);
 	}
 
 	@Override
 	public void setString(final String string) {
+		release();
 		final ClipboardContent content = new ClipboardContent();
 		content.putString(string);
 		clipboard.setContent(content);
 	}
 
+	/**
+	 * JavaFX can't render clipboard data on request, so the atoms are claimed immediately and the serialized form is
+	 * published for other applications once it's been produced in the background.
+	 *
+	 * @param atoms
+	 * @param backType
+	 * @param serialize
+	 */
+	@Override
+	public void setAtoms(final List<Atom> atoms, final Syntax.BackType backType, final Supplier<byte[]> serialize) {
+		final String owner = UUID.randomUUID().toString();
+		this.atoms = atoms;
+		this.backType = backType;
+		this.owner = owner;
+		this.serialize = serialize;
+		final ClipboardContent claim = new ClipboardContent();
+		claim.put(ownerFormat, owner);
+		clipboard.setContent(claim);
+		serialized = CompletableFuture.supplyAsync(serialize, serializer);
+		serialized.thenAccept(bytes -> Platform.runLater(() -> {
+			if (!owned() || !owner.equals(this.owner))
+				return;
+			final ClipboardContent content = new ClipboardContent();
+			content.put(ownerFormat, owner);
+			put(content, backType, bytes);
+			clipboard.setContent(content);
+		}));
+	}
+
+	@Override
+	public List<Atom> getAtoms() {
+		if (!owned())
+			return null;
+		return atoms;
+	}
+
+	private boolean owned() {
+		return owner != null && owner.equals(clipboard.getContent(ownerFormat));
+	}
+
+	private void release() {
+		atoms = null;
+		backType = null;
+		owner = null;
+		serialize = null;
+		serialized = null;
+	}
+
+	/**
+	 * Called on the FX thread, so rather than waiting behind other work on the background serializer this serializes
+	 * the atoms itself if they aren't done yet.  The atoms belong to the clipboard and aren't modified so serializing
+	 * them on both threads is safe; whichever finishes first is used.
+	 *
+	 * @return The serialized form of the atoms, in backType
+	 */
+	private byte[] serialized() {
+		final byte[] done = serialized.getNow(null);
+		if (done != null)
+			return done;
+		final byte[] out = serialize.get();
+		serialized.complete(out);
+		return out;
+	}
+
 	@Override
-	public byte[] get() {
-		byte[] out = (byte[]) clipboard.getContent(dataFormat);
-		if (out == null) {
+	public byte[] get(final Syntax.BackType backType) {
+		if (owned())
+			return this.backType == backType ? serialized() : null;
+		byte[] out = (byte[]) clipboard.getContent(format(backType));
+		if (out == null && text(backType)) {
 			final String temp = clipboard.getString();
 			if (temp != null) {
 				out = temp.getBytes(StandardCharsets.UTF_8);
@@ -39,6 +160,8 @@ public class SimpleClipboardEngine extends ClipboardEngine {
 
 	@Override
 	public String getString() {
+		if (owned())
+			return text(backType) ? new String(serialized(), StandardCharsets.UTF_8) : null;
 		return clipboard.getString();
 	}
 }
@@ -2,6 +2,7 @@ package com.zarbosoft.merman.editor;
 
 import com.zarbosoft.appdirsj.AppDirs;
 import com.zarbosoft.merman.syntax.Syntax;
+import com.zarbosoft.merman.syntax.SyntaxCache;
 import com.zarbosoft.rendaw.common.WeakCache;
 
 import java.nio.file.Path;
@@ -14,7 +15,7 @@ public class SyntaxManager {
 	public Syntax get(final AppDirs appDirs, final String id) {
 		return cache.getOrCreate(id, file -> {
 			final Path path = appDirs.user_config_dir().resolve("syntaxes").resolve(String.format("syntax_%s.lua", id));
-			return Syntax.loadSyntax(id, path);
+			return new SyntaxCache(appDirs.user_cache_dir().resolve("syntaxes")).load(id, path);
 		});
 	}
 }
@@ -5,6 +5,7 @@ import com.zarbosoft.pidgoon.events.MatchingEvent;
 
 @Configuration(name = "array-close")
 public class EArrayCloseEvent implements BackEvent {
+	public static final EArrayCloseEvent instance = new EArrayCloseEvent();
 
 	@Override
 	public boolean matches(final MatchingEvent event) {
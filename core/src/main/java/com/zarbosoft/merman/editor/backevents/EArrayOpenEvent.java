@@ -5,6 +5,7 @@ import com.zarbosoft.pidgoon.events.MatchingEvent;
 
 @Configuration(name = "array-open")
 public class EArrayOpenEvent implements BackEvent {
+	public static final EArrayOpenEvent instance = new EArrayOpenEvent();
 
 	@Override
 	public boolean matches(final MatchingEvent event) {
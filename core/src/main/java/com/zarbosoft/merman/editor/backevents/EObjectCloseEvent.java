@@ -5,6 +5,7 @@ import com.zarbosoft.pidgoon.events.MatchingEvent;
 
 @Configuration(name = "object-close")
 public class EObjectCloseEvent implements BackEvent {
+	public static final EObjectCloseEvent instance = new EObjectCloseEvent();
 
 	@Override
 	public boolean matches(final MatchingEvent event) {
@@ -5,6 +5,7 @@ import com.zarbosoft.pidgoon.events.MatchingEvent;
 
 @Configuration(name = "object-open")
 public class EObjectOpenEvent implements BackEvent {
+	public static final EObjectOpenEvent instance = new EObjectOpenEvent();
 
 	@Override
 	public boolean matches(final MatchingEvent event) {
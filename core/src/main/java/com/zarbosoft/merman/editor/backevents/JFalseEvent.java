@@ -3,6 +3,8 @@ package com.zarbosoft.merman.editor.backevents;
 import com.zarbosoft.pidgoon.events.MatchingEvent;
 
 public class JFalseEvent implements BackEvent {
+	public static final JFalseEvent instance = new JFalseEvent();
+
 	@Override
 	public boolean matches(final MatchingEvent event) {
 		return event instanceof JFalseEvent;
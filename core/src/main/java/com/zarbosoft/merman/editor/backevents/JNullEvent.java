@@ -3,6 +3,8 @@ package com.zarbosoft.merman.editor.backevents;
 import com.zarbosoft.pidgoon.events.MatchingEvent;
 
 public class JNullEvent implements BackEvent {
+	public static final JNullEvent instance = new JNullEvent();
+
 	@Override
 	public boolean matches(final MatchingEvent event) {
 		return event instanceof JNullEvent;
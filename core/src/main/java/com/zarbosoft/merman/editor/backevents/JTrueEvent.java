@@ -3,6 +3,8 @@ package com.zarbosoft.merman.editor.backevents;
 import com.zarbosoft.pidgoon.events.MatchingEvent;
 
 public class JTrueEvent implements BackEvent {
+	public static final JTrueEvent instance = new JTrueEvent();
+
 	@Override
 	public boolean matches(final MatchingEvent event) {
 		return event instanceof JTrueEvent;
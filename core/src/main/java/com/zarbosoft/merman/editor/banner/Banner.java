@@ -139,7 +139,7 @@ public class Banner {
 	}
 
 	private Style.Baked getStyle(final Context context) {
-		return context.getStyle(HashTreePSet.from(context.globalTags).plus(new PartTag("banner")));
+		return context.getStyle(HashTreePSet.from(context.globalTags).plus(PartTag.of("banner")));
 	}
 
 	private void updateStyle(final Context context) {
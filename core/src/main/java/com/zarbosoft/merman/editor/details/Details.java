@@ -69,7 +69,7 @@ public class Details {
 	}
 
 	private Style.Baked getStyle(final Context context) {
-		return context.getStyle(HashTreePSet.from(context.globalTags).plus(new PartTag("details")));
+		return context.getStyle(HashTreePSet.from(context.globalTags).plus(PartTag.of("details")));
 	}
 
 	private void updateStyle(final Context context) {
@@ -3,9 +3,19 @@ package com.zarbosoft.merman.editor.history;
 import com.zarbosoft.interface1.Configuration;
 import com.zarbosoft.merman.editor.Context;
 
+import java.io.IOException;
+
 @Configuration
 public abstract class Change {
 	public abstract boolean merge(Change other);
 
 	public abstract Change apply(Context context);
+
+	/**
+	 * Encode the change as a journal record.  Called after the change is applied.
+	 *
+	 * @param output
+	 * @throws IOException
+	 */
+	public abstract void journal(Journal.Output output) throws IOException;
 }
@@ -0,0 +1,300 @@
+package com.zarbosoft.merman.editor.history;
+
+import com.zarbosoft.merman.document.Atom;
+import com.zarbosoft.merman.document.Document;
+import com.zarbosoft.merman.document.values.Value;
+import com.zarbosoft.merman.document.values.ValueArray;
+import com.zarbosoft.merman.document.values.ValueAtom;
+import com.zarbosoft.merman.document.values.ValuePrimitive;
+import com.zarbosoft.merman.editor.Context;
+import com.zarbosoft.merman.editor.history.changes.ChangeArray;
+import com.zarbosoft.merman.editor.history.changes.ChangeNodeSet;
+import com.zarbosoft.merman.editor.history.changes.ChangePrimitiveAdd;
+import com.zarbosoft.merman.editor.history.changes.ChangePrimitiveRemove;
+import com.zarbosoft.rendaw.common.DeadCode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the changes that turn one document tree into another.
+ * <p>
+ * Subtrees are compared by content hash (see Atom.hash) first.  Equal hashes are confirmed by comparing the subtrees,
+ * so a hash collision can't hide a change; unchanged subtrees are walked once for this but produce no changes.
+ * Array elements are matched by trimming equal ends and then anchoring on elements whose hash occurs exactly once on
+ * each side (patience diff), so the work is close to linear in the size of the documents.  Unmatched runs of
+ * elements are edited in place if they line up by type, otherwise replaced.
+ */
+public class Diff {
+	private final List<Change> changes = new ArrayList<>();
+
+	private Diff() {
+	}
+
+	/**
+	 * @param from
+	 * @param to   Not modified; inserted atoms are copies
+	 * @return Changes to apply to from, in order
+	 */
+	public static List<Change> diff(final Document from, final Document to) {
+		return diff(from.root, to.root);
+	}
+
+	/**
+	 * @param from
+	 * @param to   Must be the same type as from.  Not modified; inserted atoms are copies
+	 * @return Changes to apply to from, in order
+	 */
+	public static List<Change> diff(final Atom from, final Atom to) {
+		if (from.type != to.type)
+			throw new AssertionError(String.format("Can't diff atoms of different types (%s, %s)", from.type, to.type));
+		final Diff diff = new Diff();
+		diff.atom(from, to);
+		return diff.changes;
+	}
+
+	/**
+	 * Apply changes from diff as a single undo level.
+	 *
+	 * @param context
+	 * @param changes
+	 */
+	public static void apply(final Context context, final List<Change> changes) {
+		context.history.finishChange(context);
+		for (final Change change : changes)
+			context.history.apply(context, change);
+		context.history.finishChange(context);
+	}
+
+	/**
+	 * @param from
+	 * @param to
+	 * @return True if the atoms have the same type and contents
+	 */
+	private static boolean same(final Atom from, final Atom to) {
+		if (from.hash() != to.hash())
+			return false;
+		final Deque<Atom> stack = new ArrayDeque<>();
+		stack.addLast(from);
+		stack.addLast(to);
+		while (!stack.isEmpty()) {
+			final Atom right = stack.removeLast();
+			final Atom left = stack.removeLast();
+			if (left.type != right.type)
+				return false;
+			for (int slot = 0; slot < left.type.slotCount(); ++slot) {
+				final Value leftValue = left.get(slot);
+				final Value rightValue = right.get(slot);
+				if (leftValue instanceof ValuePrimitive) {
+					if (!((ValuePrimitive) leftValue).get().equals(((ValuePrimitive) rightValue).get()))
+						return false;
+				} else if (leftValue instanceof ValueAtom) {
+					stack.addLast(((ValueAtom) leftValue).get());
+					stack.addLast(((ValueAtom) rightValue).get());
+				} else if (leftValue instanceof ValueArray) {
+					final List<Atom> leftData = ((ValueArray) leftValue).data;
+					final List<Atom> rightData = ((ValueArray) rightValue).data;
+					if (leftData.size() != rightData.size())
+						return false;
+					final Iterator<Atom> leftIterator = leftData.iterator();
+					final Iterator<Atom> rightIterator = rightData.iterator();
+					while (leftIterator.hasNext()) {
+						final Atom leftElement = leftIterator.next();
+						final Atom rightElement = rightIterator.next();
+						if (leftElement.hash() != rightElement.hash())
+							return false;
+						stack.addLast(leftElement);
+						stack.addLast(rightElement);
+					}
+				} else if (leftValue != null || rightValue != null)
+					throw new DeadCode();
+			}
+		}
+		return true;
+	}
+
+	private void atom(final Atom from, final Atom to) {
+		if (same(from, to))
+			return;
+		for (int slot = 0; slot < from.type.slotCount(); ++slot)
+			value(from.get(slot), to.get(slot));
+	}
+
+	private void value(final Value from, final Value to) {
+		if (from instanceof ValuePrimitive)
+			primitive((ValuePrimitive) from, (ValuePrimitive) to);
+		else if (from instanceof ValueAtom) {
+			final ValueAtom fromAtom = (ValueAtom) from;
+			final Atom toAtom = ((ValueAtom) to).get();
+			if (fromAtom.get().type == toAtom.type)
+				atom(fromAtom.get(), toAtom);
+			else
+				changes.add(new ChangeNodeSet(fromAtom, toAtom.copy()));
+		} else if (from instanceof ValueArray) {
+			final ValueArray fromArray = (ValueArray) from;
+			final List<Atom> toData = ((ValueArray) to).data;
+			segment(fromArray, 0, fromArray.data.size(), toData, 0, toData.size());
+		} else
+			throw new DeadCode();
+	}
+
+	private void primitive(final ValuePrimitive from, final ValuePrimitive to) {
+		final String fromText = from.get();
+		final String toText = to.get();
+		if (fromText.equals(toText))
+			return;
+		final int limit = Math.min(fromText.length(), toText.length());
+		int prefix = 0;
+		while (prefix < limit && fromText.charAt(prefix) == toText.charAt(prefix))
+			prefix += 1;
+		int suffix = 0;
+		while (suffix < limit - prefix &&
+				fromText.charAt(fromText.length() - 1 - suffix) == toText.charAt(toText.length() - 1 - suffix))
+			suffix += 1;
+		final int removed = fromText.length() - prefix - suffix;
+		if (removed > 0)
+			changes.add(new ChangePrimitiveRemove(from, prefix, removed));
+		if (toText.length() - prefix - suffix > 0)
+			changes.add(new ChangePrimitiveAdd(from, prefix, toText.substring(prefix, toText.length() - suffix)));
+	}
+
+	/**
+	 * Changes are added from the end of the range backwards, so the indices of earlier elements stay valid.
+	 *
+	 * @param from
+	 * @param fromStart
+	 * @param fromEnd
+	 * @param to
+	 * @param toStart
+	 * @param toEnd
+	 */
+	private void segment(
+			final ValueArray from, int fromStart, int fromEnd, final List<Atom> to, int toStart, int toEnd
+	) {
+		final List<Atom> fromData = from.data;
+		while (fromStart < fromEnd && toStart < toEnd && same(fromData.get(fromStart), to.get(toStart))) {
+			fromStart += 1;
+			toStart += 1;
+		}
+		while (fromStart < fromEnd && toStart < toEnd && same(fromData.get(fromEnd - 1), to.get(toEnd - 1))) {
+			fromEnd -= 1;
+			toEnd -= 1;
+		}
+		if (fromStart == fromEnd || toStart == toEnd) {
+			replace(from, fromStart, fromEnd, to, toStart, toEnd);
+			return;
+		}
+		final int[][] anchors = anchors(fromData, fromStart, fromEnd, to, toStart, toEnd);
+		if (anchors.length == 0) {
+			unanchored(from, fromStart, fromEnd, to, toStart, toEnd);
+			return;
+		}
+		int nextFrom = fromEnd;
+		int nextTo = toEnd;
+		for (int i = anchors.length - 1; i >= 0; --i) {
+			segment(from, anchors[i][0] + 1, nextFrom, to, anchors[i][1] + 1, nextTo);
+			nextFrom = anchors[i][0];
+			nextTo = anchors[i][1];
+		}
+		segment(from, fromStart, nextFrom, to, toStart, nextTo);
+	}
+
+	/**
+	 * @return Pairs of from and to indices of equal elements with hashes unique on both sides, the longest run that's
+	 * in order on both sides
+	 */
+	private static int[][] anchors(
+			final List<Atom> from,
+			final int fromStart,
+			final int fromEnd,
+			final List<Atom> to,
+			final int toStart,
+			final int toEnd
+	) {
+		// Index of the only occurrence in to, or -1 if there's more than one
+		final Map<Long, Integer> toUnique = new HashMap<>();
+		for (int i = toStart; i < toEnd; ++i)
+			toUnique.merge(to.get(i).hash(), i, (a, b) -> -1);
+		final Map<Long, Integer> fromUnique = new HashMap<>();
+		for (int i = fromStart; i < fromEnd; ++i)
+			fromUnique.merge(from.get(i).hash(), i, (a, b) -> -1);
+		final List<int[]> candidates = new ArrayList<>();
+		for (int i = fromStart; i < fromEnd; ++i) {
+			final long hash = from.get(i).hash();
+			if (fromUnique.get(hash) != i)
+				continue;
+			final Integer j = toUnique.get(hash);
+			if (j == null || j == -1 || !same(from.get(i), to.get(j)))
+				continue;
+			candidates.add(new int[] {i, j});
+		}
+		// Longest increasing subsequence by to index (candidates are already in from order)
+		final int[] tails = new int[candidates.size()];
+		final int[] previous = new int[candidates.size()];
+		int length = 0;
+		for (int c = 0; c < candidates.size(); ++c) {
+			final int j = candidates.get(c)[1];
+			int low = 0;
+			int high = length;
+			while (low < high) {
+				final int middle = (low + high) >>> 1;
+				if (candidates.get(tails[middle])[1] < j)
+					low = middle + 1;
+				else
+					high = middle;
+			}
+			previous[c] = low > 0 ? tails[low - 1] : -1;
+			tails[low] = c;
+			if (low == length)
+				length += 1;
+		}
+		final int[][] out = new int[length][];
+		for (int c = length == 0 ? -1 : tails[length - 1], i = length - 1; c != -1; c = previous[c], --i)
+			out[i] = candidates.get(c);
+		return out;
+	}
+
+	/**
+	 * Edit the elements in place if both ranges have the same types in the same order, otherwise replace the range.
+	 */
+	private void unanchored(
+			final ValueArray from,
+			final int fromStart,
+			final int fromEnd,
+			final List<Atom> to,
+			final int toStart,
+			final int toEnd
+	) {
+		final int length = fromEnd - fromStart;
+		boolean aligned = length == toEnd - toStart;
+		for (int i = 0; aligned && i < length; ++i)
+			aligned = from.data.get(fromStart + i).type == to.get(toStart + i).type;
+		if (!aligned) {
+			replace(from, fromStart, fromEnd, to, toStart, toEnd);
+			return;
+		}
+		for (int i = length - 1; i >= 0; --i)
+			atom(from.data.get(fromStart + i), to.get(toStart + i));
+	}
+
+	private void replace(
+			final ValueArray from,
+			final int fromStart,
+			final int fromEnd,
+			final List<Atom> to,
+			final int toStart,
+			final int toEnd
+	) {
+		if (fromStart == fromEnd && toStart == toEnd)
+			return;
+		final List<Atom> add = new ArrayList<>(toEnd - toStart);
+		for (int i = toStart; i < toEnd; ++i)
+			add.add(to.get(i).copy());
+		changes.add(new ChangeArray(from, fromStart, fromEnd - fromStart, add));
+	}
+}
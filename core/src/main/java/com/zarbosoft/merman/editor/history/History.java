@@ -44,12 +44,18 @@ public class History {
 			out.select = context.selection.saveState();
 			for (final Change change : Lists.reverse(subchanges)) {
 				out.subchanges.add(change.apply(context));
+				context.history.journal(context, change);
 			}
 			if (select != null)
 				select.select(context);
 			return out;
 		}
 
+		@Override
+		public void journal(final Journal.Output output) {
+			throw new DeadCode();
+		}
+
 		public boolean isEmpty() {
 			return subchanges.isEmpty();
 		}
@@ -65,6 +71,7 @@ public class History {
 	}
 
 	private final Set<Listener> listeners = new HashSet<>();
+	private Journal journal;
 	private final Set<ModifiedStateListener> modifiedStateListeners = new HashSet<>();
 
 	private Closeable lock() {
@@ -140,6 +147,7 @@ public class History {
 			if (reverseLevel.select == null && context.selection != null)
 				reverseLevel.select = context.selection.saveState();
 			final Change reverse = change.apply(context);
+			journal(context, change);
 			reverseLevel.merge(reverse);
 			for (final Listener listener : ImmutableList.copyOf(listeners))
 				listener.applied(context, change);
@@ -180,11 +188,44 @@ public class History {
 	}
 
 	public void clearModified(final Context context) {
+		clearModified(context, saveLevel(context));
+	}
+
+	/**
+	 * Closes the current change and identifies the resulting state, for saves that complete later.
+	 *
+	 * @param context
+	 * @return A token to pass to clearModified once the state has been saved
+	 */
+	public Integer saveLevel(final Context context) {
 		finishChange(context);
-		final Integer oldClearLevel = clearLevel;
-		clearLevel = fixedTop();
-		if (!Objects.equals(clearLevel, oldClearLevel))
-			modifiedStateListeners.forEach(l -> l.changed(false));
+		return fixedTop();
+	}
+
+	/**
+	 * Mark the state identified by level as unmodified.  If changes were made since saveLevel, the document
+	 * remains modified.
+	 *
+	 * @param context
+	 * @param level
+	 */
+	public void clearModified(final Context context, final Integer level) {
+		final boolean wasModified = isModified();
+		clearLevel = level;
+		if (wasModified != isModified())
+			modifiedStateListeners.forEach(l -> l.changed(isModified()));
+	}
+
+	/**
+	 * @param journal Receives every change applied from now on, or null to stop journaling
+	 */
+	public void setJournal(final Journal journal) {
+		this.journal = journal;
+	}
+
+	private void journal(final Context context, final Change change) {
+		if (journal != null)
+			journal.record(context, change);
 	}
 
 	public void addListener(final Listener listener) {
@@ -0,0 +1,593 @@
+package com.zarbosoft.merman.editor.history;
+
+import com.zarbosoft.merman.document.Atom;
+import com.zarbosoft.merman.document.InvalidDocument;
+import com.zarbosoft.merman.document.Snapshot;
+import com.zarbosoft.merman.document.values.Value;
+import com.zarbosoft.merman.document.values.ValueArray;
+import com.zarbosoft.merman.document.values.ValueAtom;
+import com.zarbosoft.merman.document.values.ValuePrimitive;
+import com.zarbosoft.merman.editor.Context;
+import com.zarbosoft.merman.editor.history.changes.*;
+import com.zarbosoft.merman.editor.serialization.Load;
+import com.zarbosoft.merman.editor.serialization.Write;
+import com.zarbosoft.merman.syntax.Syntax;
+import com.zarbosoft.merman.syntax.middle.MiddleArrayBase;
+import com.zarbosoft.merman.syntax.middle.MiddleAtom;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import static com.zarbosoft.rendaw.common.Common.uncheck;
+
+/**
+ * An append-only log of the changes applied to a document since it was last saved, for recovering work after a
+ * crash.
+ * <p>
+ * The journal begins with a header identifying its base - the saved document, or a compacted snapshot of the
+ * document - followed by one record per applied change.  Records identify the changed value by the middle ids and
+ * array indexes leading to it from the root.  Records are buffered and written in batches from a background thread.
+ * <p>
+ * Saving the document to its own path appends a save record naming the document and the journal position it
+ * contains, and flushes it immediately.  Recovery starts from the last save record that still matches the file on
+ * disk, so the header never has to be rewritten for a save to be recoverable.  A save between the rename and the
+ * flush of its record is the only state recovery can't use.
+ * <p>
+ * When the records grow past compactThreshold the journal restarts from a new base - the last save if it covers
+ * enough of the records, otherwise a snapshot of the document written next to it.
+ */
+public class Journal {
+	public static final int primitiveAdd = 0;
+	public static final int primitiveRemove = 1;
+	public static final int primitiveSet = 2;
+	public static final int array = 3;
+	public static final int nodeSet = 4;
+	public static final int save = 5;
+
+	private static final byte[] magic = "merman journal\0\2".getBytes(StandardCharsets.UTF_8);
+
+	public static int compactThreshold = 16 * 1024 * 1024;
+	public static long flushInterval = 1000;
+
+	private final Syntax syntax;
+	private final Path document;
+	private final Path path;
+	private final ScheduledExecutorService flusher;
+
+	// Accessed from the ui thread
+	private byte[] replay;
+	private long appended;
+	private long restarted;
+	private long savedMark = -1;
+	private long savedSize;
+	private long savedModified;
+	private volatile boolean compacting = false;
+
+	// Shared
+	private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+	// Accessed from the flusher thread
+	private int headerLength;
+	private long origin;
+
+	/**
+	 * What was found in an existing journal.
+	 */
+	public static class Recovery {
+		/**
+		 * The file to load before replaying the journal, or null to start from an empty document
+		 */
+		public final Path base;
+		private final long origin;
+		private final byte[] records;
+
+		private Recovery(final Path base, final long origin, final byte[] records) {
+			this.base = base;
+			this.origin = origin;
+			this.records = records;
+		}
+	}
+
+	/**
+	 * Passed to changes to encode themselves as a record.
+	 */
+	public static class Output {
+		private final Syntax syntax;
+		private final DataOutputStream stream;
+
+		private Output(final Syntax syntax, final DataOutputStream stream) {
+			this.syntax = syntax;
+			this.stream = stream;
+		}
+
+		public void op(final int op) throws IOException {
+			stream.writeByte(op);
+		}
+
+		public void integer(final int value) throws IOException {
+			stream.writeInt(value);
+		}
+
+		public void string(final String value) throws IOException {
+			final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			stream.writeInt(bytes.length);
+			stream.write(bytes);
+		}
+
+		/**
+		 * @param value
+		 * @throws IOException
+		 */
+		public void value(final Value value) throws IOException {
+			final List<String> middles = new ArrayList<>();
+			final List<Integer> indexes = new ArrayList<>();
+			Value at = value;
+			int index = -1;
+			while (true) {
+				middles.add(at.middle().id);
+				indexes.add(index);
+				final Atom atom = at.parent.atom();
+				if (atom.parent == null)
+					break;
+				final Value parentValue = atom.parent.value();
+				index = parentValue instanceof ValueArray ? ((ValueArray.ArrayParent) atom.parent).index() : -1;
+				at = parentValue;
+			}
+			stream.writeInt(middles.size());
+			for (int i = middles.size() - 1; i >= 0; --i) {
+				string(middles.get(i));
+				integer(indexes.get(i));
+			}
+		}
+
+		public void atoms(final List<Atom> atoms) throws IOException {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			Write.write(atoms, syntax, bytes);
+			stream.writeInt(bytes.size());
+			bytes.writeTo(stream);
+		}
+	}
+
+	private static class Input {
+		private final Context context;
+		private final DataInputStream stream;
+
+		private Input(final Context context, final DataInputStream stream) {
+			this.context = context;
+			this.stream = stream;
+		}
+
+		private int integer() throws IOException {
+			return stream.readInt();
+		}
+
+		private byte[] bytes() throws IOException {
+			final byte[] out = new byte[stream.readInt()];
+			stream.readFully(out);
+			return out;
+		}
+
+		private String string() throws IOException {
+			return new String(bytes(), StandardCharsets.UTF_8);
+		}
+
+		private Value value() throws IOException {
+			final int count = stream.readInt();
+			Atom atom = context.document.root;
+			Value value = null;
+			for (int i = 0; i < count; ++i) {
+				final String middle = string();
+				final int index = integer();
+				value = atom.data.get(middle);
+				if (value == null)
+					throw new InvalidDocument(String.format("Journal references missing value [%s].", middle));
+				if (i + 1 == count)
+					break;
+				if (index >= 0)
+					atom = ((ValueArray) value).data.get(index);
+				else
+					atom = ((ValueAtom) value).data;
+			}
+			return value;
+		}
+
+		private List<Atom> atoms(final String type) throws IOException {
+			// Changes may insert any number of atoms
+			return Load.loadMultiple(context.syntax, type, new ByteArrayInputStream(bytes()), 0);
+		}
+	}
+
+	public static Path journalPath(final Path document) {
+		return document.resolveSibling(document.getFileName().toString() + ".journal");
+	}
+
+	/**
+	 * @param document
+	 * @return The state of the journal left for document, or null if there isn't one or it doesn't apply to the files
+	 * on disk
+	 * @throws IOException
+	 */
+	public static Recovery recover(final Path document) throws IOException {
+		final Path path = journalPath(document.toAbsolutePath());
+		if (!Files.exists(path))
+			return null;
+		final byte[] data = Files.readAllBytes(path);
+		final int headerLength;
+		final long origin;
+		Path base;
+		long baseMark;
+		boolean found;
+		try (DataInputStream stream = new DataInputStream(new ByteArrayInputStream(data))) {
+			final byte[] readMagic = new byte[magic.length];
+			stream.readFully(readMagic);
+			if (!Arrays.equals(readMagic, magic))
+				return null;
+			final String baseName = stream.readUTF();
+			final long size = stream.readLong();
+			final long modified = stream.readLong();
+			origin = stream.readLong();
+			base = baseName.isEmpty() ? null : path.resolveSibling(baseName);
+			baseMark = origin;
+			found = base == null || matches(base, size, modified);
+			headerLength = data.length - stream.available();
+		} catch (final EOFException e) {
+			return null;
+		}
+		// Drop any partial record left by a crash, and start from the last save still on disk
+		int end = headerLength;
+		while (end + 8 <= data.length) {
+			final ByteBuffer lengths = ByteBuffer.wrap(data, end, 8);
+			final int length = lengths.getInt();
+			final int crc = lengths.getInt();
+			if (length < 0 || end + 8 + length > data.length)
+				break;
+			final CRC32 check = new CRC32();
+			check.update(data, end + 8, length);
+			if ((int) check.getValue() != crc)
+				break;
+			if (length > 0 && data[end + 8] == save) {
+				final DataInputStream stream = new DataInputStream(new ByteArrayInputStream(data, end + 9, length - 1));
+				final Path saved = path.resolveSibling(stream.readUTF());
+				final long size = stream.readLong();
+				final long modified = stream.readLong();
+				final long mark = stream.readLong();
+				if (mark >= origin && matches(saved, size, modified)) {
+					found = true;
+					base = saved;
+					baseMark = mark;
+				}
+			}
+			end += 8 + length;
+		}
+		if (!found)
+			return null;
+		return new Recovery(base, baseMark, Arrays.copyOfRange(data, headerLength + (int) (baseMark - origin), end));
+	}
+
+	private static boolean matches(final Path base, final long size, final long modified) throws IOException {
+		return Files.exists(base) && Files.size(base) == size && Files.getLastModifiedTime(base).toMillis() == modified;
+	}
+
+	/**
+	 * Start journaling for a document.
+	 *
+	 * @param syntax
+	 * @param document The document's path
+	 * @param recovery If not null, continue the recovered journal.  The document must have been loaded from
+	 *                 recovery.base and the records must be replayed with replay before any other changes.
+	 * @throws IOException
+	 */
+	public Journal(final Syntax syntax, final Path document, final Recovery recovery) throws IOException {
+		this.syntax = syntax;
+		this.document = document.toAbsolutePath();
+		this.path = journalPath(this.document);
+		final ByteArrayOutputStream initial = new ByteArrayOutputStream();
+		if (recovery == null) {
+			headerLength = writeHeader(initial, Files.exists(this.document) ? this.document : null, 0);
+		} else {
+			headerLength = writeHeader(initial, recovery.base, recovery.origin);
+			initial.write(recovery.records);
+			replay = recovery.records;
+			origin = recovery.origin;
+			restarted = recovery.origin;
+			appended = recovery.origin + recovery.records.length;
+		}
+		Write.replace(path, initial::writeTo);
+		flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, "journal");
+			thread.setDaemon(true);
+			return thread;
+		});
+		flusher.scheduleWithFixedDelay(() -> {
+			try {
+				flush();
+			} catch (final IOException e) {
+				// Retried on the next flush
+			}
+		}, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Apply the recovered records, if any.  Must be called before the journal is attached to the history.
+	 *
+	 * @param context
+	 */
+	public void replay(final Context context) {
+		if (replay == null)
+			return;
+		final byte[] records = replay;
+		replay = null;
+		uncheck(() -> {
+			final DataInputStream stream = new DataInputStream(new ByteArrayInputStream(records));
+			final Input input = new Input(context, stream);
+			while (stream.available() > 0) {
+				final int length = stream.readInt();
+				stream.readInt();
+				final int op = stream.readByte();
+				final Change change;
+				switch (op) {
+					case save:
+						stream.skipBytes(length - 1);
+						continue;
+					case primitiveAdd:
+						change = new ChangePrimitiveAdd((ValuePrimitive) input.value(), input.integer(), input.string());
+						break;
+					case primitiveRemove:
+						change = new ChangePrimitiveRemove((ValuePrimitive) input.value(),
+								input.integer(),
+								input.integer()
+						);
+						break;
+					case primitiveSet:
+						change = new ChangePrimitiveSet((ValuePrimitive) input.value(), input.string());
+						break;
+					case array: {
+						final ValueArray value = (ValueArray) input.value();
+						final int index = input.integer();
+						final int remove = input.integer();
+						change = new ChangeArray(value,
+								index,
+								remove,
+								input.atoms(((MiddleArrayBase) value.middle()).type)
+						);
+						break;
+					}
+					case nodeSet: {
+						final ValueAtom value = (ValueAtom) input.value();
+						change = new ChangeNodeSet(value, input.atoms(((MiddleAtom) value.middle()).type).get(0));
+						break;
+					}
+					default:
+						throw new InvalidDocument(String.format("Unknown journal record type %s.", op));
+				}
+				context.history.apply(context, change);
+			}
+			context.history.finishChange(context);
+		});
+	}
+
+	/**
+	 * Record a change that has just been applied.
+	 *
+	 * @param context
+	 * @param change
+	 */
+	void record(final Context context, final Change change) {
+		final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		uncheck(() -> change.journal(new Output(syntax, new DataOutputStream(payload))));
+		append(payload);
+		if (!compacting && appended - restarted > compactThreshold)
+			compact(context);
+	}
+
+	private void append(final ByteArrayOutputStream payload) {
+		final CRC32 crc = new CRC32();
+		crc.update(payload.toByteArray());
+		synchronized (this) {
+			uncheck(() -> {
+				final DataOutputStream stream = new DataOutputStream(pending);
+				stream.writeInt(payload.size());
+				stream.writeInt((int) crc.getValue());
+				payload.writeTo(stream);
+			});
+		}
+		appended += 8 + payload.size();
+	}
+
+	/**
+	 * @return The journal position, to pass to saved once the document as of now has been saved
+	 */
+	public long mark() {
+		return appended;
+	}
+
+	/**
+	 * Record that the document was saved, making it the base for recovery.
+	 *
+	 * @param mark The journal position when the saved state was captured
+	 * @param dest Where the document was saved; if it isn't the journaled document this does nothing
+	 */
+	public void saved(final long mark, final Path dest) {
+		if (!dest.toAbsolutePath().equals(document))
+			return;
+		final long size = uncheck(() -> Files.size(document));
+		final long modified = uncheck(() -> Files.getLastModifiedTime(document).toMillis());
+		final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		uncheck(() -> {
+			final DataOutputStream stream = new DataOutputStream(payload);
+			stream.writeByte(save);
+			stream.writeUTF(document.getFileName().toString());
+			stream.writeLong(size);
+			stream.writeLong(modified);
+			stream.writeLong(mark);
+		});
+		append(payload);
+		savedMark = mark;
+		savedSize = size;
+		savedModified = modified;
+		flusher.execute(() -> {
+			try {
+				flush();
+			} catch (final IOException e) {
+				// Retried on the next flush
+			}
+		});
+	}
+
+	private void compact(final Context context) {
+		compacting = true;
+		if (savedMark > restarted && appended - savedMark <= compactThreshold) {
+			final long mark = savedMark;
+			final long size = savedSize;
+			final long modified = savedModified;
+			restarted = mark;
+			flusher.execute(() -> {
+				try {
+					uncheck(() -> restart(document, size, modified, mark));
+				} finally {
+					compacting = false;
+				}
+			});
+			return;
+		}
+		final Snapshot snapshot = context.document.snapshot();
+		final long mark = appended;
+		restarted = mark;
+		flusher.execute(() -> {
+			try {
+				uncheck(() -> {
+					final String name = document.getFileName().toString();
+					final Path base = Files.createTempFile(document.getParent(), name + ".journal-base-", "");
+					Write.replace(syntax, base, stream -> Write.write(snapshot, stream));
+					restart(base, Files.size(base), Files.getLastModifiedTime(base).toMillis(), mark);
+				});
+			} finally {
+				snapshot.close();
+				compacting = false;
+			}
+		});
+	}
+
+	/**
+	 * Stop journaling.
+	 *
+	 * @param discard If true, delete the journal (for example, if the document was closed intentionally)
+	 */
+	public void close(final boolean discard) {
+		flusher.shutdown();
+		uncheck(() -> {
+			flusher.awaitTermination(1, TimeUnit.MINUTES);
+			if (discard) {
+				Files.deleteIfExists(path);
+				deleteBases(null);
+			} else
+				flush();
+		});
+	}
+
+	private void flush() throws IOException {
+		final byte[] bytes;
+		synchronized (this) {
+			if (pending.size() == 0)
+				return;
+			bytes = pending.toByteArray();
+			pending = new ByteArrayOutputStream();
+		}
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+			final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			channel.force(false);
+		} catch (final IOException e) {
+			synchronized (this) {
+				final ByteArrayOutputStream retained = new ByteArrayOutputStream();
+				retained.write(bytes);
+				pending.writeTo(retained);
+				pending = retained;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Replace the journal with one based on base, keeping only the records after mark.
+	 *
+	 * @param base
+	 * @param size     The size of base when it held the state at mark
+	 * @param modified The modification time of base when it held the state at mark
+	 * @param mark
+	 * @throws IOException
+	 */
+	private void restart(final Path base, final long size, final long modified, final long mark) throws IOException {
+		if (mark < origin)
+			// A newer base has already been written
+			return;
+		flush();
+		final byte[] data = Files.readAllBytes(path);
+		final int from = headerLength + (int) (mark - origin);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final int newHeaderLength = writeHeader(out, base.getFileName().toString(), size, modified, mark);
+		out.write(data, from, data.length - from);
+		Write.replace(path, out::writeTo);
+		headerLength = newHeaderLength;
+		origin = mark;
+		deleteBases(base);
+	}
+
+	private static int writeHeader(final ByteArrayOutputStream out, final Path base, final long origin)
+			throws IOException {
+		if (base == null)
+			return writeHeader(out, "", 0, 0, origin);
+		return writeHeader(out,
+				base.getFileName().toString(),
+				Files.size(base),
+				Files.getLastModifiedTime(base).toMillis(),
+				origin
+		);
+	}
+
+	/**
+	 * @param out
+	 * @param base     The base file name, or empty for an empty document
+	 * @param size
+	 * @param modified
+	 * @param origin   The journal position of the first record
+	 * @return The header length
+	 * @throws IOException
+	 */
+	private static int writeHeader(
+			final ByteArrayOutputStream out, final String base, final long size, final long modified, final long origin
+	) throws IOException {
+		final DataOutputStream stream = new DataOutputStream(out);
+		stream.write(magic);
+		stream.writeUTF(base);
+		stream.writeLong(size);
+		stream.writeLong(modified);
+		stream.writeLong(origin);
+		return out.size();
+	}
+
+	private void deleteBases(final Path keep) throws IOException {
+		final String prefix = document.getFileName().toString() + ".journal-base-*";
+		try (DirectoryStream<Path> bases = Files.newDirectoryStream(document.getParent(), prefix)) {
+			for (final Path base : bases) {
+				if (keep != null && base.getFileName().equals(keep.getFileName()))
+					continue;
+				Files.deleteIfExists(base);
+			}
+		}
+	}
+}
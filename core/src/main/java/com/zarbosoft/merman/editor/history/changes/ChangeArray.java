@@ -5,7 +5,9 @@ import com.zarbosoft.merman.document.Atom;
 import com.zarbosoft.merman.document.values.ValueArray;
 import com.zarbosoft.merman.editor.Context;
 import com.zarbosoft.merman.editor.history.Change;
+import com.zarbosoft.merman.editor.history.Journal;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -33,7 +35,7 @@ public class ChangeArray extends Change {
 		}
 		if (other2.value != value)
 			return false;
-		if (other2.index + other2.remove == index) {
+		if (other2.index + other2.add.size() == index) {
 			index = other2.index;
 			remove += other2.remove;
 			add.addAll(0, other2.add);
@@ -50,18 +52,31 @@ public class ChangeArray extends Change {
 		if (add.isEmpty() && index == 0 && remove == value.data.size() && value.parent.atom().parent == null) {
 			add.add(context.syntax.gap.create());
 		}
-		final List<Atom> clearSublist = value.data.subList(index, index + remove);
-		final ChangeArray reverse = new ChangeArray(value, index, add.size(), ImmutableList.copyOf(clearSublist));
-		clearSublist.stream().forEach(v -> v.setParent(null));
-		clearSublist.clear();
-		value.data.addAll(index, add);
-		add.stream().forEach(v -> {
-			v.setParent(value.new ArrayParent());
+		final ChangeArray reverse = new ChangeArray(value,
+				index,
+				add.size(),
+				ImmutableList.copyOf(value.data.subList(index, index + remove))
+		);
+		context.document.edit(value, add, () -> {
+			value.splice(index, remove, add);
+			add.stream().forEach(v -> {
+				v.written = null;
+				v.version += 1;
+			});
+			value.parent.atom().changed();
 		});
-		value.renumber(index);
 		for (final ValueArray.Listener listener : value.listeners) {
 			listener.changed(context, index, remove, add);
 		}
 		return reverse;
 	}
+
+	@Override
+	public void journal(final Journal.Output output) throws IOException {
+		output.op(Journal.array);
+		output.value(value);
+		output.integer(index);
+		output.integer(remove);
+		output.atoms(add);
+	}
 }
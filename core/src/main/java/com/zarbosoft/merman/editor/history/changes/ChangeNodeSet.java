@@ -1,9 +1,13 @@
 package com.zarbosoft.merman.editor.history.changes;
 
+import com.google.common.collect.ImmutableList;
 import com.zarbosoft.merman.document.Atom;
 import com.zarbosoft.merman.document.values.ValueAtom;
 import com.zarbosoft.merman.editor.Context;
 import com.zarbosoft.merman.editor.history.Change;
+import com.zarbosoft.merman.editor.history.Journal;
+
+import java.io.IOException;
 
 public class ChangeNodeSet extends Change {
 	private final ValueAtom value;
@@ -30,11 +34,24 @@ public class ChangeNodeSet extends Change {
 
 	public Change apply(final Context context) {
 		final Change reverse = new ChangeNodeSet(value, value.data);
-		value.data.setParent(null);
-		value.data = atom;
-		atom.setParent(value.new NodeParent());
+		context.document.edit(value, ImmutableList.of(atom), () -> {
+			value.data.setParent(null);
+			value.data = atom;
+			value.structureChanged();
+			atom.setParent(value.new NodeParent());
+			atom.written = null;
+			atom.version += 1;
+			value.parent.atom().changed();
+		});
 		for (final ValueAtom.Listener listener : value.listeners)
 			listener.set(context, atom);
 		return reverse;
 	}
+
+	@Override
+	public void journal(final Journal.Output output) throws IOException {
+		output.op(Journal.nodeSet);
+		output.value(value);
+		output.atoms(ImmutableList.of(atom));
+	}
 }
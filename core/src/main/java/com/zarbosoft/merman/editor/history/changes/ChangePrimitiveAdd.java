@@ -1,8 +1,12 @@
 package com.zarbosoft.merman.editor.history.changes;
 
+import com.google.common.collect.ImmutableList;
 import com.zarbosoft.merman.document.values.ValuePrimitive;
 import com.zarbosoft.merman.editor.Context;
 import com.zarbosoft.merman.editor.history.Change;
+import com.zarbosoft.merman.editor.history.Journal;
+
+import java.io.IOException;
 
 public class ChangePrimitiveAdd extends Change {
 	private final ValuePrimitive data;
@@ -35,9 +39,20 @@ public class ChangePrimitiveAdd extends Change {
 
 	@Override
 	public Change apply(final Context context) {
-		data.data.insert(index, value);
+		context.document.edit(data, ImmutableList.of(), () -> {
+			data.insert(index, value.toString());
+			data.parent.atom().changed();
+		});
 		for (final ValuePrimitive.Listener listener : data.listeners)
 			listener.added(context, index, value.toString());
 		return new ChangePrimitiveRemove(data, index, value.length());
 	}
+
+	@Override
+	public void journal(final Journal.Output output) throws IOException {
+		output.op(Journal.primitiveAdd);
+		output.value(data);
+		output.integer(index);
+		output.string(value.toString());
+	}
 }
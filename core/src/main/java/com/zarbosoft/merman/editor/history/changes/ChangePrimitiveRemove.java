@@ -1,8 +1,12 @@
 package com.zarbosoft.merman.editor.history.changes;
 
+import com.google.common.collect.ImmutableList;
 import com.zarbosoft.merman.document.values.ValuePrimitive;
 import com.zarbosoft.merman.editor.Context;
 import com.zarbosoft.merman.editor.history.Change;
+import com.zarbosoft.merman.editor.history.Journal;
+
+import java.io.IOException;
 
 public class ChangePrimitiveRemove extends Change {
 
@@ -39,10 +43,21 @@ public class ChangePrimitiveRemove extends Change {
 	@Override
 	public Change apply(final Context context) {
 		final ChangePrimitiveAdd reverse =
-				new ChangePrimitiveAdd(data, index, data.data.substring(index, index + size));
-		data.data.delete(index, index + size);
+				new ChangePrimitiveAdd(data, index, data.substring(index, index + size));
+		context.document.edit(data, ImmutableList.of(), () -> {
+			data.delete(index, index + size);
+			data.parent.atom().changed();
+		});
 		for (final ValuePrimitive.Listener listener : data.listeners)
 			listener.removed(context, index, size);
 		return reverse;
 	}
+
+	@Override
+	public void journal(final Journal.Output output) throws IOException {
+		output.op(Journal.primitiveRemove);
+		output.value(data);
+		output.integer(index);
+		output.integer(size);
+	}
 }
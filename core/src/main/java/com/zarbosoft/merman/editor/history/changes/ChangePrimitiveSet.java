@@ -1,8 +1,12 @@
 package com.zarbosoft.merman.editor.history.changes;
 
+import com.google.common.collect.ImmutableList;
 import com.zarbosoft.merman.document.values.ValuePrimitive;
 import com.zarbosoft.merman.editor.Context;
 import com.zarbosoft.merman.editor.history.Change;
+import com.zarbosoft.merman.editor.history.Journal;
+
+import java.io.IOException;
 
 public class ChangePrimitiveSet extends Change {
 	private final ValuePrimitive data;
@@ -29,10 +33,20 @@ public class ChangePrimitiveSet extends Change {
 
 	@Override
 	public Change apply(final Context context) {
-		final Change reverse = new ChangePrimitiveSet(data, data.data.toString());
-		data.data = new StringBuilder(value);
+		final Change reverse = new ChangePrimitiveSet(data, data.get());
+		context.document.edit(data, ImmutableList.of(), () -> {
+			data.set(value);
+			data.parent.atom().changed();
+		});
 		for (final ValuePrimitive.Listener listener : data.listeners)
 			listener.set(context, value);
 		return reverse;
 	}
+
+	@Override
+	public void journal(final Journal.Output output) throws IOException {
+		output.op(Journal.primitiveSet);
+		output.value(data);
+		output.string(value);
+	}
 }
@@ -0,0 +1,135 @@
+package com.zarbosoft.merman.editor.serialization;
+
+import com.zarbosoft.merman.syntax.Syntax;
+import com.zarbosoft.rendaw.common.DeadCode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compressed document storage.  The compression is chosen by the file extension (.gz for gzip, .deflate for raw
+ * deflate) or otherwise the syntax's compression setting.  Data is compressed and decompressed as it streams.
+ * <p>
+ * Deflate streams are primed with the syntax's compression dictionary if set.  Raw deflate is used so the
+ * dictionary can be set up front; there's no header or checksum.
+ */
+public class Compression {
+	private static final int bufferSize = 64 * 1024;
+
+	public static Syntax.CompressionType of(final Syntax syntax, final Path path) {
+		final String name = path.getFileName().toString();
+		if (name.endsWith(".gz"))
+			return Syntax.CompressionType.GZIP;
+		if (name.endsWith(".deflate"))
+			return Syntax.CompressionType.DEFLATE;
+		return syntax.compression;
+	}
+
+	/**
+	 * @param name
+	 * @return The file name without any compression extension
+	 */
+	public static String strip(final String name) {
+		if (name.endsWith(".gz"))
+			return name.substring(0, name.length() - ".gz".length());
+		if (name.endsWith(".deflate"))
+			return name.substring(0, name.length() - ".deflate".length());
+		return name;
+	}
+
+	private static byte[] dictionary(final Syntax syntax) {
+		if (syntax.compressionDictionary == null)
+			return null;
+		return syntax.compressionDictionary.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param syntax
+	 * @param path   The file stream was opened from
+	 * @param stream
+	 * @return A stream of the decompressed data.  Closing it closes stream.
+	 * @throws IOException
+	 */
+	public static InputStream input(final Syntax syntax, final Path path, final InputStream stream)
+			throws IOException {
+		switch (of(syntax, path)) {
+			case NONE:
+				return stream;
+			case GZIP:
+				return new GZIPInputStream(stream, bufferSize);
+			case DEFLATE: {
+				final Inflater inflater = new Inflater(true);
+				final byte[] dictionary = dictionary(syntax);
+				if (dictionary != null)
+					inflater.setDictionary(dictionary);
+				return new InflaterInputStream(stream, inflater, bufferSize) {
+					private boolean closed = false;
+
+					@Override
+					public void close() throws IOException {
+						if (closed)
+							return;
+						closed = true;
+						try {
+							super.close();
+						} finally {
+							inflater.end();
+						}
+					}
+				};
+			}
+			default:
+				throw new DeadCode();
+		}
+	}
+
+	/**
+	 * @param syntax
+	 * @param path   The file stream will be stored as
+	 * @param stream
+	 * @return A stream that compresses into stream.  It must be closed to complete the data; closing it closes
+	 * stream.
+	 * @throws IOException
+	 */
+	public static OutputStream output(final Syntax syntax, final Path path, final OutputStream stream)
+			throws IOException {
+		switch (of(syntax, path)) {
+			case NONE:
+				return stream;
+			case GZIP:
+				return new GZIPOutputStream(stream, bufferSize);
+			case DEFLATE: {
+				final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+				final byte[] dictionary = dictionary(syntax);
+				if (dictionary != null)
+					deflater.setDictionary(dictionary);
+				return new DeflaterOutputStream(stream, deflater, bufferSize) {
+					private boolean closed = false;
+
+					@Override
+					public void close() throws IOException {
+						if (closed)
+							return;
+						closed = true;
+						try {
+							super.close();
+						} finally {
+							deflater.end();
+						}
+					}
+				};
+			}
+			default:
+				throw new DeadCode();
+		}
+	}
+}
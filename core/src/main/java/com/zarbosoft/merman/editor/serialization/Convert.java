@@ -0,0 +1,36 @@
+package com.zarbosoft.merman.editor.serialization;
+
+import com.zarbosoft.merman.syntax.Syntax;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Converts documents between back formats, for example between luxem for editing by hand and binary for machine
+ * generated documents.  The syntax must only use back parts supported by both formats.
+ */
+public class Convert {
+	public static void convert(
+			final Syntax syntax,
+			final Syntax.BackType from,
+			final InputStream source,
+			final Syntax.BackType to,
+			final OutputStream dest
+	) {
+		Write.write(Load.load(syntax, from, source).root, syntax, to, dest);
+	}
+
+	public static void convert(
+			final Syntax syntax, final Syntax.BackType from, final Path source, final Syntax.BackType to, final Path dest
+	) throws IOException {
+		try (
+				InputStream sourceStream = Load.open(syntax, source);
+				OutputStream destStream = Compression.output(syntax, dest, Files.newOutputStream(dest))
+		) {
+			convert(syntax, from, sourceStream, to, destStream);
+		}
+	}
+}
@@ -0,0 +1,704 @@
+package com.zarbosoft.merman.editor.serialization;
+
+import com.zarbosoft.merman.document.Atom;
+import com.zarbosoft.merman.document.Document;
+import com.zarbosoft.merman.document.InvalidDocument;
+import com.zarbosoft.merman.document.values.Value;
+import com.zarbosoft.merman.document.values.ValueArray;
+import com.zarbosoft.merman.document.values.ValueAtom;
+import com.zarbosoft.merman.document.values.ValuePrimitive;
+import com.zarbosoft.merman.editor.backevents.*;
+import com.zarbosoft.merman.editor.serialization.binary.BinaryEventSource;
+import com.zarbosoft.merman.editor.serialization.json.JSONEventSource;
+import com.zarbosoft.merman.syntax.AtomType;
+import com.zarbosoft.merman.syntax.Syntax;
+import com.zarbosoft.merman.syntax.back.*;
+import com.zarbosoft.merman.syntax.middle.MiddlePrimitive;
+import com.zarbosoft.rendaw.common.DeadCode;
+
+import java.io.InputStream;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * A recursive descent loader generated from the back parts of a syntax.  Only usable when the type at each point
+ * in a document can be chosen from the next event, or the event following a record key for types that start with a
+ * back key.  Where several types start with a back record, the type is chosen by a key in the object and the first
+ * event of its value, such as a constant type field; the events before that key are buffered.  Otherwise the syntax
+ * must be loaded with the general parser; the reasons are listed in conflicts.
+ */
+public class DirectLoad {
+	/**
+	 * An event that can start an atom.  A null value matches any event of the kind.
+	 */
+	private static class First {
+		final Class<?> kind;
+		final String value;
+
+		private First(final Class<?> kind, final String value) {
+			this.kind = kind;
+			this.value = value;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof First))
+				return false;
+			final First other = (First) obj;
+			return kind == other.kind && Objects.equals(value, other.value);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(kind, value);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s %s", kind.getSimpleName(), value == null ? "*" : value);
+		}
+	}
+
+	private static class Branches {
+		final Map<Class<?>, Map<String, AtomType>> exact = new HashMap<>();
+		final Map<Class<?>, AtomType> any = new HashMap<>();
+		/**
+		 * Used instead of the object open event when several types start with a back record.  The values for each
+		 * key in the records, leaving out keys that don't tell the types apart.
+		 */
+		final Map<String, Branches> records = new HashMap<>();
+
+		/**
+		 * @param first
+		 * @param type
+		 * @return A type already occupying the branch, or null
+		 */
+		AtomType add(final First first, final AtomType type) {
+			final AtomType anyType = any.get(first.kind);
+			if (anyType != null && anyType != type)
+				return anyType;
+			final Map<String, AtomType> values = exact.computeIfAbsent(first.kind, k -> new HashMap<>());
+			if (first.value == null) {
+				for (final AtomType other : values.values())
+					if (other != type)
+						return other;
+				any.put(first.kind, type);
+			} else {
+				final AtomType other = values.get(first.value);
+				if (other != null && other != type)
+					return other;
+				values.put(first.value, type);
+			}
+			return null;
+		}
+
+		AtomType find(final BackEvent event) {
+			final Class<?> kind = event.getClass();
+			final Map<String, AtomType> values = exact.get(kind);
+			if (values != null) {
+				final AtomType found = values.get(valueOf(event));
+				if (found != null)
+					return found;
+			}
+			return any.get(kind);
+		}
+
+		boolean isEmpty() {
+			return exact.isEmpty() && any.isEmpty() && records.isEmpty();
+		}
+	}
+
+	/**
+	 * Events already read from a source followed by the rest of the source.
+	 */
+	private static class Replay implements EventSource {
+		private final Deque<BackEvent> read;
+		private final EventSource source;
+
+		private Replay(final Deque<BackEvent> read, final EventSource source) {
+			this.read = read;
+			this.source = source;
+		}
+
+		@Override
+		public BackEvent peek() {
+			return read.isEmpty() ? source.peek() : read.peekFirst();
+		}
+
+		@Override
+		public BackEvent next() {
+			return read.isEmpty() ? source.next() : read.removeFirst();
+		}
+
+		/**
+		 * While events are being replayed this is the position after them.
+		 *
+		 * @return
+		 */
+		@Override
+		public String position() {
+			return source.position();
+		}
+	}
+
+	/**
+	 * The choice of type where an atom of some type or group is expected.  Keyed types start with a back key and are
+	 * chosen by the event after the key.
+	 */
+	private static class Dispatch {
+		final Branches unkeyed = new Branches();
+		final Branches keyed = new Branches();
+	}
+
+	private final Syntax syntax;
+	public final List<String> conflicts = new ArrayList<>();
+	private final Map<String, Dispatch> dispatches = new HashMap<>();
+	private final Map<String, Dispatch> gaplessDispatches = new HashMap<>();
+	private final Map<AtomType, Set<First>> firsts = new HashMap<>();
+	private final Set<AtomType> analyzing = new HashSet<>();
+
+	public DirectLoad(final Syntax syntax) {
+		this.syntax = syntax;
+		final List<AtomType> all = new ArrayList<>(syntax.types);
+		all.add(syntax.gap);
+		all.add(syntax.prefixGap);
+		all.add(syntax.suffixGap);
+		all.add(syntax.root);
+		for (final AtomType type : all)
+			analyzeReferences(type);
+	}
+
+	public boolean available() {
+		return conflicts.isEmpty();
+	}
+
+	private static String valueOf(final BackEvent event) {
+		if (event instanceof EPrimitiveEvent)
+			return ((EPrimitiveEvent) event).value;
+		if (event instanceof ETypeEvent)
+			return ((ETypeEvent) event).value;
+		if (event instanceof EKeyEvent)
+			return ((EKeyEvent) event).value;
+		if (event instanceof JIntEvent)
+			return ((JIntEvent) event).value;
+		if (event instanceof JFloatEvent)
+			return ((JFloatEvent) event).value;
+		return "";
+	}
+
+	private static boolean keyed(final AtomType type) {
+		return type.back().size() > 1 && type.back().get(0) instanceof BackDataKey;
+	}
+
+	/**
+	 * @param type
+	 * @return The back record the type starts with (after the key for keyed types), or null
+	 */
+	private static BackRecord record(final AtomType type) {
+		final BackPart first = type.back().get(keyed(type) ? 1 : 0);
+		return first instanceof BackRecord ? (BackRecord) first : null;
+	}
+
+	private void analyzeReferences(final AtomType type) {
+		final Deque<BackPart> stack = new ArrayDeque<>(type.back());
+		while (!stack.isEmpty()) {
+			final BackPart part = stack.removeLast();
+			if (part instanceof BackType)
+				stack.addLast(((BackType) part).value);
+			else if (part instanceof BackDataType)
+				stack.addLast(((BackDataType) part).value);
+			else if (part instanceof BackArray)
+				stack.addAll(((BackArray) part).elements);
+			else if (part instanceof BackRecord)
+				stack.addAll(((BackRecord) part).pairs.values());
+			else if (part instanceof BackDataAtom)
+				dispatch(type.getDataNode(((BackDataAtom) part).middle).type, true);
+			else if (part instanceof BackDataArray)
+				dispatch(type.getDataArray(((BackDataArray) part).middle).type, true);
+			else if (part instanceof BackDataRecord)
+				dispatch(type.getDataArray(((BackDataRecord) part).middle).type, true);
+			else if (part instanceof BackDataRootArray)
+				dispatch(type.getDataArray(((BackDataRootArray) part).middle).type, false);
+		}
+	}
+
+	private List<AtomType> candidates(final String type, final boolean gaps) {
+		final List<AtomType> out = syntax.getLeafTypes(type).collect(Collectors.toList());
+		if (gaps) {
+			out.add(syntax.gap);
+			out.add(syntax.prefixGap);
+			out.add(syntax.suffixGap);
+		}
+		return out;
+	}
+
+	private static String describe(final String type) {
+		return type == null ? "any type" : String.format("[%s]", type);
+	}
+
+	private Dispatch dispatch(final String type, final boolean gaps) {
+		final Map<String, Dispatch> cache = gaps ? dispatches : gaplessDispatches;
+		Dispatch out = cache.get(type);
+		if (out != null)
+			return out;
+		out = new Dispatch();
+		cache.put(type, out);
+		final String description = describe(type);
+		final List<AtomType> keyedRecords = new ArrayList<>();
+		final List<AtomType> unkeyedRecords = new ArrayList<>();
+		for (final AtomType candidate : candidates(type, gaps)) {
+			final boolean keyed = keyed(candidate);
+			if (record(candidate) != null) {
+				(keyed ? keyedRecords : unkeyedRecords).add(candidate);
+				continue;
+			}
+			add(keyed ? out.keyed : out.unkeyed, candidate, firsts(candidate), description);
+		}
+		addRecords(out.keyed, keyedRecords, description);
+		addRecords(out.unkeyed, unkeyedRecords, description);
+		if (!out.keyed.isEmpty() && (out.unkeyed.exact.containsKey(EKeyEvent.class) ||
+				out.unkeyed.any.containsKey(EKeyEvent.class)))
+			conflicts.add(String.format("Record element types and types that are just a key are both possible where %s " +
+					"is expected.", description));
+		return out;
+	}
+
+	private void add(
+			final Branches branches, final AtomType candidate, final Set<First> firsts, final String description
+	) {
+		for (final First first : firsts) {
+			final AtomType other = branches.add(first, candidate);
+			if (other != null)
+				conflicts.add(String.format("Types [%s] and [%s] can both start with %s where %s is expected.",
+						other.id(),
+						candidate.id(),
+						first,
+						description
+				));
+		}
+	}
+
+	/**
+	 * Add the types starting with a back record.  Added after the other types so conflicts with them are found.
+	 *
+	 * @param branches
+	 * @param types
+	 * @param description
+	 */
+	private void addRecords(final Branches branches, final List<AtomType> types, final String description) {
+		if (types.isEmpty())
+			return;
+		if (types.size() == 1) {
+			add(branches, types.get(0), firsts(types.get(0)), description);
+			return;
+		}
+		final AtomType other = branches.find(EObjectOpenEvent.instance);
+		if (other != null) {
+			conflicts.add(String.format("Type [%s] and record types can both start with an object where %s is " +
+					"expected.", other.id(), description));
+			return;
+		}
+		final Map<String, Branches> keys = new HashMap<>();
+		final Set<String> ambiguous = new HashSet<>();
+		for (final AtomType type : types)
+			record(type).pairs.forEach((key, value) -> {
+				final Branches values = keys.computeIfAbsent(key, k -> new Branches());
+				for (final First first : firsts(type, value))
+					if (values.add(first, type) != null)
+						ambiguous.add(key);
+			});
+		keys.keySet().removeAll(ambiguous);
+		for (final AtomType type : types)
+			if (record(type).pairs.keySet().stream().noneMatch(keys::containsKey))
+				conflicts.add(String.format("Type [%s] has no key that tells it apart from the other records where %s " +
+						"is expected.", type.id(), description));
+		branches.records.putAll(keys);
+	}
+
+	private Set<First> firsts(final AtomType type) {
+		final Set<First> found = firsts.get(type);
+		if (found != null)
+			return found;
+		if (!analyzing.add(type)) {
+			conflicts.add(String.format("Type [%s] is left recursive.", type.id()));
+			return Collections.emptySet();
+		}
+		final Set<First> out = firsts(type, type.back().get(keyed(type) ? 1 : 0));
+		analyzing.remove(type);
+		firsts.put(type, out);
+		return out;
+	}
+
+	private Set<First> firsts(final AtomType type, final BackPart part) {
+		if (part instanceof BackPrimitive)
+			return Collections.singleton(new First(EPrimitiveEvent.class, ((BackPrimitive) part).value));
+		if (part instanceof BackJSONInt)
+			return Collections.singleton(new First(JIntEvent.class, ((BackJSONInt) part).value));
+		if (part instanceof BackJSONFloat)
+			return Collections.singleton(new First(JFloatEvent.class, ((BackJSONFloat) part).value));
+		if (part instanceof BackJSONTrue)
+			return Collections.singleton(new First(JTrueEvent.class, ""));
+		if (part instanceof BackJSONFalse)
+			return Collections.singleton(new First(JFalseEvent.class, ""));
+		if (part instanceof BackJSONNull)
+			return Collections.singleton(new First(JNullEvent.class, ""));
+		if (part instanceof BackType)
+			return Collections.singleton(new First(ETypeEvent.class, ((BackType) part).type));
+		if (part instanceof BackDataType)
+			return Collections.singleton(new First(ETypeEvent.class, null));
+		if (part instanceof BackArray || part instanceof BackDataArray)
+			return Collections.singleton(new First(EArrayOpenEvent.class, ""));
+		if (part instanceof BackRecord || part instanceof BackDataRecord)
+			return Collections.singleton(new First(EObjectOpenEvent.class, ""));
+		if (part instanceof BackDataPrimitive)
+			return Collections.singleton(new First(EPrimitiveEvent.class, null));
+		if (part instanceof BackDataKey)
+			return Collections.singleton(new First(EKeyEvent.class, null));
+		if (part instanceof BackDataJSONInt)
+			return Collections.singleton(new First(JIntEvent.class, null));
+		if (part instanceof BackDataJSONFloat)
+			return Collections.singleton(new First(JFloatEvent.class, null));
+		if (part instanceof BackDataAtom) {
+			final Set<First> out = new HashSet<>();
+			for (final AtomType child : candidates(type.getDataNode(((BackDataAtom) part).middle).type, true)) {
+				if (keyed(child))
+					conflicts.add(String.format("Type [%s] starts with a back key but may be the first part of [%s].",
+							child.id(),
+							type.id()
+					));
+				out.addAll(firsts(child));
+			}
+			return out;
+		}
+		if (part instanceof BackDataRootArray) {
+			conflicts.add(String.format("Type [%s] starts with a root array.", type.id()));
+			return Collections.emptySet();
+		}
+		throw new AssertionError(String.format("Unimplemented back part type [%s].\n",
+				part.getClass().getCanonicalName()
+		));
+	}
+
+	public Document load(final Syntax.BackType backType, final InputStream data) {
+		return load(backType, data, null);
+	}
+
+	/**
+	 * @param backType
+	 * @param data
+	 * @param monitor  Notified of every atom built, or null
+	 * @return
+	 */
+	Document load(final Syntax.BackType backType, final InputStream data, final LoadMonitor monitor) {
+		final EventSource source;
+		switch (backType) {
+			case LUXEM:
+				source = new LuxemEventSource(data);
+				break;
+			case JSON:
+				source = new JSONEventSource(data);
+				break;
+			case BINARY:
+				source = new BinaryEventSource(data);
+				break;
+			default:
+				throw new DeadCode();
+		}
+		return load(source, monitor);
+	}
+
+	/**
+	 * @param source
+	 * @param monitor Notified of every atom built, or null
+	 * @return
+	 */
+	Document load(final EventSource source, final LoadMonitor monitor) {
+		final Atom root = readAtom(source, monitor, syntax.root, null);
+		if (source.peek() != null)
+			throw error(source, "Expected end of document", source.peek());
+		return new Document(syntax, root);
+	}
+
+	/**
+	 * Read a run of root array elements, such as a chunk found by RootScanner.
+	 *
+	 * @param source  Luxem elements, or for JSON the elements enclosed in an array
+	 * @param backType
+	 * @param middle  The root array middle id
+	 * @param monitor Notified of every atom built, or null
+	 * @return
+	 */
+	List<Atom> loadElements(
+			final EventSource source, final Syntax.BackType backType, final String middle, final LoadMonitor monitor
+	) {
+		final String type = syntax.root.getDataArray(middle).type;
+		final List<Atom> out = new ArrayList<>();
+		switch (backType) {
+			case LUXEM:
+				while (source.peek() != null)
+					out.add(readReference(source, monitor, type, false));
+				break;
+			case JSON:
+				expect(source, EArrayOpenEvent.class);
+				while (!(source.peek() instanceof EArrayCloseEvent))
+					out.add(readReference(source, monitor, type, true));
+				source.next();
+				if (source.peek() != null)
+					throw error(source, "Expected end of chunk", source.peek());
+				break;
+			default:
+				throw new DeadCode();
+		}
+		return out;
+	}
+
+	private static InvalidDocument error(final EventSource source, final String expected, final BackEvent got) {
+		return new InvalidDocument(String.format("%s at %s but found %s.",
+				expected,
+				source.position(),
+				got == null ? "end of document" : got
+		));
+	}
+
+	private static BackEvent expect(final EventSource source, final Class<?> kind) {
+		final BackEvent event = source.next();
+		if (event == null || event.getClass() != kind)
+			throw error(source, String.format("Expected %s", kind.getSimpleName()), event);
+		return event;
+	}
+
+	private static void expect(final EventSource source, final Class<?> kind, final String value) {
+		final BackEvent event = source.next();
+		if (event == null || event.getClass() != kind || !valueOf(event).equals(value))
+			throw error(source, String.format("Expected %s %s", kind.getSimpleName(), value), event);
+	}
+
+	private static ValuePrimitive primitive(
+			final EventSource source, final MiddlePrimitive middle, final String value, final boolean check
+	) {
+		if (check && middle.matcher != null && !middle.matcher.match(value))
+			throw new InvalidDocument(String.format("[%s] doesn't match the pattern for [%s] at %s.",
+					value,
+					middle.id,
+					source.position()
+			));
+		return new ValuePrimitive(middle, value);
+	}
+
+	private Atom readReference(
+			final EventSource source, final LoadMonitor monitor, final String type, final boolean gaps
+	) {
+		final Dispatch dispatch = dispatch(type, gaps);
+		final BackEvent event = source.peek();
+		if (event == null)
+			throw error(source, String.format("Expected %s", describe(type)), null);
+		if (event instanceof EKeyEvent && !dispatch.keyed.isEmpty()) {
+			source.next();
+			return readBranch(source, monitor, dispatch.keyed, type, ((EKeyEvent) event).value, source.peek());
+		}
+		return readBranch(source, monitor, dispatch.unkeyed, type, null, event);
+	}
+
+	/**
+	 * @param source
+	 * @param monitor  Notified of every atom built, or null
+	 * @param branches
+	 * @param type     The expected type or group, for errors
+	 * @param key      The already consumed key for keyed types, otherwise null
+	 * @param event    The next event
+	 * @return
+	 */
+	private Atom readBranch(
+			final EventSource source,
+			final LoadMonitor monitor,
+			final Branches branches,
+			final String type,
+			final String key,
+			final BackEvent event
+	) {
+		if (event instanceof EObjectOpenEvent && !branches.records.isEmpty())
+			return readRecord(source, monitor, branches, type, key);
+		final AtomType found = event == null ? null : branches.find(event);
+		if (found == null)
+			throw error(source, String.format("Expected %s", describe(type)), event);
+		return readAtom(source, monitor, found, key);
+	}
+
+	/**
+	 * Choose between types starting with a back record by reading the object up to a key that tells them apart,
+	 * then read the chosen type from the events read so far followed by the rest of the source.
+	 *
+	 * @param source
+	 * @param monitor  Notified of every atom built, or null
+	 * @param branches
+	 * @param type     The expected type or group, for errors
+	 * @param key      The already consumed key for keyed types, otherwise null
+	 * @return
+	 */
+	private Atom readRecord(
+			final EventSource source,
+			final LoadMonitor monitor,
+			final Branches branches,
+			final String type,
+			final String key
+	) {
+		final Deque<BackEvent> read = new ArrayDeque<>();
+		read.addLast(source.next());
+		while (true) {
+			final BackEvent event = source.next();
+			if (!(event instanceof EKeyEvent))
+				throw error(source, String.format("Expected %s", describe(type)), event);
+			read.addLast(event);
+			final Branches values = branches.records.get(((EKeyEvent) event).value);
+			final BackEvent value = source.peek();
+			final AtomType found = values == null || value == null ? null : values.find(value);
+			if (found != null)
+				return readAtom(new Replay(read, source), monitor, found, key);
+			skip(source, read);
+		}
+	}
+
+	/**
+	 * Move a single value from source to read.
+	 *
+	 * @param source
+	 * @param read
+	 */
+	private static void skip(final EventSource source, final Deque<BackEvent> read) {
+		int depth = 0;
+		while (true) {
+			final BackEvent event = source.next();
+			if (event == null)
+				throw error(source, "Expected a value", null);
+			read.addLast(event);
+			if (event instanceof EArrayOpenEvent || event instanceof EObjectOpenEvent)
+				depth += 1;
+			else if (event instanceof EArrayCloseEvent || event instanceof EObjectCloseEvent)
+				depth -= 1;
+			else if (event instanceof ETypeEvent || event instanceof EKeyEvent)
+				continue;
+			if (depth < 0)
+				throw error(source, "Expected a value", event);
+			if (depth == 0)
+				return;
+		}
+	}
+
+	/**
+	 * @param source
+	 * @param monitor Notified of every atom built, or null
+	 * @param type
+	 * @param key     The already consumed key for keyed types, otherwise null
+	 * @return
+	 */
+	private Atom readAtom(
+			final EventSource source, final LoadMonitor monitor, final AtomType type, final String key
+	) {
+		final Value[] data = new Value[type.slotCount()];
+		final List<BackPart> back = type.back();
+		int i = 0;
+		if (key != null) {
+			final String middle = ((BackDataKey) back.get(0)).middle;
+			data[type.slot(middle)] = primitive(source, type.getDataPrimitive(middle), key, true);
+			i = 1;
+		}
+		for (; i < back.size(); ++i)
+			readPart(source, monitor, type, back.get(i), data);
+		if (monitor != null)
+			monitor.atomBuilt();
+		return new Atom(type, data);
+	}
+
+	private void readPart(
+			final EventSource source,
+			final LoadMonitor monitor,
+			final AtomType type,
+			final BackPart part,
+			final Value[] data
+	) {
+		if (part instanceof BackPrimitive) {
+			expect(source, EPrimitiveEvent.class, ((BackPrimitive) part).value);
+		} else if (part instanceof BackJSONInt) {
+			expect(source, JIntEvent.class, ((BackJSONInt) part).value);
+		} else if (part instanceof BackJSONFloat) {
+			expect(source, JFloatEvent.class, ((BackJSONFloat) part).value);
+		} else if (part instanceof BackJSONTrue) {
+			expect(source, JTrueEvent.class);
+		} else if (part instanceof BackJSONFalse) {
+			expect(source, JFalseEvent.class);
+		} else if (part instanceof BackJSONNull) {
+			expect(source, JNullEvent.class);
+		} else if (part instanceof BackType) {
+			expect(source, ETypeEvent.class, ((BackType) part).type);
+			readPart(source, monitor, type, ((BackType) part).value, data);
+		} else if (part instanceof BackArray) {
+			expect(source, EArrayOpenEvent.class);
+			for (final BackPart element : ((BackArray) part).elements)
+				readPart(source, monitor, type, element, data);
+			expect(source, EArrayCloseEvent.class);
+		} else if (part instanceof BackRecord) {
+			expect(source, EObjectOpenEvent.class);
+			final Map<String, BackPart> remaining = new HashMap<>(((BackRecord) part).pairs);
+			while (!(source.peek() instanceof EObjectCloseEvent)) {
+				final EKeyEvent key = (EKeyEvent) expect(source, EKeyEvent.class);
+				final BackPart value = remaining.remove(key.value);
+				if (value == null)
+					throw error(source, "Expected a known, unique key", key);
+				readPart(source, monitor, type, value, data);
+			}
+			if (!remaining.isEmpty())
+				throw error(source, String.format("Expected keys %s", remaining.keySet()), source.peek());
+			source.next();
+		} else if (part instanceof BackDataType) {
+			final String middle = ((BackDataType) part).type;
+			final ETypeEvent event = (ETypeEvent) expect(source, ETypeEvent.class);
+			data[type.slot(middle)] = primitive(source, type.getDataPrimitive(middle), event.value, true);
+			readPart(source, monitor, type, ((BackDataType) part).value, data);
+		} else if (part instanceof BackDataPrimitive) {
+			final String middle = ((BackDataPrimitive) part).middle;
+			final EPrimitiveEvent event = (EPrimitiveEvent) expect(source, EPrimitiveEvent.class);
+			data[type.slot(middle)] = primitive(source, type.getDataPrimitive(middle), event.value, true);
+		} else if (part instanceof BackDataKey) {
+			final String middle = ((BackDataKey) part).middle;
+			final EKeyEvent event = (EKeyEvent) expect(source, EKeyEvent.class);
+			data[type.slot(middle)] = primitive(source, type.getDataPrimitive(middle), event.value, true);
+		} else if (part instanceof BackDataJSONInt) {
+			final String middle = ((BackDataJSONInt) part).middle;
+			final JIntEvent event = (JIntEvent) expect(source, JIntEvent.class);
+			data[type.slot(middle)] = primitive(source, type.getDataPrimitive(middle), event.value, false);
+		} else if (part instanceof BackDataJSONFloat) {
+			final String middle = ((BackDataJSONFloat) part).middle;
+			final JFloatEvent event = (JFloatEvent) expect(source, JFloatEvent.class);
+			data[type.slot(middle)] = primitive(source, type.getDataPrimitive(middle), event.value, false);
+		} else if (part instanceof BackDataAtom) {
+			final String middle = ((BackDataAtom) part).middle;
+			final Atom child = readReference(source, monitor, type.getDataNode(middle).type, true);
+			data[type.slot(middle)] = new ValueAtom(type.getDataNode(middle), child);
+		} else if (part instanceof BackDataArray) {
+			final String middle = ((BackDataArray) part).middle;
+			expect(source, EArrayOpenEvent.class);
+			final List<Atom> elements = new ArrayList<>();
+			while (!(source.peek() instanceof EArrayCloseEvent))
+				elements.add(readReference(source, monitor, type.getDataArray(middle).type, true));
+			source.next();
+			data[type.slot(middle)] = new ValueArray(type.getDataArray(middle), elements);
+		} else if (part instanceof BackDataRecord) {
+			final String middle = ((BackDataRecord) part).middle;
+			expect(source, EObjectOpenEvent.class);
+			final List<Atom> elements = new ArrayList<>();
+			while (!(source.peek() instanceof EObjectCloseEvent))
+				elements.add(readReference(source, monitor, type.getDataArray(middle).type, true));
+			source.next();
+			data[type.slot(middle)] = new ValueArray(type.getDataArray(middle), elements);
+		} else if (part instanceof BackDataRootArray) {
+			final String middle = ((BackDataRootArray) part).middle;
+			final List<Atom> elements = new ArrayList<>();
+			while (source.peek() != null)
+				elements.add(readReference(source, monitor, type.getDataArray(middle).type, false));
+			data[type.slot(middle)] = new ValueArray(type.getDataArray(middle), elements);
+		} else
+			throw new AssertionError(String.format("Unimplemented back part type [%s].\n",
+					part.getClass().getCanonicalName()
+			));
+	}
+}
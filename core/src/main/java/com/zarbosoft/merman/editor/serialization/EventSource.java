@@ -0,0 +1,23 @@
+package com.zarbosoft.merman.editor.serialization;
+
+import com.zarbosoft.merman.editor.backevents.BackEvent;
+
+/**
+ * Pull interface to the back events of a serialized document.  Malformed input raises InvalidDocument.
+ */
+public interface EventSource {
+	/**
+	 * @return The next event without consuming it, or null at the end of the document
+	 */
+	BackEvent peek();
+
+	/**
+	 * @return The next event, or null at the end of the document
+	 */
+	BackEvent next();
+
+	/**
+	 * @return A description of the current location for error messages
+	 */
+	String position();
+}
@@ -0,0 +1,29 @@
+package com.zarbosoft.merman.editor.serialization;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Deduplicates the strings of a document as it's loaded.  Identifiers, keys, and type names repeat many times in
+ * large documents; interning them lets the primitives holding them share one string until they're edited.
+ * <p>
+ * Use one per parse - not thread safe.  Long strings rarely repeat so they aren't interned, and the table stops
+ * growing at a limit so documents of mostly unique values don't pay for it.
+ */
+public class Interner {
+	public static int maxLength = 64;
+	public static int maxSize = 64 * 1024;
+
+	private final Map<String, String> strings = new HashMap<>();
+
+	public String intern(final String value) {
+		if (value.length() > maxLength)
+			return value;
+		final String out = strings.get(value);
+		if (out != null)
+			return out;
+		if (strings.size() < maxSize)
+			strings.put(value, value);
+		return value;
+	}
+}
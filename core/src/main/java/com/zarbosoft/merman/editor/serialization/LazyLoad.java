@@ -0,0 +1,141 @@
+package com.zarbosoft.merman.editor.serialization;
+
+import com.google.common.collect.ImmutableList;
+import com.zarbosoft.merman.document.Atom;
+import com.zarbosoft.merman.document.Document;
+import com.zarbosoft.merman.document.values.Value;
+import com.zarbosoft.merman.document.values.ValueArray;
+import com.zarbosoft.merman.syntax.Syntax;
+import com.zarbosoft.pidgoon.events.Grammar;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads documents whose root is a flat array without parsing the root elements.  The file is read with Load.buffer
+ * and only the byte range of each root element is found (see RootScanner); each element is parsed the first time
+ * it's read from the root array (for example when it enters the window).  Saving copies the bytes of elements that
+ * haven't been parsed straight from the buffer, so they keep the formatting they had in the file.
+ * <p>
+ * The buffer is kept until the document is discarded - the file must not be modified in place while the document
+ * is open.  Write replaces files by renaming, which is safe.
+ * <p>
+ * Elements aren't checked until they're parsed, so an invalid element raises when it's first read.  Anything that
+ * reads every element (a window on the root, Document.hash, Diff, ValueArray.copy) parses the whole document.
+ * <p>
+ * Documents that can't be split on root elements, compressed files, and files too large for a single buffer are
+ * loaded normally.
+ */
+public class LazyLoad {
+	/**
+	 * The serialized bytes of a root element that hasn't been parsed.  Immutable; may be read from any thread.
+	 */
+	public static class Unparsed {
+		private final LazyLoad load;
+		private final int start;
+		private final int end;
+
+		private Unparsed(final LazyLoad load, final int start, final int end) {
+			this.load = load;
+			this.start = start;
+			this.end = end;
+		}
+
+		public Syntax.BackType format() {
+			return load.syntax.backType;
+		}
+
+		/**
+		 * @return A copy of the element's bytes, without surrounding delimiters or whitespace
+		 */
+		public byte[] bytes() {
+			final ByteBuffer source = load.data.duplicate();
+			source.position(start);
+			final byte[] out = new byte[end - start];
+			source.get(out);
+			return out;
+		}
+
+		/**
+		 * May be called from any thread.
+		 *
+		 * @return A new atom parsed from the bytes, not attached to the document
+		 */
+		public Atom parse() {
+			final List<Atom> atoms =
+					ParallelLoad.parseChunk(load.syntax, load.middle, load.grammar, load.data, start, end);
+			if (atoms.size() != 1)
+				throw new AssertionError(String.format("Root element at byte %s parsed as %s atoms",
+						start,
+						atoms.size()
+				));
+			return atoms.get(0);
+		}
+
+		/**
+		 * Attach an element parsed from this to the document.  Snapshots open at the time keep this unparsed element.
+		 *
+		 * @param value The root array
+		 * @param attach
+		 */
+		public void attach(final Value value, final Runnable attach) {
+			load.document.edit(value, ImmutableList.of(), attach);
+		}
+	}
+
+	private final Syntax syntax;
+	private final String middle;
+	private final ByteBuffer data;
+	/**
+	 * Null if elements are read with DirectLoad
+	 */
+	private final Grammar grammar;
+	private Document document;
+
+	private LazyLoad(final Syntax syntax, final String middle, final ByteBuffer data) {
+		this.syntax = syntax;
+		this.middle = middle;
+		this.data = data;
+		this.grammar = ParallelLoad.chunkGrammar(syntax, middle);
+	}
+
+	public static Document load(final Syntax syntax, final Path path) throws IOException {
+		if (Compression.of(syntax, path) != Syntax.CompressionType.NONE || Files.size(path) > Integer.MAX_VALUE)
+			return Load.load(syntax, path);
+		return load(syntax, Load.buffer(path));
+	}
+
+	/**
+	 * @param syntax
+	 * @param data   From position to limit.  Must not be modified while the document is in use.
+	 * @return
+	 */
+	public static Document load(final Syntax syntax, final ByteBuffer data) {
+		final String middle = ParallelLoad.rootMiddle(syntax);
+		if (middle == null)
+			return Load.load(syntax, data);
+		final LazyLoad load = new LazyLoad(syntax, middle, data);
+		final RootScanner.Ranges ranges = RootScanner.scan(syntax.backType, data, data.position(), data.limit());
+		final List<Unparsed> elements = new ArrayList<>(ranges.size);
+		for (int i = 0; i < ranges.size; ++i) {
+			int end = ranges.ends[i];
+			while (end > ranges.starts[i] && isWhitespace(data.get(end - 1)))
+				end -= 1;
+			elements.add(new Unparsed(load, ranges.starts[i], end));
+		}
+		final Map<String, Value> values = new HashMap<>();
+		values.put(middle, ValueArray.unparsed(syntax.root.getDataArray(middle), elements));
+		load.document = new Document(syntax, new Atom(syntax.root, values));
+		return load.document;
+	}
+
+	private static boolean isWhitespace(final byte b) {
+		return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+	}
+}
@@ -5,10 +5,11 @@ import com.zarbosoft.luxem.read.RawReader;
 import com.zarbosoft.merman.document.Atom;
 import com.zarbosoft.merman.document.Document;
 import com.zarbosoft.merman.editor.backevents.*;
+import com.zarbosoft.merman.editor.serialization.binary.BinaryParse;
 import com.zarbosoft.merman.editor.serialization.json.JSONParse;
 import com.zarbosoft.merman.syntax.Syntax;
+import com.zarbosoft.pidgoon.Node;
 import com.zarbosoft.pidgoon.events.*;
-import com.zarbosoft.pidgoon.internal.NamedOperator;
 import com.zarbosoft.pidgoon.nodes.Reference;
 import com.zarbosoft.pidgoon.nodes.Repeat;
 import com.zarbosoft.pidgoon.nodes.Sequence;
@@ -18,96 +19,276 @@ import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 public class Load {
+	/**
+	 * Files at least this size are read through memory mapping, smaller files are streamed.
+	 */
+	public static long mapThreshold = 1024 * 1024;
+
+	public static InputStream open(final Path path) throws IOException {
+		if (Files.size(path) >= mapThreshold)
+			return new MappedInputStream(path);
+		return Files.newInputStream(path);
+	}
+
+	/**
+	 * @param path Must be smaller than 2GB
+	 * @return The file contents, mapped if the file is at least mapThreshold
+	 * @throws IOException
+	 */
+	public static ByteBuffer buffer(final Path path) throws IOException {
+		try (
+				FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)
+		) {
+			final long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+				throw new IOException(String.format("[%s] is too large to buffer.", path));
+			if (size >= mapThreshold)
+				return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			final ByteBuffer out = ByteBuffer.allocate((int) size);
+			while (out.hasRemaining())
+				if (channel.read(out) < 0)
+					throw new IOException(String.format("[%s] changed while loading.", path));
+			out.flip();
+			return out;
+		}
+	}
+
+	/**
+	 * @param syntax
+	 * @param path
+	 * @return The file contents, decompressed if the file is compressed
+	 * @throws IOException
+	 */
+	public static InputStream open(final Syntax syntax, final Path path) throws IOException {
+		return Compression.input(syntax, path, open(path));
+	}
+
 	public static Document load(final Syntax syntax, final Path path) throws FileNotFoundException, IOException {
+		if (Compression.of(syntax, path) == Syntax.CompressionType.NONE && Files.size(path) <= Integer.MAX_VALUE)
+			return load(syntax, buffer(path));
 		try (
-				InputStream data = Files.newInputStream(path)
+				InputStream data = open(syntax, path)
 		) {
 			return load(syntax, data);
 		}
 	}
 
+	/**
+	 * Load with progress reporting and cancellation.  Raises LoadMonitor.Cancelled if cancelled.
+	 *
+	 * @param syntax
+	 * @param path
+	 * @param monitor
+	 * @return
+	 * @throws IOException
+	 */
+	public static Document load(final Syntax syntax, final Path path, final LoadMonitor monitor) throws IOException {
+		monitor.start(Files.size(path));
+		try (
+				InputStream data = Compression.input(syntax, path, monitor.wrap(open(path)))
+		) {
+			final Document out = load(syntax, syntax.backType, data, monitor);
+			monitor.finish();
+			return out;
+		}
+	}
+
+	/**
+	 * Load an uncompressed document from a buffer, such as a mapped file.  Direct luxem loads read the buffer in place;
+	 * other loads read it as a stream.
+	 *
+	 * @param syntax
+	 * @param data   From position to limit.  Not modified.
+	 * @return
+	 */
+	public static Document load(final Syntax syntax, final ByteBuffer data) {
+		final DirectLoad direct = syntax.getDirectLoad();
+		if (syntax.backType == Syntax.BackType.LUXEM && direct.available())
+			return direct.load(new LuxemEventSource(data), null);
+		return load(syntax, new MappedInputStream(data, data.position(), data.limit()));
+	}
+
 	public static Document load(final Syntax syntax, final String string) {
 		return load(syntax, new ByteArrayInputStream(string.getBytes(StandardCharsets.UTF_8)));
 	}
 
-	private static RawReader.EventFactory luxemEventFactory() {
+	/**
+	 * @return A factory for a single parse; strings are interned
+	 */
+	static RawReader.EventFactory luxemEventFactory() {
+		final Interner interner = new Interner();
 		return new RawReader.EventFactory() {
 			@Override
 			public Event objectOpen() {
-				return new EObjectOpenEvent();
+				return EObjectOpenEvent.instance;
 			}
 
 			@Override
 			public Event objectClose() {
-				return new EObjectCloseEvent();
+				return EObjectCloseEvent.instance;
 			}
 
 			@Override
 			public Event arrayOpen() {
-				return new EArrayOpenEvent();
+				return EArrayOpenEvent.instance;
 			}
 
 			@Override
 			public Event arrayClose() {
-				return new EArrayCloseEvent();
+				return EArrayCloseEvent.instance;
 			}
 
 			@Override
 			public Event key(final String s) {
-				return new EKeyEvent(s);
+				return new EKeyEvent(interner.intern(s));
 			}
 
 			@Override
 			public Event type(final String s) {
-				return new ETypeEvent(s);
+				return new ETypeEvent(interner.intern(s));
 			}
 
 			@Override
 			public Event primitive(final String s) {
-				return new EPrimitiveEvent(s);
+				return new EPrimitiveEvent(interner.intern(s));
 			}
 		};
 	}
 
 	public static Document load(final Syntax syntax, final InputStream data) {
-		switch (syntax.backType) {
+		return load(syntax, syntax.backType, data);
+	}
+
+	/**
+	 * Load a document stored in a format other than the syntax's own.
+	 *
+	 * @param syntax
+	 * @param backType
+	 * @param data
+	 * @return
+	 */
+	public static Document load(final Syntax syntax, final Syntax.BackType backType, final InputStream data) {
+		return load(syntax, backType, data, null);
+	}
+
+	/**
+	 * @param syntax
+	 * @param backType
+	 * @param data
+	 * @param monitor  Counts the atoms built, or null
+	 * @return
+	 */
+	static Document load(
+			final Syntax syntax, final Syntax.BackType backType, final InputStream data, final LoadMonitor monitor
+	) {
+		final DirectLoad direct = syntax.getDirectLoad();
+		if (direct.available())
+			return direct.load(backType, data, monitor);
+		return parse(syntax, backType, data, monitor);
+	}
+
+	/**
+	 * Load with the syntax grammar, bypassing DirectLoad.
+	 *
+	 * @param syntax
+	 * @param backType
+	 * @param data
+	 * @return
+	 */
+	public static Document parse(final Syntax syntax, final Syntax.BackType backType, final InputStream data) {
+		return parse(syntax, backType, data, null);
+	}
+
+	private static Document parse(
+			final Syntax syntax, final Syntax.BackType backType, final InputStream data, final LoadMonitor monitor
+	) {
+		final Grammar grammar = syntax.getGrammar();
+		final Atom root;
+		switch (backType) {
 			case LUXEM:
-				return new Document(syntax,
-						new Parse<Atom>()
-								.eventFactory(luxemEventFactory())
-								.grammar(syntax.getGrammar())
-								.eventUncertainty(1000)
-								.parse(data)
-				);
+				root = new Parse<Atom>()
+						.eventFactory(luxemEventFactory())
+						.grammar(grammar)
+						.eventUncertainty(1000)
+						.parse(data);
+				break;
 			case JSON:
-				return new Document(syntax,
-						new JSONParse<Atom>().grammar(syntax.getGrammar()).eventUncertainty(1000).parse(data)
-				);
+				root = new JSONParse<Atom>().grammar(grammar).eventUncertainty(1000).parse(data);
+				break;
+			case BINARY:
+				root = new BinaryParse<Atom>().grammar(grammar).eventUncertainty(1000).parse(data);
+				break;
 			default:
 				throw new DeadCode();
 		}
+		if (monitor != null)
+			monitor.atomsBuilt(Collections.singletonList(root));
+		return new Document(syntax, root);
+	}
+
+	/**
+	 * A copy of the syntax grammar with an extra rule matching a run of atoms, which produces a List&lt;Atom&gt;.  For
+	 * json the run is enclosed in an array.  Must be called on a single thread; the result can be shared between
+	 * parsing threads.
+	 *
+	 * @param syntax
+	 * @param root    The name of the extra rule
+	 * @param element Matches a single atom
+	 * @param max     The maximum number of atoms, or 0 for no limit
+	 * @return
+	 */
+	static Grammar listGrammar(final Syntax syntax, final Object root, final Node element, final int max) {
+		final Repeat repeat =
+				new Repeat(new Operator(element, store -> com.zarbosoft.pidgoon.internal.Helper.stackSingleElement(store)));
+		if (max > 0)
+			repeat.max(max);
+		final Node list = new Operator(repeat, store -> {
+			final List<Atom> temp = new ArrayList<>();
+			store = (Store) com.zarbosoft.pidgoon.internal.Helper.<Atom>stackPopSingleList(store, temp::add);
+			Collections.reverse(temp);
+			return store.pushStack(temp);
+		});
+		final Grammar grammar = new Grammar(syntax.getGrammar());
+		if (syntax.backType == Syntax.BackType.JSON)
+			grammar.add(root,
+					new Sequence()
+							.add(new MatchingEventTerminal(EArrayOpenEvent.instance))
+							.add(list)
+							.add(new MatchingEventTerminal(EArrayCloseEvent.instance))
+			);
+		else
+			grammar.add(root, list);
+		return grammar;
 	}
 
 	public static List<Atom> loadMultiple(final Syntax syntax, final String type, final InputStream data) {
+		return loadMultiple(syntax, type, data, 7);
+	}
+
+	/**
+	 * @param syntax
+	 * @param type   The type or group of the atoms
+	 * @param data
+	 * @param max    The maximum number of atoms, or 0 for no limit
+	 * @return
+	 */
+	public static List<Atom> loadMultiple(
+			final Syntax syntax, final String type, final InputStream data, final int max
+	) {
 		switch (syntax.backType) {
 			case LUXEM: {
-				final Grammar grammar = new Grammar(syntax.getGrammar());
-				grammar.add(new NamedOperator(data, new Operator(new Repeat(new Operator(new Reference(type),
-						store -> com.zarbosoft.pidgoon.internal.Helper.stackSingleElement(store)
-				)).max(7), store -> {
-					final List<Atom> temp = new ArrayList<>();
-					store = (Store) com.zarbosoft.pidgoon.internal.Helper.<Atom>stackPopSingleList(store, temp::add);
-					Collections.reverse(temp);
-					return store.pushStack(temp);
-				})));
+				final Grammar grammar = listGrammar(syntax, data, new Reference(type), max);
 				return new Parse<List<Atom>>()
 						.grammar(grammar)
 						.eventFactory(luxemEventFactory())
@@ -117,23 +298,7 @@ public class Load {
 						.parse(data);
 			}
 			case JSON: {
-				final Grammar grammar = new Grammar(syntax.getGrammar());
-				grammar.add(new NamedOperator(data,
-						new Sequence()
-								.add(new MatchingEventTerminal(new EArrayOpenEvent()))
-								.add(new Operator(new Repeat(new Operator(new Reference(type),
-										store -> com.zarbosoft.pidgoon.internal.Helper.stackSingleElement(store)
-								)).max(7), store -> {
-									final List<Atom> temp = new ArrayList<>();
-									store =
-											(Store) com.zarbosoft.pidgoon.internal.Helper.<Atom>stackPopSingleList(store,
-													temp::add
-											);
-									Collections.reverse(temp);
-									return store.pushStack(temp);
-								}))
-								.add(new MatchingEventTerminal(new EArrayCloseEvent()))
-				));
+				final Grammar grammar = listGrammar(syntax, data, new Reference(type), max);
 				return new JSONParse<List<Atom>>()
 						.grammar(grammar)
 						.stack(() -> 0)
@@ -141,6 +306,15 @@ public class Load {
 						.eventUncertainty(1000)
 						.parse(data);
 			}
+			case BINARY: {
+				final Grammar grammar = listGrammar(syntax, data, new Reference(type), max);
+				return new BinaryParse<List<Atom>>()
+						.grammar(grammar)
+						.stack(() -> 0)
+						.root(data)
+						.eventUncertainty(1000)
+						.parse(data);
+			}
 			default:
 				throw new DeadCode();
 		}
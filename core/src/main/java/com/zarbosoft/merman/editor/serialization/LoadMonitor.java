@@ -0,0 +1,186 @@
+package com.zarbosoft.merman.editor.serialization;
+
+import com.zarbosoft.merman.document.Atom;
+import com.zarbosoft.merman.document.values.Value;
+import com.zarbosoft.merman.document.values.ValueArray;
+import com.zarbosoft.merman.document.values.ValueAtom;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the progress of a load and allows it to be cancelled from another thread.
+ * <p>
+ * Bytes are counted as the loader consumes them, and cancellation is checked at the same point so a cancelled load
+ * stops within one read buffer.  DirectLoad counts atoms as it builds them; loads that use the syntax grammar count
+ * them when each parse completes (the whole document, or one chunk for parallel loads), so the grammar stays
+ * shared between loads.  A monitor is good for a single load.
+ */
+public class LoadMonitor {
+	@FunctionalInterface
+	public interface Listener {
+		/**
+		 * Called on the loading thread (or any of them for parallel loads), at most once per interval plus once when
+		 * the load finishes.
+		 *
+		 * @param bytes     Bytes consumed so far
+		 * @param total     Size of the input, or -1 if unknown
+		 * @param atoms     Atoms built so far
+		 * @param remaining Estimated milliseconds until the load completes, or -1 if unknown
+		 */
+		void progress(long bytes, long total, long atoms, long remaining);
+	}
+
+	/**
+	 * Raised in the loading thread once the load has been cancelled.
+	 */
+	public static class Cancelled extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		public Cancelled() {
+			super("Load cancelled.");
+		}
+	}
+
+	/**
+	 * Minimum milliseconds between progress reports.
+	 */
+	public static long interval = 100;
+
+	private final Listener listener;
+	private volatile boolean cancelled = false;
+	private long total = -1;
+	private long started;
+	private final AtomicLong bytes = new AtomicLong();
+	private final AtomicLong atoms = new AtomicLong();
+	private final AtomicLong lastReport = new AtomicLong();
+
+	public LoadMonitor(final Listener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * May be called from any thread.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	void start(final long total) {
+		this.total = total;
+		started = System.nanoTime();
+		lastReport.set(started);
+	}
+
+	void finish() {
+		report(System.nanoTime());
+	}
+
+	void check() {
+		if (cancelled)
+			throw new Cancelled();
+	}
+
+	/**
+	 * Record input consumed other than through wrap.
+	 *
+	 * @param count
+	 */
+	void consumed(final long count) {
+		bytes.addAndGet(count);
+		check();
+		maybeReport();
+	}
+
+	/**
+	 * Called by DirectLoad for every atom it builds.  May be called from multiple threads.
+	 */
+	public void atomBuilt() {
+		check();
+		if ((atoms.incrementAndGet() & 1023) == 0)
+			maybeReport();
+	}
+
+	/**
+	 * Count the atoms and all their descendants, once a parse has produced them.  May be called from multiple
+	 * threads.
+	 *
+	 * @param atoms
+	 */
+	void atomsBuilt(final Collection<Atom> atoms) {
+		long count = 0;
+		final Deque<Atom> stack = new ArrayDeque<>(atoms);
+		while (!stack.isEmpty()) {
+			final Atom atom = stack.removeLast();
+			count += 1;
+			for (int i = 0; i < atom.type.slotCount(); ++i) {
+				final Value value = atom.get(i);
+				if (value instanceof ValueArray)
+					stack.addAll(((ValueArray) value).data);
+				else if (value instanceof ValueAtom)
+					stack.addLast(((ValueAtom) value).data);
+			}
+		}
+		this.atoms.addAndGet(count);
+		check();
+		maybeReport();
+	}
+
+	private void maybeReport() {
+		final long now = System.nanoTime();
+		final long last = lastReport.get();
+		if (now - last < interval * 1000000)
+			return;
+		if (!lastReport.compareAndSet(last, now))
+			return;
+		report(now);
+	}
+
+	private void report(final long now) {
+		final long bytes = this.bytes.get();
+		long remaining = -1;
+		if (total >= 0 && bytes > 0)
+			remaining = (now - started) / 1000000 * (total - bytes) / bytes;
+		listener.progress(bytes, total, atoms.get(), remaining);
+	}
+
+	/**
+	 * @param stream
+	 * @return A stream that counts bytes read from stream against this monitor
+	 */
+	InputStream wrap(final InputStream stream) {
+		return new FilterInputStream(stream) {
+			@Override
+			public int read() throws IOException {
+				final int out = super.read();
+				if (out >= 0)
+					consumed(1);
+				return out;
+			}
+
+			@Override
+			public int read(final byte[] b, final int off, final int len) throws IOException {
+				final int out = super.read(b, off, len);
+				if (out > 0)
+					consumed(out);
+				return out;
+			}
+
+			@Override
+			public long skip(final long n) throws IOException {
+				final long out = super.skip(n);
+				consumed(out);
+				return out;
+			}
+		};
+	}
+}
@@ -0,0 +1,278 @@
+package com.zarbosoft.merman.editor.serialization;
+
+import com.zarbosoft.merman.document.InvalidDocument;
+import com.zarbosoft.merman.editor.backevents.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static com.zarbosoft.rendaw.common.Common.uncheck;
+
+/**
+ * Tokenizes luxem directly into back events.  The top level of the document is an implicit array of values.
+ * <p>
+ * Accepts the same documents as RawReader: values are separated by [,] with an optional trailing [,] before a close or
+ * the end of the document, a type must be followed by a value, and a backslash includes the next character literally
+ * in keys, types and primitives, quoted or not.  TestDocumentDirectLoad checks the two agree.
+ */
+public class LuxemEventSource implements EventSource {
+	private static final int chunkSize = 64 * 1024;
+
+	/**
+	 * Null when reading a buffer directly, otherwise refills buffer
+	 */
+	private final InputStream stream;
+	private final ByteBuffer buffer;
+	private long offset = 0;
+	private int lookahead;
+	private final ByteArrayOutputStream text = new ByteArrayOutputStream();
+	private final Interner interner = new Interner();
+
+	/**
+	 * True for records, false for arrays
+	 */
+	private final Deque<Boolean> containers = new ArrayDeque<>();
+	private boolean expectKey = false;
+	/**
+	 * The last event completed a value so a separator or close must come next
+	 */
+	private boolean valueEnded = false;
+	/**
+	 * The last event was a type so a value must come next
+	 */
+	private boolean typed = false;
+	private BackEvent peeked = null;
+
+	public LuxemEventSource(final InputStream stream) {
+		this.stream = stream;
+		this.buffer = ByteBuffer.allocate(chunkSize);
+		buffer.limit(0);
+		lookahead = uncheck(() -> read());
+	}
+
+	/**
+	 * Reads the buffer in place, such as a mapped file, without copying it through a stream.
+	 *
+	 * @param data From position to limit.  Not modified.
+	 */
+	public LuxemEventSource(final ByteBuffer data) {
+		this.stream = null;
+		this.buffer = data.duplicate();
+		lookahead = uncheck(() -> read());
+	}
+
+	private int read() throws IOException {
+		if (!buffer.hasRemaining()) {
+			if (stream == null)
+				return -1;
+			int count;
+			do {
+				count = stream.read(buffer.array(), 0, chunkSize);
+			} while (count == 0);
+			if (count < 0) {
+				buffer.limit(0);
+				return -1;
+			}
+			buffer.position(0);
+			buffer.limit(count);
+		}
+		return buffer.get() & 0xFF;
+	}
+
+	private void advance() throws IOException {
+		lookahead = read();
+		offset += 1;
+	}
+
+	private InvalidDocument error(final String message) {
+		return new InvalidDocument(String.format("%s at byte %s.", message, offset));
+	}
+
+	private void skipSpace() throws IOException {
+		while (true) {
+			switch (lookahead) {
+				case ' ':
+				case '\t':
+				case '\r':
+				case '\n':
+					advance();
+					break;
+				case '*':
+					advance();
+					while (lookahead != '*') {
+						if (lookahead == -1)
+							throw error("Unterminated comment");
+						advance();
+					}
+					advance();
+					break;
+				default:
+					return;
+			}
+		}
+	}
+
+	private String delimited(final int terminal) throws IOException {
+		text.reset();
+		advance();
+		while (lookahead != terminal) {
+			if (lookahead == -1)
+				throw error("Unterminated text");
+			if (lookahead == '\\') {
+				advance();
+				if (lookahead == -1)
+					throw error("Unterminated escape");
+			}
+			text.write(lookahead);
+			advance();
+		}
+		advance();
+		return new String(text.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private String word() throws IOException {
+		text.reset();
+		while (true) {
+			switch (lookahead) {
+				case -1:
+				case ' ':
+				case '\t':
+				case '\r':
+				case '\n':
+				case ',':
+				case ':':
+				case '*':
+				case '"':
+				case '(':
+				case ')':
+				case '[':
+				case ']':
+				case '{':
+				case '}':
+					return new String(text.toByteArray(), StandardCharsets.UTF_8);
+				case '\\':
+					advance();
+					if (lookahead == -1)
+						throw error("Unterminated escape");
+				default:
+					text.write(lookahead);
+					advance();
+			}
+		}
+	}
+
+	private String primitive() throws IOException {
+		if (lookahead == '"')
+			return delimited('"');
+		final String out = word();
+		if (out.isEmpty())
+			throw error(String.format("Unexpected [%s]", (char) lookahead));
+		return out;
+	}
+
+	/**
+	 * Called after a complete value.
+	 */
+	private void valueEnd() {
+		expectKey = !containers.isEmpty() && containers.peekLast();
+		valueEnded = true;
+	}
+
+	private BackEvent decode() throws IOException {
+		skipSpace();
+		if (lookahead == ',') {
+			if (!valueEnded)
+				throw error("Unexpected [,]");
+			advance();
+			valueEnded = false;
+			skipSpace();
+		} else if (valueEnded && lookahead != -1 && lookahead != ']' && lookahead != '}')
+			throw error("Expected [,]");
+		if (typed) {
+			switch (lookahead) {
+				case -1:
+				case ',':
+				case ':':
+				case '(':
+				case ')':
+				case ']':
+				case '}':
+					throw error("Expected a value after type");
+			}
+			typed = false;
+		}
+		if (lookahead == -1) {
+			if (!containers.isEmpty())
+				throw error("Unexpected end of document");
+			return null;
+		}
+		if (expectKey) {
+			if (lookahead == '}') {
+				advance();
+				containers.removeLast();
+				valueEnd();
+				return EObjectCloseEvent.instance;
+			}
+			final String key = primitive();
+			skipSpace();
+			if (lookahead != ':')
+				throw error("Expected [:] after key");
+			advance();
+			expectKey = false;
+			valueEnded = false;
+			return new EKeyEvent(interner.intern(key));
+		}
+		switch (lookahead) {
+			case '[':
+				advance();
+				containers.addLast(false);
+				return EArrayOpenEvent.instance;
+			case '{':
+				advance();
+				containers.addLast(true);
+				expectKey = true;
+				return EObjectOpenEvent.instance;
+			case '}':
+				throw error("Unexpected [}]");
+			case ']':
+				if (containers.isEmpty() || containers.peekLast())
+					throw error("Unexpected []]");
+				advance();
+				containers.removeLast();
+				valueEnd();
+				return EArrayCloseEvent.instance;
+			case '(':
+				typed = true;
+				return new ETypeEvent(interner.intern(delimited(')')));
+			default: {
+				final EPrimitiveEvent out = new EPrimitiveEvent(interner.intern(primitive()));
+				valueEnd();
+				return out;
+			}
+		}
+	}
+
+	@Override
+	public BackEvent peek() {
+		if (peeked == null)
+			peeked = uncheck(() -> decode());
+		return peeked;
+	}
+
+	@Override
+	public BackEvent next() {
+		final BackEvent out = peek();
+		peeked = null;
+		return out;
+	}
+
+	@Override
+	public String position() {
+		return String.format("byte %s", offset);
+	}
+}
@@ -0,0 +1,101 @@
+package com.zarbosoft.merman.editor.serialization;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a file through memory mapped regions rather than buffered copies.  Files larger than a single mapping are
+ * mapped as consecutive regions.  Can also read a range of a buffer that's already been mapped or read.
+ */
+public class MappedInputStream extends InputStream {
+	/**
+	 * The size of each mapped region of a file, at most Integer.MAX_VALUE.
+	 */
+	public static long regionSize = Integer.MAX_VALUE;
+
+	private final ByteBuffer[] regions;
+	private int region = 0;
+
+	/**
+	 * @param data  Not modified
+	 * @param start
+	 * @param end
+	 */
+	public MappedInputStream(final ByteBuffer data, final int start, final int end) {
+		final ByteBuffer region = data.duplicate();
+		region.limit(end);
+		region.position(start);
+		regions = new ByteBuffer[] {region};
+	}
+
+	public MappedInputStream(final Path path) throws IOException {
+		try (
+				FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)
+		) {
+			final long size = channel.size();
+			regions = new ByteBuffer[(int) Math.max(1, (size + regionSize - 1) / regionSize)];
+			for (int i = 0; i < regions.length; ++i) {
+				final long start = i * regionSize;
+				regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(regionSize, size - start));
+			}
+		}
+	}
+
+	/**
+	 * @return The current region if it has remaining bytes, otherwise null if at the end of the file.
+	 */
+	private ByteBuffer current() {
+		while (!regions[region].hasRemaining()) {
+			if (region + 1 == regions.length)
+				return null;
+			region += 1;
+		}
+		return regions[region];
+	}
+
+	@Override
+	public int read() {
+		final ByteBuffer buffer = current();
+		if (buffer == null)
+			return -1;
+		return buffer.get() & 0xFF;
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len) {
+		if (len == 0)
+			return 0;
+		final ByteBuffer buffer = current();
+		if (buffer == null)
+			return -1;
+		final int count = Math.min(len, buffer.remaining());
+		buffer.get(b, off, count);
+		return count;
+	}
+
+	@Override
+	public long skip(final long n) {
+		long skipped = 0;
+		while (skipped < n) {
+			final ByteBuffer buffer = current();
+			if (buffer == null)
+				break;
+			final int count = (int) Math.min(n - skipped, buffer.remaining());
+			buffer.position(buffer.position() + count);
+			skipped += count;
+		}
+		return skipped;
+	}
+
+	@Override
+	public int available() {
+		final ByteBuffer buffer = current();
+		if (buffer == null)
+			return 0;
+		return buffer.remaining();
+	}
+}
@@ -0,0 +1,274 @@
+package com.zarbosoft.merman.editor.serialization;
+
+import com.zarbosoft.luxem.read.Parse;
+import com.zarbosoft.merman.document.Atom;
+import com.zarbosoft.merman.document.Document;
+import com.zarbosoft.merman.document.values.Value;
+import com.zarbosoft.merman.document.values.ValueArray;
+import com.zarbosoft.merman.editor.serialization.json.JSONEventSource;
+import com.zarbosoft.merman.editor.serialization.json.JSONParse;
+import com.zarbosoft.merman.syntax.FreeAtomType;
+import com.zarbosoft.merman.syntax.Syntax;
+import com.zarbosoft.merman.syntax.back.BackDataArray;
+import com.zarbosoft.merman.syntax.back.BackDataRootArray;
+import com.zarbosoft.merman.syntax.back.BackPart;
+import com.zarbosoft.pidgoon.events.Grammar;
+import com.zarbosoft.pidgoon.nodes.Reference;
+import com.zarbosoft.rendaw.common.DeadCode;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * Loads documents whose root is a flat array by splitting the root elements into chunks and parsing the chunks
+ * concurrently.  Documents that can't be split this way are loaded normally.  Like Load, chunks are read with
+ * DirectLoad if the syntax allows it, otherwise with the syntax grammar.
+ * <p>
+ * The file is read with Load.buffer, so large files are mapped rather than copied.  Files too large for a single
+ * buffer are loaded sequentially.
+ */
+public class ParallelLoad {
+	private static final String chunkRoot = "__chunk";
+
+	/**
+	 * Root elements are grouped into chunks of at least this many bytes.
+	 */
+	public static int minimumChunkSize = 64 * 1024;
+
+	/**
+	 * @param syntax
+	 * @param path
+	 * @return True if the file is loaded sequentially (from Load.open): compressed files are decompressed as
+	 * they're parsed rather than into memory first, and files too large to buffer are read in mapped regions.
+	 * @throws IOException
+	 */
+	private static boolean sequential(final Syntax syntax, final Path path) throws IOException {
+		return Compression.of(syntax, path) != Syntax.CompressionType.NONE || Files.size(path) > Integer.MAX_VALUE;
+	}
+
+	public static Document load(final Syntax syntax, final Path path) throws IOException {
+		if (sequential(syntax, path))
+			return Load.load(syntax, path);
+		return load(syntax, Load.buffer(path), ForkJoinPool.commonPool(), null);
+	}
+
+	/**
+	 * Load with progress reporting and cancellation.  Progress counts bytes parsed.
+	 *
+	 * @param syntax
+	 * @param path
+	 * @param monitor
+	 * @return
+	 * @throws IOException
+	 */
+	public static Document load(final Syntax syntax, final Path path, final LoadMonitor monitor) throws IOException {
+		if (sequential(syntax, path))
+			return Load.load(syntax, path, monitor);
+		monitor.start(Files.size(path));
+		final ByteBuffer data = Load.buffer(path);
+		monitor.check();
+		final Document out = load(syntax, data, ForkJoinPool.commonPool(), monitor);
+		monitor.finish();
+		return out;
+	}
+
+	public static Document load(final Syntax syntax, final byte[] data, final ForkJoinPool pool) {
+		return load(syntax, ByteBuffer.wrap(data), pool, null);
+	}
+
+	private static Document load(
+			final Syntax syntax, final ByteBuffer data, final ForkJoinPool pool, final LoadMonitor monitor
+	) {
+		final String middle = rootMiddle(syntax);
+		if (middle == null)
+			return loadWhole(syntax, data, monitor);
+		final RootScanner.Ranges elements = RootScanner.scan(syntax.backType, data, 0, data.limit());
+		final int chunkSize = Math.max(minimumChunkSize, data.limit() / (pool.getParallelism() * 4));
+		final List<int[]> chunks = new ArrayList<>();
+		for (int i = 0; i < elements.size; ) {
+			final int start = elements.starts[i];
+			int end = elements.ends[i];
+			i += 1;
+			while (i < elements.size && end - start < chunkSize) {
+				end = elements.ends[i];
+				i += 1;
+			}
+			chunks.add(new int[] {start, end});
+		}
+		if (chunks.size() <= 1)
+			return loadWhole(syntax, data, monitor);
+		final Grammar grammar = chunkGrammar(syntax, middle);
+		final List<List<Atom>> parsed = pool
+				.submit(() -> chunks
+						.parallelStream()
+						.map(chunk -> parseChunk(syntax, middle, grammar, data, chunk[0], chunk[1], monitor))
+						.collect(Collectors.toList()))
+				.join();
+		final List<Atom> atoms = new ArrayList<>();
+		parsed.forEach(atoms::addAll);
+		return new Document(syntax, createRoot(syntax, middle, atoms));
+	}
+
+	private static Document loadWhole(final Syntax syntax, final ByteBuffer data, final LoadMonitor monitor) {
+		if (monitor == null)
+			return Load.load(syntax, data);
+		return Load.load(syntax,
+				syntax.backType,
+				monitor.wrap(new MappedInputStream(data, 0, data.limit())),
+				monitor
+		);
+	}
+
+	/**
+	 * @param syntax
+	 * @return The root array middle id if the document can be split on top level elements, otherwise null.
+	 */
+	public static String rootMiddle(final Syntax syntax) {
+		if (syntax.root.back().size() != 1 || syntax.root.middle().size() != 1)
+			return null;
+		final BackPart part = syntax.root.back().get(0);
+		final String middle;
+		switch (syntax.backType) {
+			case LUXEM:
+				if (!(part instanceof BackDataRootArray))
+					return null;
+				middle = ((BackDataRootArray) part).middle;
+				break;
+			case JSON:
+				if (!(part instanceof BackDataArray))
+					return null;
+				middle = ((BackDataArray) part).middle;
+				break;
+			default:
+				return null;
+		}
+		// Each atom must serialize as exactly one top level element
+		if (!syntax
+				.getLeafTypes(syntax.root.getDataArray(middle).type)
+				.allMatch((FreeAtomType type) -> type.back.size() == 1))
+			return null;
+		return middle;
+	}
+
+	public static Atom createRoot(final Syntax syntax, final String middle, final List<Atom> atoms) {
+		final Map<String, Value> data = new HashMap<>();
+		data.put(middle, new ValueArray(syntax.root.getDataArray(middle), atoms));
+		return new Atom(syntax.root, data);
+	}
+
+	/**
+	 * A copy of the syntax grammar with a root that matches a run of root array elements, the same way the root
+	 * array's back part does.  Must be called on a single thread; the result can be shared between parsing threads.
+	 *
+	 * @param syntax
+	 * @param middle
+	 * @return The grammar, or null if chunks are read with DirectLoad
+	 */
+	static Grammar chunkGrammar(final Syntax syntax, final String middle) {
+		if (syntax.getDirectLoad().available())
+			return null;
+		final String type = syntax.root.getDataArray(middle).type;
+		switch (syntax.backType) {
+			case LUXEM:
+				return Load.listGrammar(syntax, chunkRoot, new Reference(type), 0);
+			case JSON:
+				return Load.listGrammar(syntax, chunkRoot, syntax.backRuleRef(type), 0);
+			default:
+				throw new DeadCode();
+		}
+	}
+
+	/**
+	 * @param syntax
+	 * @param middle
+	 * @param grammar From chunkGrammar
+	 * @param data
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	static List<Atom> parseChunk(
+			final Syntax syntax,
+			final String middle,
+			final Grammar grammar,
+			final ByteBuffer data,
+			final int start,
+			final int end
+	) {
+		return parseChunk(syntax, middle, grammar, data, start, end, null);
+	}
+
+	private static List<Atom> parseChunk(
+			final Syntax syntax,
+			final String middle,
+			final Grammar grammar,
+			final ByteBuffer data,
+			final int start,
+			final int end,
+			final LoadMonitor monitor
+	) {
+		if (grammar == null && syntax.backType == Syntax.BackType.LUXEM && monitor == null) {
+			final ByteBuffer chunk = data.duplicate();
+			chunk.limit(end);
+			chunk.position(start);
+			return syntax.getDirectLoad().loadElements(new LuxemEventSource(chunk), syntax.backType, middle, null);
+		}
+		final InputStream chunk = new MappedInputStream(data, start, end);
+		if (monitor == null)
+			return parseChunk(syntax, middle, grammar, chunk, null);
+		final List<Atom> out = parseChunk(syntax, middle, grammar, monitor.wrap(chunk), monitor);
+		if (grammar != null)
+			monitor.atomsBuilt(out);
+		return out;
+	}
+
+	private static List<Atom> parseChunk(
+			final Syntax syntax,
+			final String middle,
+			final Grammar grammar,
+			final InputStream chunk,
+			final LoadMonitor monitor
+	) {
+		switch (syntax.backType) {
+			case LUXEM:
+				if (grammar == null)
+					return syntax
+							.getDirectLoad()
+							.loadElements(new LuxemEventSource(chunk), syntax.backType, middle, monitor);
+				return new Parse<List<Atom>>()
+						.grammar(grammar)
+						.eventFactory(Load.luxemEventFactory())
+						.stack(() -> 0)
+						.root(chunkRoot)
+						.eventUncertainty(1000)
+						.parse(chunk);
+			case JSON: {
+				final InputStream stream = new SequenceInputStream(Collections.enumeration(Arrays.asList(
+						new ByteArrayInputStream(new byte[] {'['}),
+						chunk,
+						new ByteArrayInputStream(new byte[] {']'})
+				)));
+				if (grammar == null)
+					return syntax
+							.getDirectLoad()
+							.loadElements(new JSONEventSource(stream), syntax.backType, middle, monitor);
+				return new JSONParse<List<Atom>>()
+						.grammar(grammar)
+						.stack(() -> 0)
+						.root(chunkRoot)
+						.eventUncertainty(1000)
+						.parse(stream);
+			}
+			default:
+				throw new DeadCode();
+		}
+	}
+}
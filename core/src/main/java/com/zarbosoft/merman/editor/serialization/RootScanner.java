@@ -0,0 +1,187 @@
+package com.zarbosoft.merman.editor.serialization;
+
+import com.zarbosoft.merman.syntax.Syntax;
+import com.zarbosoft.rendaw.common.DeadCode;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Finds the byte ranges of the top level elements of a serialized document without tokenizing it.  For luxem
+ * these are the comma separated values at the root, for json the elements of the outermost array.
+ */
+public class RootScanner {
+	public static class Ranges {
+		public int[] starts = new int[1024];
+		public int[] ends = new int[1024];
+		public int size = 0;
+
+		private void add(final int start, final int end) {
+			if (size == starts.length) {
+				starts = Arrays.copyOf(starts, size * 2);
+				ends = Arrays.copyOf(ends, size * 2);
+			}
+			starts[size] = start;
+			ends[size] = end;
+			size += 1;
+		}
+	}
+
+	public static Ranges scan(final Syntax.BackType backType, final ByteBuffer data, final int start, final int end) {
+		return scan(backType, data, start, end, false);
+	}
+
+	/**
+	 * @param backType
+	 * @param data
+	 * @param start
+	 * @param end
+	 * @param inRoot   True if start is between elements within the root (after the opening bracket for json)
+	 * @return
+	 */
+	public static Ranges scan(
+			final Syntax.BackType backType, final ByteBuffer data, final int start, final int end, final boolean inRoot
+	) {
+		switch (backType) {
+			case LUXEM:
+				return scanLuxem(data, start, end);
+			case JSON:
+				return scanJSON(data, start, end, inRoot ? 1 : 0);
+			default:
+				throw new DeadCode();
+		}
+	}
+
+	/**
+	 * @param data
+	 * @param at       The first byte after the opening delimiter
+	 * @param end
+	 * @param terminal
+	 * @return The first byte after the closing delimiter
+	 */
+	private static int skipDelimited(final ByteBuffer data, int at, final int end, final byte terminal) {
+		while (at < end) {
+			final byte b = data.get(at);
+			if (b == '\\')
+				at += 2;
+			else if (b == terminal)
+				return at + 1;
+			else
+				at += 1;
+		}
+		return end;
+	}
+
+	private static Ranges scanLuxem(final ByteBuffer data, final int start, final int end) {
+		final Ranges out = new Ranges();
+		int depth = 0;
+		int elementStart = -1;
+		int at = start;
+		while (at < end) {
+			final byte b = data.get(at);
+			switch (b) {
+				case ' ':
+				case '\t':
+				case '\r':
+				case '\n':
+					at += 1;
+					break;
+				case '*':
+					at = skipDelimited(data, at + 1, end, (byte) '*');
+					break;
+				case '"':
+					if (depth == 0 && elementStart == -1)
+						elementStart = at;
+					at = skipDelimited(data, at + 1, end, (byte) '"');
+					break;
+				case '(':
+					if (depth == 0 && elementStart == -1)
+						elementStart = at;
+					at = skipDelimited(data, at + 1, end, (byte) ')');
+					break;
+				case '[':
+				case '{':
+					if (depth == 0 && elementStart == -1)
+						elementStart = at;
+					depth += 1;
+					at += 1;
+					break;
+				case ']':
+				case '}':
+					depth -= 1;
+					at += 1;
+					break;
+				case ',':
+					if (depth == 0 && elementStart != -1) {
+						out.add(elementStart, at);
+						elementStart = -1;
+					}
+					at += 1;
+					break;
+				case '\\':
+					if (depth == 0 && elementStart == -1)
+						elementStart = at;
+					at += 2;
+					break;
+				default:
+					if (depth == 0 && elementStart == -1)
+						elementStart = at;
+					at += 1;
+			}
+		}
+		if (elementStart != -1)
+			out.add(elementStart, end);
+		return out;
+	}
+
+	private static Ranges scanJSON(final ByteBuffer data, final int start, final int end, int depth) {
+		final Ranges out = new Ranges();
+		int elementStart = -1;
+		int at = start;
+		while (at < end) {
+			final byte b = data.get(at);
+			switch (b) {
+				case ' ':
+				case '\t':
+				case '\r':
+				case '\n':
+					at += 1;
+					break;
+				case '"':
+					if (depth == 1 && elementStart == -1)
+						elementStart = at;
+					at = skipDelimited(data, at + 1, end, (byte) '"');
+					break;
+				case '[':
+				case '{':
+					if (depth == 1 && elementStart == -1)
+						elementStart = at;
+					depth += 1;
+					at += 1;
+					break;
+				case ']':
+				case '}':
+					depth -= 1;
+					if (depth == 0) {
+						if (elementStart != -1)
+							out.add(elementStart, at);
+						return out;
+					}
+					at += 1;
+					break;
+				case ',':
+					if (depth == 1 && elementStart != -1) {
+						out.add(elementStart, at);
+						elementStart = -1;
+					}
+					at += 1;
+					break;
+				default:
+					if (depth == 1 && elementStart == -1)
+						elementStart = at;
+					at += 1;
+			}
+		}
+		return out;
+	}
+}
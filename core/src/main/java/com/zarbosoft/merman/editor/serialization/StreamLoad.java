@@ -0,0 +1,199 @@
+package com.zarbosoft.merman.editor.serialization;
+
+import com.zarbosoft.merman.document.Atom;
+import com.zarbosoft.merman.document.Document;
+import com.zarbosoft.merman.document.values.ValueArray;
+import com.zarbosoft.merman.editor.Context;
+import com.zarbosoft.merman.editor.history.changes.ChangeArray;
+import com.zarbosoft.merman.syntax.Syntax;
+import com.zarbosoft.pidgoon.events.Grammar;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Loads documents whose root is a flat array in batches, so the document can be displayed as soon as the first
+ * batch is parsed.  The file is read incrementally; each batch is the root elements completely read so far, parsed
+ * together.
+ * <p>
+ * The first batch is parsed when opened.  The remaining batches are parsed by run on a worker thread and appended
+ * to the document with append on the thread that owns the document.  Documents that can't be split are loaded
+ * whole when opened.
+ */
+public class StreamLoad {
+	/**
+	 * Minimum bytes read before parsing a batch (except at the end of the file).
+	 */
+	public static int batchSize = 256 * 1024;
+
+	public final Document document;
+	private final Syntax syntax;
+	private final String middle;
+	/**
+	 * Null if batches are read with DirectLoad
+	 */
+	private final Grammar grammar;
+	private final InputStream stream;
+	private byte[] buffer;
+	private int start = 0;
+	private int end = 0;
+	private boolean eof = false;
+	private boolean inRoot = false;
+	private volatile boolean cancelled = false;
+
+	/**
+	 * @param syntax
+	 * @return True if documents of this syntax are loaded in batches (otherwise open loads the whole document)
+	 */
+	public static boolean available(final Syntax syntax) {
+		return ParallelLoad.rootMiddle(syntax) != null;
+	}
+
+	public static StreamLoad open(final Syntax syntax, final Path path) throws IOException {
+		final String middle = ParallelLoad.rootMiddle(syntax);
+		if (middle == null)
+			return new StreamLoad(syntax, Load.load(syntax, path));
+		return new StreamLoad(syntax, middle, Load.open(syntax, path));
+	}
+
+	private StreamLoad(final Syntax syntax, final Document document) {
+		this.syntax = syntax;
+		this.document = document;
+		this.middle = null;
+		this.grammar = null;
+		this.stream = null;
+		this.eof = true;
+	}
+
+	private StreamLoad(final Syntax syntax, final String middle, final InputStream stream) throws IOException {
+		this.syntax = syntax;
+		this.middle = middle;
+		this.stream = stream;
+		this.buffer = new byte[batchSize * 2];
+		this.grammar = ParallelLoad.chunkGrammar(syntax, middle);
+		try {
+			List<Atom> first = next();
+			if (first == null)
+				first = Arrays.asList();
+			document = new Document(syntax, ParallelLoad.createRoot(syntax, middle, first));
+		} catch (final Throwable e) {
+			stream.close();
+			throw e;
+		}
+		if (eof && start == end)
+			stream.close();
+	}
+
+	/**
+	 * @return True if the document has been fully loaded
+	 */
+	public boolean complete() {
+		return eof && start == end;
+	}
+
+	/**
+	 * Parse the rest of the document.  Doesn't modify the document; pass the batches to append on the thread that
+	 * owns it.
+	 *
+	 * @param deliver Called with each batch, in order
+	 * @throws IOException
+	 */
+	public void run(final Consumer<List<Atom>> deliver) throws IOException {
+		try {
+			while (!cancelled) {
+				final List<Atom> batch = next();
+				if (batch == null)
+					break;
+				if (!batch.isEmpty())
+					deliver.accept(batch);
+			}
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Stop run after the current batch.  May be called from any thread.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Add a batch from run to the end of the root array.  Bypasses history.  Nothing before the end moves, so the
+	 * indices in history and the journal stay valid if the root was edited during the load.
+	 *
+	 * @param context
+	 * @param atoms
+	 */
+	public void append(final Context context, final List<Atom> atoms) {
+		final ValueArray array = (ValueArray) document.root.data.get(middle);
+		new ChangeArray(array, array.data.size(), 0, atoms).apply(context);
+	}
+
+	/**
+	 * @return The next batch (possibly empty), or null if there are no more elements
+	 * @throws IOException
+	 */
+	private List<Atom> next() throws IOException {
+		while (true) {
+			fill();
+			final ByteBuffer data = ByteBuffer.wrap(buffer);
+			final RootScanner.Ranges ranges = RootScanner.scan(syntax.backType, data, start, end, inRoot);
+			int count = ranges.size;
+			if (!eof) {
+				// The last element may be cut off
+				while (count > 0 && ranges.ends[count - 1] >= end)
+					count -= 1;
+			}
+			if (count == 0) {
+				if (eof) {
+					start = end;
+					return null;
+				}
+				if (end - start >= buffer.length / 2)
+					buffer = Arrays.copyOf(buffer, buffer.length * 2);
+				read();
+				continue;
+			}
+			final List<Atom> out =
+					ParallelLoad.parseChunk(syntax, middle, grammar, data, ranges.starts[0], ranges.ends[count - 1]);
+			// At the end of the file every element has been taken
+			start = eof ? end : ranges.ends[count - 1];
+			inRoot = true;
+			return out;
+		}
+	}
+
+	/**
+	 * Read until at least a batch is buffered or the file ends.
+	 *
+	 * @throws IOException
+	 */
+	private void fill() throws IOException {
+		while (!eof && end - start < batchSize)
+			read();
+	}
+
+	private void read() throws IOException {
+		if (eof)
+			return;
+		if (start > 0) {
+			System.arraycopy(buffer, start, buffer, 0, end - start);
+			end -= start;
+			start = 0;
+		}
+		if (end == buffer.length)
+			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+		final int read = stream.read(buffer, end, buffer.length - end);
+		if (read < 0)
+			eof = true;
+		else
+			end += read;
+	}
+}
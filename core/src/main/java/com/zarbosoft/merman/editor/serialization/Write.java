@@ -3,35 +3,169 @@ package com.zarbosoft.merman.editor.serialization;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
-import com.google.common.collect.ImmutableList;
 import com.zarbosoft.luxem.write.RawWriter;
 import com.zarbosoft.merman.document.Atom;
 import com.zarbosoft.merman.document.Document;
+import com.zarbosoft.merman.document.Snapshot;
 import com.zarbosoft.merman.document.values.ValueArray;
 import com.zarbosoft.merman.document.values.ValueAtom;
 import com.zarbosoft.merman.document.values.ValuePrimitive;
+import com.zarbosoft.merman.editor.serialization.binary.BinaryWriter;
 import com.zarbosoft.merman.syntax.Syntax;
-import com.zarbosoft.merman.syntax.back.*;
 import com.zarbosoft.rendaw.common.DeadCode;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 
 import static com.zarbosoft.rendaw.common.Common.uncheck;
 
 public class Write {
+	/**
+	 * Writes to a temporary file next to out then renames it over out, so out is never left partially written.
+	 *
+	 * @param document
+	 * @param out
+	 */
 	public static void write(final Document document, final Path out) {
+		final WriteCache.Session session = writeCached(document, null, out);
+		if (session != null)
+			session.commit();
+	}
+
+	/**
+	 * Like write, but writes the snapshot and the bytes of atoms unchanged since the previous save are copied from
+	 * that save's output.  May be called from any thread.
+	 * <p>
+	 * The cache keeps the whole output of a save, so cached saves are assembled in memory before they're written.
+	 * Compressed saves aren't cached and stream straight to the compressor.
+	 *
+	 * @param snapshot
+	 * @param out
+	 * @return The cache session to commit (on the thread that owns the document) once the save is accepted, or
+	 * null if the save wasn't cached
+	 */
+	public static WriteCache.Session writeCached(final Snapshot snapshot, final Path out) {
+		return writeCached(snapshot.document(), snapshot, out);
+	}
+
+	private static WriteCache.Session writeCached(final Document document, final Snapshot snapshot, final Path out) {
+		final Syntax syntax = document.syntax;
+		final WriteCache.Session session = Compression.of(syntax, out) == Syntax.CompressionType.NONE ?
+				document.writeCache.begin(syntax.backType, syntax.prettySave) :
+				null;
+		try {
+			replace(syntax, out, stream -> {
+				if (session == null) {
+					write(document.root, snapshot, syntax, syntax.backType, syntax.prettySave, stream, null);
+				} else {
+					write(document.root, snapshot, syntax, syntax.backType, syntax.prettySave, session.output, session);
+					session.output.writeTo(stream);
+				}
+			});
+		} catch (final Throwable e) {
+			if (session != null)
+				session.abandon();
+			throw e;
+		}
+		return session;
+	}
+
+	@FunctionalInterface
+	public interface StreamWriter {
+		void write(OutputStream stream) throws IOException;
+	}
+
+	/**
+	 * Write to a temporary file next to out then rename it over out.
+	 *
+	 * @param out
+	 * @param writer
+	 */
+	public static void replace(final Path out, final StreamWriter writer) {
 		uncheck(() -> {
-			try (OutputStream stream = Files.newOutputStream(out)) {
-				write(document.root, document.syntax, stream);
+			final Path absolute = out.toAbsolutePath();
+			final Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+			try {
+				try (OutputStream stream = Files.newOutputStream(temp)) {
+					writer.write(stream);
+				}
+				try {
+					Files.move(temp, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+				} catch (final AtomicMoveNotSupportedException e) {
+					Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+				}
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		});
+	}
+
+	/**
+	 * Like replace, but the data is compressed according to the syntax and out's extension.
+	 *
+	 * @param syntax
+	 * @param out
+	 * @param writer
+	 */
+	public static void replace(final Syntax syntax, final Path out, final StreamWriter writer) {
+		replace(out, raw -> {
+			try (OutputStream stream = Compression.output(syntax, out, raw)) {
+				writer.write(stream);
 			}
 		});
 	}
 
-	private static EventConsumer luxemEventConsumer(final RawWriter writer) {
+	/**
+	 * Passes writes through, except while holding when they're collected instead.
+	 */
+	private static class HoldingStream extends OutputStream {
+		private final OutputStream stream;
+		private final ByteArrayOutputStream held = new ByteArrayOutputStream();
+		private boolean holding = false;
+
+		private HoldingStream(final OutputStream stream) {
+			this.stream = stream;
+		}
+
+		private void hold() {
+			holding = true;
+		}
+
+		private byte[] release() {
+			holding = false;
+			final byte[] out = held.toByteArray();
+			held.reset();
+			return out;
+		}
+
+		@Override
+		public void write(final int b) throws IOException {
+			if (holding)
+				held.write(b);
+			else
+				stream.write(b);
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) throws IOException {
+			if (holding)
+				held.write(b, off, len);
+			else
+				stream.write(b, off, len);
+		}
+	}
+
+	private static EventConsumer luxemEventConsumer(final OutputStream target, final boolean pretty) {
+		final HoldingStream stream = new HoldingStream(target);
+		final RawWriter writer = pretty ? new RawWriter(stream, (byte) ' ', 4) : new RawWriter(stream);
 		return new EventConsumer() {
 			@Override
 			public void primitive(final String value) throws IOException {
@@ -92,6 +226,38 @@ public class Write {
 			public void jsonNull() {
 				throw new AssertionError();
 			}
+
+			@Override
+			public boolean raw(
+					final Syntax.BackType format, final byte[] source, final int start, final int end
+			) throws IOException {
+				if (format != Syntax.BackType.LUXEM)
+					return false;
+				// Let the writer place its own delimiters and indentation around a placeholder, then substitute.  The
+				// placeholder is the last thing written; delimiters and indentation never contain it or quotes.
+				stream.hold();
+				writer.primitive("_");
+				final byte[] framing = stream.release();
+				int placeholderStart = framing.length - 1;
+				while (framing[placeholderStart] != '_')
+					placeholderStart -= 1;
+				int placeholderEnd = placeholderStart + 1;
+				if (placeholderStart > 0 &&
+						framing[placeholderStart - 1] == '"' &&
+						placeholderEnd < framing.length &&
+						framing[placeholderEnd] == '"') {
+					placeholderStart -= 1;
+					placeholderEnd += 1;
+				}
+				target.write(framing, 0, placeholderStart);
+				target.write(source, start, end - start);
+				target.write(framing, placeholderEnd, framing.length - placeholderEnd);
+				return true;
+			}
+
+			@Override
+			public void flush() {
+			}
 		};
 	}
 
@@ -156,32 +322,191 @@ public class Write {
 			public void jsonNull() throws IOException {
 				generator.writeNull();
 			}
+
+			@Override
+			public boolean raw(
+					final Syntax.BackType format, final byte[] source, final int start, final int end
+			) throws IOException {
+				if (format != Syntax.BackType.JSON)
+					return false;
+				generator.writeRawValue(new String(source, start, end - start, StandardCharsets.UTF_8));
+				return true;
+			}
+
+			@Override
+			public void flush() throws IOException {
+				generator.flush();
+			}
+		};
+	}
+
+	private static EventConsumer binaryEventConsumer(final BinaryWriter writer) {
+		return new EventConsumer() {
+			@Override
+			public void primitive(final String value) throws IOException {
+				writer.primitive(value);
+			}
+
+			@Override
+			public void type(final String value) throws IOException {
+				writer.type(value);
+			}
+
+			@Override
+			public void arrayBegin() throws IOException {
+				writer.arrayBegin();
+			}
+
+			@Override
+			public void arrayEnd() throws IOException {
+				writer.arrayEnd();
+			}
+
+			@Override
+			public void recordBegin() throws IOException {
+				writer.objectBegin();
+			}
+
+			@Override
+			public void recordEnd() throws IOException {
+				writer.objectEnd();
+			}
+
+			@Override
+			public void key(final String s) throws IOException {
+				writer.key(s);
+			}
+
+			@Override
+			public void jsonInt(final String value) throws IOException {
+				writer.jsonInt(value);
+			}
+
+			@Override
+			public void jsonFloat(final String value) throws IOException {
+				writer.jsonFloat(value);
+			}
+
+			@Override
+			public void jsonTrue() throws IOException {
+				writer.jsonTrue();
+			}
+
+			@Override
+			public void jsonFalse() throws IOException {
+				writer.jsonFalse();
+			}
+
+			@Override
+			public void jsonNull() throws IOException {
+				writer.jsonNull();
+			}
+
+			@Override
+			public boolean raw(
+					final Syntax.BackType format, final byte[] source, final int start, final int end
+			) {
+				return false;
+			}
+
+			@Override
+			public void flush() {
+			}
 		};
 	}
 
 	public static void write(final Atom atom, final Syntax syntax, final OutputStream stream) {
+		write(atom, syntax, syntax.backType, stream);
+	}
+
+	/**
+	 * May be called from any thread.
+	 *
+	 * @param snapshot
+	 * @param stream
+	 */
+	public static void write(final Snapshot snapshot, final OutputStream stream) {
+		final Syntax syntax = snapshot.syntax;
+		write(snapshot.root, snapshot, syntax, syntax.backType, syntax.prettySave, stream, null);
+	}
+
+	/**
+	 * Write a document in a format other than the syntax's own.
+	 *
+	 * @param atom
+	 * @param syntax
+	 * @param backType
+	 * @param stream
+	 */
+	public static void write(
+			final Atom atom, final Syntax syntax, final Syntax.BackType backType, final OutputStream stream
+	) {
+		write(atom, null, syntax, backType, syntax.prettySave, stream, null);
+	}
+
+	/**
+	 * Write a document with a format and formatting other than the syntax's own.
+	 *
+	 * @param atom
+	 * @param syntax
+	 * @param backType
+	 * @param pretty   indent the output (ignored for binary)
+	 * @param stream
+	 */
+	public static void write(
+			final Atom atom,
+			final Syntax syntax,
+			final Syntax.BackType backType,
+			final boolean pretty,
+			final OutputStream stream
+	) {
+		write(atom, null, syntax, backType, pretty, stream, null);
+	}
+
+	/**
+	 * @param atom
+	 * @param snapshot If not null, the atom is read as it was when the snapshot was taken
+	 * @param syntax
+	 * @param backType
+	 * @param pretty
+	 * @param stream
+	 * @param session
+	 */
+	private static void write(
+			final Atom atom,
+			final Snapshot snapshot,
+			final Syntax syntax,
+			final Syntax.BackType backType,
+			final boolean pretty,
+			final OutputStream stream,
+			final WriteCache.Session session
+	) {
 		uncheck(() -> {
 			final EventConsumer writer;
-			switch (syntax.backType) {
+			OutputStream buffered = stream;
+			switch (backType) {
 				case LUXEM:
-					writer = luxemEventConsumer(syntax.prettySave ?
-							new RawWriter(stream, (byte) ' ', 4) :
-							new RawWriter(stream));
+					writer = luxemEventConsumer(stream, pretty);
 					break;
 				case JSON: {
 					final JsonGenerator generator = new JsonFactory().createGenerator(stream);
-					if (syntax.prettySave)
+					if (pretty)
 						generator.setPrettyPrinter(new DefaultPrettyPrinter());
 					writer = jsonEventConsumer(generator);
 					break;
 				}
+				case BINARY:
+					buffered = new BufferedOutputStream(stream);
+					writer = binaryEventConsumer(new BinaryWriter(buffered));
+					break;
 				default:
 					throw new DeadCode();
 			}
-			write(atom, writer);
-			if (syntax.backType == Syntax.BackType.LUXEM && syntax.prettySave)
+			write(atom, snapshot, writer, session);
+			writer.flush();
+			if (backType == Syntax.BackType.LUXEM && pretty)
 				stream.write('\n');
-			stream.flush();
+			buffered.flush();
 		});
 	}
 
@@ -189,11 +514,10 @@ public class Write {
 		uncheck(() -> {
 			JsonGenerator jsonGenerator = null;
 			final EventConsumer writer;
+			OutputStream buffered = stream;
 			switch (syntax.backType) {
 				case LUXEM:
-					writer = luxemEventConsumer(syntax.prettySave ?
-							new RawWriter(stream, (byte) ' ', 4) :
-							new RawWriter(stream));
+					writer = luxemEventConsumer(stream, syntax.prettySave);
 					break;
 				case JSON: {
 					jsonGenerator = new JsonFactory().createGenerator(stream);
@@ -203,11 +527,15 @@ public class Write {
 					writer = jsonEventConsumer(jsonGenerator);
 					break;
 				}
+				case BINARY:
+					buffered = new BufferedOutputStream(stream);
+					writer = binaryEventConsumer(new BinaryWriter(buffered));
+					break;
 				default:
 					throw new DeadCode();
 			}
 			for (final Atom atom : atoms)
-				write(atom, writer);
+				write(atom, null, writer, null);
 			switch (syntax.backType) {
 				case LUXEM:
 					if (syntax.prettySave)
@@ -216,31 +544,16 @@ public class Write {
 				case JSON:
 					jsonGenerator.writeEndArray();
 					break;
+				case BINARY:
+					break;
 				default:
 					throw new DeadCode();
 			}
-			stream.flush();
+			writer.flush();
+			buffered.flush();
 		});
 	}
 
-	private static class WriteArrayEnd {
-	}
-
-	private static class WriteRecordEnd {
-	}
-
-	private static class WriteKey {
-		public final String key;
-
-		private WriteKey(final String key) {
-			this.key = key;
-		}
-	}
-
-	private static abstract class WriteState {
-		public abstract void run(Deque<WriteState> stack, EventConsumer writer) throws IOException;
-	}
-
 	private interface EventConsumer {
 
 		void primitive(String value) throws IOException;
@@ -267,148 +580,273 @@ public class Write {
 
 		void jsonNull() throws IOException;
 
-	}
+		/**
+		 * Write a single element verbatim from previously serialized bytes.
+		 *
+		 * @param format the source document format
+		 * @param source
+		 * @param start
+		 * @param end
+		 * @return false if the element must be written as events instead
+		 * @throws IOException
+		 */
+		boolean raw(Syntax.BackType format, byte[] source, int start, int end) throws IOException;
+
+		/**
+		 * Push anything buffered by the writer to the output stream.
+		 *
+		 * @throws IOException
+		 */
+		void flush() throws IOException;
 
-	private static void writePart(
-			final Deque<WriteState> stack, final EventConsumer writer, final Atom base, final BackPart part
-	) throws IOException {
-		if (part instanceof BackPrimitive) {
-			writer.primitive(((BackPrimitive) part).value);
-		} else if (part instanceof BackJSONInt) {
-			writer.jsonInt(((BackJSONInt) part).value);
-		} else if (part instanceof BackJSONFloat) {
-			writer.jsonFloat(((BackJSONFloat) part).value);
-		} else if (part instanceof BackJSONTrue) {
-			writer.jsonTrue();
-		} else if (part instanceof BackJSONFalse) {
-			writer.jsonFalse();
-		} else if (part instanceof BackJSONNull) {
-			writer.jsonNull();
-		} else if (part instanceof BackType) {
-			final BackType typePart = (BackType) part;
-			writer.type(typePart.type);
-			stack.addLast(new WriteStateBack(base, ImmutableList.of(typePart.value).iterator()));
-		} else if (part instanceof BackArray) {
-			writer.arrayBegin();
-			stack.addLast(new WriteStateArrayEnd());
-			stack.addLast(new WriteStateBack(base, ((BackArray) part).elements.iterator()));
-		} else if (part instanceof BackRecord) {
-			writer.recordBegin();
-			stack.addLast(new WriteStateRecordEnd());
-			stack.addLast(new WriteStateRecord(base, ((BackRecord) part).pairs));
-		} else if (part instanceof BackDataType) {
-			final BackDataType typePart = (BackDataType) part;
-			writer.type(((ValuePrimitive) base.data.get(((BackDataType) part).type)).get());
-			stack.addLast(new WriteStateBack(base, ImmutableList.of(typePart.value).iterator()));
-		} else if (part instanceof BackDataPrimitive) {
-			writer.primitive(((ValuePrimitive) base.data.get(((BackDataPrimitive) part).middle)).get());
-		} else if (part instanceof BackDataJSONInt) {
-			writer.jsonInt(((ValuePrimitive) base.data.get(((BackDataJSONInt) part).middle)).get());
-		} else if (part instanceof BackDataJSONFloat) {
-			writer.jsonFloat(((ValuePrimitive) base.data.get(((BackDataJSONFloat) part).middle)).get());
-		} else if (part instanceof BackDataAtom) {
-			final Atom child = ((ValueAtom) base.data.get(((BackDataAtom) part).middle)).data;
-			stack.addLast(new WriteStateBack(child, child.type.back().iterator()));
-		} else if (part instanceof BackDataArray) {
-			writer.arrayBegin();
-			stack.addLast(new WriteStateArrayEnd());
-			stack.addLast(new WriteStateDataArray(((ValueArray) base.data.get(((BackDataArray) part).middle))));
-		} else if (part instanceof BackDataRootArray) {
-			stack.addLast(new WriteStateDataArray(((ValueArray) base.data.get(((BackDataRootArray) part).middle))));
-		} else if (part instanceof BackDataRecord) {
-			writer.recordBegin();
-			stack.addLast(new WriteStateRecordEnd());
-			stack.addLast(new WriteStateDataArray(((ValueArray) base.data.get(((BackDataRecord) part).middle))));
-		} else if (part instanceof BackDataKey) {
-			writer.key(((ValuePrimitive) base.data.get(((BackDataKey) part).middle)).get());
-		} else
-			throw new AssertionError(String.format("Unimplemented back part type [%s].\n",
-					part.getClass().getCanonicalName()
-			));
 	}
 
-	private static class WriteStateBack extends WriteState {
-		private final Atom base;
-		private final Iterator<BackPart> iterator;
-
-		public WriteStateBack(final Atom base, final Iterator<BackPart> iterator) {
-			this.base = base;
-			this.iterator = iterator;
-		}
-
-		@Override
-		public void run(final Deque<WriteState> stack, final EventConsumer writer) throws IOException {
-			if (!iterator.hasNext()) {
-				stack.removeLast();
-				return;
-			}
-			writePart(stack, writer, base, iterator.next());
-		}
+	/**
+	 * Execution state for one level of the document - either an atom's plan or an array's elements.  Reused
+	 * between levels of the same depth.
+	 */
+	private static class Frame {
+		Atom atom;
+		int version;
+		WritePlan plan;
+		int pc;
+		/**
+		 * The remaining elements, see ValueArray.elements
+		 */
+		Iterator<Object> array;
+
+		/**
+		 * For cached writes: the output position and nesting before the atom, and the atom's (or array owner's)
+		 * previous entry and start in the previous output
+		 */
+		int begin;
+		int nesting;
+		WriteCache.Entry entry;
+		int previous;
 	}
 
-	private static class WriteStateRecord extends WriteState {
-		private final Atom base;
-		private final Iterator<Map.Entry<String, BackPart>> iterator;
+	private static class Frames {
+		private Frame[] frames = new Frame[16];
+		private int depth = -1;
+		/**
+		 * Arrays and records open in the output, which determines indentation when pretty printing
+		 */
+		private int nesting = 0;
+
+		private Frame push() {
+			depth += 1;
+			if (depth == frames.length)
+				frames = Arrays.copyOf(frames, depth * 2);
+			Frame frame = frames[depth];
+			if (frame == null)
+				frame = frames[depth] = new Frame();
+			return frame;
+		}
 
-		private WriteStateRecord(final Atom base, final Map<String, BackPart> record) throws IOException {
-			this.base = base;
-			this.iterator = record.entrySet().iterator();
+		private Frame pushAtom(final Atom atom, final int version) {
+			final Frame frame = push();
+			frame.atom = atom;
+			frame.version = version;
+			frame.plan = atom.type.writePlan();
+			frame.pc = 0;
+			frame.array = null;
+			return frame;
 		}
 
-		@Override
-		public void run(final Deque<WriteState> stack, final EventConsumer writer) throws IOException {
-			if (!iterator.hasNext()) {
-				stack.removeLast();
-				return;
-			}
-			final Map.Entry<String, BackPart> next = iterator.next();
-			writer.key(next.getKey());
-			writePart(stack, writer, base, next.getValue());
+		private void pushArray(final List<Object> array, final Frame owner) {
+			final Frame frame = push();
+			frame.atom = null;
+			frame.array = array.iterator();
+			frame.entry = owner.entry;
+			frame.previous = owner.previous;
 		}
 	}
 
-	private static class WriteStateDataArray extends WriteState {
-		private final Iterator<Atom> iterator;
-
-		private WriteStateDataArray(final ValueArray array) throws IOException {
-			this.iterator = array.data.iterator();
+	/**
+	 * Start writing an atom.  With a cache session, if the atom is unchanged since the previous save its bytes are
+	 * copied from that save instead.
+	 *
+	 * @param frames
+	 * @param snapshot
+	 * @param writer
+	 * @param session
+	 * @param atom
+	 * @param parent   The frame the atom is written from, or null if the atom is the root
+	 * @throws IOException
+	 */
+	private static void enter(
+			final Frames frames,
+			final Snapshot snapshot,
+			final EventConsumer writer,
+			final WriteCache.Session session,
+			final Atom atom,
+			final Frame parent
+	) throws IOException {
+		if (session == null) {
+			frames.pushAtom(atom, 0);
+			return;
 		}
-
-		@Override
-		public void run(final Deque<WriteState> stack, final EventConsumer writer) throws IOException {
-			if (!iterator.hasNext()) {
-				stack.removeLast();
-				return;
-			}
-			final Atom next = iterator.next();
-			stack.addLast(new WriteStateBack(next, next.type.back().iterator()));
+		final int version = snapshot == null ? atom.version : snapshot.version(atom);
+		// May be cleared by edits while writing a snapshot
+		final WriteCache.Entry entry = atom.written;
+		writer.flush();
+		final int begin = session.output.size();
+		final int previous = parent == null ?
+				session.previousStart(entry, null, -1, true) :
+				session.previousStart(entry, parent.entry, parent.previous, false);
+		final int length = session.reusable(entry, version, previous, frames.nesting);
+		if (length >= 0 && writer.raw(session.format, session.previous, previous, previous + length)) {
+			writer.flush();
+			session.copied(atom, entry, version, begin, frames.nesting);
+			return;
 		}
+		final Frame frame = frames.pushAtom(atom, version);
+		frame.begin = begin;
+		frame.nesting = frames.nesting;
+		frame.entry = entry;
+		frame.previous = previous;
 	}
 
-	private static class WriteStateArrayEnd extends WriteState {
+	private static String primitive(final Snapshot snapshot, final Atom atom, final int slot) {
+		final ValuePrimitive value = (ValuePrimitive) atom.get(slot);
+		return snapshot == null ? value.get() : snapshot.primitive(value);
+	}
 
-		@Override
-		public void run(final Deque<WriteState> stack, final EventConsumer writer) throws IOException {
-			writer.arrayEnd();
-			stack.removeLast();
-		}
+	private static Atom atom(final Snapshot snapshot, final Atom atom, final int slot) {
+		final ValueAtom value = (ValueAtom) atom.get(slot);
+		return snapshot == null ? value.data : snapshot.atom(value);
 	}
 
-	private static class WriteStateRecordEnd extends WriteState {
+	private static List<Object> array(final Snapshot snapshot, final Atom atom, final int slot) {
+		final ValueArray value = (ValueArray) atom.get(slot);
+		return snapshot == null ? value.elements() : snapshot.array(value);
+	}
 
-		@Override
-		public void run(final Deque<WriteState> stack, final EventConsumer writer) throws IOException {
-			writer.recordEnd();
-			stack.removeLast();
-		}
+	/**
+	 * Write an element that hasn't been parsed by copying its bytes, or if the output is in another format by
+	 * parsing a detached copy and writing that.
+	 *
+	 * @param frames
+	 * @param snapshot
+	 * @param writer
+	 * @param session
+	 * @param element
+	 * @param parent
+	 * @throws IOException
+	 */
+	private static void enter(
+			final Frames frames,
+			final Snapshot snapshot,
+			final EventConsumer writer,
+			final WriteCache.Session session,
+			final LazyLoad.Unparsed element,
+			final Frame parent
+	) throws IOException {
+		final byte[] bytes = element.bytes();
+		if (writer.raw(element.format(), bytes, 0, bytes.length))
+			return;
+		enter(frames, snapshot, writer, session, element.parse(), parent);
 	}
 
-	public static void write(final Atom atom, final EventConsumer writer) {
-		final Deque<WriteState> stack = new ArrayDeque<>();
-		stack.addLast(new WriteStateBack(atom, atom.type.back().iterator()));
+	private static void write(
+			final Atom atom, final Snapshot snapshot, final EventConsumer writer, final WriteCache.Session session
+	) {
+		final Frames frames = new Frames();
 		uncheck(() -> {
-			while (!stack.isEmpty())
-				stack.getLast().run(stack, writer);
+			enter(frames, snapshot, writer, session, atom, null);
+			while (frames.depth >= 0) {
+				final Frame frame = frames.frames[frames.depth];
+				if (frame.array != null) {
+					if (!frame.array.hasNext()) {
+						frames.depth -= 1;
+						continue;
+					}
+					final Object element = frame.array.next();
+					if (element instanceof LazyLoad.Unparsed)
+						enter(frames, snapshot, writer, session, (LazyLoad.Unparsed) element, frame);
+					else
+						enter(frames, snapshot, writer, session, (Atom) element, frame);
+					continue;
+				}
+				final WritePlan plan = frame.plan;
+				if (frame.pc == plan.ops.length) {
+					if (session != null) {
+						writer.flush();
+						session.written(frame.atom, frame.entry, frame.version, frame.begin, frame.nesting);
+					}
+					frames.depth -= 1;
+					continue;
+				}
+				final int op = plan.ops[frame.pc];
+				final String operand = plan.operands[frame.pc];
+				final int slot = plan.slots[frame.pc];
+				frame.pc += 1;
+				switch (op) {
+					case WritePlan.primitive:
+						writer.primitive(operand);
+						break;
+					case WritePlan.type:
+						writer.type(operand);
+						break;
+					case WritePlan.key:
+						writer.key(operand);
+						break;
+					case WritePlan.jsonInt:
+						writer.jsonInt(operand);
+						break;
+					case WritePlan.jsonFloat:
+						writer.jsonFloat(operand);
+						break;
+					case WritePlan.jsonTrue:
+						writer.jsonTrue();
+						break;
+					case WritePlan.jsonFalse:
+						writer.jsonFalse();
+						break;
+					case WritePlan.jsonNull:
+						writer.jsonNull();
+						break;
+					case WritePlan.arrayBegin:
+						writer.arrayBegin();
+						frames.nesting += 1;
+						break;
+					case WritePlan.arrayEnd:
+						writer.arrayEnd();
+						frames.nesting -= 1;
+						break;
+					case WritePlan.recordBegin:
+						writer.recordBegin();
+						frames.nesting += 1;
+						break;
+					case WritePlan.recordEnd:
+						writer.recordEnd();
+						frames.nesting -= 1;
+						break;
+					case WritePlan.dataType:
+						writer.type(primitive(snapshot, frame.atom, slot));
+						break;
+					case WritePlan.dataPrimitive:
+						writer.primitive(primitive(snapshot, frame.atom, slot));
+						break;
+					case WritePlan.dataKey:
+						writer.key(primitive(snapshot, frame.atom, slot));
+						break;
+					case WritePlan.dataJsonInt:
+						writer.jsonInt(primitive(snapshot, frame.atom, slot));
+						break;
+					case WritePlan.dataJsonFloat:
+						writer.jsonFloat(primitive(snapshot, frame.atom, slot));
+						break;
+					case WritePlan.dataAtom:
+						enter(frames, snapshot, writer, session, atom(snapshot, frame.atom, slot), frame);
+						break;
+					case WritePlan.dataArray:
+						frames.pushArray(array(snapshot, frame.atom, slot), frame);
+						break;
+					default:
+						throw new DeadCode();
+				}
+			}
 		});
 	}
 }
@@ -0,0 +1,252 @@
+package com.zarbosoft.merman.editor.serialization;
+
+import com.zarbosoft.merman.document.Atom;
+import com.zarbosoft.merman.syntax.Syntax;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The output of the last save of a document, kept so the next save can copy the bytes of unchanged atoms rather
+ * than serializing them again.
+ * <p>
+ * Every atom written records where its bytes were placed in an {@link Entry}.  When an unchanged atom is copied its
+ * descendants' entries are left as they were, so an entry is only absolute within the save that produced it -
+ * descendants are located relative to where their ancestor was in that save.
+ */
+public class WriteCache {
+	/**
+	 * Where an atom's bytes were placed.  Ranges exclude any delimiters or whitespace around the atom.
+	 */
+	public static class Entry {
+		private final int generation;
+		private final int start;
+		private final int end;
+		/**
+		 * The atom version when written; if the atom has changed since the bytes are stale
+		 */
+		private final int version;
+		/**
+		 * The save in which the atom's children were written, and where this atom started in that save
+		 */
+		private final int childGeneration;
+		private final int childStart;
+		/**
+		 * The output nesting the atom was written at; pretty printed bytes are indented for this depth
+		 */
+		private final int nesting;
+
+		private Entry(
+				final int generation,
+				final int start,
+				final int end,
+				final int version,
+				final int childGeneration,
+				final int childStart,
+				final int nesting
+		) {
+			this.generation = generation;
+			this.start = start;
+			this.end = end;
+			this.version = version;
+			this.childGeneration = childGeneration;
+			this.childStart = childStart;
+			this.nesting = nesting;
+		}
+	}
+
+	static class Output extends ByteArrayOutputStream {
+		byte[] array() {
+			return buf;
+		}
+	}
+
+	private int generation = 0;
+	private byte[] buffer;
+	private Syntax.BackType format;
+	private boolean pretty;
+	private boolean busy = false;
+
+	/**
+	 * @param format
+	 * @param pretty
+	 * @return A new session, or null if another save is in progress (the save should proceed uncached)
+	 */
+	synchronized Session begin(final Syntax.BackType format, final boolean pretty) {
+		if (busy)
+			return null;
+		if (format == Syntax.BackType.BINARY)
+			return null;
+		busy = true;
+		final boolean reuse = buffer != null && this.format == format && this.pretty == pretty;
+		return new Session(format, pretty, reuse ? generation : -1, reuse ? buffer : null, generation + 1);
+	}
+
+	/**
+	 * A single cached save.  The output is accumulated in memory; once it's been stored the session must be either
+	 * committed or abandoned.
+	 */
+	public class Session {
+		final Syntax.BackType format;
+		final boolean pretty;
+		private final int previousGeneration;
+		final byte[] previous;
+		private final int generation;
+		final Output output = new Output();
+		private final List<Atom> atoms = new ArrayList<>();
+		private final List<Entry> bases = new ArrayList<>();
+		private final List<Entry> entries = new ArrayList<>();
+
+		private Session(
+				final Syntax.BackType format,
+				final boolean pretty,
+				final int previousGeneration,
+				final byte[] previous,
+				final int generation
+		) {
+			this.format = format;
+			this.pretty = pretty;
+			this.previousGeneration = previousGeneration;
+			this.previous = previous;
+			this.generation = generation;
+		}
+
+		/**
+		 * @param entry        The atom's entry
+		 * @param parentEntry  The entry of the atom's parent, or null if the atom is the root
+		 * @param parentStart  Where the parent started in the previous save, or -1 if root or unknown
+		 * @param root
+		 * @return Where the atom starts in the previous save, or -1 if unknown
+		 */
+		int previousStart(final Entry entry, final Entry parentEntry, final int parentStart, final boolean root) {
+			if (entry == null || previous == null)
+				return -1;
+			if (root)
+				return entry.generation == previousGeneration ? entry.start : -1;
+			if (parentStart < 0 || parentEntry == null || entry.generation != parentEntry.childGeneration)
+				return -1;
+			return entry.start - parentEntry.childStart + parentStart;
+		}
+
+		/**
+		 * @param entry         The atom's entry
+		 * @param version       The version of the atom being written
+		 * @param previousStart
+		 * @param nesting       The output nesting the atom is being written at
+		 * @return The length of the atom's bytes in the previous save, or -1 if they can't be reused
+		 */
+		int reusable(final Entry entry, final int version, final int previousStart, final int nesting) {
+			if (previousStart < 0 || entry.version != version)
+				return -1;
+			if (pretty && entry.nesting != nesting)
+				return -1;
+			return entry.end - entry.start;
+		}
+
+		/**
+		 * Record an atom serialized from scratch.
+		 *
+		 * @param atom
+		 * @param old     The atom's entry when it was written
+		 * @param version The version of the atom written
+		 * @param begin   output position before the atom was written
+		 * @param nesting output nesting the atom was written at
+		 */
+		void written(final Atom atom, final Entry old, final int version, final int begin, final int nesting) {
+			final int start = trimStart(begin);
+			final int end = trimEnd(start);
+			record(atom, old, new Entry(generation, start, end, version, generation, start, nesting));
+		}
+
+		/**
+		 * Record an atom copied from the previous save.
+		 *
+		 * @param atom
+		 * @param old     The atom's entry, which the bytes were copied from
+		 * @param version The version of the atom written
+		 * @param begin   output position before the atom was written
+		 * @param nesting output nesting the atom was written at
+		 */
+		void copied(final Atom atom, final Entry old, final int version, final int begin, final int nesting) {
+			final int start = trimStart(begin);
+			final int end = trimEnd(start);
+			record(atom, old, new Entry(
+					generation,
+					start,
+					end,
+					version,
+					old.childGeneration,
+					old.childStart,
+					nesting
+			));
+		}
+
+		private void record(final Atom atom, final Entry base, final Entry entry) {
+			atoms.add(atom);
+			bases.add(base);
+			entries.add(entry);
+		}
+
+		private int trimStart(int at) {
+			final byte[] data = output.array();
+			final int limit = output.size();
+			while (at < limit && isDelimiter(data[at]))
+				at += 1;
+			return at;
+		}
+
+		private int trimEnd(final int start) {
+			final byte[] data = output.array();
+			int at = output.size();
+			while (at > start && isDelimiter(data[at - 1]))
+				at -= 1;
+			return at;
+		}
+
+		/**
+		 * Store the output and the atom entries for use by the next save.  Must be called on the thread that owns
+		 * the document.
+		 * <p>
+		 * If a snapshot was written, atoms modified since are still updated (their changed versions will
+		 * cause them to be written again) but atoms that have been moved (indicated by a new entry, or a new version
+		 * with no entry) are skipped since their position relative to their parent is no longer known.
+		 */
+		public void commit() {
+			synchronized (WriteCache.this) {
+				WriteCache.this.generation = generation;
+				WriteCache.this.buffer = output.array();
+				WriteCache.this.format = format;
+				WriteCache.this.pretty = pretty;
+				busy = false;
+			}
+			for (int i = 0; i < atoms.size(); ++i) {
+				final Atom atom = atoms.get(i);
+				final Entry base = bases.get(i);
+				final Entry entry = entries.get(i);
+				if (atom.written != base)
+					continue;
+				if (base == null && atom.version != entry.version)
+					continue;
+				atom.written = entry;
+			}
+		}
+
+		/**
+		 * Discard the session, for example if storing the output failed.
+		 */
+		public void abandon() {
+			synchronized (WriteCache.this) {
+				busy = false;
+			}
+		}
+	}
+
+	/**
+	 * @param b
+	 * @return True for bytes the writers place between values but never at the start or end of one
+	 */
+	private static boolean isDelimiter(final byte b) {
+		return b == ',' || b == ':' || b == ' ' || b == '\t' || b == '\n' || b == '\r';
+	}
+}
@@ -0,0 +1,123 @@
+package com.zarbosoft.merman.editor.serialization;
+
+import com.zarbosoft.merman.syntax.AtomType;
+import com.zarbosoft.merman.syntax.back.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The back parts of an atom type flattened into a sequence of write instructions.  Each instruction has a single
+ * operand: literal text, or the middle id the value is read from.  For data instructions slots holds the middle's
+ * ordinal in the atom's value array (otherwise -1).
+ */
+public class WritePlan {
+	public static final int primitive = 0;
+	public static final int type = 1;
+	public static final int key = 2;
+	public static final int jsonInt = 3;
+	public static final int jsonFloat = 4;
+	public static final int jsonTrue = 5;
+	public static final int jsonFalse = 6;
+	public static final int jsonNull = 7;
+	public static final int arrayBegin = 8;
+	public static final int arrayEnd = 9;
+	public static final int recordBegin = 10;
+	public static final int recordEnd = 11;
+	public static final int dataType = 12;
+	public static final int dataPrimitive = 13;
+	public static final int dataKey = 14;
+	public static final int dataJsonInt = 15;
+	public static final int dataJsonFloat = 16;
+	/**
+	 * Write the atom in the middle with its own plan
+	 */
+	public static final int dataAtom = 17;
+	/**
+	 * Write each atom in the middle with its own plan, without delimiters
+	 */
+	public static final int dataArray = 18;
+
+	public final int[] ops;
+	public final String[] operands;
+	public final int[] slots;
+
+	private WritePlan(final AtomType atomType, final List<Integer> ops, final List<String> operands) {
+		this.ops = ops.stream().mapToInt(i -> i).toArray();
+		this.operands = operands.toArray(new String[operands.size()]);
+		this.slots = new int[this.ops.length];
+		for (int i = 0; i < this.ops.length; ++i)
+			slots[i] = this.ops[i] >= dataType ? atomType.slot(this.operands[i]) : -1;
+	}
+
+	public static WritePlan compile(final AtomType atomType) {
+		final List<Integer> ops = new ArrayList<>();
+		final List<String> operands = new ArrayList<>();
+		for (final BackPart part : atomType.back())
+			compile(ops, operands, part);
+		return new WritePlan(atomType, ops, operands);
+	}
+
+	private static void add(final List<Integer> ops, final List<String> operands, final int op, final String operand) {
+		ops.add(op);
+		operands.add(operand);
+	}
+
+	private static void compile(final List<Integer> ops, final List<String> operands, final BackPart part) {
+		if (part instanceof BackPrimitive) {
+			add(ops, operands, primitive, ((BackPrimitive) part).value);
+		} else if (part instanceof BackJSONInt) {
+			add(ops, operands, jsonInt, ((BackJSONInt) part).value);
+		} else if (part instanceof BackJSONFloat) {
+			add(ops, operands, jsonFloat, ((BackJSONFloat) part).value);
+		} else if (part instanceof BackJSONTrue) {
+			add(ops, operands, jsonTrue, null);
+		} else if (part instanceof BackJSONFalse) {
+			add(ops, operands, jsonFalse, null);
+		} else if (part instanceof BackJSONNull) {
+			add(ops, operands, jsonNull, null);
+		} else if (part instanceof BackType) {
+			add(ops, operands, type, ((BackType) part).type);
+			compile(ops, operands, ((BackType) part).value);
+		} else if (part instanceof BackArray) {
+			add(ops, operands, arrayBegin, null);
+			for (final BackPart element : ((BackArray) part).elements)
+				compile(ops, operands, element);
+			add(ops, operands, arrayEnd, null);
+		} else if (part instanceof BackRecord) {
+			add(ops, operands, recordBegin, null);
+			for (final Map.Entry<String, BackPart> pair : ((BackRecord) part).pairs.entrySet()) {
+				add(ops, operands, key, pair.getKey());
+				compile(ops, operands, pair.getValue());
+			}
+			add(ops, operands, recordEnd, null);
+		} else if (part instanceof BackDataType) {
+			add(ops, operands, dataType, ((BackDataType) part).type);
+			compile(ops, operands, ((BackDataType) part).value);
+		} else if (part instanceof BackDataPrimitive) {
+			add(ops, operands, dataPrimitive, ((BackDataPrimitive) part).middle);
+		} else if (part instanceof BackDataJSONInt) {
+			add(ops, operands, dataJsonInt, ((BackDataJSONInt) part).middle);
+		} else if (part instanceof BackDataJSONFloat) {
+			add(ops, operands, dataJsonFloat, ((BackDataJSONFloat) part).middle);
+		} else if (part instanceof BackDataAtom) {
+			add(ops, operands, dataAtom, ((BackDataAtom) part).middle);
+		} else if (part instanceof BackDataArray) {
+			add(ops, operands, arrayBegin, null);
+			add(ops, operands, dataArray, ((BackDataArray) part).middle);
+			add(ops, operands, arrayEnd, null);
+		} else if (part instanceof BackDataRootArray) {
+			add(ops, operands, dataArray, ((BackDataRootArray) part).middle);
+		} else if (part instanceof BackDataRecord) {
+			add(ops, operands, recordBegin, null);
+			add(ops, operands, dataArray, ((BackDataRecord) part).middle);
+			add(ops, operands, recordEnd, null);
+		} else if (part instanceof BackDataKey) {
+			add(ops, operands, dataKey, ((BackDataKey) part).middle);
+		} else
+			throw new AssertionError(String.format("Unimplemented back part type [%s].\n",
+					part.getClass().getCanonicalName()
+			));
+	}
+}
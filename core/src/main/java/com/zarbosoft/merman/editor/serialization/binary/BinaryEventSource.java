@@ -0,0 +1,175 @@
+package com.zarbosoft.merman.editor.serialization.binary;
+
+import com.zarbosoft.merman.document.InvalidDocument;
+import com.zarbosoft.merman.editor.backevents.*;
+import com.zarbosoft.merman.editor.serialization.EventSource;
+import com.zarbosoft.merman.editor.serialization.Interner;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.zarbosoft.rendaw.common.Common.uncheck;
+
+public class BinaryEventSource implements EventSource {
+	/**
+	 * Strings are read in pieces of at most this many bytes, so a corrupt length can't allocate more memory than the
+	 * data actually present.
+	 */
+	private static final int chunkSize = 64 * 1024;
+
+	private final InputStream stream;
+	private final List<String> strings = new ArrayList<>();
+	private final Interner interner = new Interner();
+	private long offset = 0;
+	private BackEvent peeked = null;
+
+	public BinaryEventSource(final InputStream stream) {
+		this.stream = new BufferedInputStream(stream);
+		uncheck(() -> {
+			for (final byte expected : BinaryFormat.magic) {
+				if (read() != (expected & 0xFF))
+					throw new InvalidDocument("Not a binary merman document.");
+			}
+		});
+	}
+
+	/**
+	 * @return The next byte or -1 at the end of the stream
+	 * @throws IOException
+	 */
+	private int read() throws IOException {
+		final int out = stream.read();
+		if (out != -1)
+			offset += 1;
+		return out;
+	}
+
+	private int require() throws IOException {
+		final int out = read();
+		if (out == -1)
+			throw new InvalidDocument(String.format("Unexpected end of binary document at byte %s.", offset));
+		return out;
+	}
+
+	/**
+	 * @return A value from 0 to Integer.MAX_VALUE
+	 * @throws IOException
+	 */
+	private int varint() throws IOException {
+		final long start = offset;
+		int out = 0;
+		int shift = 0;
+		while (true) {
+			final int next = require();
+			// The fifth byte may only hold the 3 bits left below the sign bit
+			if (shift == 28 && (next & 0xF8) != 0)
+				throw new InvalidDocument(String.format("Malformed length at byte %s.", start));
+			out |= (next & 0x7F) << shift;
+			if ((next & 0x80) == 0)
+				return out;
+			shift += 7;
+		}
+	}
+
+	private String string() throws IOException {
+		final long start = offset;
+		final int length = varint();
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.min(length, chunkSize));
+		final byte[] chunk = new byte[Math.min(length, chunkSize)];
+		int remaining = length;
+		while (remaining > 0) {
+			final int count = stream.read(chunk, 0, Math.min(remaining, chunk.length));
+			if (count == -1)
+				throw new InvalidDocument(String.format("String of %s bytes at byte %s runs past the end of the " +
+						"document at byte %s.", length, start, offset));
+			bytes.write(chunk, 0, count);
+			offset += count;
+			remaining -= count;
+		}
+		return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private String interned() throws IOException {
+		final long start = offset;
+		final int id = varint();
+		if (id == 0) {
+			final String out = string();
+			strings.add(out);
+			return out;
+		}
+		if (id > strings.size())
+			throw new InvalidDocument(String.format("Unknown string id %s at byte %s.", id - 1, start));
+		return strings.get(id - 1);
+	}
+
+	private BackEvent decode() throws IOException {
+		final int tag = read();
+		switch (tag) {
+			case -1:
+				return null;
+			case BinaryFormat.objectOpen:
+				return EObjectOpenEvent.instance;
+			case BinaryFormat.objectClose:
+				return EObjectCloseEvent.instance;
+			case BinaryFormat.arrayOpen:
+				return EArrayOpenEvent.instance;
+			case BinaryFormat.arrayClose:
+				return EArrayCloseEvent.instance;
+			case BinaryFormat.key:
+				return new EKeyEvent(interned());
+			case BinaryFormat.type:
+				return new ETypeEvent(interned());
+			case BinaryFormat.primitive:
+				return new EPrimitiveEvent(interner.intern(string()));
+			case BinaryFormat.jsonInt:
+				return new JIntEvent(interner.intern(string()));
+			case BinaryFormat.jsonFloat:
+				return new JFloatEvent(interner.intern(string()));
+			case BinaryFormat.jsonTrue:
+				return JTrueEvent.instance;
+			case BinaryFormat.jsonFalse:
+				return JFalseEvent.instance;
+			case BinaryFormat.jsonNull:
+				return JNullEvent.instance;
+			default:
+				throw new InvalidDocument(String.format("Unknown event tag %s at byte %s.", tag, offset - 1));
+		}
+	}
+
+	@Override
+	public BackEvent peek() {
+		if (peeked == null)
+			peeked = uncheck(() -> decode());
+		return peeked;
+	}
+
+	@Override
+	public BackEvent next() {
+		final BackEvent out = peek();
+		peeked = null;
+		return out;
+	}
+
+	@Override
+	public String position() {
+		return String.format("byte %s", offset);
+	}
+
+	/**
+	 * @return The current location, unaffected by later reads; its toString is position
+	 */
+	public Object mark() {
+		final long offset = this.offset;
+		return new Object() {
+			@Override
+			public String toString() {
+				return String.format("byte %s", offset);
+			}
+		};
+	}
+}
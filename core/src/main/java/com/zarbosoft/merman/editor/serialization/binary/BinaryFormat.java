@@ -0,0 +1,28 @@
+package com.zarbosoft.merman.editor.serialization.binary;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary documents are a header followed by a sequence of events.  Each event is a single tag byte, followed by a
+ * string for keys, types and primitives.
+ * <p>
+ * Key and type strings are interned in a per-document table: a varint of 0 introduces a new string which takes the
+ * next table id, otherwise the varint is the table id plus 1.  Other strings are a varint byte length followed by
+ * UTF-8 bytes.  JSON numbers are stored as text to preserve their exact representation.
+ */
+public class BinaryFormat {
+	public static final byte[] magic = "merman\u0000\u0001".getBytes(StandardCharsets.US_ASCII);
+
+	public static final int objectOpen = 1;
+	public static final int objectClose = 2;
+	public static final int arrayOpen = 3;
+	public static final int arrayClose = 4;
+	public static final int key = 5;
+	public static final int type = 6;
+	public static final int primitive = 7;
+	public static final int jsonInt = 8;
+	public static final int jsonFloat = 9;
+	public static final int jsonTrue = 10;
+	public static final int jsonFalse = 11;
+	public static final int jsonNull = 12;
+}
@@ -0,0 +1,70 @@
+package com.zarbosoft.merman.editor.serialization.binary;
+
+import com.zarbosoft.merman.editor.backevents.BackEvent;
+import com.zarbosoft.pidgoon.events.EventStream;
+import com.zarbosoft.pidgoon.events.Store;
+import com.zarbosoft.pidgoon.internal.BaseParse;
+import com.zarbosoft.pidgoon.internal.Callback;
+
+import java.io.InputStream;
+import java.util.Map;
+
+import static com.zarbosoft.rendaw.common.Common.uncheck;
+
+public class BinaryParse<O> extends BaseParse<BinaryParse<O>> {
+
+	private int eventUncertainty = 20;
+
+	private BinaryParse(final BinaryParse<O> other) {
+		super(other);
+		this.eventUncertainty = other.eventUncertainty;
+	}
+
+	@Override
+	protected BinaryParse<O> split() {
+		return new BinaryParse<>(this);
+	}
+
+	public BinaryParse() {
+	}
+
+	public BinaryParse<O> eventUncertainty(final int limit) {
+		if (eventUncertainty != 20)
+			throw new IllegalArgumentException("Max event uncertainty already set");
+		final BinaryParse<O> out = split();
+		out.eventUncertainty = limit;
+		return out;
+	}
+
+	/**
+	 * Positions are passed as marks, so they're only rendered if pidgoon reports an error.
+	 *
+	 * @param stream
+	 * @param event
+	 * @param source
+	 * @return
+	 */
+	private static <O> EventStream<O> push(
+			final EventStream<O> stream, final BackEvent event, final BinaryEventSource source
+	) {
+		return stream.push(event, source.mark());
+	}
+
+	public O parse(final InputStream stream) {
+		return uncheck(() -> {
+			EventStream<O> eventStream = new com.zarbosoft.pidgoon.events.Parse<O>()
+					.grammar(grammar)
+					.root(root)
+					.stack(initialStack)
+					.errorHistory(errorHistoryLimit)
+					.dumpAmbiguity(dumpAmbiguity)
+					.uncertainty(eventUncertainty)
+					.callbacks((Map<Object, Callback<Store>>) (Object) callbacks)
+					.parse();
+			final BinaryEventSource source = new BinaryEventSource(stream);
+			while (source.peek() != null)
+				eventStream = push(eventStream, source.next(), source);
+			return eventStream.finish();
+		});
+	}
+}
@@ -0,0 +1,94 @@
+package com.zarbosoft.merman.editor.serialization.binary;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+public class BinaryWriter {
+	private final OutputStream stream;
+	private final Map<String, Integer> strings = new HashMap<>();
+
+	public BinaryWriter(final OutputStream stream) throws IOException {
+		this.stream = stream;
+		stream.write(BinaryFormat.magic);
+	}
+
+	private void varint(int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			stream.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		stream.write(value);
+	}
+
+	private void string(final String value) throws IOException {
+		final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		varint(bytes.length);
+		stream.write(bytes);
+	}
+
+	private void interned(final String value) throws IOException {
+		final Integer id = strings.get(value);
+		if (id == null) {
+			strings.put(value, strings.size());
+			varint(0);
+			string(value);
+		} else
+			varint(id + 1);
+	}
+
+	public void objectBegin() throws IOException {
+		stream.write(BinaryFormat.objectOpen);
+	}
+
+	public void objectEnd() throws IOException {
+		stream.write(BinaryFormat.objectClose);
+	}
+
+	public void arrayBegin() throws IOException {
+		stream.write(BinaryFormat.arrayOpen);
+	}
+
+	public void arrayEnd() throws IOException {
+		stream.write(BinaryFormat.arrayClose);
+	}
+
+	public void key(final String value) throws IOException {
+		stream.write(BinaryFormat.key);
+		interned(value);
+	}
+
+	public void type(final String value) throws IOException {
+		stream.write(BinaryFormat.type);
+		interned(value);
+	}
+
+	public void primitive(final String value) throws IOException {
+		stream.write(BinaryFormat.primitive);
+		string(value);
+	}
+
+	public void jsonInt(final String value) throws IOException {
+		stream.write(BinaryFormat.jsonInt);
+		string(value);
+	}
+
+	public void jsonFloat(final String value) throws IOException {
+		stream.write(BinaryFormat.jsonFloat);
+		string(value);
+	}
+
+	public void jsonTrue() throws IOException {
+		stream.write(BinaryFormat.jsonTrue);
+	}
+
+	public void jsonFalse() throws IOException {
+		stream.write(BinaryFormat.jsonFalse);
+	}
+
+	public void jsonNull() throws IOException {
+		stream.write(BinaryFormat.jsonNull);
+	}
+}
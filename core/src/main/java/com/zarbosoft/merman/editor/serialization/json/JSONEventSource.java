@@ -0,0 +1,91 @@
+package com.zarbosoft.merman.editor.serialization.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.zarbosoft.merman.editor.backevents.*;
+import com.zarbosoft.merman.editor.serialization.EventSource;
+import com.zarbosoft.merman.editor.serialization.Interner;
+import com.zarbosoft.merman.editor.serialization.json.path.JSONPosition;
+import com.zarbosoft.rendaw.common.DeadCode;
+
+import java.io.InputStream;
+
+import static com.zarbosoft.rendaw.common.Common.uncheck;
+
+public class JSONEventSource implements EventSource {
+	private final JsonParser parser;
+	private final JSONPosition position = new JSONPosition();
+	private BackEvent peeked = null;
+	private final Interner interner = new Interner();
+
+	public JSONEventSource(final InputStream stream) {
+		parser = uncheck(() -> new JsonFactory().createParser(stream));
+	}
+
+	private BackEvent decode() {
+		return uncheck(() -> {
+			final JsonToken token = parser.nextToken();
+			if (token == null)
+				return null;
+			switch (token) {
+				case START_OBJECT:
+					position.objectOpen();
+					return EObjectOpenEvent.instance;
+				case END_OBJECT:
+					position.close();
+					return EObjectCloseEvent.instance;
+				case START_ARRAY:
+					position.arrayOpen();
+					return EArrayOpenEvent.instance;
+				case END_ARRAY:
+					position.close();
+					return EArrayCloseEvent.instance;
+				case FIELD_NAME: {
+					final String key = parser.getCurrentName();
+					position.key(key);
+					return new EKeyEvent(interner.intern(key));
+				}
+				case VALUE_STRING:
+					position.primitive();
+					return new EPrimitiveEvent(interner.intern(parser.getText()));
+				case VALUE_NUMBER_INT:
+					position.primitive();
+					return new JIntEvent(interner.intern(parser.getText()));
+				case VALUE_NUMBER_FLOAT:
+					position.primitive();
+					return new JFloatEvent(interner.intern(parser.getText()));
+				case VALUE_TRUE:
+					position.primitive();
+					return JTrueEvent.instance;
+				case VALUE_FALSE:
+					position.primitive();
+					return JFalseEvent.instance;
+				case VALUE_NULL:
+					position.primitive();
+					return JNullEvent.instance;
+				default:
+					throw new DeadCode();
+			}
+		});
+	}
+
+	@Override
+	public BackEvent peek() {
+		if (peeked == null)
+			peeked = decode();
+		return peeked;
+	}
+
+	@Override
+	public BackEvent next() {
+		final BackEvent out = peek();
+		peeked = null;
+		return out;
+	}
+
+	@Override
+	public String position() {
+		return position.toString();
+	}
+}
@@ -4,8 +4,8 @@ import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.zarbosoft.merman.editor.backevents.*;
-import com.zarbosoft.merman.editor.serialization.json.path.JSONObjectPath;
-import com.zarbosoft.merman.editor.serialization.json.path.JSONPath;
+import com.zarbosoft.merman.editor.serialization.Interner;
+import com.zarbosoft.merman.editor.serialization.json.path.JSONPosition;
 import com.zarbosoft.pidgoon.events.EventStream;
 import com.zarbosoft.pidgoon.events.Store;
 import com.zarbosoft.pidgoon.internal.BaseParse;
@@ -48,6 +48,20 @@ public class JSONParse<O> extends BaseParse<JSONParse<O>> {
 		return parse(new ByteArrayInputStream(string.getBytes(StandardCharsets.UTF_8)));
 	}
 
+	/**
+	 * Positions are passed as marks, so paths are only rendered if pidgoon reports an error.
+	 *
+	 * @param stream
+	 * @param event
+	 * @param position
+	 * @return
+	 */
+	private static <O> EventStream<O> push(
+			final EventStream<O> stream, final BackEvent event, final JSONPosition position
+	) {
+		return stream.push(event, position.mark());
+	}
+
 	public O parse(final InputStream stream) {
 		return uncheck(() -> {
 			EventStream<O> eventStream = new com.zarbosoft.pidgoon.events.Parse<O>()
@@ -59,7 +73,8 @@ public class JSONParse<O> extends BaseParse<JSONParse<O>> {
 					.uncertainty(eventUncertainty)
 					.callbacks((Map<Object, Callback<Store>>) (Object) callbacks)
 					.parse();
-			JSONPath path = new JSONObjectPath(null);
+			final JSONPosition position = new JSONPosition();
+			final Interner interner = new Interner();
 			final JsonParser stream1 = new JsonFactory().createParser(stream);
 			while (true) {
 				final JsonToken token = stream1.nextToken();
@@ -70,72 +85,62 @@ public class JSONParse<O> extends BaseParse<JSONParse<O>> {
 						// Only async mode
 						throw new DeadCode();
 					case START_OBJECT: {
-						final BackEvent e = new EObjectOpenEvent();
-						eventStream = eventStream.push(e, path.toString());
-						path = path.push(e);
+						position.objectOpen();
+						eventStream = push(eventStream, EObjectOpenEvent.instance, position);
 						break;
 					}
 					case END_OBJECT: {
-						final BackEvent e = new EObjectCloseEvent();
-						eventStream = eventStream.push(e, path.toString());
-						path = path.push(e);
+						eventStream = push(eventStream, EObjectCloseEvent.instance, position);
+						position.close();
 						break;
 					}
 					case START_ARRAY: {
-						final BackEvent e = new EArrayOpenEvent();
-						eventStream = eventStream.push(e, path.toString());
-						path = path.push(e);
+						position.arrayOpen();
+						eventStream = push(eventStream, EArrayOpenEvent.instance, position);
 						break;
 					}
 					case END_ARRAY: {
-						final BackEvent e = new EArrayCloseEvent();
-						eventStream = eventStream.push(e, path.toString());
-						path = path.push(e);
+						eventStream = push(eventStream, EArrayCloseEvent.instance, position);
+						position.close();
 						break;
 					}
 					case FIELD_NAME: {
-						final BackEvent e = new EKeyEvent(token.asString());
-						eventStream = eventStream.push(e, path.toString());
-						path = path.push(e);
+						final String key = stream1.getCurrentName();
+						position.key(key);
+						eventStream = push(eventStream, new EKeyEvent(interner.intern(key)), position);
 						break;
 					}
 					case VALUE_EMBEDDED_OBJECT:
 						// Supposedly shouldn't apply with normal options
 						throw new DeadCode();
 					case VALUE_STRING: {
-						final BackEvent e = new EPrimitiveEvent(token.asString());
-						eventStream = eventStream.push(e, path.toString());
-						path = path.push(e);
+						position.primitive();
+						eventStream = push(eventStream, new EPrimitiveEvent(interner.intern(stream1.getText())), position);
 						break;
 					}
 					case VALUE_NUMBER_INT: {
-						final BackEvent e = new JIntEvent(token.asString());
-						eventStream = eventStream.push(e, path.toString());
-						path = path.push(e);
+						position.primitive();
+						eventStream = push(eventStream, new JIntEvent(interner.intern(stream1.getText())), position);
 						break;
 					}
 					case VALUE_NUMBER_FLOAT: {
-						final BackEvent e = new JFloatEvent(token.asString());
-						eventStream = eventStream.push(e, path.toString());
-						path = path.push(e);
+						position.primitive();
+						eventStream = push(eventStream, new JFloatEvent(interner.intern(stream1.getText())), position);
 						break;
 					}
 					case VALUE_TRUE: {
-						final BackEvent e = new JTrueEvent();
-						eventStream = eventStream.push(e, path.toString());
-						path = path.push(e);
+						position.primitive();
+						eventStream = push(eventStream, JTrueEvent.instance, position);
 						break;
 					}
 					case VALUE_FALSE: {
-						final BackEvent e = new JFalseEvent();
-						eventStream = eventStream.push(e, path.toString());
-						path = path.push(e);
+						position.primitive();
+						eventStream = push(eventStream, JFalseEvent.instance, position);
 						break;
 					}
 					case VALUE_NULL: {
-						final BackEvent e = new JNullEvent();
-						eventStream = eventStream.push(e, path.toString());
-						path = path.push(e);
+						position.primitive();
+						eventStream = push(eventStream, JNullEvent.instance, position);
 						break;
 					}
 					default:
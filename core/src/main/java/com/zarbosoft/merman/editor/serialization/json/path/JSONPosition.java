@@ -0,0 +1,125 @@
+package com.zarbosoft.merman.editor.serialization.json.path;
+
+import java.util.Arrays;
+
+/**
+ * Tracks the location of the current token with per-level counters.  The /a/3/b form is only rendered when asked
+ * for (i.e. when reporting an error); mark records a token's location for rendering later with one small allocation.
+ */
+public class JSONPosition {
+	/**
+	 * The location within one level, and the levels containing it as they were when it was entered.  Immutable.
+	 */
+	private static class Mark {
+		private final Mark outer;
+		private final boolean array;
+		private final int index;
+		private final String key;
+
+		private Mark(final Mark outer, final boolean array, final int index, final String key) {
+			this.outer = outer;
+			this.array = array;
+			this.index = index;
+			this.key = key;
+		}
+
+		private void render(final StringBuilder out) {
+			if (outer != null)
+				outer.render(out);
+			out.append('/');
+			if (array) {
+				if (index != -1)
+					out.append(index);
+			} else if (key != null)
+				out.append(key);
+		}
+
+		@Override
+		public String toString() {
+			final StringBuilder out = new StringBuilder();
+			render(out);
+			return out.toString();
+		}
+	}
+
+	private static final Object top = new Object() {
+		@Override
+		public String toString() {
+			return "/";
+		}
+	};
+
+	private boolean[] arrays = new boolean[16];
+	private int[] indices = new int[16];
+	private String[] keys = new String[16];
+	private int depth = 0;
+	/**
+	 * The locations in the levels above the current one, or null at the first level
+	 */
+	private Mark outer = null;
+
+	public JSONPosition() {
+		arrays[0] = false;
+		indices[0] = -1;
+	}
+
+	private void value() {
+		if (arrays[depth])
+			indices[depth] += 1;
+	}
+
+	private void open(final boolean array) {
+		value();
+		if (depth > 0)
+			outer = new Mark(outer, arrays[depth], indices[depth], keys[depth]);
+		depth += 1;
+		if (depth == arrays.length) {
+			arrays = Arrays.copyOf(arrays, depth * 2);
+			indices = Arrays.copyOf(indices, depth * 2);
+			keys = Arrays.copyOf(keys, depth * 2);
+		}
+		arrays[depth] = array;
+		indices[depth] = -1;
+		keys[depth] = null;
+	}
+
+	public void arrayOpen() {
+		open(true);
+	}
+
+	public void objectOpen() {
+		open(false);
+	}
+
+	public void close() {
+		keys[depth] = null;
+		depth -= 1;
+		if (depth > 0)
+			outer = outer.outer;
+	}
+
+	public void key(final String key) {
+		keys[depth] = key;
+	}
+
+	public void primitive() {
+		value();
+	}
+
+	/**
+	 * @return The current location, unaffected by later tokens; its toString is the path as toString renders it
+	 */
+	public Object mark() {
+		if (depth == 0)
+			return top;
+		return new Mark(outer, arrays[depth], indices[depth], keys[depth]);
+	}
+
+	/**
+	 * @return The path from the top level value, like /a/3/b, or / at the top level
+	 */
+	@Override
+	public String toString() {
+		return mark().toString();
+	}
+}
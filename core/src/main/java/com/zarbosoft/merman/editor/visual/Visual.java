@@ -75,11 +75,11 @@ public abstract class Visual {
 	}
 
 	public void changeTagsCompact(final Context context) {
-		changeTags(context, new TagsChange().add(new StateTag("compact")));
+		changeTags(context, new TagsChange().add(StateTag.of("compact")));
 	}
 
 	public void changeTagsExpand(final Context context) {
-		changeTags(context, new TagsChange().remove(new StateTag("compact")));
+		changeTags(context, new TagsChange().remove(StateTag.of("compact")));
 	}
 
 	public abstract Stream<Brick> streamBricks();
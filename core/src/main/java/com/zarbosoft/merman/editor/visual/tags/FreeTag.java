@@ -6,6 +6,10 @@ import java.util.Objects;
 
 @Configuration(name = "free")
 public class FreeTag implements Tag {
+	private static final long serialVersionUID = 1L;
+
+	private static final TagInterner<FreeTag> interned = new TagInterner<>(FreeTag::new);
+
 	@Configuration
 	public String value;
 
@@ -16,9 +20,22 @@ public class FreeTag implements Tag {
 		this.value = value;
 	}
 
+	/**
+	 * @param value
+	 * @return A shared instance for the value
+	 */
+	public static FreeTag of(final String value) {
+		return interned.intern(value);
+	}
+
+	@Override
+	public Tag intern() {
+		return of(value);
+	}
+
 	@Override
 	public boolean equals(final Object obj) {
-		return obj instanceof FreeTag && value.equals(((FreeTag) obj).value);
+		return obj == this || obj instanceof FreeTag && value.equals(((FreeTag) obj).value);
 	}
 
 	public String toString() {
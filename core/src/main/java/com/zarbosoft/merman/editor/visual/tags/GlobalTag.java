@@ -6,6 +6,10 @@ import java.util.Objects;
 
 @Configuration(name = "global")
 public class GlobalTag implements Tag {
+	private static final long serialVersionUID = 1L;
+
+	private static final TagInterner<GlobalTag> interned = new TagInterner<>(GlobalTag::new);
+
 	@Configuration
 	public String value;
 
@@ -16,9 +20,22 @@ public class GlobalTag implements Tag {
 		this.value = value;
 	}
 
+	/**
+	 * @param value
+	 * @return A shared instance for the value
+	 */
+	public static GlobalTag of(final String value) {
+		return interned.intern(value);
+	}
+
+	@Override
+	public Tag intern() {
+		return of(value);
+	}
+
 	@Override
 	public boolean equals(final Object obj) {
-		return obj instanceof GlobalTag && value.equals(((GlobalTag) obj).value);
+		return obj == this || obj instanceof GlobalTag && value.equals(((GlobalTag) obj).value);
 	}
 
 	public String toString() {
@@ -6,6 +6,10 @@ import java.util.Objects;
 
 @Configuration(name = "part")
 public class PartTag implements Tag {
+	private static final long serialVersionUID = 1L;
+
+	private static final TagInterner<PartTag> interned = new TagInterner<>(PartTag::new);
+
 	@Configuration
 	public String value;
 
@@ -16,9 +20,22 @@ public class PartTag implements Tag {
 		this.value = value;
 	}
 
+	/**
+	 * @param value
+	 * @return A shared instance for the value
+	 */
+	public static PartTag of(final String value) {
+		return interned.intern(value);
+	}
+
+	@Override
+	public Tag intern() {
+		return of(value);
+	}
+
 	@Override
 	public boolean equals(final Object obj) {
-		return obj instanceof PartTag && value.equals(((PartTag) obj).value);
+		return obj == this || obj instanceof PartTag && value.equals(((PartTag) obj).value);
 	}
 
 	public String toString() {
@@ -6,6 +6,10 @@ import java.util.Objects;
 
 @Configuration(name = "state")
 public class StateTag implements Tag {
+	private static final long serialVersionUID = 1L;
+
+	private static final TagInterner<StateTag> interned = new TagInterner<>(StateTag::new);
+
 	@Configuration
 	public String value;
 
@@ -16,9 +20,22 @@ public class StateTag implements Tag {
 		this.value = value;
 	}
 
+	/**
+	 * @param value
+	 * @return A shared instance for the value
+	 */
+	public static StateTag of(final String value) {
+		return interned.intern(value);
+	}
+
+	@Override
+	public Tag intern() {
+		return of(value);
+	}
+
 	@Override
 	public boolean equals(final Object obj) {
-		return obj instanceof StateTag && value.equals(((StateTag) obj).value);
+		return obj == this || obj instanceof StateTag && value.equals(((StateTag) obj).value);
 	}
 
 	public String toString() {
@@ -2,6 +2,15 @@ package com.zarbosoft.merman.editor.visual.tags;
 
 import com.zarbosoft.interface1.Configuration;
 
+import java.io.Serializable;
+
 @Configuration
-public interface Tag {
+public interface Tag extends Serializable {
+	/**
+	 * Tags read from configuration are separate instances; the syntax replaces them with shared ones once it's
+	 * configured.
+	 *
+	 * @return The shared instance equal to this tag
+	 */
+	Tag intern();
 }
@@ -0,0 +1,32 @@
+package com.zarbosoft.merman.editor.visual.tags;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Function;
+
+/**
+ * Shares one tag instance per value.  Tags are only weakly held, so values no longer used by any syntax or document
+ * are dropped rather than accumulating.  Thread safe.
+ *
+ * @param <T>
+ */
+class TagInterner<T extends Tag> {
+	private final Function<String, T> create;
+	// Keyed by the string the tag holds, so the entry lives exactly as long as the tag
+	private final Map<String, WeakReference<T>> interned = new WeakHashMap<>();
+
+	TagInterner(final Function<String, T> create) {
+		this.create = create;
+	}
+
+	synchronized T intern(final String value) {
+		final WeakReference<T> found = interned.get(value);
+		T out = found == null ? null : found.get();
+		if (out == null) {
+			out = create.apply(value);
+			interned.put(value, new WeakReference<>(out));
+		}
+		return out;
+	}
+}
@@ -6,6 +6,10 @@ import java.util.Objects;
 
 @Configuration(name = "type")
 public class TypeTag implements Tag {
+	private static final long serialVersionUID = 1L;
+
+	private static final TagInterner<TypeTag> interned = new TagInterner<>(TypeTag::new);
+
 	@Configuration
 	public String value;
 
@@ -16,9 +20,22 @@ public class TypeTag implements Tag {
 		this.value = value;
 	}
 
+	/**
+	 * @param value
+	 * @return A shared instance for the value
+	 */
+	public static TypeTag of(final String value) {
+		return interned.intern(value);
+	}
+
+	@Override
+	public Tag intern() {
+		return of(value);
+	}
+
 	@Override
 	public boolean equals(final Object obj) {
-		return obj instanceof TypeTag && value.equals(((TypeTag) obj).value);
+		return obj == this || obj instanceof TypeTag && value.equals(((TypeTag) obj).value);
 	}
 
 	public String toString() {
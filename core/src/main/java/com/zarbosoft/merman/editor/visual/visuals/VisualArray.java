@@ -49,8 +49,8 @@ public abstract class VisualArray extends VisualGroup implements VisualLeaf {
 	) {
 		super(visualDepth);
 		this.tags = tags;
-		ellipsisTags = this.tags.plus(new PartTag("ellipsis"));
-		emptyTags = this.tags.plus(new PartTag("empty"));
+		ellipsisTags = this.tags.plus(PartTag.of("ellipsis"));
+		emptyTags = this.tags.plus(PartTag.of("empty"));
 		this.value = value;
 		dataListener = new ValueArray.Listener() {
 
@@ -184,9 +184,9 @@ public abstract class VisualArray extends VisualGroup implements VisualLeaf {
 		final boolean retagLast = tagLast() && visualIndex + visualRemove == children.size();
 		if (!children.isEmpty() && !add.isEmpty()) {
 			if (retagFirst)
-				(children.get(0)).changeTags(context, new TagsChange().remove(new PartTag("first")));
+				(children.get(0)).changeTags(context, new TagsChange().remove(PartTag.of("first")));
 			if (retagLast)
-				(last(children)).changeTags(context, new TagsChange().remove(new PartTag("last")));
+				(last(children)).changeTags(context, new TagsChange().remove(PartTag.of("last")));
 		}
 
 		// Remove
@@ -330,9 +330,9 @@ public abstract class VisualArray extends VisualGroup implements VisualLeaf {
 		// Cleanup
 		if (!children.isEmpty()) {
 			if (retagFirst)
-				children.get(0).changeTags(context, new TagsChange().add(new PartTag("first")));
+				children.get(0).changeTags(context, new TagsChange().add(PartTag.of("first")));
 			if (retagLast)
-				last(children).changeTags(context, new TagsChange().add(new PartTag("last")));
+				last(children).changeTags(context, new TagsChange().add(PartTag.of("last")));
 		}
 	}
 
@@ -556,8 +556,8 @@ public abstract class VisualArray extends VisualGroup implements VisualLeaf {
 	@Override
 	public void changeTags(final Context context, final TagsChange change) {
 		tags = change.apply(tags);
-		ellipsisTags = this.tags.plus(new PartTag("ellipsis"));
-		emptyTags = this.tags.plus(new PartTag("empty"));
+		ellipsisTags = this.tags.plus(PartTag.of("ellipsis"));
+		emptyTags = this.tags.plus(PartTag.of("empty"));
 		tagsChanged(context);
 		super.changeTags(context, change);
 	}
@@ -1178,10 +1178,10 @@ public abstract class VisualArray extends VisualGroup implements VisualLeaf {
 	@Override
 	public void compact(final Context context) {
 		super.compact(context);
-		ellipsisTags = ellipsisTags.plus(new StateTag("compact"));
+		ellipsisTags = ellipsisTags.plus(StateTag.of("compact"));
 		if (ellipsis != null)
 			ellipsis.tagsChanged(context);
-		emptyTags = emptyTags.plus(new StateTag("compact"));
+		emptyTags = emptyTags.plus(StateTag.of("compact"));
 		if (empty != null)
 			empty.tagsChanged(context);
 	}
@@ -1189,10 +1189,10 @@ public abstract class VisualArray extends VisualGroup implements VisualLeaf {
 	@Override
 	public void expand(final Context context) {
 		super.expand(context);
-		ellipsisTags = ellipsisTags.minus(new StateTag("compact"));
+		ellipsisTags = ellipsisTags.minus(StateTag.of("compact"));
 		if (ellipsis != null)
 			ellipsis.tagsChanged(context);
-		emptyTags = emptyTags.minus(new StateTag("compact"));
+		emptyTags = emptyTags.minus(StateTag.of("compact"));
 		if (empty != null)
 			empty.tagsChanged(context);
 	}
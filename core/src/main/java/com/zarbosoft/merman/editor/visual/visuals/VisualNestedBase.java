@@ -36,8 +36,8 @@ public abstract class VisualNestedBase extends Visual implements VisualLeaf {
 
 	public VisualNestedBase(final PSet<Tag> tags, final int visualDepth) {
 		super(visualDepth);
-		this.tags = tags.plus(new PartTag("atom"));
-		ellipsisTags = this.tags.plus(new PartTag("ellipsis"));
+		this.tags = tags.plus(PartTag.of("atom"));
+		ellipsisTags = this.tags.plus(PartTag.of("ellipsis"));
 	}
 
 	protected abstract void nodeSet(Context context, Atom value);
@@ -227,7 +227,7 @@ public abstract class VisualNestedBase extends Visual implements VisualLeaf {
 	@Override
 	public void changeTags(final Context context, final TagsChange change) {
 		tags = change.apply(tags);
-		ellipsisTags = tags.plus(new PartTag("ellipsis"));
+		ellipsisTags = tags.plus(PartTag.of("ellipsis"));
 		tagsChanged(context);
 	}
 
@@ -500,14 +500,14 @@ public abstract class VisualNestedBase extends Visual implements VisualLeaf {
 
 	@Override
 	public void compact(final Context context) {
-		ellipsisTags = ellipsisTags.plus(new StateTag("compact"));
+		ellipsisTags = ellipsisTags.plus(StateTag.of("compact"));
 		if (ellipsis != null)
 			ellipsis.tagsChanged(context);
 	}
 
 	@Override
 	public void expand(final Context context) {
-		ellipsisTags = ellipsisTags.minus(new StateTag("compact"));
+		ellipsisTags = ellipsisTags.minus(StateTag.of("compact"));
 		if (ellipsis != null)
 			ellipsis.tagsChanged(context);
 	}
@@ -40,6 +40,7 @@ public class VisualPrimitive extends Visual implements VisualLeaf {
 	// INVARIANT: Leaf nodes must always create at least one brick
 	// INVARIANT: Always at least one line
 	// TODO index line offsets for faster insert/remove
+	private static final int boundaryWindow = 64;
 	private final ValuePrimitive.Listener dataListener;
 	private final Obbox border = null;
 	private final ValuePrimitive value;
@@ -140,15 +141,15 @@ public class VisualPrimitive extends Visual implements VisualLeaf {
 	}
 
 	public PSet<Tag> softTags() {
-		return tags.plus(new StateTag("soft"));
+		return tags.plus(StateTag.of("soft"));
 	}
 
 	public PSet<Tag> hardTags() {
-		return tags.plus(new StateTag("hard"));
+		return tags.plus(StateTag.of("hard"));
 	}
 
 	public PSet<Tag> firstTags() {
-		return hardTags().plus(new StateTag("first"));
+		return hardTags().plus(StateTag.of("first"));
 	}
 
 	@Override
@@ -356,33 +357,31 @@ public class VisualPrimitive extends Visual implements VisualLeaf {
 	public class PrimitiveSelection extends Selection {
 		public final RangeAttachment range;
 		final BreakIterator clusterIterator = BreakIterator.getCharacterInstance();
-		private final ValuePrimitive.Listener clusterListener = new ValuePrimitive.Listener() {
-			@Override
-			public void set(final Context context, final String text) {
-				clusterIterator.setText(text);
-			}
-
-			@Override
-			public void added(final Context context, final int index, final String text) {
-				clusterIterator.setText(value.get());
-			}
-
-			@Override
-			public void removed(final Context context, final int index, final int count) {
-				clusterIterator.setText(value.get());
-			}
-		};
 
 		@Override
 		public PSet<Tag> getTags(final Context context) {
 			return tags;
 		}
 
+		/**
+		 * Boundaries are found in a window of text around the offset rather than the whole value so moving in large
+		 * values is cheap.  The window edges look like boundaries, so the window doubles until the boundary found is
+		 * inside it or the window covers the value.
+		 *
+		 * @param iter
+		 * @param offset
+		 * @return
+		 */
 		private int preceding(final BreakIterator iter, final int offset) {
-			int to = iter.preceding(offset);
-			if (to == BreakIterator.DONE)
-				to = 0;
-			return Math.max(0, to);
+			for (int window = boundaryWindow; ; window *= 2) {
+				final int start = Math.max(0, offset - window);
+				iter.setText(value.substring(start, Math.min(value.length(), offset + window)));
+				int to = iter.preceding(offset - start);
+				if (to == BreakIterator.DONE)
+					to = 0;
+				if (to > 0 || start == 0)
+					return start + to;
+			}
 		}
 
 		private int preceding(final BreakIterator iter) {
@@ -398,10 +397,16 @@ public class VisualPrimitive extends Visual implements VisualLeaf {
 		}
 
 		private int following(final BreakIterator iter, final int offset) {
-			int to = iter.following(offset);
-			if (to == BreakIterator.DONE)
-				to = value.length();
-			return Math.min(value.length(), to);
+			for (int window = boundaryWindow; ; window *= 2) {
+				final int start = Math.max(0, offset - window);
+				final int end = Math.min(value.length(), offset + window);
+				iter.setText(value.substring(start, end));
+				int to = iter.following(offset - start);
+				if (to == BreakIterator.DONE)
+					to = end - start;
+				if (start + to < end || end == value.length())
+					return start + to;
+			}
 		}
 
 		private int following(final int offset) {
@@ -417,15 +422,11 @@ public class VisualPrimitive extends Visual implements VisualLeaf {
 		}
 
 		private int nextWord(final int source) {
-			final BreakIterator iter = BreakIterator.getWordInstance();
-			iter.setText(value.get());
-			return following(iter, source);
+			return following(BreakIterator.getWordInstance(), source);
 		}
 
 		private int previousWord(final int source) {
-			final BreakIterator iter = BreakIterator.getWordInstance();
-			iter.setText(value.get());
-			return preceding(iter, source);
+			return preceding(BreakIterator.getWordInstance(), source);
 		}
 
 		private int nextLine(final Line sourceLine, final int source) {
@@ -459,8 +460,6 @@ public class VisualPrimitive extends Visual implements VisualLeaf {
 			range.setStyle(context, getBorderStyle(context, tags).obbox);
 			range.leadFirst = leadFirst;
 			range.setOffsets(context, beginOffset, endOffset);
-			clusterIterator.setText(value.get());
-			value.addListener(this.clusterListener);
 			context.addActions(this, Stream.concat(Stream.of(new ActionExit(),
 					new ActionNext(),
 					new ActionPrevious(),
@@ -504,16 +503,15 @@ public class VisualPrimitive extends Visual implements VisualLeaf {
 			range.destroy(context);
 			selection = null;
 			commit(context);
-			value.removeListener(clusterListener);
 		}
 
 		@Override
 		public void receiveText(final Context context, final String text) {
-			String preview = value.get();
 			if (value.middle.matcher != null) {
-				preview = preview.substring(0, range.beginOffset) +
+				// The pattern is matched against the whole text, so only values with patterns pay for it
+				final String preview = value.substring(0, range.beginOffset) +
 						text +
-						preview.substring(range.endOffset, preview.length());
+						value.substring(range.endOffset, value.length());
 				if (!value.middle.matcher.match(preview)) {
 					if (range.endOffset == value.length() && last(atomVisual().children) == VisualPrimitive.this) {
 						context.history.finishChange(context);
@@ -793,7 +791,7 @@ public class VisualPrimitive extends Visual implements VisualLeaf {
 			@Override
 			public boolean run(final Context context) {
 
-				context.copy(value.get().substring(range.beginOffset, range.endOffset));
+				context.copy(value.substring(range.beginOffset, range.endOffset));
 				return true;
 			}
 		}
@@ -803,7 +801,7 @@ public class VisualPrimitive extends Visual implements VisualLeaf {
 			@Override
 			public boolean run(final Context context) {
 
-				context.copy(value.get().substring(range.beginOffset, range.endOffset));
+				context.copy(value.substring(range.beginOffset, range.endOffset));
 
 				context.history.apply(context,
 						value.changeRemove(range.beginOffset, range.endOffset - range.beginOffset)
@@ -1288,7 +1286,7 @@ public class VisualPrimitive extends Visual implements VisualLeaf {
 			final int depthScore
 	) {
 		super(visualDepth);
-		this.tags = tags.plus(new PartTag("primitive"));
+		this.tags = tags.plus(PartTag.of("primitive"));
 		this.parent = parent;
 		brickStyle = new BrickStyle(context);
 		value.visual = this;
@@ -565,7 +565,7 @@ public class Course {
 			{
 				final Iterable<Pair<Brick, Brick.Properties>> brickProperties = top.getLeafPropertiesForTagsChange(
 						context,
-						new TagsChange(ImmutableSet.of(), ImmutableSet.of(new StateTag("compact")))
+						new TagsChange(ImmutableSet.of(), ImmutableSet.of(StateTag.of("compact")))
 				);
 				final Map<Brick, Brick.Properties> lookup =
 						stream(brickProperties.iterator()).collect(Collectors.toMap(p -> p.first, p -> p.second));
@@ -12,6 +12,8 @@ import com.zarbosoft.merman.editor.visual.visuals.VisualPrimitive;
 
 @Configuration(name = "hover_type")
 public class HoverType extends Module {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration(optional = true)
 	public boolean node = true;
 	@Configuration(optional = true)
@@ -13,6 +13,7 @@ import com.zarbosoft.merman.editor.visual.tags.TypeTag;
 import com.zarbosoft.merman.syntax.symbol.Symbol;
 import org.pcollections.PSet;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -20,8 +21,12 @@ import java.util.Set;
 
 @Configuration(name = "indicators")
 public class Indicators extends Module {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
-	public static class Indicator {
+	public static class Indicator implements Serializable {
+		private static final long serialVersionUID = 1L;
+
 		@Configuration()
 		public String id;
 
@@ -102,7 +107,7 @@ public class Indicators extends Module {
 					indicator.symbol.style(
 							context,
 							node,
-							context.getStyle(tags.plus(new TypeTag(indicator.id)).plus(new PartTag("indicator")))
+							context.getStyle(tags.plus(TypeTag.of(indicator.id)).plus(PartTag.of("indicator")))
 					);
 					final int ascent;
 					final int descent;
@@ -8,14 +8,29 @@ import org.luaj.vm2.LuaTable;
 import org.luaj.vm2.LuaValue;
 import org.luaj.vm2.lib.OneArgFunction;
 
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
 import java.util.Map;
 import java.util.stream.Collectors;
 
 @Configuration(name = "lua_actions")
 public class LuaActions extends Module {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration()
 	public Map<String, LuaValue> actions;
 
+	/**
+	 * Lua functions are closures over the state that evaluated the syntax, so they can't be stored (see SyntaxCache).
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	private void writeObject(final ObjectOutputStream out) throws IOException {
+		throw new NotSerializableException("lua_actions holds Lua functions, which can't be stored");
+	}
+
 	@Override
 	public State initialize(final Context context) {
 		return new ModuleState(context);
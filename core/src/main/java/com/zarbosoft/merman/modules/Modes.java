@@ -16,6 +16,8 @@ import static com.zarbosoft.rendaw.common.Common.enumerate;
 
 @Configuration(name = "modes")
 public class Modes extends Module {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
 	public List<String> states;
 
@@ -47,7 +49,7 @@ public class Modes extends Module {
 		}
 
 		private Tag getTag(final int state) {
-			return new GlobalTag(String.format("mode_%s", states.get(state)));
+			return GlobalTag.of(String.format("mode_%s", states.get(state)));
 		}
 
 		@Action.StaticID(id = "mode_%s (%s = mode id)")
@@ -3,8 +3,11 @@ package com.zarbosoft.merman.modules;
 import com.zarbosoft.interface1.Configuration;
 import com.zarbosoft.merman.editor.Context;
 
+import java.io.Serializable;
+
 @Configuration
-public abstract class Module {
+public abstract class Module implements Serializable {
+	private static final long serialVersionUID = 1L;
 
 	/**
 	 * Since multiple documents may use the same syntax,
@@ -14,6 +14,8 @@ import com.zarbosoft.merman.syntax.format.Format;
 
 @Configuration(name = "selection_type")
 public class SelectionType extends Module {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
 	public Format format;
 
@@ -4,10 +4,13 @@ import com.zarbosoft.interface1.Configuration;
 import com.zarbosoft.merman.editor.visual.tags.Tag;
 import com.zarbosoft.merman.modules.hotkeys.grammar.Node;
 
+import java.io.Serializable;
 import java.util.*;
 
 @Configuration
-public class HotkeyRule {
+public class HotkeyRule implements Serializable {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration()
 	public Set<Tag> with = new HashSet<>();
 	@Configuration(optional = true)
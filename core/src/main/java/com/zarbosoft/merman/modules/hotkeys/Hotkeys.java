@@ -30,6 +30,8 @@ import static com.zarbosoft.rendaw.common.Common.iterable;
 
 @Configuration(name = "hotkeys")
 public class Hotkeys extends Module {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration(optional = true)
 	public List<HotkeyRule> rules = new ArrayList<>();
 
@@ -53,16 +55,16 @@ public class Hotkeys extends Module {
 
 				final Text first = context.display.text();
 				final Style.Baked firstStyle = context.getStyle(context.globalTags
-						.plus(new PartTag("details_prompt"))
-						.plus(new PartTag("details")));
+						.plus(PartTag.of("details_prompt"))
+						.plus(PartTag.of("details")));
 				first.setColor(context, firstStyle.color);
 				first.setFont(context, firstStyle.getFont(context));
 				first.setText(context, hotkeySequence);
 				layout.add(first);
 
 				final Style.Baked lineStyle = context.getStyle(context.globalTags
-						.plus(new PartTag("details_line"))
-						.plus(new PartTag("details")));
+						.plus(PartTag.of("details_line"))
+						.plus(PartTag.of("details")));
 				final ColumnarTableLayout table = new ColumnarTableLayout(context, context.syntax.detailSpan);
 				for (final com.zarbosoft.pidgoon.internal.State leaf : hotkeyParse.context().leaves) {
 					final Action action = leaf.color();
@@ -2,7 +2,9 @@ package com.zarbosoft.merman.modules.hotkeys.grammar;
 
 import com.zarbosoft.interface1.Configuration;
 
+import java.io.Serializable;
+
 @Configuration
-public interface Node {
+public interface Node extends Serializable {
 	com.zarbosoft.pidgoon.Node build();
 }
@@ -12,6 +12,8 @@ import java.util.Set;
 
 @Configuration(name = "key")
 public class Terminal implements Node {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
 	public Key key;
 
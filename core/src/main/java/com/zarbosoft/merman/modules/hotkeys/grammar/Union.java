@@ -6,6 +6,8 @@ import java.util.List;
 
 @Configuration(name = "or")
 public class Union implements Node {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
 	public List<Node> nodes;
 
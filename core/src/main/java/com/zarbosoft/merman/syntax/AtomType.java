@@ -5,6 +5,11 @@ import com.google.common.collect.Sets;
 import com.zarbosoft.interface1.Configuration;
 import com.zarbosoft.merman.document.Atom;
 import com.zarbosoft.merman.document.values.Value;
+import com.zarbosoft.merman.editor.Context;
+import com.zarbosoft.merman.editor.Path;
+import com.zarbosoft.merman.editor.serialization.WritePlan;
+import com.zarbosoft.merman.editor.visual.tags.Tag;
+import com.zarbosoft.merman.editor.visual.tags.TypeTag;
 import com.zarbosoft.merman.syntax.alignments.AlignmentDefinition;
 import com.zarbosoft.merman.syntax.back.*;
 import com.zarbosoft.merman.syntax.front.FrontPart;
@@ -15,17 +20,56 @@ import com.zarbosoft.pidgoon.internal.Helper;
 import com.zarbosoft.pidgoon.nodes.Sequence;
 import com.zarbosoft.rendaw.common.DeadCode;
 import com.zarbosoft.rendaw.common.Pair;
+import org.pcollections.PSet;
 
+import java.io.Serializable;
 import java.util.*;
 
 import static com.zarbosoft.rendaw.common.Common.enumerate;
 
 @Configuration
-public abstract class AtomType {
+public abstract class AtomType implements Serializable {
+	private static final long serialVersionUID = 1L;
 
 	@Configuration
 	public Set<String> tags = new HashSet<>();
 
+	// Built from the configuration on first use; loading and saving read them from multiple threads
+	private transient volatile WritePlan writePlan;
+	private transient volatile Layout layout;
+	private transient volatile PSet<Tag> baseTags;
+	private transient volatile BackIndex backIndex;
+
+	/**
+	 * Assigns each middle id an ordinal, so atoms can store their values in an array
+	 */
+	private static class Layout {
+		final String[] ids;
+		final Map<String, Integer> slots = new HashMap<>();
+
+		Layout(final Set<String> ids) {
+			this.ids = ids.stream().sorted().toArray(String[]::new);
+			for (int i = 0; i < this.ids.length; ++i)
+				slots.put(this.ids[i], i);
+		}
+	}
+
+	/**
+	 * The back part and path within the back parts of each middle element
+	 */
+	private static class BackIndex {
+		final Map<String, BackPart> parts = new HashMap<>();
+		final Map<String, Pair<Integer, Path>> subpaths = new HashMap<>();
+
+		BackIndex(final AtomType type) {
+			for (final String id : type.middle().keySet()) {
+				final BackPart part = type.findBackPart(id);
+				parts.put(id, part);
+				subpaths.put(id, part.getSubpath());
+			}
+		}
+	}
+
 	public abstract List<FrontPart> front();
 
 	public abstract Map<String, MiddlePart> middle();
@@ -87,18 +131,51 @@ public abstract class AtomType {
 		seq.add(new Operator((store) -> store.pushStack(0)));
 		back().forEach(p -> seq.add(p.buildBackRule(syntax, this)));
 		return new Operator(seq, store -> {
-			final Map<String, Value> data = new HashMap<>();
+			final Value[] data = new Value[slotCount()];
 			store = (Store) Helper.<Pair<String, Value>>stackPopSingleList(store,
-					pair -> data.put(pair.first, pair.second)
+					pair -> data[slot(pair.first)] = pair.second
 			);
-			final Atom atom = new Atom(this, data);
-			return store.pushStack(atom);
+			return store.pushStack(new Atom(this, data));
 		});
 	}
 
 	public abstract String name();
 
+	/**
+	 * @param id Middle id
+	 * @return The back part holding the middle element
+	 */
 	public BackPart getBackPart(final String id) {
+		final BackPart out = backIndex().parts.get(id);
+		if (out == null)
+			throw new DeadCode();
+		return out;
+	}
+
+	/**
+	 * @param id Middle id
+	 * @return The index of the top level back part holding the middle element and the path from it to the element
+	 */
+	public Pair<Integer, Path> getSubpath(final String id) {
+		final Pair<Integer, Path> out = backIndex().subpaths.get(id);
+		if (out == null)
+			throw new DeadCode();
+		return out;
+	}
+
+	private BackIndex backIndex() {
+		BackIndex out = backIndex;
+		if (out == null) {
+			synchronized (this) {
+				out = backIndex;
+				if (out == null)
+					backIndex = out = new BackIndex(this);
+			}
+		}
+		return out;
+	}
+
+	private BackPart findBackPart(final String id) {
 		final Deque<Iterator<BackPart>> stack = new ArrayDeque<>();
 		stack.addLast(back().iterator());
 		while (!stack.isEmpty()) {
@@ -169,6 +246,67 @@ public abstract class AtomType {
 		return getData(MiddleArrayBase.class, key);
 	}
 
+	/**
+	 * @return The back parts compiled for writing, built on first use
+	 */
+	public WritePlan writePlan() {
+		WritePlan out = writePlan;
+		if (out == null) {
+			synchronized (this) {
+				out = writePlan;
+				if (out == null)
+					writePlan = out = WritePlan.compile(this);
+			}
+		}
+		return out;
+	}
+
+	private Layout layout() {
+		Layout out = layout;
+		if (out == null) {
+			synchronized (this) {
+				out = layout;
+				if (out == null)
+					layout = out = new Layout(middle().keySet());
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * @return The tags every atom of this type starts with, shared by all of them
+	 */
+	public PSet<Tag> baseTags() {
+		PSet<Tag> out = baseTags;
+		if (out == null)
+			baseTags = out = Context.asFreeTags(tags).plus(TypeTag.of(id()));
+		return out;
+	}
+
+	/**
+	 * @return The number of middle elements, the size of an atom's value array
+	 */
+	public int slotCount() {
+		return layout().ids.length;
+	}
+
+	/**
+	 * @param id Middle id
+	 * @return The index of the middle element's value in an atom's value array, or -1 if there's no such element
+	 */
+	public int slot(final String id) {
+		final Integer out = layout().slots.get(id);
+		return out == null ? -1 : out;
+	}
+
+	/**
+	 * @param slot
+	 * @return The middle id stored at the index
+	 */
+	public String slotId(final int slot) {
+		return layout().ids[slot];
+	}
+
 	@Override
 	public String toString() {
 		return String.format("<type %s>", id());
@@ -14,6 +14,8 @@ import java.util.*;
 
 @Configuration
 public class FreeAtomType extends AtomType {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
 	public String id;
 
@@ -90,8 +92,8 @@ public class FreeAtomType extends AtomType {
 	}
 
 	public Atom create(final Syntax syntax) {
-		final Map<String, Value> data = new HashMap<>();
-		middle.entrySet().stream().forEach(e -> data.put(e.getKey(), e.getValue().create(syntax)));
+		final Value[] data = new Value[slotCount()];
+		middle.forEach((k, v) -> data[slot(k)] = v.create(syntax));
 		return new Atom(this, data);
 	}
 
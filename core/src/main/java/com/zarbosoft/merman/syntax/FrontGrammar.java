@@ -0,0 +1,540 @@
+package com.zarbosoft.merman.syntax;
+
+import com.google.common.collect.ImmutableList;
+import com.zarbosoft.merman.document.Atom;
+import com.zarbosoft.merman.document.values.Value;
+import com.zarbosoft.merman.document.values.ValueArray;
+import com.zarbosoft.merman.document.values.ValueAtom;
+import com.zarbosoft.merman.document.values.ValuePrimitive;
+import com.zarbosoft.merman.syntax.front.FrontDataArrayBase;
+import com.zarbosoft.merman.syntax.front.FrontDataAtom;
+import com.zarbosoft.merman.syntax.front.FrontDataPrimitive;
+import com.zarbosoft.merman.syntax.front.FrontPart;
+import com.zarbosoft.merman.syntax.front.FrontSymbol;
+import com.zarbosoft.merman.syntax.middle.MiddleArrayBase;
+import com.zarbosoft.merman.syntax.middle.MiddleAtom;
+import com.zarbosoft.merman.syntax.middle.MiddlePart;
+import com.zarbosoft.merman.syntax.middle.MiddlePrimitive;
+import com.zarbosoft.merman.syntax.symbol.SymbolText;
+import com.zarbosoft.pidgoon.InvalidStream;
+import com.zarbosoft.pidgoon.ParseContext;
+import com.zarbosoft.pidgoon.bytes.Grammar;
+import com.zarbosoft.pidgoon.bytes.Parse;
+import com.zarbosoft.pidgoon.bytes.Position;
+import com.zarbosoft.rendaw.common.Pair;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Parses text as it's displayed (the front of each free type) directly into atoms, for pasting and typing whole
+ * expressions.
+ * <p>
+ * Symbols match their text (or gap key), primitives match their pattern, and atoms and arrays recurse.  Types
+ * whose front starts with an atom are operators and are parsed by precedence climbing, using the types'
+ * precedence and forward association the same way suffix gaps do.  Matches of a type at a position are memoized so
+ * unambiguous syntaxes parse in time linear in the text.  Where several types match the longest match wins.
+ * <p>
+ * Primitives without a pattern extend to the next symbol in the type's front when they're enclosed by symbols (like
+ * quoted strings), otherwise to whitespace or the first character of a punctuation symbol.
+ * <p>
+ * Compiled once per syntax (see Syntax.getFrontGrammar); parses don't modify it.
+ */
+public class FrontGrammar {
+	private final Syntax syntax;
+	private final List<Rule> rules = new ArrayList<>();
+	private final List<Rule> operators = new ArrayList<>();
+	/**
+	 * Non-operator rules by the first byte of their leading symbol
+	 */
+	private final List<Rule>[] byFirst;
+	/**
+	 * Non-operator rules that don't start with a symbol
+	 */
+	private final List<Rule> unindexed = new ArrayList<>();
+	private final boolean[] stops = new boolean[256];
+	private final Map<MiddlePrimitive, Grammar> patterns = new HashMap<>();
+	private final Set<FreeAtomType> everything;
+	private final Map<String, Set<FreeAtomType>> allowed = new ConcurrentHashMap<>();
+
+	private static class Rule {
+		final int index;
+		final FreeAtomType type;
+		final List<FrontPart> parts;
+		/**
+		 * The text of each symbol part, otherwise null
+		 */
+		final byte[][] literals;
+		/**
+		 * The first part is an atom or an array without prefix, filled by the text before the rest
+		 */
+		final boolean leading;
+		/**
+		 * The last part is an atom or an array without suffix, so other operators may bind to its contents
+		 */
+		final boolean open;
+
+		Rule(final int index, final FreeAtomType type, final List<FrontPart> parts, final byte[][] literals) {
+			this.index = index;
+			this.type = type;
+			this.parts = parts;
+			this.literals = literals;
+			this.leading = unbounded(parts.get(0), true);
+			this.open = unbounded(parts.get(parts.size() - 1), false);
+		}
+
+		private static boolean unbounded(final FrontPart part, final boolean start) {
+			if (part instanceof FrontDataAtom)
+				return true;
+			if (part instanceof FrontDataArrayBase)
+				return (start ? ((FrontDataArrayBase) part).prefix : ((FrontDataArrayBase) part).suffix).isEmpty();
+			return false;
+		}
+	}
+
+	/**
+	 * An atom matched but not yet built.  Values are Strings for primitives, Nodes for atoms and lists of Nodes for
+	 * arrays.
+	 */
+	private static class Node {
+		final Rule rule;
+		final Map<String, Object> values;
+		final int end;
+
+		Node(final Rule rule, final Map<String, Object> values, final int end) {
+			this.rule = rule;
+			this.values = values;
+			this.end = end;
+		}
+	}
+
+	private static final Node failed = new Node(null, null, -1);
+
+	public FrontGrammar(final Syntax syntax) {
+		this.syntax = syntax;
+		byFirst = new List[256];
+		everything = new HashSet<>(syntax.types);
+		for (final FreeAtomType type : syntax.types) {
+			final List<FrontPart> parts = new ArrayList<>();
+			final List<byte[]> literals = new ArrayList<>();
+			boolean supported = true;
+			for (final FrontPart part : type.front()) {
+				if (part instanceof FrontSymbol) {
+					final byte[] literal = literal((FrontSymbol) part);
+					if (literal == null)
+						continue;
+					parts.add(part);
+					literals.add(literal);
+				} else if (part instanceof FrontDataPrimitive ||
+						part instanceof FrontDataAtom ||
+						part instanceof FrontDataArrayBase) {
+					parts.add(part);
+					literals.add(null);
+				} else {
+					supported = false;
+					break;
+				}
+				for (final FrontSymbol symbol : symbols(part)) {
+					final byte[] literal = literal(symbol);
+					if (literal != null && !word(literal[0]))
+						stops[literal[0] & 0xFF] = true;
+				}
+			}
+			if (!supported || parts.isEmpty())
+				continue;
+			final Rule rule = new Rule(rules.size(), type, parts, literals.toArray(new byte[literals.size()][]));
+			if (rule.leading && parts.size() == 1)
+				continue;
+			rules.add(rule);
+			if (rule.leading)
+				operators.add(rule);
+			else if (rule.literals[0] != null) {
+				final int first = rule.literals[0][0] & 0xFF;
+				if (byFirst[first] == null)
+					byFirst[first] = new ArrayList<>();
+				byFirst[first].add(rule);
+			} else
+				unindexed.add(rule);
+			for (final MiddlePart middle : type.middle().values()) {
+				if (middle instanceof MiddlePrimitive && ((MiddlePrimitive) middle).pattern != null) {
+					final Grammar grammar = new Grammar();
+					grammar.add("root", ((MiddlePrimitive) middle).pattern.build());
+					patterns.put((MiddlePrimitive) middle, grammar);
+				} else if (middle instanceof MiddleAtom)
+					allowed(((MiddleAtom) middle).type);
+				else if (middle instanceof MiddleArrayBase)
+					allowed(((MiddleArrayBase) middle).type);
+			}
+		}
+	}
+
+	private static List<FrontSymbol> symbols(final FrontPart part) {
+		if (part instanceof FrontSymbol)
+			return ImmutableList.of((FrontSymbol) part);
+		if (part instanceof FrontDataArrayBase) {
+			final List<FrontSymbol> out = new ArrayList<>();
+			out.addAll(((FrontDataArrayBase) part).prefix);
+			out.addAll(((FrontDataArrayBase) part).separator);
+			out.addAll(((FrontDataArrayBase) part).suffix);
+			return out;
+		}
+		return ImmutableList.of();
+	}
+
+	/**
+	 * @param symbol
+	 * @return The text the symbol is typed as, or null if it has none
+	 */
+	private static byte[] literal(final FrontSymbol symbol) {
+		String text = symbol.gapKey;
+		if (symbol.type instanceof SymbolText)
+			text = ((SymbolText) symbol.type).text;
+		if (text == null)
+			return null;
+		text = text.trim();
+		if (text.isEmpty())
+			return null;
+		return text.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static boolean word(final byte b) {
+		return (b & 0x80) != 0 || Character.isLetterOrDigit((char) b) || b == '_';
+	}
+
+	private static boolean space(final byte b) {
+		return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+	}
+
+	private Set<FreeAtomType> allowed(final String type) {
+		if (type == null)
+			return everything;
+		return allowed.computeIfAbsent(type, k -> syntax.getLeafTypes(k).collect(Collectors.toSet()));
+	}
+
+	/**
+	 * May be called from multiple threads once the syntax is finished.
+	 *
+	 * @param type The type or group id of the place the text will be inserted (null for anywhere)
+	 * @param text
+	 * @return The atom the whole text describes, or null if it doesn't parse as one
+	 */
+	public Atom parse(final String type, final String text) {
+		final Parser parser = new Parser(text.getBytes(StandardCharsets.UTF_8));
+		final Node node = parser.expression(allowed(type), 0, Integer.MIN_VALUE, true);
+		if (node == null || parser.skip(node.end) != parser.text.length)
+			return null;
+		return build(node);
+	}
+
+	private Atom build(final Node node) {
+		final FreeAtomType type = node.rule.type;
+		final Value[] data = new Value[type.slotCount()];
+		type.middle.forEach((id, middle) -> {
+			final Object value = node.values.get(id);
+			final Value out;
+			if (value == null)
+				out = middle.create(syntax);
+			else if (middle instanceof MiddlePrimitive)
+				out = new ValuePrimitive((MiddlePrimitive) middle, (String) value);
+			else if (middle instanceof MiddleAtom)
+				out = new ValueAtom((MiddleAtom) middle, build((Node) value));
+			else
+				out = new ValueArray((MiddleArrayBase) middle,
+						((List<Node>) value).stream().map(this::build).collect(Collectors.toList())
+				);
+			data[type.slot(id)] = out;
+		});
+		return new Atom(type, data);
+	}
+
+	private class Parser {
+		final byte[] text;
+		/**
+		 * Non-operator matches by rule and start
+		 */
+		final Map<Long, Node> heads = new HashMap<>();
+		/**
+		 * Operator matches (excluding the leading part) by rule and start
+		 */
+		final Map<Long, Node> tails = new HashMap<>();
+
+		Parser(final byte[] text) {
+			this.text = text;
+		}
+
+		int skip(int at) {
+			while (at < text.length && space(text[at]))
+				at += 1;
+			return at;
+		}
+
+		boolean at(final int at, final byte[] literal) {
+			if (at + literal.length > text.length)
+				return false;
+			for (int i = 0; i < literal.length; ++i)
+				if (text[at + i] != literal[i])
+					return false;
+			return true;
+		}
+
+		/**
+		 * @return The end of the literal or -1 if it doesn't match
+		 */
+		int literal(int at, final byte[] literal) {
+			at = skip(at);
+			return at(at, literal) ? at + literal.length : -1;
+		}
+
+		int literals(int at, final List<FrontSymbol> symbols) {
+			for (final FrontSymbol symbol : symbols) {
+				final byte[] literal = FrontGrammar.literal(symbol);
+				if (literal == null)
+					continue;
+				at = literal(at, literal);
+				if (at < 0)
+					return -1;
+			}
+			return at;
+		}
+
+		/**
+		 * Precedence climbing.  Results that start with an open operand must bind looser than the enclosing
+		 * operator, as specified by min and allowEqual.
+		 *
+		 * @return The longest allowed match, or null
+		 */
+		Node expression(final Set<FreeAtomType> allowed, final int start, final int min, final boolean allowEqual) {
+			final int at = skip(start);
+			Node best = null;
+			final List<Rule> indexed = at < text.length ? byFirst[text[at] & 0xFF] : null;
+			final List<Rule> candidates = new ArrayList<>(unindexed);
+			if (indexed != null)
+				candidates.addAll(indexed);
+			for (final Rule rule : candidates) {
+				Node left = head(rule, at);
+				if (left == null)
+					continue;
+				Node leftBest = allowed.contains(rule.type) ? left : null;
+				while (true) {
+					final Node extended = extend(left, min, allowEqual);
+					if (extended == null)
+						break;
+					left = extended;
+					if (allowed.contains(left.rule.type))
+						leftBest = left;
+				}
+				if (leftBest != null && (best == null || leftBest.end > best.end))
+					best = leftBest;
+			}
+			return best;
+		}
+
+		/**
+		 * @return The longest operator match with left as its leading part, or null
+		 */
+		Node extend(final Node left, final int min, final boolean allowEqual) {
+			Node best = null;
+			for (final Rule rule : operators) {
+				final int precedence = rule.type.precedence;
+				if (!(precedence > min || (precedence == min && allowEqual)))
+					continue;
+				if (left.rule.open) {
+					final int leftPrecedence = left.rule.type.precedence;
+					if (!(leftPrecedence > precedence ||
+							(leftPrecedence == precedence && !rule.type.associateForward)))
+						continue;
+				}
+				final FrontPart first = rule.parts.get(0);
+				final String middle = first.middle();
+				final MiddlePart middlePart = rule.type.middle.get(middle);
+				final String childType = middlePart instanceof MiddleAtom ?
+						((MiddleAtom) middlePart).type :
+						((MiddleArrayBase) middlePart).type;
+				if (!allowed(childType).contains(left.rule.type))
+					continue;
+				final Object leading;
+				final Node tail;
+				if (first instanceof FrontDataAtom) {
+					leading = left;
+					tail = tail(rule, left.end);
+				} else {
+					// Collect the rest of the leading array
+					final List<Node> elements = new ArrayList<>();
+					elements.add(left);
+					final int arrayEnd = array(rule, 0, left.end, elements, true);
+					if (arrayEnd < 0)
+						continue;
+					leading = elements;
+					tail = tail(rule, arrayEnd);
+				}
+				if (tail == null)
+					continue;
+				if (best != null && tail.end <= best.end)
+					continue;
+				final Map<String, Object> values = new HashMap<>(tail.values);
+				values.put(middle, leading);
+				best = new Node(rule, values, tail.end);
+			}
+			return best;
+		}
+
+		Node head(final Rule rule, final int at) {
+			final long key = ((long) rule.index << 32) | at;
+			final Node found = heads.get(key);
+			if (found != null)
+				return found == failed ? null : found;
+			// Mark in progress so rules that can match nothing don't recurse forever
+			heads.put(key, failed);
+			final Map<String, Object> values = new HashMap<>();
+			final int end = parts(rule, 0, at, values);
+			final Node out = end < 0 ? failed : new Node(rule, values, end);
+			heads.put(key, out);
+			return out == failed ? null : out;
+		}
+
+		Node tail(final Rule rule, final int at) {
+			final long key = ((long) rule.index << 32) | at;
+			final Node found = tails.get(key);
+			if (found != null)
+				return found == failed ? null : found;
+			tails.put(key, failed);
+			final Map<String, Object> values = new HashMap<>();
+			final int end = parts(rule, 1, at, values);
+			final Node out = end < 0 ? failed : new Node(rule, values, end);
+			tails.put(key, out);
+			return out == failed ? null : out;
+		}
+
+		/**
+		 * @return The end of the parts or -1 if they don't match
+		 */
+		int parts(final Rule rule, final int from, int at, final Map<String, Object> values) {
+			for (int i = from; i < rule.parts.size(); ++i) {
+				final FrontPart part = rule.parts.get(i);
+				if (part instanceof FrontSymbol) {
+					at = literal(at, rule.literals[i]);
+				} else if (part instanceof FrontDataPrimitive) {
+					final boolean enclosed = i > 0 &&
+							rule.literals[i - 1] != null &&
+							i + 1 < rule.parts.size() &&
+							rule.literals[i + 1] != null;
+					at = primitive(rule.type.getDataPrimitive(part.middle()),
+							at,
+							i + 1 < rule.parts.size() ? rule.literals[i + 1] : null,
+							enclosed,
+							values
+					);
+				} else if (part instanceof FrontDataAtom) {
+					final boolean trailing = i == rule.parts.size() - 1;
+					final Node child = expression(allowed(rule.type.getDataNode(part.middle()).type),
+							at,
+							trailing ? rule.type.precedence : Integer.MIN_VALUE,
+							!trailing || rule.type.associateForward
+					);
+					if (child == null)
+						return -1;
+					values.put(part.middle(), child);
+					at = child.end;
+				} else {
+					final List<Node> elements = new ArrayList<>();
+					at = array(rule, i, at, elements, false);
+					values.put(part.middle(), elements);
+				}
+				if (at < 0)
+					return -1;
+			}
+			return at;
+		}
+
+		/**
+		 * @param continued The first element is already in elements
+		 * @return The end of the array or -1 if it doesn't match
+		 */
+		int array(final Rule rule, final int index, int at, final List<Node> elements, final boolean continued) {
+			final FrontDataArrayBase front = (FrontDataArrayBase) rule.parts.get(index);
+			final Set<FreeAtomType> allowed = allowed(rule.type.getDataArray(front.middle()).type);
+			final boolean trailing = index == rule.parts.size() - 1 && front.suffix.isEmpty();
+			final int min = trailing ? rule.type.precedence : Integer.MIN_VALUE;
+			final boolean allowEqual = !trailing || rule.type.associateForward;
+			final boolean separated = front.separator.stream().anyMatch(s -> FrontGrammar.literal(s) != null);
+			if (continued) {
+				at = literals(at, front.suffix);
+				if (at < 0)
+					return -1;
+			}
+			while (true) {
+				int next = at;
+				if (separated && !elements.isEmpty()) {
+					next = literals(next, front.separator);
+					if (next < 0)
+						break;
+				}
+				next = literals(next, front.prefix);
+				if (next < 0)
+					break;
+				final Node element = expression(allowed, next, min, allowEqual);
+				if (element == null)
+					break;
+				next = literals(element.end, front.suffix);
+				if (next < 0)
+					break;
+				elements.add(element);
+				at = next;
+			}
+			return at;
+		}
+
+		/**
+		 * @param next     The symbol following the primitive, or null
+		 * @param enclosed The primitive is between two symbols and is read verbatim up to the next
+		 * @return The end of the primitive or -1 if it doesn't match
+		 */
+		int primitive(
+				final MiddlePrimitive middle,
+				int at,
+				final byte[] next,
+				final boolean enclosed,
+				final Map<String, Object> values
+		) {
+			if (!enclosed)
+				at = skip(at);
+			int end = at;
+			final Grammar pattern = patterns.get(middle);
+			if (pattern != null) {
+				try {
+					final Pair<ParseContext, Position> longest = new Parse<>()
+							.grammar(pattern)
+							.longestMatchFromStart(new ByteArrayInputStream(text, at, text.length - at));
+					end = at + (int) longest.second.distance();
+				} catch (final InvalidStream e) {
+					return -1;
+				}
+				if (end == at)
+					return -1;
+			} else if (enclosed) {
+				while (end < text.length && !at(end, next))
+					end += 1;
+				if (end == text.length)
+					return -1;
+			} else {
+				while (end < text.length &&
+						!space(text[end]) &&
+						!stops[text[end] & 0xFF] &&
+						!(next != null && at(end, next)))
+					end += 1;
+				if (end == at)
+					return -1;
+			}
+			values.put(middle.id, new String(text, at, end - at, StandardCharsets.UTF_8));
+			return end;
+		}
+	}
+}
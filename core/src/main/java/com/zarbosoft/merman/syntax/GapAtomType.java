@@ -41,6 +41,8 @@ import static com.zarbosoft.rendaw.common.Common.iterable;
 
 @Configuration
 public class GapAtomType extends AtomType {
+	private static final long serialVersionUID = 1L;
+
 	private final MiddlePrimitive dataGap;
 	@Configuration(name = "prefix")
 	public List<FrontSymbol> frontPrefix = new ArrayList<>();
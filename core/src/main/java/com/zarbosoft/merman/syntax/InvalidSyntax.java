@@ -1,6 +1,8 @@
 package com.zarbosoft.merman.syntax;
 
 public class InvalidSyntax extends Error {
+	private static final long serialVersionUID = 1L;
+
 	public InvalidSyntax(final String text) {
 		super(text);
 	}
@@ -2,14 +2,19 @@ package com.zarbosoft.merman.syntax;
 
 import com.zarbosoft.interface1.Configuration;
 
+import java.io.Serializable;
 import java.time.Duration;
 
 @Configuration
-public abstract class ModelDuration {
+public abstract class ModelDuration implements Serializable {
+	private static final long serialVersionUID = 1L;
+
 	public abstract Duration get();
 
 	@Configuration(name = "m")
 	public static class Minutes extends ModelDuration {
+		private static final long serialVersionUID = 1L;
+
 		@Configuration
 		public double length;
 
@@ -21,6 +26,8 @@ public abstract class ModelDuration {
 
 	@Configuration(name = "s")
 	public static class Seconds extends ModelDuration {
+		private static final long serialVersionUID = 1L;
+
 		@Configuration
 		public double length;
 
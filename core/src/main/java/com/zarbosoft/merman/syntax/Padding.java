@@ -2,8 +2,12 @@ package com.zarbosoft.merman.syntax;
 
 import com.zarbosoft.interface1.Configuration;
 
+import java.io.Serializable;
+
 @Configuration
-public class Padding {
+public class Padding implements Serializable {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration(name = "converse_start", optional = true)
 	public int converseStart = 0;
 	@Configuration(name = "converse_end", optional = true)
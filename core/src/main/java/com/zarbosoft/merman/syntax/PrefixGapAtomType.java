@@ -40,6 +40,8 @@ import static com.zarbosoft.rendaw.common.Common.iterable;
 
 @Configuration
 public class PrefixGapAtomType extends AtomType {
+	private static final long serialVersionUID = 1L;
+
 	private final MiddleArray dataValue;
 	private final MiddlePrimitive dataGap;
 	@Configuration(name = "prefix", optional = true)
@@ -15,6 +15,8 @@ import java.util.Map;
 
 @Configuration
 public class RootAtomType extends AtomType {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
 	public List<FrontPart> front = new ArrayList<>();
 
@@ -73,8 +75,8 @@ public class RootAtomType extends AtomType {
 	}
 
 	public Atom create(final Syntax syntax) {
-		final Map<String, Value> data = new HashMap<>();
-		middle.entrySet().stream().forEach(e -> data.put(e.getKey(), e.getValue().create(syntax)));
+		final Value[] data = new Value[slotCount()];
+		middle.forEach((k, v) -> data[slot(k)] = v.create(syntax));
 		return new Atom(this, data);
 	}
 }
@@ -40,6 +40,8 @@ import java.util.stream.Stream;
 
 @Configuration
 public class SuffixGapAtomType extends AtomType {
+	private static final long serialVersionUID = 1L;
+
 	private final MiddleArray dataValue;
 	private final MiddlePrimitive dataGap;
 	@Configuration(name = "prefix", optional = true)
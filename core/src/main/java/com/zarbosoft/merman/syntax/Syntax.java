@@ -5,7 +5,9 @@ import com.zarbosoft.interface1.Configuration;
 import com.zarbosoft.interface1.Walk;
 import com.zarbosoft.luaconf.LuaConf;
 import com.zarbosoft.merman.document.Document;
+import com.zarbosoft.merman.editor.serialization.DirectLoad;
 import com.zarbosoft.merman.editor.serialization.Load;
+import com.zarbosoft.merman.editor.visual.tags.Tag;
 import com.zarbosoft.merman.modules.Module;
 import com.zarbosoft.merman.syntax.style.BoxStyle;
 import com.zarbosoft.merman.syntax.style.ModelColor;
@@ -25,23 +27,27 @@ import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static com.zarbosoft.rendaw.common.Common.stream;
 
 @Configuration
-public class Syntax {
+public class Syntax implements Serializable {
+	private static final long serialVersionUID = 1L;
 
 	@Configuration
 	public static enum BackType {
 		@Configuration(name = "luxem")
 		LUXEM,
 		@Configuration(name = "json")
-		JSON
+		JSON,
+		@Configuration(name = "binary")
+		BINARY
 	}
 
 	@Configuration(name = "type", optional = true)
@@ -116,6 +122,22 @@ public class Syntax {
 	@Configuration(optional = true, name = "pretty_save")
 	public boolean prettySave = false;
 
+	@Configuration
+	public static enum CompressionType {
+		@Configuration(name = "none")
+		NONE,
+		@Configuration(name = "gzip")
+		GZIP,
+		@Configuration(name = "deflate")
+		DEFLATE
+	}
+
+	@Configuration(optional = true)
+	public CompressionType compression = CompressionType.NONE;
+
+	@Configuration(optional = true, name = "compression_dictionary")
+	public String compressionDictionary = null;
+
 	public String id; // Fake final - don't modify (set in loadSyntax)
 
 	@Configuration
@@ -137,17 +159,27 @@ public class Syntax {
 	@Configuration(name = "transverse_direction", optional = true)
 	public Direction transverseDirection = Direction.DOWN;
 
-	Grammar grammar;
+	transient Grammar grammar;
+	private transient DirectLoad directLoad;
+	private transient FrontGrammar frontGrammar;
 
 	public static Reflections reflections = new Reflections("com.zarbosoft");
 
 	public static Syntax loadSyntax(final String id, final Path path) {
-		final Syntax out = LuaConf.parse(reflections, new Walk.TypeInfo(Syntax.class), path);
+		final Syntax out = parseSyntax(path);
 		out.id = id;
 		out.finish();
 		return out;
 	}
 
+	/**
+	 * @param path
+	 * @return The syntax as configured, before finishing
+	 */
+	public static Syntax parseSyntax(final Path path) {
+		return LuaConf.parse(reflections, new Walk.TypeInfo(Syntax.class), path);
+	}
+
 	public void finish() {
 		// jfx, qt, and swing don't support vertical languages
 		if (!ImmutableSet.of(Direction.LEFT, Direction.RIGHT).contains(converseDirection) ||
@@ -172,6 +204,11 @@ public class Syntax {
 				break;
 		}
 
+		for (final Style style : styles) {
+			style.with = style.with.stream().map(Tag::intern).collect(Collectors.toCollection(HashSet::new));
+			style.without = style.without.stream().map(Tag::intern).collect(Collectors.toCollection(HashSet::new));
+		}
+
 		{
 			final Deque<Pair<PSet<String>, Iterator<String>>> stack = new ArrayDeque<>();
 			stack.addLast(new Pair<>(HashTreePSet.empty(), groups.keySet().iterator()));
@@ -257,7 +294,12 @@ public class Syntax {
 		return out;
 	}
 
-	public Grammar getGrammar() {
+	/**
+	 * The grammar isn't modified once built so it may be shared by parses on different threads.
+	 *
+	 * @return
+	 */
+	public synchronized Grammar getGrammar() {
 		if (grammar == null) {
 			grammar = new Grammar();
 			types.forEach(t -> grammar.add(t.id(), t.buildBackRule(this)));
@@ -274,16 +316,31 @@ public class Syntax {
 		return grammar;
 	}
 
+	/**
+	 * @return A loader that skips the general parser, if this syntax is unambiguous enough.  See
+	 * DirectLoad.conflicts for why it isn't.
+	 */
+	public synchronized DirectLoad getDirectLoad() {
+		if (directLoad == null)
+			directLoad = new DirectLoad(this);
+		return directLoad;
+	}
+
+	/**
+	 * @return A parser for text as displayed, for pasting and typing whole expressions
+	 */
+	public synchronized FrontGrammar getFrontGrammar() {
+		if (frontGrammar == null)
+			frontGrammar = new FrontGrammar(this);
+		return frontGrammar;
+	}
+
 	public Document create() {
 		return new Document(this, root.create(this));
 	}
 
 	public Document load(final Path path) throws FileNotFoundException, IOException {
-		try (
-				InputStream data = Files.newInputStream(path)
-		) {
-			return load(data);
-		}
+		return Load.load(this, path);
 	}
 
 	public Document load(final String string) {
@@ -0,0 +1,218 @@
+package com.zarbosoft.merman.syntax;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.zarbosoft.rendaw.common.Common.uncheck;
+
+/**
+ * Stores parsed syntax configurations on disk so later launches can skip evaluating the Lua.  Entries are keyed by a
+ * hash of the syntax file and the files it requires, found by following require calls with literal module names
+ * from the syntax file's directory, so editing the syntax or anything it loads invalidates the entry.  If a file
+ * requires a computed name or uses dofile or loadfile, every Lua file in the directory is hashed instead.
+ * <p>
+ * The configuration is stored as parsed, before finishing: finishing adds gap front parts and back part parents that
+ * are rebuilt from the configuration, and the grammar is built from lambdas when first used.  Loading from the cache
+ * still runs finish, which only validates and links the parts.  Entries are only written once finish succeeds.  Any
+ * failure reading or writing the cache falls back to evaluating the Lua.  Syntaxes that hold Lua functions (the
+ * lua_actions module) can't be stored and are always evaluated.
+ */
+public class SyntaxCache {
+	/**
+	 * Increment when the stored configuration classes change, including added fields (fields missing from an entry
+	 * are deserialized as null or zero rather than their initial values).
+	 */
+	private static final int version = 1;
+
+	private static final Logger logger = LoggerFactory.getLogger(SyntaxCache.class);
+
+	/**
+	 * A require call, with the module name if it's a literal
+	 */
+	private static final Pattern require = Pattern.compile(
+			"\\brequire\\b\\s*(?:\\(\\s*)?(?:'([^'\\\\]*)'|\"([^\"\\\\]*)\"|\\[\\[(.*?)]])?",
+			Pattern.DOTALL
+	);
+	private static final Pattern loadFile = Pattern.compile("\\b(?:dofile|loadfile)\\b");
+
+	private final Path directory;
+	private final Function<Path, Syntax> parse;
+
+	public SyntaxCache(final Path directory) {
+		this(directory, Syntax::parseSyntax);
+	}
+
+	/**
+	 * @param directory
+	 * @param parse     Reads the unfinished configuration from a syntax file
+	 */
+	public SyntaxCache(final Path directory, final Function<Path, Syntax> parse) {
+		this.directory = directory;
+		this.parse = parse;
+	}
+
+	public Syntax load(final String id, final Path path) {
+		final String prefix = String.format("syntax_%s_", id);
+		final Path entry = directory.resolve(prefix + hash(path) + ".bin");
+		Syntax out = read(entry);
+		byte[] serialized = null;
+		if (out == null) {
+			out = parse.apply(path);
+			serialized = serialize(id, out);
+		}
+		out.id = id;
+		out.finish();
+		if (serialized != null)
+			write(prefix, entry, serialized);
+		return out;
+	}
+
+	private static String hash(final Path path) {
+		return uncheck(() -> {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(Integer.toString(version).getBytes(StandardCharsets.UTF_8));
+			final Path root = path.toAbsolutePath().getParent();
+			Collection<Path> sources = sources(root, path.toAbsolutePath());
+			if (sources == null) {
+				try (Stream<Path> files = Files.walk(root)) {
+					sources = files
+							.filter(file -> file.getFileName().toString().endsWith(".lua") && Files.isRegularFile(file))
+							.sorted()
+							.collect(Collectors.toList());
+				}
+			}
+			for (final Path source : sources) {
+				final byte[] name = root.relativize(source).toString().getBytes(StandardCharsets.UTF_8);
+				final byte[] data = Files.isRegularFile(source) ? Files.readAllBytes(source) : null;
+				final int length = data == null ? -1 : data.length;
+				digest.update(ByteBuffer.allocate(8).putInt(name.length).putInt(length).array());
+				digest.update(name);
+				if (data != null)
+					digest.update(data);
+			}
+			final StringBuilder out = new StringBuilder();
+			for (final byte b : digest.digest())
+				out.append(String.format("%02x", b));
+			return out.toString();
+		});
+	}
+
+	/**
+	 * Module names are resolved like the default package path, relative to root.  Names that don't resolve to a file
+	 * (like standard libraries) are included so creating the file invalidates the entry.
+	 *
+	 * @param root
+	 * @param path The syntax file
+	 * @return The syntax file and every file it requires, sorted, or null if they can't be determined
+	 * @throws IOException
+	 */
+	private static Collection<Path> sources(final Path root, final Path path) throws IOException {
+		final TreeSet<Path> out = new TreeSet<>();
+		final Deque<Path> pending = new ArrayDeque<>();
+		out.add(path);
+		pending.add(path);
+		while (!pending.isEmpty()) {
+			final Path source = pending.removeLast();
+			if (!Files.isRegularFile(source))
+				continue;
+			final String text = new String(Files.readAllBytes(source), StandardCharsets.UTF_8);
+			if (loadFile.matcher(text).find())
+				return null;
+			final Matcher matcher = require.matcher(text);
+			while (matcher.find()) {
+				String name = null;
+				for (int group = 1; group <= 3 && name == null; ++group)
+					name = matcher.group(group);
+				if (name == null)
+					return null;
+				final Path found = root.resolve(name.replace('.', '/') + ".lua").normalize();
+				if (out.add(found))
+					pending.add(found);
+			}
+		}
+		return out;
+	}
+
+	private static Syntax read(final Path entry) {
+		if (!Files.exists(entry))
+			return null;
+		try (
+				InputStream stream = Files.newInputStream(entry); ObjectInputStream objects = new ObjectInputStream(stream)
+		) {
+			return (Syntax) objects.readObject();
+		} catch (final IOException | ClassNotFoundException | ClassCastException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param id
+	 * @param syntax
+	 * @return The serialized syntax, or null if it can't be serialized
+	 */
+	private static byte[] serialize(final String id, final Syntax syntax) {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (
+				ObjectOutputStream objects = new ObjectOutputStream(out)
+		) {
+			objects.writeObject(syntax);
+		} catch (final IOException e) {
+			logger.info(String.format("Syntax %s can't be cached and will be evaluated on every load: %s", id, e));
+			return null;
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Write the entry and remove stale entries for the same syntax.
+	 *
+	 * @param prefix
+	 * @param entry
+	 * @param data
+	 */
+	private void write(final String prefix, final Path entry, final byte[] data) {
+		Path temp = null;
+		try {
+			Files.createDirectories(directory);
+			temp = Files.createTempFile(directory, prefix, ".tmp");
+			Files.write(temp, data);
+			Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			temp = null;
+			try (Stream<Path> entries = Files.list(directory)) {
+				entries.filter(other -> {
+					final String name = other.getFileName().toString();
+					return name.startsWith(prefix) && name.endsWith(".bin") && !other.equals(entry);
+				}).forEach(other -> uncheck(() -> Files.deleteIfExists(other)));
+			}
+		} catch (final IOException e) {
+			logger.warn(String.format("Failed to write syntax cache entry %s", entry), e);
+		} finally {
+			if (temp != null) {
+				final Path temp1 = temp;
+				uncheck(() -> Files.deleteIfExists(temp1));
+			}
+		}
+	}
+}
@@ -6,6 +6,8 @@ import com.zarbosoft.merman.editor.visual.alignment.AbsoluteAlignment;
 
 @Configuration(name = "absolute")
 public class AbsoluteAlignmentDefinition implements AlignmentDefinition {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
 	public int offset;
 
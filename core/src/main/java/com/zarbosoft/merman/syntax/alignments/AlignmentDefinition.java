@@ -3,7 +3,9 @@ package com.zarbosoft.merman.syntax.alignments;
 import com.zarbosoft.interface1.Configuration;
 import com.zarbosoft.merman.editor.visual.Alignment;
 
+import java.io.Serializable;
+
 @Configuration
-public interface AlignmentDefinition {
+public interface AlignmentDefinition extends Serializable {
 	Alignment create();
 }
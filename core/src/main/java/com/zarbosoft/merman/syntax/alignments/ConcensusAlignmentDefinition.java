@@ -6,6 +6,8 @@ import com.zarbosoft.merman.editor.visual.alignment.ConcensusAlignment;
 
 @Configuration(name = "concensus")
 public class ConcensusAlignmentDefinition implements AlignmentDefinition {
+	private static final long serialVersionUID = 1L;
+
 	@Override
 	public Alignment create() {
 		return new ConcensusAlignment();
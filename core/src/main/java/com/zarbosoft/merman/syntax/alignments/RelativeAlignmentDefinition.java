@@ -6,6 +6,8 @@ import com.zarbosoft.merman.editor.visual.alignment.RelativeAlignment;
 
 @Configuration(name = "relative")
 public class RelativeAlignmentDefinition implements AlignmentDefinition {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
 	public String base;
 
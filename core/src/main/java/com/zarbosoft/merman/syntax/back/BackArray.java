@@ -17,6 +17,8 @@ import static com.zarbosoft.rendaw.common.Common.enumerate;
 
 @Configuration(name = "array")
 public class BackArray extends BackPart {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
 	public List<BackPart> elements = new ArrayList<>();
 
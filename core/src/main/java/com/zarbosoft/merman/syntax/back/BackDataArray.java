@@ -23,6 +23,8 @@ import java.util.Set;
 
 @Configuration(name = "data_array")
 public class BackDataArray extends BackPart {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
 	public String middle;
 
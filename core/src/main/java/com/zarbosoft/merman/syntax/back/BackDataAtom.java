@@ -20,6 +20,8 @@ import static com.zarbosoft.rendaw.common.Common.iterable;
 
 @Configuration(name = "data_atom")
 public class BackDataAtom extends BackPart {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
 	public String middle;
 
@@ -16,6 +16,8 @@ import java.util.Set;
 
 @Configuration(name = "json_data_float")
 public class BackDataJSONFloat extends BackPart {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
 	public String middle;
 
@@ -16,6 +16,8 @@ import java.util.Set;
 
 @Configuration(name = "json_data_int")
 public class BackDataJSONInt extends BackPart {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
 	public String middle;
 
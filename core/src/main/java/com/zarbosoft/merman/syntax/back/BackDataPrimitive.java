@@ -18,6 +18,8 @@ import java.util.Set;
 
 @Configuration(name = "data_primitive")
 public class BackDataPrimitive extends BackPart {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
 	public String middle;
 
@@ -30,6 +30,8 @@ import static com.zarbosoft.rendaw.common.Common.last;
 
 @Configuration(name = "data_record")
 public class BackDataRecord extends BackPart {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
 	public String middle;
 
@@ -21,6 +21,8 @@ import java.util.Set;
 
 @Configuration(name = "root_data_array")
 public class BackDataRootArray extends BackPart {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
 	public String middle;
 
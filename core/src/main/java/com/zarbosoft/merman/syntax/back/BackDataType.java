@@ -19,6 +19,8 @@ import java.util.Set;
 
 @Configuration(name = "data_type")
 public class BackDataType extends BackPart {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
 	public String type;
 
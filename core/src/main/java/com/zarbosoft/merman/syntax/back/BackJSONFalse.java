@@ -9,6 +9,7 @@ import com.zarbosoft.pidgoon.events.MatchingEventTerminal;
 
 @Configuration(name = "json_false")
 public class BackJSONFalse extends BackPart {
+	private static final long serialVersionUID = 1L;
 
 	@Override
 	public Node buildBackRule(final Syntax syntax, final AtomType atomType) {
@@ -9,6 +9,8 @@ import com.zarbosoft.pidgoon.events.MatchingEventTerminal;
 
 @Configuration(name = "json_int")
 public class BackJSONInt extends BackPart {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
 	public String value;
 
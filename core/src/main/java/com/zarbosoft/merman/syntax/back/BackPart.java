@@ -8,10 +8,13 @@ import com.zarbosoft.pidgoon.Node;
 import com.zarbosoft.rendaw.common.DeadCode;
 import com.zarbosoft.rendaw.common.Pair;
 
+import java.io.Serializable;
 import java.util.Set;
 
 @Configuration
-public abstract class BackPart {
+public abstract class BackPart implements Serializable {
+	private static final long serialVersionUID = 1L;
+
 	public abstract Node buildBackRule(Syntax syntax, AtomType atomType);
 
 	public Parent parent = null;
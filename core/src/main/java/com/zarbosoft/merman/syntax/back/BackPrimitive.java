@@ -9,6 +9,8 @@ import com.zarbosoft.pidgoon.events.MatchingEventTerminal;
 
 @Configuration(name = "primitive")
 public class BackPrimitive extends BackPart {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
 	public String value;
 
@@ -16,6 +16,8 @@ import java.util.Map;
 
 @Configuration(name = "record")
 public class BackRecord extends BackPart {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
 	public Map<String, BackPart> pairs = new HashMap<>();
 
@@ -12,6 +12,8 @@ import java.util.Set;
 
 @Configuration(name = "type")
 public class BackType extends BackPart {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
 	public String type;
 
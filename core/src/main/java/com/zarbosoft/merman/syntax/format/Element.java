@@ -2,9 +2,10 @@ package com.zarbosoft.merman.syntax.format;
 
 import com.zarbosoft.interface1.Configuration;
 
+import java.io.Serializable;
 import java.util.Map;
 
 @Configuration
-interface Element {
+interface Element extends Serializable {
 	String format(Map<String, Object> data);
 }
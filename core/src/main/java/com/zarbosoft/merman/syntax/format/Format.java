@@ -2,12 +2,15 @@ package com.zarbosoft.merman.syntax.format;
 
 import com.zarbosoft.interface1.Configuration;
 
+import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
 @Configuration
-public class Format {
+public class Format implements Serializable {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration(typeless = Literal.class)
 	public List<Element> elements;
 
@@ -6,6 +6,8 @@ import java.util.Map;
 
 @Configuration(name = "lit")
 public class Literal implements Element {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
 	public String value;
 
@@ -6,6 +6,8 @@ import java.util.Map;
 
 @Configuration(name = "ref")
 public class Reference implements Element {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
 	public String name;
 
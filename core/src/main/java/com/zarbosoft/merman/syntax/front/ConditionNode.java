@@ -9,6 +9,8 @@ import com.zarbosoft.merman.syntax.SuffixGapAtomType;
 
 @Configuration(name = "precedential")
 public class ConditionNode extends ConditionType {
+	private static final long serialVersionUID = 1L;
+
 	@Override
 	public ConditionAttachment create(
 			final Context context, final Atom atom
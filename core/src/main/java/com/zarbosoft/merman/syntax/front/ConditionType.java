@@ -5,8 +5,12 @@ import com.zarbosoft.merman.document.Atom;
 import com.zarbosoft.merman.editor.Context;
 import com.zarbosoft.merman.editor.visual.condition.ConditionAttachment;
 
+import java.io.Serializable;
+
 @Configuration
-public abstract class ConditionType {
+public abstract class ConditionType implements Serializable {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration(optional = true)
 	public boolean invert = false;
 
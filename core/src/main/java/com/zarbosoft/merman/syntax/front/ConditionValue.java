@@ -13,6 +13,8 @@ import java.util.List;
 
 @Configuration(name = "value")
 public class ConditionValue extends ConditionType {
+	private static final long serialVersionUID = 1L;
+
 	@Override
 	public ConditionAttachment create(
 			final Context context, final Atom atom
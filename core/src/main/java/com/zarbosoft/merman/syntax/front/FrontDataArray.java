@@ -4,6 +4,7 @@ import com.zarbosoft.interface1.Configuration;
 
 @Configuration(name = "array")
 public class FrontDataArray extends FrontDataArrayBase {
+	private static final long serialVersionUID = 1L;
 
 	@Configuration
 	public String middle;
@@ -21,6 +21,7 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 public class FrontDataArrayAsAtom extends FrontPart {
+	private static final long serialVersionUID = 1L;
 
 	@Override
 	public String middle() {
@@ -47,8 +48,8 @@ public class FrontDataArrayAsAtom extends FrontPart {
 				dataType.get(atom.data),
 				HashTreePSet
 						.from(tags)
-						.plus(new PartTag("nested"))
-						.plusAll(this.tags.stream().map(s -> new FreeTag(s)).collect(Collectors.toSet())),
+						.plus(PartTag.of("nested"))
+						.plusAll(this.tags.stream().map(s -> FreeTag.of(s)).collect(Collectors.toSet())),
 				alignments,
 				visualDepth,
 				depthScore
@@ -23,6 +23,7 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 public abstract class FrontDataArrayBase extends FrontPart {
+	private static final long serialVersionUID = 1L;
 
 	@Configuration(optional = true)
 	public List<FrontSymbol> prefix = new ArrayList<>();
@@ -69,8 +70,8 @@ public abstract class FrontDataArrayBase extends FrontPart {
 				parent,
 				dataType.get(atom.data),
 				tags
-						.plus(new PartTag("array"))
-						.plusAll(this.tags.stream().map(s -> new FreeTag(s)).collect(Collectors.toSet())),
+						.plus(PartTag.of("array"))
+						.plusAll(this.tags.stream().map(s -> FreeTag.of(s)).collect(Collectors.toSet())),
 				alignments,
 				visualDepth,
 				depthScore
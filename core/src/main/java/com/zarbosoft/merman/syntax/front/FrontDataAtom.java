@@ -22,6 +22,7 @@ import java.util.stream.Collectors;
 
 @Configuration(name = "atom")
 public class FrontDataAtom extends FrontPart {
+	private static final long serialVersionUID = 1L;
 
 	@Override
 	public String middle() {
@@ -50,8 +51,8 @@ public class FrontDataAtom extends FrontPart {
 				parent,
 				dataType.get(atom.data),
 				tags
-						.plus(new PartTag("nested"))
-						.plusAll(this.tags.stream().map(s -> new FreeTag(s)).collect(Collectors.toSet())),
+						.plus(PartTag.of("nested"))
+						.plusAll(this.tags.stream().map(s -> FreeTag.of(s)).collect(Collectors.toSet())),
 				alignments,
 				visualDepth,
 				depthScore
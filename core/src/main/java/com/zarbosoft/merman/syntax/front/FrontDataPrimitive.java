@@ -23,6 +23,8 @@ import java.util.stream.Collectors;
 
 @Configuration(name = "primitive")
 public class FrontDataPrimitive extends FrontPart {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
 	private Set<String> tags = new HashSet<>();
 
@@ -47,8 +49,8 @@ public class FrontDataPrimitive extends FrontPart {
 				dataType.get(atom.data),
 				HashTreePSet
 						.from(tags)
-						.plus(new PartTag("primitive"))
-						.plusAll(this.tags.stream().map(s -> new FreeTag(s)).collect(Collectors.toSet())),
+						.plus(PartTag.of("primitive"))
+						.plusAll(this.tags.stream().map(s -> FreeTag.of(s)).collect(Collectors.toSet())),
 				visualDepth,
 				depthScore
 		);
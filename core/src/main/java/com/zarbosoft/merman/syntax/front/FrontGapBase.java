@@ -46,11 +46,14 @@ import java.io.ByteArrayInputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.zarbosoft.rendaw.common.Common.enumerate;
 import static com.zarbosoft.rendaw.common.Common.iterable;
 
 public abstract class FrontGapBase extends FrontPart {
+	private static final long serialVersionUID = 1L;
+
 	private MiddlePrimitive dataType;
 
 	private abstract static class ActionBase extends Action {
@@ -113,10 +116,10 @@ public abstract class FrontGapBase extends FrontPart {
 					parent,
 					FrontGapBase.this.dataType.get(atom.data),
 					tags
-							.plus(new PartTag("gap"))
+							.plus(PartTag.of("gap"))
 							.plusAll(FrontGapBase.this.tags
 									.stream()
-									.map(s -> new FreeTag(s))
+									.map(s -> FreeTag.of(s))
 									.collect(Collectors.toSet())),
 					visualDepth,
 					depthScore
@@ -127,11 +130,37 @@ public abstract class FrontGapBase extends FrontPart {
 		@Override
 		public void select(final Context context, final boolean leadFirst, final int beginOffset, final int endOffset) {
 			super.select(context, leadFirst, beginOffset, endOffset);
-			if (((GapSelection) selection).self.data.length() > 0) {
+			if (((GapSelection) selection).self.length() > 0) {
 				((GapSelection) selection).updateGap(context);
 			}
 		}
 
+		@Override
+		protected Stream<Action> getActions(final Context context) {
+			return Stream.of(new ActionParse());
+		}
+
+		/**
+		 * Replace the gap with the atoms its whole text describes, as displayed.
+		 */
+		@Action.StaticID(id = "parse")
+		private class ActionParse extends ActionBase {
+			@Override
+			public boolean run(final Context context) {
+				final ValuePrimitive self = FrontGapBase.this.dataType.get(data);
+				final Atom gap = self.parent.atom();
+				if (gap.type != context.syntax.gap || gap.parent == null)
+					return false;
+				final Atom atom = context.syntax.getFrontGrammar().parse(gap.parent.childType(), self.get());
+				if (atom == null)
+					return false;
+				gap.parent.replace(context, atom);
+				if (atom.visual != null)
+					atom.visual.selectDown(context);
+				return true;
+			}
+		}
+
 		@Override
 		public PrimitiveSelection createSelection(
 				final Context context, final boolean leadFirst, final int beginOffset, final int endOffset
@@ -192,8 +221,8 @@ public abstract class FrontGapBase extends FrontPart {
 					final PSet<Tag> tags = context.globalTags;
 
 					BoxStyle.Baked highlightStyle = context.getStyle(tags
-							.plus(new PartTag("details_selection"))
-							.plus(new PartTag("details"))).box;
+							.plus(PartTag.of("details_selection"))
+							.plus(PartTag.of("details"))).box;
 					if (highlightStyle == null)
 						highlightStyle = new BoxStyle.Baked();
 					highlightStyle.merge(context.syntax.gapChoiceStyle);
@@ -206,7 +235,7 @@ public abstract class FrontGapBase extends FrontPart {
 					group.add(table.group);
 
 					final Style.Baked lineStyle =
-							context.getStyle(tags.plus(new PartTag("details_choice")).plus(new PartTag("details")));
+							context.getStyle(tags.plus(PartTag.of("details_choice")).plus(PartTag.of("details")));
 					final int transverse = 0;
 					for (final Choice choice : choices) {
 						final RowLayout previewLayout = new RowLayout(context.display);
@@ -424,7 +453,7 @@ public abstract class FrontGapBase extends FrontPart {
 			// Parse string into primitive parts
 			final Set<String> filled = new HashSet<>();
 			filled.addAll(type.middle.keySet());
-			final Map<String, Value> data = new HashMap<>();
+			final Value[] data = new Value[type.slotCount()];
 			int at = 0;
 			for (final FrontPart front : iterable(frontIterator)) {
 				final Grammar grammar = new Grammar();
@@ -445,10 +474,10 @@ public abstract class FrontGapBase extends FrontPart {
 								.substring(at)
 								.getBytes(StandardCharsets.UTF_8)));
 				if (front instanceof FrontDataPrimitive) {
-					data.put(front.middle(), new ValuePrimitive(
+					data[type.slot(front.middle())] = new ValuePrimitive(
 							type.getDataPrimitive(front.middle()),
 							string.substring(at, at + (int) longest.second.distance())
-					));
+					);
 					filled.remove(front.middle());
 					out.nextInput = front;
 				} else
@@ -459,7 +488,7 @@ public abstract class FrontGapBase extends FrontPart {
 			}
 			if (at < string.length())
 				out.nextInput = null;
-			filled.forEach(middle -> data.put(middle, type.middle.get(middle).create(context.syntax)));
+			filled.forEach(middle -> data[type.slot(middle)] = type.middle.get(middle).create(context.syntax));
 			out.remainder = string.substring(at);
 			out.atom = new Atom(type, data);
 
@@ -11,12 +11,14 @@ import com.zarbosoft.merman.syntax.AtomType;
 import com.zarbosoft.rendaw.common.DeadCode;
 import org.pcollections.PSet;
 
+import java.io.Serializable;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
 @Configuration
-public abstract class FrontPart {
+public abstract class FrontPart implements Serializable {
+	private static final long serialVersionUID = 1L;
 
 	@Configuration
 	public Set<String> tags = new HashSet<>();
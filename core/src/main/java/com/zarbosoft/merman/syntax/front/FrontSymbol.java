@@ -19,6 +19,7 @@ import java.util.Map;
 
 @Configuration(name = "symbol")
 public class FrontSymbol extends FrontPart {
+	private static final long serialVersionUID = 1L;
 
 	@Configuration
 	public Symbol type;
@@ -50,7 +51,7 @@ public class FrontSymbol extends FrontPart {
 	}
 
 	public PSet<Tag> getTags(final Context context, final PSet<Tag> tags) {
-		return tags.plusAll(Context.asFreeTags(this.tags)).plus(new PartTag(Walk.decideName(type.getClass())));
+		return tags.plusAll(Context.asFreeTags(this.tags)).plus(PartTag.of(Walk.decideName(type.getClass())));
 	}
 
 	public Visual createVisual(
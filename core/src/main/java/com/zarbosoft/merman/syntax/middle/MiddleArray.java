@@ -6,6 +6,8 @@ import com.zarbosoft.merman.editor.Path;
 
 @Configuration(name = "array")
 public class MiddleArray extends MiddleArrayBase {
+	private static final long serialVersionUID = 1L;
+
 	@Override
 	public Path getPath(final ValueArray value, final int actualIndex) {
 		return value.getPath().add(String.format("%d", actualIndex));
@@ -13,6 +13,7 @@ import java.util.Set;
 
 @Configuration
 public abstract class MiddleArrayBase extends MiddlePart {
+	private static final long serialVersionUID = 1L;
 
 	public abstract Path getPath(final ValueArray value, final int actualIndex);
 
@@ -10,6 +10,7 @@ import java.util.Set;
 
 @Configuration(name = "atom")
 public class MiddleAtom extends MiddlePart {
+	private static final long serialVersionUID = 1L;
 
 	@Configuration
 	public String type;
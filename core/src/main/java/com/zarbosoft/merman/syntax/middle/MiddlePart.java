@@ -4,10 +4,13 @@ import com.zarbosoft.interface1.Configuration;
 import com.zarbosoft.merman.document.values.Value;
 import com.zarbosoft.merman.syntax.Syntax;
 
+import java.io.Serializable;
 import java.util.Set;
 
 @Configuration
-public abstract class MiddlePart {
+public abstract class MiddlePart implements Serializable {
+	private static final long serialVersionUID = 1L;
+
 	public String id;
 
 	public abstract void finish(Set<String> allTypes, Set<String> scalarTypes);
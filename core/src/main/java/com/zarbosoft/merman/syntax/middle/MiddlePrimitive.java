@@ -13,6 +13,7 @@ import java.util.Set;
 
 @Configuration(name = "primitive")
 public class MiddlePrimitive extends MiddlePart {
+	private static final long serialVersionUID = 1L;
 
 	@Configuration(optional = true)
 	public Pattern pattern = null;
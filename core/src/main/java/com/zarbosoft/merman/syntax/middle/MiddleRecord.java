@@ -9,6 +9,8 @@ import com.zarbosoft.merman.syntax.back.BackDataKey;
 
 @Configuration(name = "record")
 public class MiddleRecord extends MiddleArrayBase {
+	private static final long serialVersionUID = 1L;
+
 	@Override
 	public Path getPath(final ValueArray value, final int actualIndex) {
 		final Atom element = value.data.get(actualIndex / 2);
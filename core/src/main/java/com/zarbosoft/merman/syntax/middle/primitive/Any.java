@@ -6,6 +6,8 @@ import com.zarbosoft.pidgoon.nodes.Wildcard;
 
 @Configuration(name = "any")
 public class Any extends Pattern {
+	private static final long serialVersionUID = 1L;
+
 	@Override
 	public Node build() {
 		return new Wildcard();
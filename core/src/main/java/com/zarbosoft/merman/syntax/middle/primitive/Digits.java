@@ -7,6 +7,8 @@ import com.zarbosoft.pidgoon.bytes.Terminal;
 
 @Configuration(name = "digits")
 public class Digits extends Pattern {
+	private static final long serialVersionUID = 1L;
+
 	@Override
 	public Node build() {
 		return new Terminal(Range.closed((byte) '0', (byte) '9'));
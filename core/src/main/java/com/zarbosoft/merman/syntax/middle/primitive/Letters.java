@@ -8,6 +8,8 @@ import com.zarbosoft.pidgoon.bytes.Terminal;
 
 @Configuration(name = "letters")
 public class Letters extends Pattern {
+	private static final long serialVersionUID = 1L;
+
 	@Override
 	public Node build() {
 		return new Terminal(ImmutableRangeSet.<Byte>builder()
@@ -6,6 +6,8 @@ import com.zarbosoft.pidgoon.nodes.Repeat;
 
 @Configuration(name = "maybe")
 public class Maybe extends Pattern {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
 	public Pattern pattern;
 
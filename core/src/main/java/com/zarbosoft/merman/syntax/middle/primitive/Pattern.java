@@ -6,8 +6,12 @@ import com.zarbosoft.pidgoon.Node;
 import com.zarbosoft.pidgoon.bytes.Grammar;
 import com.zarbosoft.pidgoon.bytes.Parse;
 
+import java.io.Serializable;
+
 @Configuration
-public abstract class Pattern {
+public abstract class Pattern implements Serializable {
+	private static final long serialVersionUID = 1L;
+
 	public abstract Node build();
 
 	public class Matcher {
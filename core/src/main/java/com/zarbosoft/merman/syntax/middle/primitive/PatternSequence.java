@@ -7,6 +7,8 @@ import java.util.List;
 
 @Configuration(name = "seq")
 public class PatternSequence extends Pattern {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
 	public List<Pattern> children;
 
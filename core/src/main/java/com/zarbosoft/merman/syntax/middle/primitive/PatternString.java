@@ -6,6 +6,8 @@ import com.zarbosoft.pidgoon.bytes.Grammar;
 
 @Configuration(name = "string")
 public class PatternString extends Pattern {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
 	public String string;
 
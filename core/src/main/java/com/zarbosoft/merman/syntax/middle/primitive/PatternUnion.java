@@ -7,6 +7,8 @@ import java.util.List;
 
 @Configuration(name = "union")
 public class PatternUnion extends Pattern {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
 	public List<Pattern> children;
 
@@ -6,6 +6,7 @@ import com.zarbosoft.pidgoon.nodes.Repeat;
 
 @Configuration(name = "rep0")
 public class Repeat0 extends Pattern {
+	private static final long serialVersionUID = 1L;
 
 	@Configuration
 	public Pattern pattern;
@@ -6,6 +6,8 @@ import com.zarbosoft.pidgoon.nodes.Repeat;
 
 @Configuration(name = "rep1")
 public class Repeat1 extends Pattern {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
 	public Pattern pattern;
 
@@ -2,12 +2,15 @@ package com.zarbosoft.merman.syntax.style;
 
 import com.zarbosoft.interface1.Configuration;
 
+import java.io.Serializable;
 import java.lang.reflect.Field;
 
 import static com.zarbosoft.rendaw.common.Common.uncheck;
 
 @Configuration
-public class BoxStyle {
+public class BoxStyle implements Serializable {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration(optional = true, name = "pad")
 	public Integer padding = null;
 	@Configuration(optional = true, name = "round_start")
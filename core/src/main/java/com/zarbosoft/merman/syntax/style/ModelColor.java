@@ -2,10 +2,16 @@ package com.zarbosoft.merman.syntax.style;
 
 import com.zarbosoft.interface1.Configuration;
 
+import java.io.Serializable;
+
 @Configuration
-public abstract class ModelColor {
+public abstract class ModelColor implements Serializable {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration(name = "rgb")
 	public static class RGB extends ModelColor {
+		private static final long serialVersionUID = 1L;
+
 		public final static ModelColor white;
 
 		static {
@@ -26,6 +32,8 @@ public abstract class ModelColor {
 
 	@Configuration(name = "rgba")
 	public static class RGBA extends ModelColor {
+		private static final long serialVersionUID = 1L;
+
 		@Configuration
 		public double r;
 		@Configuration
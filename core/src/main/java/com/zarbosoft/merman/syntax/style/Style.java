@@ -6,6 +6,7 @@ import com.zarbosoft.merman.editor.Context;
 import com.zarbosoft.merman.editor.display.Font;
 import com.zarbosoft.merman.editor.visual.tags.Tag;
 
+import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.util.HashSet;
 import java.util.Set;
@@ -13,7 +14,8 @@ import java.util.Set;
 import static com.zarbosoft.rendaw.common.Common.uncheck;
 
 @Configuration
-public class Style {
+public class Style implements Serializable {
+	private static final long serialVersionUID = 1L;
 
 	@Configuration()
 	public Set<Tag> with = new HashSet<>();
@@ -7,8 +7,12 @@ import com.zarbosoft.merman.editor.wall.Brick;
 import com.zarbosoft.merman.editor.wall.BrickInterface;
 import com.zarbosoft.merman.syntax.style.Style;
 
+import java.io.Serializable;
+
 @Configuration
-public abstract class Symbol {
+public abstract class Symbol implements Serializable {
+	private static final long serialVersionUID = 1L;
+
 	public abstract DisplayNode createDisplay(Context context);
 
 	public abstract void style(Context context, DisplayNode node, Style.Baked style);
@@ -13,6 +13,8 @@ import java.nio.file.Paths;
 
 @Configuration(name = "image")
 public class SymbolImage extends Symbol {
+	private static final long serialVersionUID = 1L;
+
 	@Override
 	public DisplayNode createDisplay(final Context context) {
 		return context.display.image();
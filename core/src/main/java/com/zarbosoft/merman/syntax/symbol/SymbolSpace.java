@@ -11,6 +11,8 @@ import com.zarbosoft.merman.syntax.style.Style;
 
 @Configuration(name = "space")
 public class SymbolSpace extends Symbol {
+	private static final long serialVersionUID = 1L;
+
 	@Override
 	public DisplayNode createDisplay(final Context context) {
 		final Blank blank = context.display.blank();
@@ -11,6 +11,8 @@ import com.zarbosoft.merman.syntax.style.Style;
 
 @Configuration(name = "text")
 public class SymbolText extends Symbol {
+	private static final long serialVersionUID = 1L;
+
 	@Configuration
 	public String text;
 
@@ -3,8 +3,10 @@ package com.zarbosoft.merman;
 import com.google.common.collect.ImmutableList;
 import com.zarbosoft.merman.document.Atom;
 import com.zarbosoft.merman.document.values.ValueArray;
+import com.zarbosoft.merman.document.values.ValuePrimitive;
 import com.zarbosoft.merman.editor.Context;
 import com.zarbosoft.merman.editor.Path;
+import com.zarbosoft.merman.editor.history.changes.ChangePrimitiveAdd;
 import com.zarbosoft.merman.editor.visual.visuals.VisualArray;
 import com.zarbosoft.merman.helper.GeneralTestWizard;
 import com.zarbosoft.merman.helper.Helper;
@@ -467,6 +469,86 @@ public class TestActionsArray {
 		assertThat(context.selection.getPath().toList(), equalTo(ImmutableList.of("0", "3")));
 	}
 
+	private static Atom quoted(final String text) {
+		return new TreeBuilder(MiscSyntax.quoted).add("value", text).build();
+	}
+
+	@Test
+	public void testPasteSameType() {
+		final Atom restricted = new TreeBuilder(MiscSyntax.restrictedArray).addArray("value", quoted("b")).build();
+		final Context context = build(quoted("a"), restricted);
+		visual(context).select(context, true, 0, 0);
+		Helper.act(context, "copy");
+		((ValueArray) restricted.data.get("value")).select(context, true, 0, 0);
+		Helper.act(context, "paste");
+		assertTreeEqual(context,
+				new TreeBuilder(MiscSyntax.array)
+						.addArray("value",
+								quoted("a"),
+								new TreeBuilder(MiscSyntax.restrictedArray).addArray("value", quoted("a")).build()
+						)
+						.build(),
+				Helper.rootArray(context.document)
+		);
+	}
+
+	@Test
+	public void testPasteRejectedType() {
+		final Atom restricted = new TreeBuilder(MiscSyntax.restrictedArray).addArray("value", quoted("b")).build();
+		final Context context = build(new TreeBuilder(MiscSyntax.one).build(), restricted);
+		visual(context).select(context, true, 0, 0);
+		Helper.act(context, "copy");
+		((ValueArray) restricted.data.get("value")).select(context, true, 0, 0);
+		Helper.act(context, "paste");
+		assertTreeEqual(context,
+				new TreeBuilder(MiscSyntax.array)
+						.addArray("value",
+								new TreeBuilder(MiscSyntax.one).build(),
+								new TreeBuilder(MiscSyntax.restrictedArray).addArray("value", quoted("b")).build()
+						)
+						.build(),
+				Helper.rootArray(context.document)
+		);
+	}
+
+	@Test
+	public void testPasteGap() {
+		final Context context = build(MiscSyntax.syntax.gap.create(), new TreeBuilder(MiscSyntax.one).build());
+		visual(context).select(context, true, 0, 0);
+		Helper.act(context, "copy");
+		visual(context).select(context, true, 1, 1);
+		Helper.act(context, "paste");
+		assertTreeEqual(context,
+				new TreeBuilder(MiscSyntax.array)
+						.addArray("value", MiscSyntax.syntax.gap.create(), MiscSyntax.syntax.gap.create())
+						.build(),
+				Helper.rootArray(context.document)
+		);
+	}
+
+	@Test
+	public void testPasteTwiceIndependent() {
+		final Context context =
+				build(quoted("a"), new TreeBuilder(MiscSyntax.one).build(), new TreeBuilder(MiscSyntax.two).build());
+		visual(context).select(context, true, 0, 0);
+		Helper.act(context, "copy");
+		visual(context).select(context, true, 1, 1);
+		Helper.act(context, "paste");
+		visual(context).select(context, true, 2, 2);
+		Helper.act(context, "paste");
+		final ValueArray array = (ValueArray) ((Atom) context.locateShort(new Path("0"))).data.get("value");
+		assertThat(array.data.get(1) == array.data.get(2), equalTo(false));
+		assertThat(array.data.get(1) == context.clipboardEngine.getAtoms().get(0), equalTo(false));
+		context.history.apply(context,
+				new ChangePrimitiveAdd((ValuePrimitive) array.data.get(1).data.get("value"), 1, "x")
+		);
+		assertTreeEqual(context,
+				new TreeBuilder(MiscSyntax.array).addArray("value", quoted("a"), quoted("ax"), quoted("a")).build(),
+				Helper.rootArray(context.document)
+		);
+		assertTreeEqual(context.clipboardEngine.getAtoms().get(0), quoted("a"));
+	}
+
 	@Test
 	public void testPrefix() {
 		final Context context = buildFive();
@@ -827,4 +827,50 @@ public class TestActionsPrimitive {
 		);
 		assertSelection(context, 4, 4);
 	}
+
+	@Test
+	public void testNextElementCluster() {
+		final Context context = build("ae\u0301b");
+		visual(context).select(context, true, 1, 1);
+		Helper.act(context, "next_element");
+		assertSelection(context, 3, 3);
+		Helper.act(context, "previous_element");
+		assertSelection(context, 1, 1);
+	}
+
+	@Test
+	public void testLongWord() {
+		final StringBuilder word = new StringBuilder();
+		for (int i = 0; i < 1000; ++i)
+			word.append('a');
+		final Context context = build("x " + word + " y");
+		visual(context).select(context, true, 2, 2);
+		Helper.act(context, "next_word");
+		assertSelection(context, 1002, 1002);
+		Helper.act(context, "previous_word");
+		assertSelection(context, 2, 2);
+	}
+
+	@Test
+	public void testLargeValueEdit() {
+		final StringBuilder text = new StringBuilder();
+		while (text.length() < ValuePrimitive.ROPE_THRESHOLD * 2)
+			text.append("the dog ");
+		final int middle = ValuePrimitive.ROPE_THRESHOLD;
+		final Context context = build(text.toString());
+		visual(context).select(context, true, middle, middle);
+		context.selection.receiveText(context, "e\u0301");
+		assertSelection(context, middle + 2, middle + 2);
+		Helper.act(context, "previous_element");
+		assertSelection(context, middle, middle);
+		Helper.act(context, "next_element");
+		assertSelection(context, middle + 2, middle + 2);
+		Helper.act(context, "delete_previous");
+		assertSelection(context, middle, middle);
+		Helper.act(context, "next_word");
+		assertSelection(context, middle + 3, middle + 3);
+		assertThat(((ValuePrimitive) Helper.rootArray(context.document).data.get(0).data.get("value")).get(),
+				equalTo(text.toString())
+		);
+	}
 }
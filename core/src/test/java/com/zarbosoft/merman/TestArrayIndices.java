@@ -0,0 +1,78 @@
+package com.zarbosoft.merman;
+
+import com.google.common.collect.ImmutableList;
+import com.zarbosoft.merman.document.Atom;
+import com.zarbosoft.merman.document.values.ValueArray;
+import com.zarbosoft.merman.helper.MiscSyntax;
+import com.zarbosoft.merman.helper.TreeBuilder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class TestArrayIndices {
+	private static Atom element(final Random random) {
+		if (random.nextBoolean())
+			return new TreeBuilder(MiscSyntax.one).build();
+		return new TreeBuilder(MiscSyntax.multiback).add("a", "").add("b", "").build();
+	}
+
+	private static void check(final ValueArray array, final List<Atom> expected) {
+		assertThat(array.data.size(), equalTo(expected.size()));
+		assertThat(new ArrayList<>(array.data), equalTo(expected));
+		check(array);
+	}
+
+	private static void check(final ValueArray array) {
+		int actual = 0;
+		for (int i = 0; i < array.data.size(); ++i) {
+			final Atom atom = array.data.get(i);
+			final ValueArray.ArrayParent parent = (ValueArray.ArrayParent) atom.parent;
+			assertThat(parent.index(), equalTo(i));
+			assertThat(parent.actualIndex(), equalTo(actual));
+			assertThat(array.indexOfActual(actual), equalTo(i));
+			actual += atom.type.back().size();
+		}
+	}
+
+	@Test
+	public void testSplice() {
+		final Random random = new Random(4);
+		final List<Atom> initial = new ArrayList<>();
+		for (int i = 0; i < 50; ++i)
+			initial.add(element(random));
+		final ValueArray array = new ValueArray(null, initial);
+		final List<Atom> expected = new ArrayList<>(initial);
+		check(array, expected);
+		for (int step = 0; step < 200; ++step) {
+			final int index = random.nextInt(array.data.size() + 1);
+			final int remove = Math.min(random.nextInt(3), array.data.size() - index);
+			final List<Atom> add = new ArrayList<>();
+			for (int i = random.nextInt(4); i > 0; --i)
+				add.add(element(random));
+			array.splice(index, remove, add);
+			final List<Atom> removed = expected.subList(index, index + remove);
+			for (final Atom atom : removed)
+				assertThat(atom.parent, equalTo(null));
+			removed.clear();
+			expected.addAll(index, add);
+			check(array, expected);
+		}
+	}
+
+	@Test
+	public void testEmpty() {
+		final ValueArray array = new ValueArray(null, ImmutableList.of());
+		assertThat(array.indexOfActual(0), equalTo(-1));
+		array.splice(0, 0, ImmutableList.of(new TreeBuilder(MiscSyntax.one).build()));
+		check(array);
+		array.splice(0, 1, ImmutableList.of());
+		assertThat(array.indexOfActual(0), equalTo(-1));
+		assertThat(array.data.isEmpty(), equalTo(true));
+		assertThat(array.data.iterator().hasNext(), equalTo(false));
+	}
+}
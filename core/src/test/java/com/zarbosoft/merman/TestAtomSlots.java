@@ -0,0 +1,119 @@
+package com.zarbosoft.merman;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.zarbosoft.merman.document.Atom;
+import com.zarbosoft.merman.document.values.Value;
+import com.zarbosoft.merman.document.values.ValuePrimitive;
+import com.zarbosoft.merman.helper.MiscSyntax;
+import com.zarbosoft.merman.helper.TreeBuilder;
+import com.zarbosoft.merman.syntax.middle.MiddlePrimitive;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class TestAtomSlots {
+	private static Atom multiplier() {
+		return new TreeBuilder(MiscSyntax.multiplier)
+				.add("text", "4")
+				.add("value", new TreeBuilder(MiscSyntax.one).build())
+				.build();
+	}
+
+	@Test
+	public void testLayout() {
+		assertThat(MiscSyntax.multiplier.slotCount(), equalTo(2));
+		// Ordered by id, independent of the back or front order
+		assertThat(MiscSyntax.multiplier.slot("text"), equalTo(0));
+		assertThat(MiscSyntax.multiplier.slot("value"), equalTo(1));
+		assertThat(MiscSyntax.multiplier.slotId(0), equalTo("text"));
+		assertThat(MiscSyntax.multiplier.slotId(1), equalTo("value"));
+		assertTrue(MiscSyntax.multiplier.slot("first") < 0);
+		assertThat(MiscSyntax.one.slotCount(), equalTo(0));
+	}
+
+	@Test
+	public void testGet() {
+		final Atom atom = multiplier();
+		assertThat(atom.get(MiscSyntax.multiplier.slot("text")), sameInstance(atom.data.get("text")));
+		assertThat(atom.get(MiscSyntax.multiplier.slot("value")), sameInstance(atom.data.get("value")));
+		assertThat(((ValuePrimitive) atom.data.get("text")).get(), equalTo("4"));
+	}
+
+	@Test
+	public void testData() {
+		final Atom atom = multiplier();
+		assertThat(atom.data.size(), equalTo(2));
+		assertTrue(atom.data.containsKey("text"));
+		assertFalse(atom.data.containsKey("first"));
+		assertFalse(atom.data.containsKey(3));
+		assertThat(atom.data.get("first"), nullValue());
+		assertThat(atom.data.get(3), nullValue());
+		assertThat(new ArrayList<>(atom.data.keySet()), equalTo(ImmutableList.of("text", "value")));
+		final Map<String, Value> copy = new HashMap<>(atom.data);
+		assertThat(atom.data, equalTo(copy));
+		assertThat(copy, equalTo(atom.data));
+		assertThat(atom.data.hashCode(), equalTo(copy.hashCode()));
+		final List<String> visited = new ArrayList<>();
+		atom.data.forEach((k, v) -> {
+			assertThat(v, sameInstance(atom.data.get(k)));
+			visited.add(k);
+		});
+		assertThat(visited, equalTo(ImmutableList.of("text", "value")));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testDataUnmodifiable() {
+		final Atom atom = multiplier();
+		atom.data.put("text", new ValuePrimitive((MiddlePrimitive) MiscSyntax.multiplier.middle().get("text"), "5"));
+	}
+
+	@Test
+	public void testEmpty() {
+		final Atom atom = new TreeBuilder(MiscSyntax.one).build();
+		assertThat(atom.data.size(), equalTo(0));
+		assertTrue(atom.data.isEmpty());
+		assertFalse(atom.data.entrySet().iterator().hasNext());
+	}
+
+	@Test(expected = AssertionError.class)
+	public void testUnknownMiddle() {
+		new Atom(MiscSyntax.one,
+				ImmutableMap.of("value",
+						new ValuePrimitive((MiddlePrimitive) MiscSyntax.multiplier.middle().get("text"), "5")
+				)
+		);
+	}
+
+	@Test
+	public void testSharedParent() {
+		final Atom atom = multiplier();
+		final Value text = atom.data.get("text");
+		final Value value = atom.data.get("value");
+		assertThat(text.parent, sameInstance(value.parent));
+		assertThat(text.parent.atom(), sameInstance(atom));
+	}
+
+	@Test
+	public void testCopy() {
+		final Atom atom = multiplier();
+		final Atom copy = atom.copy();
+		assertThat(copy.type, sameInstance(atom.type));
+		assertThat(copy.data.get("text"), not(sameInstance(atom.data.get("text"))));
+		assertThat(((ValuePrimitive) copy.data.get("text")).get(), equalTo("4"));
+		assertThat(copy.data.get("text").parent, sameInstance(copy.data.get("value").parent));
+		assertThat(copy.data.get("text").parent.atom(), sameInstance(copy));
+		assertThat(atom.data.get("text").parent.atom(), sameInstance(atom));
+	}
+}
@@ -0,0 +1,91 @@
+package com.zarbosoft.merman;
+
+import com.google.common.collect.ImmutableList;
+import com.zarbosoft.merman.document.Atom;
+import com.zarbosoft.merman.document.values.ValueArray;
+import com.zarbosoft.merman.document.values.ValuePrimitive;
+import com.zarbosoft.merman.editor.Context;
+import com.zarbosoft.merman.editor.history.changes.ChangeArray;
+import com.zarbosoft.merman.editor.history.changes.ChangePrimitiveAdd;
+import com.zarbosoft.merman.editor.history.changes.ChangePrimitiveRemove;
+import com.zarbosoft.merman.helper.MiscSyntax;
+import com.zarbosoft.merman.helper.TreeBuilder;
+import org.junit.Test;
+
+import static com.zarbosoft.merman.helper.Helper.buildDoc;
+import static com.zarbosoft.merman.helper.Helper.rootArray;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+public class TestContentHash {
+	private static Atom quoted(final String text) {
+		return new TreeBuilder(MiscSyntax.quoted).add("value", text).build();
+	}
+
+	private static Atom tree() {
+		return new TreeBuilder(MiscSyntax.array)
+				.addArray("value", quoted("hog"), new TreeBuilder(MiscSyntax.one).build())
+				.build();
+	}
+
+	private static Atom[] quotes(final int count, final int changed, final String changedText) {
+		final Atom[] out = new Atom[count];
+		for (int i = 0; i < count; ++i)
+			out[i] = quoted(i == changed ? changedText : Integer.toString(i));
+		return out;
+	}
+
+	@Test
+	public void testEqual() {
+		assertThat(tree().hash(), equalTo(tree().hash()));
+	}
+
+	@Test
+	public void testPrimitiveChange() {
+		final Context context = buildDoc(MiscSyntax.syntax, tree());
+		final long before = context.document.hash();
+		final Atom quoted = ((ValueArray) rootArray(context.document).data.get(0).data.get("value")).data.get(0);
+		final ValuePrimitive value = (ValuePrimitive) quoted.data.get("value");
+		context.history.apply(context, new ChangePrimitiveAdd(value, 3, "s"));
+		assertThat(context.document.hash(), not(equalTo(before)));
+		context.history.apply(context, new ChangePrimitiveRemove(value, 3, 1));
+		assertThat(context.document.hash(), equalTo(before));
+	}
+
+	@Test
+	public void testArrayChange() {
+		final Context context = buildDoc(MiscSyntax.syntax, tree());
+		final long before = context.document.hash();
+		final ValueArray array = (ValueArray) rootArray(context.document).data.get(0).data.get("value");
+		final Atom moved = array.data.get(1);
+		context.history.apply(context, new ChangeArray(array, 1, 1, ImmutableList.of()));
+		context.history.apply(context, new ChangeArray(array, 0, 0, ImmutableList.of(moved)));
+		assertThat(context.document.hash(), not(equalTo(before)));
+		context.history.finishChange(context);
+		context.history.undo(context);
+		assertThat(context.document.hash(), equalTo(before));
+	}
+
+	@Test
+	public void testLongArrayElementChange() {
+		final Context context = buildDoc(MiscSyntax.syntax, quotes(1000, -1, null));
+		final long before = context.document.hash();
+		final ValuePrimitive value = (ValuePrimitive) rootArray(context.document).data.get(617).data.get("value");
+		context.history.apply(context, new ChangePrimitiveAdd(value, 0, "x"));
+		assertThat(context.document.hash(), not(equalTo(before)));
+		assertThat(context.document.hash(),
+				equalTo(buildDoc(MiscSyntax.syntax, quotes(1000, 617, "x617")).document.hash())
+		);
+		final ValueArray root = rootArray(context.document);
+		context.history.apply(context, new ChangeArray(root, 200, 1, ImmutableList.of()));
+		context.history.apply(context, new ChangeArray(root, 400, 0, ImmutableList.of(quoted("y"))));
+		final Atom[] source = quotes(1000, 617, "x617");
+		final Atom[] spliced = new Atom[1000];
+		System.arraycopy(source, 0, spliced, 0, 200);
+		System.arraycopy(source, 201, spliced, 200, 200);
+		spliced[400] = quoted("y");
+		System.arraycopy(source, 401, spliced, 401, 599);
+		assertThat(context.document.hash(), equalTo(buildDoc(MiscSyntax.syntax, spliced).document.hash()));
+	}
+}
@@ -0,0 +1,192 @@
+package com.zarbosoft.merman;
+
+import com.zarbosoft.merman.document.Atom;
+import com.zarbosoft.merman.document.values.Value;
+import com.zarbosoft.merman.document.values.ValuePrimitive;
+import com.zarbosoft.merman.editor.Context;
+import com.zarbosoft.merman.editor.history.Diff;
+import com.zarbosoft.merman.editor.history.changes.ChangePrimitiveAdd;
+import com.zarbosoft.merman.helper.MiscSyntax;
+import com.zarbosoft.merman.helper.TreeBuilder;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static com.zarbosoft.merman.helper.Helper.assertTreeEqual;
+import static com.zarbosoft.merman.helper.Helper.buildDoc;
+import static com.zarbosoft.merman.helper.Helper.rootArray;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class TestDiff {
+	private static Atom quoted(final String text) {
+		return new TreeBuilder(MiscSyntax.quoted).add("value", text).build();
+	}
+
+	/**
+	 * @return A quoted atom whose hash is the same as every other colliding atom's
+	 */
+	private static Atom colliding(final String text) {
+		final Atom quoted = quoted(text);
+		final Value[] values = new Value[quoted.type.slotCount()];
+		for (int i = 0; i < values.length; ++i)
+			values[i] = quoted.get(i);
+		return new Atom(quoted.type, values) {
+			@Override
+			public long hash() {
+				return 1;
+			}
+		};
+	}
+
+	private static Atom one() {
+		return new TreeBuilder(MiscSyntax.one).build();
+	}
+
+	private static Atom array(final Atom... elements) {
+		return new TreeBuilder(MiscSyntax.array).addArray("value", elements).build();
+	}
+
+	private static Atom[] quotes(final int count, final int seed) {
+		final Random random = new Random(seed);
+		final Atom[] out = new Atom[count];
+		for (int i = 0; i < count; ++i)
+			out[i] = quoted(Integer.toString(random.nextInt(count / 4)));
+		return out;
+	}
+
+	private static void check(final Supplier<Atom[]> from, final Supplier<Atom[]> to, final int expectedChanges) {
+		assertThat(check(from, to), equalTo(expectedChanges));
+	}
+
+	/**
+	 * @return The number of changes
+	 */
+	private static int check(final Supplier<Atom[]> from, final Supplier<Atom[]> to) {
+		final Context context = buildDoc(MiscSyntax.syntax, from.get());
+		final Context expected = buildDoc(MiscSyntax.syntax, to.get());
+		final int count = Diff.diff(context.document, expected.document).size();
+		Diff.apply(context, Diff.diff(context.document, expected.document));
+		assertTreeEqual(rootArray(expected.document), rootArray(context.document));
+		assertThat(context.document.hash(), equalTo(expected.document.hash()));
+		context.history.undo(context);
+		assertTreeEqual(rootArray(buildDoc(MiscSyntax.syntax, from.get()).document), rootArray(context.document));
+		context.history.redo(context);
+		assertTreeEqual(rootArray(expected.document), rootArray(context.document));
+		return count;
+	}
+
+	@Test
+	public void testUnchanged() {
+		check(() -> new Atom[] {quoted("a"), one()}, () -> new Atom[] {quoted("a"), one()}, 0);
+	}
+
+	@Test
+	public void testPrimitive() {
+		check(() -> new Atom[] {quoted("a"), quoted("hog"), quoted("c")},
+				() -> new Atom[] {quoted("a"), quoted("hug"), quoted("c")},
+				2
+		);
+	}
+
+	@Test
+	public void testInsertRemove() {
+		check(() -> new Atom[] {quoted("a"), quoted("b"), quoted("c"), quoted("d")},
+				() -> new Atom[] {quoted("x"), quoted("a"), quoted("c"), quoted("d"), one()},
+				3
+		);
+	}
+
+	@Test
+	public void testMove() {
+		check(() -> new Atom[] {quoted("a"), quoted("b"), quoted("c")},
+				() -> new Atom[] {quoted("c"), quoted("a"), quoted("b")},
+				2
+		);
+	}
+
+	@Test
+	public void testNested() {
+		check(() -> new Atom[] {array(quoted("a"), one(), quoted("b")), quoted("c")},
+				() -> new Atom[] {array(quoted("a"), quoted("b2")), quoted("c")},
+				1
+		);
+	}
+
+	@Test
+	public void testHashCollision() {
+		check(() -> new Atom[] {colliding("a")}, () -> new Atom[] {colliding("b")}, 2);
+		check(() -> new Atom[] {colliding("a"), one(), colliding("b")},
+				() -> new Atom[] {colliding("b"), one(), colliding("a")},
+				4
+		);
+	}
+
+	@Test
+	public void testFromEmpty() {
+		check(() -> new Atom[] {}, () -> new Atom[] {quoted("a"), one()}, 1);
+	}
+
+	@Test
+	public void testToEmpty() {
+		check(() -> new Atom[] {quoted("a"), one()}, () -> new Atom[] {}, 1);
+	}
+
+	@Test
+	public void testDuplicates() {
+		check(() -> new Atom[] {quoted("a"), quoted("a"), one(), quoted("a")},
+				() -> new Atom[] {one(), quoted("a"), quoted("a"), one(), quoted("a"), one()}
+		);
+	}
+
+	@Test
+	public void testTargetUnmodified() {
+		final Context context = buildDoc(MiscSyntax.syntax, quoted("a"));
+		final Context expected = buildDoc(MiscSyntax.syntax, array(quoted("b")), quoted("c"));
+		final long hash = expected.document.hash();
+		Diff.apply(context, Diff.diff(context.document, expected.document));
+		assertThat(rootArray(context.document).data.get(0), not(sameInstance(rootArray(expected.document).data.get(0))));
+		final ValuePrimitive value = (ValuePrimitive) rootArray(context.document).data.get(1).data.get("value");
+		context.history.apply(context, new ChangePrimitiveAdd(value, 0, "x"));
+		assertThat(expected.document.hash(), equalTo(hash));
+		assertThat(((ValuePrimitive) rootArray(expected.document).data.get(1).data.get("value")).get(), equalTo("c"));
+	}
+
+	/**
+	 * About 100k atoms in nested arrays.
+	 *
+	 * @param edit Change a primitive, replace an element, and empty an array, each in a different nested array
+	 */
+	private static Atom[] large(final boolean edit) {
+		final Atom[] out = new Atom[1000];
+		for (int i = 0; i < out.length; ++i) {
+			final Atom[] elements = new Atom[99];
+			for (int j = 0; j < elements.length; ++j)
+				elements[j] = quoted(i + "." + j);
+			if (edit && i == 17)
+				elements[40] = quoted("17.40x");
+			if (edit && i == 500)
+				elements[0] = one();
+			out[i] = array(elements);
+		}
+		if (edit)
+			out[999] = array();
+		return out;
+	}
+
+	@Test
+	public void testLarge() {
+		check(() -> large(false), () -> large(true), 3);
+	}
+
+	@Test
+	public void testRandom() {
+		for (int seed = 0; seed < 20; ++seed) {
+			final int fromSeed = seed;
+			check(() -> quotes(200, fromSeed), () -> quotes(200, fromSeed + 1000));
+		}
+	}
+}
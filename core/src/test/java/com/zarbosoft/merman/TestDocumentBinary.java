@@ -0,0 +1,219 @@
+package com.zarbosoft.merman;
+
+import com.google.common.collect.ImmutableList;
+import com.zarbosoft.merman.document.Atom;
+import com.zarbosoft.merman.document.Document;
+import com.zarbosoft.merman.document.InvalidDocument;
+import com.zarbosoft.merman.editor.serialization.Convert;
+import com.zarbosoft.merman.editor.serialization.Load;
+import com.zarbosoft.merman.editor.serialization.Write;
+import com.zarbosoft.merman.editor.serialization.binary.BinaryEventSource;
+import com.zarbosoft.merman.editor.serialization.binary.BinaryFormat;
+import com.zarbosoft.merman.helper.GroupBuilder;
+import com.zarbosoft.merman.helper.Helper;
+import com.zarbosoft.merman.helper.SyntaxBuilder;
+import com.zarbosoft.merman.helper.TreeBuilder;
+import com.zarbosoft.merman.helper.TypeBuilder;
+import com.zarbosoft.merman.syntax.FreeAtomType;
+import com.zarbosoft.merman.syntax.Syntax;
+import com.zarbosoft.rendaw.common.Common;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.zarbosoft.merman.helper.SyntaxLoadSave.syntax;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class TestDocumentBinary {
+	private static String luxem(final Document document) {
+		final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		Write.write(document.root, syntax, Syntax.BackType.LUXEM, stream);
+		return new String(stream.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	public void check(final String source) {
+		final Document document = syntax.load(source);
+		final ByteArrayOutputStream binary = new ByteArrayOutputStream();
+		Write.write(document.root, syntax, Syntax.BackType.BINARY, binary);
+		final Document loaded =
+				Load.load(syntax, Syntax.BackType.BINARY, new ByteArrayInputStream(binary.toByteArray()));
+		assertThat(luxem(loaded), equalTo(luxem(document)));
+	}
+
+	@Test
+	public void testPrimitive() {
+		check("x");
+	}
+
+	@Test
+	public void testRootArray() {
+		check("x,x");
+	}
+
+	@Test
+	public void testTypedPrimitive() {
+		check("(z)x");
+	}
+
+	@Test
+	public void testRecord() {
+		check("(typedRecord){a:x,b:y}");
+	}
+
+	@Test
+	public void testRepeatedStrings() {
+		check("(typedRecord){a:x,b:y},(z)x,(typedRecord){a:x,b:y},(z)x");
+	}
+
+	@Test(expected = InvalidDocument.class)
+	public void testNotBinary() {
+		Load.load(syntax, Syntax.BackType.BINARY, new ByteArrayInputStream("x".getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Read every event from a binary document with the given events after the header.
+	 *
+	 * @param events
+	 */
+	private static void read(final int... events) {
+		final ByteArrayOutputStream data = new ByteArrayOutputStream();
+		data.write(BinaryFormat.magic, 0, BinaryFormat.magic.length);
+		for (final int b : events)
+			data.write(b);
+		final BinaryEventSource source = new BinaryEventSource(new ByteArrayInputStream(data.toByteArray()));
+		while (source.next() != null) {
+		}
+	}
+
+	@Test
+	public void testStringRead() {
+		read(BinaryFormat.primitive, 2, 'h', 'i', BinaryFormat.key, 0, 1, 'a', BinaryFormat.key, 1);
+		// Longer than one read chunk: 70000 as a varint
+		final int[] large = new int[4 + 70000];
+		large[0] = BinaryFormat.primitive;
+		large[1] = 0xF0;
+		large[2] = 0xA2;
+		large[3] = 0x04;
+		Arrays.fill(large, 4, large.length, 'x');
+		read(large);
+	}
+
+	@Test(expected = InvalidDocument.class)
+	public void testHugeStringLength() {
+		read(BinaryFormat.primitive, 0xFF, 0xFF, 0xFF, 0xFF, 0x07, 'x');
+	}
+
+	@Test(expected = InvalidDocument.class)
+	public void testNegativeStringLength() {
+		read(BinaryFormat.primitive, 0xFF, 0xFF, 0xFF, 0xFF, 0x0F, 'x');
+	}
+
+	@Test(expected = InvalidDocument.class)
+	public void testLongVarint() {
+		read(BinaryFormat.primitive, 0x80, 0x80, 0x80, 0x80, 0x80, 0x01);
+	}
+
+	@Test(expected = InvalidDocument.class)
+	public void testUnknownStringId() {
+		read(BinaryFormat.key, 0, 1, 'a', BinaryFormat.key, 2);
+	}
+
+	@Test(expected = InvalidDocument.class)
+	public void testHugeStringId() {
+		read(BinaryFormat.key, 0xFF, 0xFF, 0xFF, 0xFF, 0x0F);
+	}
+
+	private static byte[] convert(final byte[] source, final Syntax.BackType from, final Syntax.BackType to) {
+		final ByteArrayOutputStream dest = new ByteArrayOutputStream();
+		Convert.convert(syntax, from, new ByteArrayInputStream(source), to, dest);
+		return dest.toByteArray();
+	}
+
+	@Test
+	public void testConvert() {
+		final String source = "(typedRecord){a:x,b:y},(z)x,x";
+		final byte[] binary =
+				convert(source.getBytes(StandardCharsets.UTF_8), Syntax.BackType.LUXEM, Syntax.BackType.BINARY);
+		final byte[] luxem = convert(binary, Syntax.BackType.BINARY, Syntax.BackType.LUXEM);
+		assertThat(new String(luxem, StandardCharsets.UTF_8), equalTo(luxem(syntax.load(source))));
+	}
+
+	@Test
+	public void testConvertPath() throws IOException {
+		final String source = "(typedRecord){a:x,b:y},(z)x,x";
+		final Path luxem = Files.createTempFile("merman", ".luxem");
+		final Path binary = Files.createTempFile("merman", ".bin");
+		try {
+			Files.write(luxem, source.getBytes(StandardCharsets.UTF_8));
+			Convert.convert(syntax, Syntax.BackType.LUXEM, luxem, Syntax.BackType.BINARY, binary);
+			Files.delete(luxem);
+			Convert.convert(syntax, Syntax.BackType.BINARY, binary, Syntax.BackType.LUXEM, luxem);
+			assertThat(new String(Files.readAllBytes(luxem), StandardCharsets.UTF_8),
+					equalTo(luxem(syntax.load(source)))
+			);
+		} finally {
+			Files.deleteIfExists(luxem);
+			Files.deleteIfExists(binary);
+		}
+	}
+
+	private static final FreeAtomType primitive =
+			new TypeBuilder("primitive").back(Helper.buildBackPrimitive("x")).frontMark("x").build();
+	private static final FreeAtomType typedPrimitive = new TypeBuilder("typedPrimitive")
+			.back(Helper.buildBackType("z", Helper.buildBackPrimitive("x")))
+			.frontMark("z")
+			.build();
+	private static final Syntax binarySyntax = new SyntaxBuilder("any")
+			.binary()
+			.type(primitive)
+			.type(typedPrimitive)
+			.group("any", new GroupBuilder().type(primitive).type(typedPrimitive).build())
+			.build();
+
+	@Test
+	public void testLoadMultiple() {
+		final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		Write.write(ImmutableList.of(new TreeBuilder(typedPrimitive).build(),
+				new TreeBuilder(primitive).build(),
+				new TreeBuilder(typedPrimitive).build()
+		), binarySyntax, stream);
+		final List<Atom> loaded =
+				Load.loadMultiple(binarySyntax, "any", new ByteArrayInputStream(stream.toByteArray()));
+		assertThat(loaded.size(), equalTo(3));
+		assertThat(loaded.get(0).type, equalTo(typedPrimitive));
+		assertThat(loaded.get(1).type, equalTo(primitive));
+		assertThat(loaded.get(2).type, equalTo(typedPrimitive));
+	}
+
+	@Test
+	public void testWriteMultipleBuffered() {
+		final List<Atom> atoms = new ArrayList<>();
+		for (int i = 0; i < 100; ++i)
+			atoms.add(new TreeBuilder(typedPrimitive).build());
+		final Common.Mutable<Integer> writes = new Common.Mutable<>(0);
+		final ByteArrayOutputStream stream = new ByteArrayOutputStream() {
+			@Override
+			public synchronized void write(final int b) {
+				writes.value += 1;
+				super.write(b);
+			}
+
+			@Override
+			public synchronized void write(final byte[] b, final int off, final int len) {
+				writes.value += 1;
+				super.write(b, off, len);
+			}
+		};
+		Write.write(atoms, binarySyntax, stream);
+		assertThat(writes.value, equalTo(1));
+	}
+}
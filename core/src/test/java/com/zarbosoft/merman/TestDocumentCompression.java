@@ -0,0 +1,64 @@
+package com.zarbosoft.merman;
+
+import com.zarbosoft.merman.document.Document;
+import com.zarbosoft.merman.editor.Context;
+import com.zarbosoft.merman.helper.TreeBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+
+import static com.zarbosoft.merman.helper.Helper.buildDoc;
+import static com.zarbosoft.merman.helper.SyntaxLoadSave.*;
+import static com.zarbosoft.rendaw.common.Common.uncheck;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class TestDocumentCompression {
+	private Path directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("merman");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.walk(directory).sorted(Comparator.reverseOrder()).forEach(p -> uncheck(() -> Files.delete(p)));
+	}
+
+	private static String dump(final Document document) {
+		final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		document.write(stream);
+		return new String(stream.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private void roundTrip(final String name) throws IOException {
+		final Context context = buildDoc(syntax,
+				new TreeBuilder(dataPrimitive).add("value", "dog").build(),
+				new TreeBuilder(record).build()
+		);
+		final Path path = directory.resolve(name);
+		context.document.write(path);
+		assertThat(dump(syntax.load(path)), equalTo(dump(context.document)));
+	}
+
+	@Test
+	public void testGzip() throws IOException {
+		roundTrip("document.luxem.gz");
+		final byte[] data = Files.readAllBytes(directory.resolve("document.luxem.gz"));
+		assertThat(data[0], equalTo((byte) 0x1f));
+		assertThat(data[1], equalTo((byte) 0x8b));
+	}
+
+	@Test
+	public void testDeflate() throws IOException {
+		roundTrip("document.luxem.deflate");
+	}
+}
@@ -0,0 +1,297 @@
+package com.zarbosoft.merman;
+
+import com.zarbosoft.merman.document.Document;
+import com.zarbosoft.merman.document.InvalidDocument;
+import com.zarbosoft.merman.editor.serialization.Load;
+import com.zarbosoft.merman.helper.BackArrayBuilder;
+import com.zarbosoft.merman.helper.BackRecordBuilder;
+import com.zarbosoft.merman.helper.GroupBuilder;
+import com.zarbosoft.merman.helper.Helper;
+import com.zarbosoft.merman.helper.SyntaxBuilder;
+import com.zarbosoft.merman.helper.SyntaxLoadSave;
+import com.zarbosoft.merman.helper.TreeBuilder;
+import com.zarbosoft.merman.helper.TypeBuilder;
+import com.zarbosoft.merman.syntax.FreeAtomType;
+import com.zarbosoft.merman.syntax.Syntax;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+
+import static com.zarbosoft.merman.helper.Helper.assertTreeEqual;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestDocumentDirectLoad {
+	private final static FreeAtomType typedPrimitive;
+	private final static FreeAtomType array;
+	private final static FreeAtomType dataPrimitive;
+	private final static FreeAtomType dataArray;
+	private final static FreeAtomType dataRecord;
+	private final static FreeAtomType dataRecordElement;
+	private final static Syntax syntax;
+	private final static FreeAtomType circle;
+	private final static FreeAtomType square;
+	private final static Syntax records;
+
+	static {
+		typedPrimitive = new TypeBuilder("typedPrimitive")
+				.back(Helper.buildBackType("z", Helper.buildBackPrimitive("x")))
+				.frontMark("x")
+				.build();
+		array = new TypeBuilder("array")
+				.back(Helper.buildBackType("typedArray",
+						new BackArrayBuilder()
+								.add(Helper.buildBackPrimitive("x"))
+								.add(Helper.buildBackPrimitive("y"))
+								.build()
+				))
+				.frontMark("x")
+				.build();
+		dataPrimitive = new TypeBuilder("dataPrimitive")
+				.middlePrimitive("value")
+				.back(Helper.buildBackType("p", Helper.buildBackDataPrimitive("value")))
+				.frontDataPrimitive("value")
+				.build();
+		dataArray = new TypeBuilder("dataArray")
+				.middleArray("value", "value")
+				.back(Helper.buildBackDataArray("value"))
+				.frontDataArray("value")
+				.build();
+		dataRecord = new TypeBuilder("dataRecord")
+				.middleRecord("value", "dataRecordElement")
+				.back(Helper.buildBackDataRecord("value"))
+				.frontDataArray("value")
+				.build();
+		dataRecordElement = new TypeBuilder("dataRecordElement")
+				.middlePrimitive("key")
+				.middleAtom("value", "value")
+				.back(Helper.buildBackDataKey("key"))
+				.back(Helper.buildBackDataAtom("value"))
+				.frontDataPrimitive("key")
+				.frontDataNode("value")
+				.build();
+		syntax = new SyntaxBuilder("value")
+				.type(typedPrimitive)
+				.type(array)
+				.type(dataPrimitive)
+				.type(dataArray)
+				.type(dataRecord)
+				.type(dataRecordElement)
+				.group(
+						"value",
+						new GroupBuilder()
+								.type(typedPrimitive)
+								.type(array)
+								.type(dataPrimitive)
+								.type(dataArray)
+								.type(dataRecord)
+								.build()
+				)
+				.build();
+		circle = shape("circle", "radius");
+		square = shape("square", "side");
+		records = new SyntaxBuilder("shape")
+				.json()
+				.type(circle)
+				.type(square)
+				.group("shape", new GroupBuilder().type(circle).type(square).build())
+				.build();
+	}
+
+	private static FreeAtomType shape(final String id, final String size) {
+		return new TypeBuilder(id)
+				.middlePrimitive("name")
+				.middlePrimitive(size)
+				.back(new BackRecordBuilder()
+						.add("type", Helper.buildBackPrimitive(id))
+						.add("name", Helper.buildBackDataPrimitive("name"))
+						.add(size, Helper.buildBackDataPrimitive(size))
+						.build())
+				.frontDataPrimitive("name")
+				.frontDataPrimitive(size)
+				.build();
+	}
+
+	@Test
+	public void testAvailable() {
+		assertTrue(syntax.getDirectLoad().conflicts.toString(), syntax.getDirectLoad().available());
+	}
+
+	@Test
+	public void testAmbiguous() {
+		assertFalse(SyntaxLoadSave.syntax.getDirectLoad().available());
+	}
+
+	@Test
+	public void testRootArray() {
+		final Document doc = syntax.load("(z)x,(p)dog,(typedArray)[x,y]");
+		assertTreeEqual(Helper.rootArray(doc).data.get(0), new TreeBuilder(typedPrimitive).build());
+		assertTreeEqual(Helper.rootArray(doc).data.get(1), new TreeBuilder(dataPrimitive).add("value", "dog").build());
+		assertTreeEqual(Helper.rootArray(doc).data.get(2), new TreeBuilder(array).build());
+	}
+
+	@Test
+	public void testNested() {
+		final Document doc = syntax.load("[(z)x,[(p)dog]]");
+		assertTreeEqual(Helper.rootArray(doc).data.get(0),
+				new TreeBuilder(dataArray)
+						.addArray("value",
+								new TreeBuilder(typedPrimitive).build(),
+								new TreeBuilder(dataArray)
+										.addArray("value", new TreeBuilder(dataPrimitive).add("value", "dog").build())
+										.build()
+						)
+						.build()
+		);
+	}
+
+	@Test
+	public void testRecord() {
+		final Document doc = syntax.load("{cat:(z)x,dog:(p)y}");
+		assertTreeEqual(Helper.rootArray(doc).data.get(0),
+				new TreeBuilder(dataRecord)
+						.addArray("value",
+								new TreeBuilder(dataRecordElement)
+										.add("key", "cat")
+										.add("value", new TreeBuilder(typedPrimitive).build())
+										.build(),
+								new TreeBuilder(dataRecordElement)
+										.add("key", "dog")
+										.add("value", new TreeBuilder(dataPrimitive).add("value", "y").build())
+										.build()
+						)
+						.build()
+		);
+	}
+
+	@Test
+	public void testRecordsAvailable() {
+		assertTrue(records.getDirectLoad().conflicts.toString(), records.getDirectLoad().available());
+	}
+
+	@Test
+	public void testRecordsDispatch() {
+		final Document doc = records.load("[{\"type\": \"circle\", \"name\": \"a\", \"radius\": \"1\"}, " +
+				"{\"name\": \"b\", \"side\": \"2\", \"type\": \"square\"}, {\"radius\": \"3\", \"type\": \"circle\", " +
+				"\"name\": \"c\"}]");
+		assertTreeEqual(Helper.rootArray(doc).data.get(0),
+				new TreeBuilder(circle).add("name", "a").add("radius", "1").build()
+		);
+		assertTreeEqual(Helper.rootArray(doc).data.get(1),
+				new TreeBuilder(square).add("name", "b").add("side", "2").build()
+		);
+		assertTreeEqual(Helper.rootArray(doc).data.get(2),
+				new TreeBuilder(circle).add("name", "c").add("radius", "3").build()
+		);
+	}
+
+	@Test(expected = InvalidDocument.class)
+	public void testRecordsUndecided() {
+		records.load("[{\"name\": \"a\"}]");
+	}
+
+	@Test
+	public void testRecordsConflict() {
+		final FreeAtomType other = new TypeBuilder("other")
+				.middlePrimitive("name")
+				.back(new BackRecordBuilder().add("name", Helper.buildBackDataPrimitive("name")).build())
+				.frontDataPrimitive("name")
+				.build();
+		final FreeAtomType circle = shape("circle", "radius");
+		final Syntax conflicting = new SyntaxBuilder("shape")
+				.json()
+				.type(circle)
+				.type(other)
+				.group("shape", new GroupBuilder().type(circle).type(other).build())
+				.build();
+		assertFalse(conflicting.getDirectLoad().available());
+	}
+
+	@Test(expected = InvalidDocument.class)
+	public void testInvalid() {
+		syntax.load("(q)x");
+	}
+
+	private static Document attempt(final Supplier<Document> load) {
+		try {
+			return load.get();
+		} catch (final InvalidDocument | RuntimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Load text directly and with the general parser (RawReader) and check both accept or reject it and produce the
+	 * same tree.
+	 *
+	 * @param text
+	 * @param valid
+	 */
+	private static void checkParity(final String text, final boolean valid) {
+		final Document direct = attempt(() -> syntax
+				.getDirectLoad()
+				.load(Syntax.BackType.LUXEM, new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))));
+		final Document parsed = attempt(() -> Load.parse(syntax,
+				Syntax.BackType.LUXEM,
+				new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))
+		));
+		assertEquals(String.format("Direct load validity of [%s]", text), valid, direct != null);
+		assertEquals(String.format("Parse validity of [%s]", text), valid, parsed != null);
+		if (valid)
+			assertTreeEqual(parsed.root, direct.root);
+	}
+
+	@Test
+	public void testParityValid() {
+		checkParity("(z)x", true);
+		checkParity("(z)x,", true);
+		checkParity(" (z) x , (p) dog ", true);
+		checkParity("[(p)a,(p)b,]", true);
+		checkParity("[(p)a,(p)b]", true);
+		checkParity("[]", true);
+		checkParity("{cat:(z)x,dog:(p)y,}", true);
+		checkParity("{cat:(z)x,dog:(p)y}", true);
+		checkParity("{}", true);
+		checkParity("*comment, [ ] \" {*(p)a", true);
+		checkParity("(typedArray)[x,y]", true);
+	}
+
+	@Test
+	public void testParityEscapes() {
+		checkParity("(p)\"a\\\"b\"", true);
+		checkParity("(p)\"a\\\\\"", true);
+		checkParity("(p)a\\,b", true);
+		checkParity("(p)a\\ b", true);
+		checkParity("(\\p)a", true);
+		checkParity("{\"c\\\"t\":(p)a}", true);
+		checkParity("(p)\"\\é\"", true);
+	}
+
+	@Test
+	public void testParityInvalid() {
+		checkParity("(p)a (p)b", false);
+		checkParity("[(p)a (p)b]", false);
+		checkParity("{cat:(z)x dog:(p)y}", false);
+		checkParity("(p)a,,(p)b", false);
+		checkParity(",(p)a", false);
+		checkParity("[,]", false);
+		checkParity("{,}", false);
+		checkParity("{cat:}", false);
+		checkParity("{cat}", false);
+		checkParity("{cat:(z)x]", false);
+		checkParity("[(p)a}", false);
+		checkParity("(p)a]", false);
+		checkParity("(z)", false);
+		checkParity("(z),(p)a", false);
+		checkParity("[(z)]", false);
+		checkParity("(z)(p)a", false);
+		checkParity("(p)\"a", false);
+		checkParity("(p", false);
+		checkParity("(p)a\\", false);
+		checkParity("*comment", false);
+		checkParity("(p)a:b", false);
+	}
+}
@@ -0,0 +1,242 @@
+package com.zarbosoft.merman;
+
+import com.google.common.collect.ImmutableList;
+import com.zarbosoft.merman.document.Atom;
+import com.zarbosoft.merman.document.Document;
+import com.zarbosoft.merman.document.Snapshot;
+import com.zarbosoft.merman.document.values.ValueArray;
+import com.zarbosoft.merman.document.values.ValuePrimitive;
+import com.zarbosoft.merman.editor.Context;
+import com.zarbosoft.merman.editor.history.changes.ChangeArray;
+import com.zarbosoft.merman.editor.history.changes.ChangePrimitiveAdd;
+import com.zarbosoft.merman.editor.history.changes.ChangePrimitiveSet;
+import com.zarbosoft.merman.editor.serialization.Write;
+import com.zarbosoft.merman.helper.TreeBuilder;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.zarbosoft.merman.helper.Helper.buildDoc;
+import static com.zarbosoft.merman.helper.Helper.rootArray;
+import static com.zarbosoft.merman.helper.SyntaxLoadSave.*;
+import static com.zarbosoft.rendaw.common.Common.uncheck;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class TestDocumentIncrementalSave {
+	private static Context build() {
+		return buildDoc(syntax,
+				new TreeBuilder(dataPrimitive).add("value", "dog").build(),
+				new TreeBuilder(dataArray)
+						.addArray("value",
+								new TreeBuilder(dataPrimitive).add("value", "cat").build(),
+								new TreeBuilder(typedPrimitive).build()
+						)
+						.build(),
+				new TreeBuilder(record).build()
+		);
+	}
+
+	private static String uncached(final Document document) {
+		final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		Write.write(document.root, document.syntax, stream);
+		return new String(stream.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private static String save(final Document document) {
+		return uncheck(() -> {
+			final Path path = Files.createTempFile("merman", ".luxem");
+			try {
+				document.write(path);
+				return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+			} finally {
+				Files.deleteIfExists(path);
+			}
+		});
+	}
+
+	private static ValuePrimitive nestedPrimitive(final Context context) {
+		return nestedPrimitive(rootArray(context.document).data.get(1));
+	}
+
+	private static ValuePrimitive nestedPrimitive(final Atom array) {
+		return (ValuePrimitive) ((ValueArray) array.data.get("value")).data.get(0).data.get("value");
+	}
+
+	@Test
+	public void testUnchanged() {
+		final Context context = build();
+		save(context.document);
+		assertThat(save(context.document), equalTo(uncached(context.document)));
+	}
+
+	@Test
+	public void testPrimitiveChanged() {
+		final Context context = build();
+		save(context.document);
+		context.history.apply(context, new ChangePrimitiveAdd(nestedPrimitive(context), 3, "fish"));
+		assertThat(save(context.document), equalTo(uncached(context.document)));
+		assertThat(save(context.document), equalTo("\"dog\",[\"catfish\",(z)\"x\",],(typedRecord){\"a\":\"x\",\"b\":\"y\",},"));
+	}
+
+	@Test
+	public void testArrayChanged() {
+		final Context context = build();
+		save(context.document);
+		context.history.apply(context,
+				new ChangeArray(rootArray(context.document),
+						1,
+						1,
+						ImmutableList.of(new TreeBuilder(dataPrimitive).add("value", "owl").build())
+				)
+		);
+		assertThat(save(context.document), equalTo(uncached(context.document)));
+	}
+
+	private static void edit(final Context context) {
+		context.history.apply(context, new ChangePrimitiveAdd(nestedPrimitive(context), 0, "wild"));
+		context.history.apply(context,
+				new ChangePrimitiveSet((ValuePrimitive) rootArray(context.document).data.get(0).data.get("value"), "hog")
+		);
+		final ValueArray nested = (ValueArray) rootArray(context.document).data.get(1).data.get("value");
+		context.history.apply(context, new ChangeArray(nested, 1, 1, ImmutableList.of()));
+		context.history.apply(context,
+				new ChangeArray(rootArray(context.document), 0, 0, ImmutableList.of(nested.parent.atom().copy()))
+		);
+	}
+
+	@Test
+	public void testChangedDuringSnapshotSave() {
+		final Context context = build();
+		save(context.document);
+		final Snapshot snapshot = context.document.snapshot();
+		edit(context);
+		final String saved = uncheck(() -> {
+			final Path path = Files.createTempFile("merman", ".luxem");
+			try {
+				Write.writeCached(snapshot, path).commit();
+				return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+			} finally {
+				snapshot.close();
+				Files.deleteIfExists(path);
+			}
+		});
+		assertThat(saved, equalTo(uncached(build().document)));
+		assertThat(save(context.document), equalTo(uncached(context.document)));
+	}
+
+	@Test
+	public void testMovedDuringSnapshotSave() {
+		final Context context = build();
+		save(context.document);
+		context.history.apply(context, new ChangePrimitiveAdd(nestedPrimitive(context), 3, "bird"));
+		final String expected = uncached(context.document);
+		final Snapshot snapshot = context.document.snapshot();
+		final Atom moved = rootArray(context.document).data.get(1);
+		context.history.apply(context, new ChangeArray(rootArray(context.document), 1, 1, ImmutableList.of()));
+		context.history.apply(context, new ChangeArray(rootArray(context.document), 0, 0, ImmutableList.of(moved)));
+		context.history.apply(context, new ChangePrimitiveAdd(nestedPrimitive(moved), 0, "big"));
+		final String saved = uncheck(() -> {
+			final Path path = Files.createTempFile("merman", ".luxem");
+			try {
+				Write.writeCached(snapshot, path).commit();
+				return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+			} finally {
+				snapshot.close();
+				Files.deleteIfExists(path);
+			}
+		});
+		assertThat(saved, equalTo(expected));
+		assertThat(save(context.document), equalTo(uncached(context.document)));
+		context.history.apply(context, new ChangePrimitiveAdd(nestedPrimitive(moved), 0, "very"));
+		assertThat(save(context.document), equalTo(uncached(context.document)));
+	}
+
+	@Test
+	public void testSnapshotUnaffectedByEdits() {
+		final Context context = build();
+		final Snapshot snapshot = context.document.snapshot();
+		edit(context);
+		final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		Write.write(snapshot, stream);
+		snapshot.close();
+		assertThat(new String(stream.toByteArray(), StandardCharsets.UTF_8), equalTo(uncached(build().document)));
+		context.history.apply(context,
+				new ChangePrimitiveAdd((ValuePrimitive) rootArray(context.document).data.get(1).data.get("value"), 0, "big")
+		);
+		assertThat(save(context.document), equalTo(uncached(context.document)));
+	}
+
+	@Test
+	public void testMovedBetweenDepthsPretty() {
+		syntax.prettySave = true;
+		try {
+			final Context context = build();
+			save(context.document);
+			final Atom moved = rootArray(context.document).data.get(2);
+			final ValueArray nested = (ValueArray) rootArray(context.document).data.get(1).data.get("value");
+			context.history.apply(context, new ChangeArray(rootArray(context.document), 2, 1, ImmutableList.of()));
+			context.history.apply(context, new ChangeArray(nested, 0, 0, ImmutableList.of(moved)));
+			assertThat(save(context.document), equalTo(uncached(context.document)));
+			context.history.apply(context, new ChangeArray(nested, 0, 1, ImmutableList.of()));
+			context.history.apply(context, new ChangeArray(rootArray(context.document), 0, 0, ImmutableList.of(moved)));
+			assertThat(save(context.document), equalTo(uncached(context.document)));
+		} finally {
+			syntax.prettySave = false;
+		}
+	}
+
+	@Test
+	public void testMovedWithChildrenBetweenDepthsPretty() {
+		syntax.prettySave = true;
+		try {
+			final Context context = build();
+			final Atom outer = new TreeBuilder(dataArray).addArray("value").build();
+			context.history.apply(context, new ChangeArray(rootArray(context.document), 3, 0, ImmutableList.of(outer)));
+			context.history.finishChange(context);
+			save(context.document);
+			final Atom moved = rootArray(context.document).data.get(1);
+			context.history.apply(context, new ChangeArray(rootArray(context.document), 1, 1, ImmutableList.of()));
+			context.history.apply(context,
+					new ChangeArray((ValueArray) outer.data.get("value"), 0, 0, ImmutableList.of(moved))
+			);
+			assertThat(save(context.document), equalTo(uncached(context.document)));
+			context.history.undo(context);
+			assertThat(save(context.document), equalTo(uncached(context.document)));
+		} finally {
+			syntax.prettySave = false;
+		}
+	}
+
+	@Test
+	public void testEntriesRecorded() {
+		final Context context = build();
+		save(context.document);
+		assertThat(rootArray(context.document).data.get(2).written, notNullValue());
+	}
+
+	@Test
+	public void testCompressedNotCached() {
+		final Context context = build();
+		uncheck(() -> {
+			final Path path = Files.createTempFile("merman", ".luxem.gz");
+			try {
+				final Snapshot snapshot = context.document.snapshot();
+				try {
+					assertThat(Write.writeCached(snapshot, path), nullValue());
+				} finally {
+					snapshot.close();
+				}
+				context.document.write(path);
+			} finally {
+				Files.deleteIfExists(path);
+			}
+		});
+		assertThat(rootArray(context.document).data.get(2).written, nullValue());
+	}
+}
@@ -0,0 +1,122 @@
+package com.zarbosoft.merman;
+
+import com.google.common.collect.ImmutableList;
+import com.zarbosoft.merman.document.Atom;
+import com.zarbosoft.merman.document.Document;
+import com.zarbosoft.merman.document.Snapshot;
+import com.zarbosoft.merman.document.values.ValueArray;
+import com.zarbosoft.merman.editor.serialization.LazyLoad;
+import com.zarbosoft.merman.editor.serialization.Load;
+import com.zarbosoft.merman.editor.serialization.Write;
+import com.zarbosoft.merman.helper.SyntaxFlatRoot;
+import com.zarbosoft.merman.helper.TreeBuilder;
+import com.zarbosoft.merman.syntax.Syntax;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static com.zarbosoft.merman.helper.Helper.assertTreeEqual;
+import static com.zarbosoft.merman.helper.Helper.rootArray;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertThat;
+
+public class TestDocumentLazyLoad {
+	private static final String luxemSource = "\"dog\" , [ \"cat\",\"x\" ] ,*comment*{\"a\":\"x\", \"b\": \"y\"},\n";
+	private static final String jsonSource = "[ \"dog\" , [\"cat\", \"x\"],{\"a\": \"x\",\"b\":\"y\"}\n]\n";
+
+	private static Document lazy(final Syntax syntax, final String source) {
+		return LazyLoad.load(syntax, ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private static String write(final Document document, final Syntax.BackType backType) {
+		final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		Write.write(document.root, document.syntax, backType, stream);
+		return new String(stream.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private static String write(final Document document) {
+		return write(document, document.syntax.backType);
+	}
+
+	private static void assertUnparsed(final ValueArray array, final int... indices) {
+		for (final int index : indices)
+			assertThat(array.elements().get(index), instanceOf(LazyLoad.Unparsed.class));
+	}
+
+	private static void checkSave(final Syntax syntax, final String source) {
+		final Document expected = Load.load(syntax, source);
+		final Document document = lazy(syntax, source);
+		final ValueArray array = rootArray(document);
+		assertThat(array.data.size(), equalTo(3));
+		assertUnparsed(array, 0, 1, 2);
+		final String written = write(document);
+		assertUnparsed(array, 0, 1, 2);
+		assertTreeEqual(rootArray(expected), rootArray(Load.load(syntax, written)));
+	}
+
+	@Test
+	public void testSaveUnparsedLuxem() {
+		checkSave(SyntaxFlatRoot.luxem, luxemSource);
+		assertThat(write(lazy(SyntaxFlatRoot.luxem, luxemSource)), containsString("[ \"cat\",\"x\" ]"));
+	}
+
+	@Test
+	public void testSaveUnparsedJSON() {
+		checkSave(SyntaxFlatRoot.json, jsonSource);
+		assertThat(write(lazy(SyntaxFlatRoot.json, jsonSource)), containsString("{\"a\": \"x\",\"b\":\"y\"}"));
+	}
+
+	@Test
+	public void testParseOnRead() {
+		final Document expected = Load.load(SyntaxFlatRoot.luxem, luxemSource);
+		final ValueArray array = rootArray(lazy(SyntaxFlatRoot.luxem, luxemSource));
+		final Atom atom = array.data.get(1);
+		assertThat(array.elements().get(1), equalTo(atom));
+		assertThat(array.data.get(1), equalTo(atom));
+		assertUnparsed(array, 0, 2);
+		assertThat(((ValueArray.ArrayParent) atom.parent).index(), equalTo(1));
+		assertTreeEqual(rootArray(expected).data.get(1), atom);
+		assertTreeEqual(rootArray(expected), array);
+	}
+
+	@Test
+	public void testSaveEdited() {
+		final Syntax syntax = SyntaxFlatRoot.luxem;
+		final Document document = lazy(syntax, luxemSource);
+		final ValueArray array = rootArray(document);
+		final Atom owl = new TreeBuilder(syntax.getType("dataPrimitive")).add("value", "owl").build();
+		array.splice(0, 1, ImmutableList.of(owl));
+		assertUnparsed(array, 1, 2);
+		final String written = write(document);
+		assertThat(written, containsString("\"owl\""));
+		assertThat(written, containsString("[ \"cat\",\"x\" ]"));
+		assertThat(written, containsString("{\"a\":\"x\", \"b\": \"y\"}"));
+		assertTreeEqual(array, rootArray(Load.load(syntax, written)));
+	}
+
+	@Test
+	public void testSnapshotKeepsUnparsed() {
+		final Document document = lazy(SyntaxFlatRoot.luxem, luxemSource);
+		final String expected = write(document);
+		final Snapshot snapshot = document.snapshot();
+		rootArray(document).data.get(1);
+		final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		Write.write(snapshot, stream);
+		snapshot.close();
+		assertThat(new String(stream.toByteArray(), StandardCharsets.UTF_8), equalTo(expected));
+	}
+
+	@Test
+	public void testConvert() {
+		final Document document = lazy(SyntaxFlatRoot.luxem, luxemSource);
+		final String converted = write(document, Syntax.BackType.JSON);
+		assertUnparsed(rootArray(document), 0, 1, 2);
+		assertThat(converted,
+				equalTo(write(Load.load(SyntaxFlatRoot.luxem, luxemSource), Syntax.BackType.JSON))
+		);
+	}
+}
@@ -0,0 +1,112 @@
+package com.zarbosoft.merman;
+
+import com.zarbosoft.merman.document.Document;
+import com.zarbosoft.merman.editor.serialization.Load;
+import com.zarbosoft.merman.editor.serialization.LoadMonitor;
+import com.zarbosoft.merman.editor.serialization.ParallelLoad;
+import com.zarbosoft.merman.editor.serialization.RootScanner;
+import com.zarbosoft.merman.helper.SyntaxFlatRoot;
+import com.zarbosoft.merman.syntax.Syntax;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.zarbosoft.merman.helper.Helper.assertTreeEqual;
+import static com.zarbosoft.merman.helper.Helper.rootArray;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class TestDocumentParallelLoad {
+	private static final String luxemElement =
+			"\"a,b[c]\",*comment, [ ] \" {*[\"x,\",\"]\",],{k:\"v[\",l:\"\\\"],\",},";
+	private static final String jsonElement = "\"a,b[c]\",[\"x,\",\"]\"],{\"k\":\"v[\",\"l\":\"\\\"],\"}";
+
+	private int minimumChunkSize;
+	private long mapThreshold;
+	private Path path;
+
+	@Before
+	public void setUp() throws IOException {
+		minimumChunkSize = ParallelLoad.minimumChunkSize;
+		mapThreshold = Load.mapThreshold;
+		ParallelLoad.minimumChunkSize = 16;
+		path = Files.createTempFile("merman", ".txt");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		ParallelLoad.minimumChunkSize = minimumChunkSize;
+		Load.mapThreshold = mapThreshold;
+		Files.deleteIfExists(path);
+	}
+
+	private static byte[] repeat(final String prefix, final String element, final String separator, final String suffix) {
+		final StringBuilder out = new StringBuilder(prefix);
+		for (int i = 0; i < 20; ++i) {
+			if (i > 0)
+				out.append(separator);
+			out.append(element);
+		}
+		out.append(suffix);
+		return out.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private void check(final Syntax syntax, final byte[] data) throws IOException {
+		assertThat(ParallelLoad.rootMiddle(syntax), equalTo("value"));
+		final Document expected = Load.load(syntax, new ByteArrayInputStream(data));
+		assertThat(rootArray(expected).data.size(), equalTo(60));
+		assertThat(RootScanner.scan(syntax.backType, ByteBuffer.wrap(data), 0, data.length).size, equalTo(60));
+		assertTreeEqual(rootArray(expected), rootArray(ParallelLoad.load(syntax, data, ForkJoinPool.commonPool())));
+		Files.write(path, data);
+		assertTreeEqual(rootArray(expected), rootArray(ParallelLoad.load(syntax, path)));
+		Load.mapThreshold = 0;
+		assertTreeEqual(rootArray(expected), rootArray(ParallelLoad.load(syntax, path)));
+	}
+
+	/**
+	 * Chunks are read with DirectLoad when the syntax allows it.  Compare with a whole document direct load, with and
+	 * without a monitor.
+	 *
+	 * @param syntax
+	 * @param data
+	 * @throws IOException
+	 */
+	private void checkDirect(final Syntax syntax, final byte[] data) throws IOException {
+		assertThat(syntax.getDirectLoad().available(), equalTo(true));
+		final Document expected = syntax.getDirectLoad().load(syntax.backType, new ByteArrayInputStream(data));
+		assertTreeEqual(rootArray(expected), rootArray(ParallelLoad.load(syntax, data, ForkJoinPool.commonPool())));
+		Files.write(path, data);
+		assertTreeEqual(rootArray(expected),
+				rootArray(ParallelLoad.load(syntax, path, new LoadMonitor((bytes, total, atoms, remaining) -> {
+				})))
+		);
+	}
+
+	@Test
+	public void testLuxemDirect() throws IOException {
+		checkDirect(SyntaxFlatRoot.luxem, repeat("", luxemElement, "", ""));
+	}
+
+	@Test
+	public void testJSONDirect() throws IOException {
+		checkDirect(SyntaxFlatRoot.json, repeat("[", jsonElement, ",", "]"));
+	}
+
+	@Test
+	public void testLuxem() throws IOException {
+		check(SyntaxFlatRoot.luxem, repeat("", luxemElement, "", ""));
+	}
+
+	@Test
+	public void testJSON() throws IOException {
+		check(SyntaxFlatRoot.json, repeat("[", jsonElement, ",", "]"));
+	}
+}
@@ -5,14 +5,19 @@ import com.zarbosoft.merman.document.Atom;
 import com.zarbosoft.merman.document.values.Value;
 import com.zarbosoft.merman.document.values.ValueArray;
 import com.zarbosoft.merman.document.values.ValueAtom;
+import com.zarbosoft.merman.document.values.ValuePrimitive;
 import com.zarbosoft.merman.editor.Context;
 import com.zarbosoft.merman.editor.Path;
+import com.zarbosoft.merman.editor.history.changes.ChangeArray;
+import com.zarbosoft.merman.editor.history.changes.ChangePrimitiveSet;
 import com.zarbosoft.merman.helper.*;
 import com.zarbosoft.merman.syntax.Syntax;
 import org.junit.Test;
 
 import static com.zarbosoft.merman.helper.Helper.buildDoc;
 import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsSame.sameInstance;
 import static org.junit.Assert.assertThat;
 
 public class TestDocumentPaths {
@@ -145,6 +150,102 @@ public class TestDocumentPaths {
 		assertThat(context.locateLong(value1.getPath()), equalTo(value1));
 	}
 
+	@Test
+	public void testDataRecordKeyChanged() {
+		final Syntax syntax = new SyntaxBuilder("any")
+				.type(new TypeBuilder("base")
+						.back(Helper.buildBackDataRecord("a"))
+						.middleRecord("a", "element")
+						.frontDataArray("a")
+						.build())
+				.type(new TypeBuilder("element")
+						.back(Helper.buildBackDataKey("k"))
+						.middlePrimitive("k")
+						.frontDataPrimitive("k")
+						.back(Helper.buildBackDataPrimitive("v"))
+						.middlePrimitive("v")
+						.frontDataPrimitive("v")
+						.build())
+				.group("any", ImmutableList.of("base"))
+				.build();
+		final Context context = buildDoc(syntax,
+				new TreeBuilder(syntax.types.get(0))
+						.addRecord("a", new TreeBuilder(syntax.types.get(1)).add("k", "K").add("v", "V").build())
+						.build()
+		);
+		final Atom element = ((ValueArray) Helper.rootArray(context.document).data.get(0).data.get("a")).data.get(0);
+		final Value value1 = element.data.get("v");
+		assertThat(value1.getPath().toList(), equalTo(ImmutableList.of("0", "K")));
+		context.history.apply(context, new ChangePrimitiveSet((ValuePrimitive) element.data.get("k"), "L"));
+		assertThat(value1.getPath().toList(), equalTo(ImmutableList.of("0", "L")));
+		assertThat(context.locateLong(value1.getPath()), equalTo(value1));
+	}
+
+	@Test
+	public void testCachedPathsScoped() {
+		final Context context = buildDoc(MiscSyntax.syntax,
+				new TreeBuilder(MiscSyntax.array)
+						.addArray("value", new TreeBuilder(MiscSyntax.quoted).add("value", "a").build())
+						.build(),
+				new TreeBuilder(MiscSyntax.array)
+						.addArray("value", new TreeBuilder(MiscSyntax.quoted).add("value", "b").build())
+						.build()
+		);
+		final ValueArray array0 = (ValueArray) Helper.rootArray(context.document).data.get(0).data.get("value");
+		final ValueArray array1 = (ValueArray) Helper.rootArray(context.document).data.get(1).data.get("value");
+		final Value a = array0.data.get(0).data.get("value");
+		final Value b = array1.data.get(0).data.get("value");
+		final Path aBefore = a.getPath();
+		final Path bBefore = b.getPath();
+		assertThat(a.getPath(), sameInstance(aBefore));
+
+		// Only paths below the edited array change
+		context.history.apply(context,
+				new ChangeArray(array0, 0, 0, ImmutableList.of(new TreeBuilder(MiscSyntax.one).build()))
+		);
+		assertThat(b.getPath(), sameInstance(bBefore));
+		assertThat(a.getPath(), not(equalTo(aBefore)));
+		assertThat(context.locateLong(a.getPath()), equalTo(a));
+
+		// Paths below an edited ancestor change
+		final Path aMiddle = a.getPath();
+		context.history.apply(context,
+				new ChangeArray(Helper.rootArray(context.document),
+						0,
+						0,
+						ImmutableList.of(new TreeBuilder(MiscSyntax.one).build())
+				)
+		);
+		assertThat(a.getPath(), not(equalTo(aMiddle)));
+		assertThat(b.getPath(), not(equalTo(bBefore)));
+		assertThat(context.locateLong(a.getPath()), equalTo(a));
+		assertThat(context.locateLong(b.getPath()), equalTo(b));
+	}
+
+	@Test
+	public void testCachedPathsMoved() {
+		final Atom moved = new TreeBuilder(MiscSyntax.quoted).add("value", "a").build();
+		final Context source = buildDoc(MiscSyntax.syntax, moved, new TreeBuilder(MiscSyntax.one).build());
+		final Context dest = buildDoc(MiscSyntax.syntax, new TreeBuilder(MiscSyntax.one).build());
+		final Value value = moved.data.get("value");
+		final ValueArray sourceRoot = Helper.rootArray(source.document);
+		final ValueArray destRoot = Helper.rootArray(dest.document);
+		source.history.apply(source,
+				new ChangeArray(sourceRoot, 2, 0, ImmutableList.of(new TreeBuilder(MiscSyntax.one).build()))
+		);
+		assertThat(moved.getPath().toList(), equalTo(ImmutableList.of("0")));
+		assertThat(value.getPath().toList(), equalTo(ImmutableList.of("0")));
+
+		// Every root value has the same path, and the paths were cached at a source structure version equal to the
+		// destination's after the move, so only the parent value tells the cached paths apart
+		source.history.apply(source, new ChangeArray(sourceRoot, 0, 1, ImmutableList.of()));
+		dest.history.apply(dest, new ChangeArray(destRoot, 1, 0, ImmutableList.of(moved)));
+		assertThat(destRoot.structureVersion(), equalTo(1L));
+		assertThat(moved.getPath().toList(), equalTo(ImmutableList.of("1")));
+		assertThat(value.getPath().toList(), equalTo(ImmutableList.of("1")));
+		assertThat(dest.locateLong(value.getPath()), equalTo(value));
+	}
+
 	@Test
 	public void testLocateRootElement() {
 		final Context context = buildDoc(MiscSyntax.syntax,
@@ -0,0 +1,132 @@
+package com.zarbosoft.merman;
+
+import com.google.common.collect.ImmutableList;
+import com.zarbosoft.merman.document.Document;
+import com.zarbosoft.merman.document.values.ValueArray;
+import com.zarbosoft.merman.document.values.ValuePrimitive;
+import com.zarbosoft.merman.editor.Context;
+import com.zarbosoft.merman.editor.history.changes.ChangeArray;
+import com.zarbosoft.merman.editor.serialization.StreamLoad;
+import com.zarbosoft.merman.editor.serialization.Write;
+import com.zarbosoft.merman.helper.TreeBuilder;
+import com.zarbosoft.merman.syntax.FreeAtomType;
+import com.zarbosoft.rendaw.common.Common;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.zarbosoft.merman.helper.Helper.buildDoc;
+import static com.zarbosoft.merman.helper.Helper.rootArray;
+import static com.zarbosoft.merman.helper.SyntaxFlatRoot.luxem;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public class TestDocumentStreamLoad {
+	private static final String element = "\"dog\",[\"cat\",\"x\",],{\"a\":\"x\",\"b\":\"y\",},";
+	private Path path;
+	private int batchSize;
+
+	@Before
+	public void setUp() throws IOException {
+		path = Files.createTempFile("merman", ".luxem");
+		batchSize = StreamLoad.batchSize;
+		StreamLoad.batchSize = 16;
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		StreamLoad.batchSize = batchSize;
+		Files.deleteIfExists(path);
+	}
+
+	private static String dump(final Document document) {
+		final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		Write.write(document.root, document.syntax, stream);
+		return new String(stream.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testStream() throws IOException {
+		final StringBuilder source = new StringBuilder();
+		for (int i = 0; i < 20; ++i)
+			source.append(element);
+		Files.write(path, source.toString().getBytes(StandardCharsets.UTF_8));
+		assertThat(StreamLoad.available(luxem), equalTo(true));
+		final StreamLoad load = StreamLoad.open(luxem, path);
+		assertThat(load.complete(), equalTo(false));
+		final Context context = buildDoc(load.document);
+		load.run(batch -> load.append(context, batch));
+		assertThat(rootArray(load.document).data.size(), equalTo(60));
+		assertThat(dump(load.document), equalTo(source.toString()));
+	}
+
+	/**
+	 * Edit the root between batches.  Batches go after the edits, and undoing the edits afterwards restores the
+	 * loaded document.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testEditDuringStream() throws IOException {
+		final StringBuilder source = new StringBuilder();
+		for (int i = 0; i < 20; ++i)
+			source.append(element);
+		Files.write(path, source.toString().getBytes(StandardCharsets.UTF_8));
+		final StreamLoad load = StreamLoad.open(luxem, path);
+		final Context context = buildDoc(load.document);
+		final ValueArray root = rootArray(load.document);
+		final FreeAtomType dataPrimitive = luxem.getType("dataPrimitive");
+		final Common.Mutable<Integer> edited = new Common.Mutable<>(null);
+		load.run(batch -> {
+			load.append(context, batch);
+			if (edited.value != null)
+				return;
+			edited.value = root.data.size();
+			context.history.apply(context,
+					new ChangeArray(root,
+							1,
+							0,
+							ImmutableList.of(new TreeBuilder(dataPrimitive).add("value", "owl").build())
+					)
+			);
+			context.history.finishChange(context);
+			context.history.apply(context,
+					new ChangeArray(root,
+							root.data.size(),
+							0,
+							ImmutableList.of(new TreeBuilder(dataPrimitive).add("value", "elk").build())
+					)
+			);
+			context.history.finishChange(context);
+		});
+		assertThat(edited.value, notNullValue());
+		assertThat(edited.value, lessThan(60));
+		assertThat(root.data.size(), equalTo(62));
+		assertThat(((ValuePrimitive) root.data.get(1).data.get("value")).get(), equalTo("owl"));
+		assertThat(((ValuePrimitive) root.data.get(edited.value + 1).data.get("value")).get(), equalTo("elk"));
+		context.history.undo(context);
+		context.history.undo(context);
+		assertThat(dump(load.document), equalTo(source.toString()));
+		context.history.redo(context);
+		context.history.redo(context);
+		assertThat(((ValuePrimitive) root.data.get(1).data.get("value")).get(), equalTo("owl"));
+		assertThat(((ValuePrimitive) root.data.get(edited.value + 1).data.get("value")).get(), equalTo("elk"));
+	}
+
+	@Test
+	public void testSmall() throws IOException {
+		StreamLoad.batchSize = 1024;
+		Files.write(path, element.getBytes(StandardCharsets.UTF_8));
+		final StreamLoad load = StreamLoad.open(luxem, path);
+		assertThat(load.complete(), equalTo(true));
+		assertThat(dump(load.document), equalTo(element));
+	}
+}
@@ -0,0 +1,63 @@
+package com.zarbosoft.merman;
+
+import com.zarbosoft.merman.helper.ExpressionSyntax;
+import com.zarbosoft.merman.helper.TreeBuilder;
+import org.junit.Test;
+
+import static com.zarbosoft.merman.helper.Helper.assertTreeEqual;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class TestFrontGrammar {
+	private static TreeBuilder infinity() {
+		return new TreeBuilder(ExpressionSyntax.infinity);
+	}
+
+	@Test
+	public void testPrecedence() {
+		assertTreeEqual(new TreeBuilder(ExpressionSyntax.plus)
+				.add("first", infinity())
+				.add("second", new TreeBuilder(ExpressionSyntax.multiply).add("first", infinity()).add("second",
+						infinity()
+				))
+				.build(), ExpressionSyntax.syntax.getFrontGrammar().parse("any", "infinity + infinity*infinity"));
+	}
+
+	@Test
+	public void testAssociateForward() {
+		assertTreeEqual(new TreeBuilder(ExpressionSyntax.plus)
+				.add("first", infinity())
+				.add("second", new TreeBuilder(ExpressionSyntax.plus).add("first", infinity()).add("second",
+						infinity()
+				))
+				.build(), ExpressionSyntax.syntax.getFrontGrammar().parse("any", "infinity+infinity+infinity"));
+	}
+
+	@Test
+	public void testAssociateBackward() {
+		assertTreeEqual(new TreeBuilder(ExpressionSyntax.minus)
+				.add("first", new TreeBuilder(ExpressionSyntax.minus).add("first", infinity()).add("second",
+						infinity()
+				))
+				.add("second", infinity())
+				.build(), ExpressionSyntax.syntax.getFrontGrammar().parse("any", "infinity-infinity-infinity"));
+	}
+
+	@Test
+	public void testEnclosed() {
+		assertTreeEqual(new TreeBuilder(ExpressionSyntax.factorial)
+				.add("value",
+						new TreeBuilder(ExpressionSyntax.inclusiveRange)
+								.add("first", infinity())
+								.add("second", new TreeBuilder(ExpressionSyntax.plus)
+										.add("first", infinity())
+										.add("second", infinity()))
+				)
+				.build(), ExpressionSyntax.syntax.getFrontGrammar().parse("any", "[infinity, infinity + infinity]!"));
+	}
+
+	@Test
+	public void testIncomplete() {
+		assertThat(ExpressionSyntax.syntax.getFrontGrammar().parse("any", "infinity +"), nullValue());
+	}
+}
@@ -126,6 +126,29 @@ public class TestHistory {
 				.run(context -> assertThat(context.history.isModified(), is(false)));
 	}
 
+	@Test
+	public void testDeferredClear() {
+		final Integer[] level = new Integer[1];
+		initializeWithALongNameToForceChainWrapping()
+				.run(modify)
+				.run(context -> level[0] = context.history.saveLevel(context))
+				.run(context -> context.history.clearModified(context, level[0]))
+				.run(context -> assertThat(context.history.isModified(), is(false)));
+	}
+
+	@Test
+	public void testDeferredClearChangedSince() {
+		final Integer[] level = new Integer[1];
+		initializeWithALongNameToForceChainWrapping()
+				.run(modify)
+				.run(context -> level[0] = context.history.saveLevel(context))
+				.run(modify)
+				.run(context -> context.history.clearModified(context, level[0]))
+				.run(context -> assertThat(context.history.isModified(), is(true)))
+				.run(undo)
+				.run(context -> assertThat(context.history.isModified(), is(false)));
+	}
+
 	@Test
 	public void testLateClearUndoChanged() {
 		initializeWithALongNameToForceChainWrapping()
@@ -0,0 +1,116 @@
+package com.zarbosoft.merman;
+
+import com.zarbosoft.merman.document.Document;
+import com.zarbosoft.merman.document.values.ValuePrimitive;
+import com.zarbosoft.merman.editor.Context;
+import com.zarbosoft.merman.editor.history.changes.ChangePrimitiveAdd;
+import com.zarbosoft.merman.editor.history.changes.ChangePrimitiveRemove;
+import com.zarbosoft.merman.editor.serialization.Interner;
+import com.zarbosoft.merman.helper.GroupBuilder;
+import com.zarbosoft.merman.helper.Helper;
+import com.zarbosoft.merman.helper.SyntaxBuilder;
+import com.zarbosoft.merman.helper.TypeBuilder;
+import com.zarbosoft.merman.syntax.FreeAtomType;
+import com.zarbosoft.merman.syntax.Syntax;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.zarbosoft.merman.helper.Helper.buildDoc;
+import static com.zarbosoft.merman.helper.Helper.rootArray;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class TestInternedStrings {
+	private final static FreeAtomType dataPrimitive;
+	private final static Syntax syntax;
+
+	static {
+		dataPrimitive = new TypeBuilder("dataPrimitive")
+				.middlePrimitive("value")
+				.back(Helper.buildBackType("p", Helper.buildBackDataPrimitive("value")))
+				.frontDataPrimitive("value")
+				.build();
+		syntax = new SyntaxBuilder("value")
+				.type(dataPrimitive)
+				.group("value", new GroupBuilder().type(dataPrimitive).build())
+				.build();
+	}
+
+	private int maxLength;
+	private int maxSize;
+
+	@Before
+	public void setUp() {
+		maxLength = Interner.maxLength;
+		maxSize = Interner.maxSize;
+	}
+
+	@After
+	public void tearDown() {
+		Interner.maxLength = maxLength;
+		Interner.maxSize = maxSize;
+	}
+
+	private static ValuePrimitive primitive(final Document doc, final int index) {
+		return (ValuePrimitive) rootArray(doc).data.get(index).data.get("value");
+	}
+
+	@Test
+	public void testInterner() {
+		final Interner interner = new Interner();
+		final String first = interner.intern(new String("dog"));
+		assertThat(interner.intern(new String("dog")), sameInstance(first));
+		assertThat(interner.intern(new String("cat")), not(sameInstance(first)));
+	}
+
+	@Test
+	public void testInternerLong() {
+		Interner.maxLength = 3;
+		final Interner interner = new Interner();
+		final String first = interner.intern(new String("dogs"));
+		assertThat(interner.intern(new String("dogs")), not(sameInstance(first)));
+	}
+
+	@Test
+	public void testInternerFull() {
+		Interner.maxSize = 1;
+		final Interner interner = new Interner();
+		interner.intern("dog");
+		final String first = interner.intern(new String("cat"));
+		assertThat(interner.intern(new String("cat")), not(sameInstance(first)));
+		assertThat(interner.intern(new String("dog")), sameInstance(interner.intern("dog")));
+	}
+
+	@Test
+	public void testLoadedShared() {
+		final Document doc = syntax.load("(p)dog,(p)dog,(p)cat");
+		assertThat(primitive(doc, 0).get(), sameInstance(primitive(doc, 1).get()));
+		assertThat(primitive(doc, 0).state(), sameInstance(primitive(doc, 1).state()));
+		assertThat(primitive(doc, 2).get(), equalTo("cat"));
+	}
+
+	@Test
+	public void testEditUnshares() {
+		final Context context = buildDoc(syntax.load("(p)dog,(p)dog"));
+		final ValuePrimitive first = primitive(context.document, 0);
+		final ValuePrimitive second = primitive(context.document, 1);
+		final String shared = second.get();
+		context.history.apply(context, new ChangePrimitiveAdd(first, 3, "s"));
+		assertThat(first.get(), equalTo("dogs"));
+		assertThat(second.get(), sameInstance(shared));
+		assertThat(second.get(), equalTo("dog"));
+		context.history.apply(context, new ChangePrimitiveRemove(first, 3, 1));
+		assertThat(first.get(), equalTo("dog"));
+		assertThat(second.get(), sameInstance(shared));
+	}
+
+	@Test
+	public void testSeparateLoads() {
+		final Document first = syntax.load("(p)dog");
+		final Document second = syntax.load("(p)dog");
+		assertThat(primitive(first, 0).get(), not(sameInstance(primitive(second, 0).get())));
+	}
+}
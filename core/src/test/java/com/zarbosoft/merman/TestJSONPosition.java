@@ -0,0 +1,118 @@
+package com.zarbosoft.merman;
+
+import com.zarbosoft.merman.editor.serialization.json.path.JSONPosition;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class TestJSONPosition {
+	@Test
+	public void testTop() {
+		final JSONPosition position = new JSONPosition();
+		assertThat(position.toString(), equalTo("/"));
+		position.primitive();
+		assertThat(position.toString(), equalTo("/"));
+	}
+
+	@Test
+	public void testArray() {
+		final JSONPosition position = new JSONPosition();
+		position.arrayOpen();
+		assertThat(position.toString(), equalTo("/"));
+		position.primitive();
+		assertThat(position.toString(), equalTo("/0"));
+		position.primitive();
+		assertThat(position.toString(), equalTo("/1"));
+		position.close();
+		assertThat(position.toString(), equalTo("/"));
+	}
+
+	@Test
+	public void testNestedArrays() {
+		final JSONPosition position = new JSONPosition();
+		position.arrayOpen();
+		position.primitive();
+		position.arrayOpen();
+		assertThat(position.toString(), equalTo("/1/"));
+		position.primitive();
+		position.primitive();
+		assertThat(position.toString(), equalTo("/1/1"));
+		position.close();
+		position.arrayOpen();
+		position.primitive();
+		assertThat(position.toString(), equalTo("/2/0"));
+	}
+
+	@Test
+	public void testNestedObjects() {
+		final JSONPosition position = new JSONPosition();
+		position.objectOpen();
+		position.key("a");
+		position.objectOpen();
+		assertThat(position.toString(), equalTo("/a/"));
+		position.key("b");
+		position.primitive();
+		assertThat(position.toString(), equalTo("/a/b"));
+		position.close();
+		assertThat(position.toString(), equalTo("/a"));
+		position.key("c");
+		position.primitive();
+		assertThat(position.toString(), equalTo("/c"));
+	}
+
+	@Test
+	public void testMixed() {
+		final JSONPosition position = new JSONPosition();
+		position.objectOpen();
+		position.key("a");
+		position.arrayOpen();
+		position.primitive();
+		position.objectOpen();
+		position.key("b");
+		position.arrayOpen();
+		position.primitive();
+		position.primitive();
+		assertThat(position.toString(), equalTo("/a/1/b/1"));
+		position.close();
+		position.close();
+		position.primitive();
+		assertThat(position.toString(), equalTo("/a/2"));
+	}
+
+	@Test
+	public void testDeep() {
+		final JSONPosition position = new JSONPosition();
+		final StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 40; ++i) {
+			position.arrayOpen();
+			position.primitive();
+			expected.append(i == 39 ? "/0" : "/1");
+		}
+		assertThat(position.toString(), equalTo(expected.toString()));
+		for (int i = 0; i < 40; ++i)
+			position.close();
+		assertThat(position.toString(), equalTo("/"));
+	}
+
+	@Test
+	public void testMark() {
+		final JSONPosition position = new JSONPosition();
+		final Object top = position.mark();
+		position.objectOpen();
+		position.key("a");
+		position.arrayOpen();
+		position.primitive();
+		position.primitive();
+		final Object inner = position.mark();
+		position.close();
+		position.key("b");
+		final Object outer = position.mark();
+		position.arrayOpen();
+		position.primitive();
+		assertThat(top.toString(), equalTo("/"));
+		assertThat(inner.toString(), equalTo("/a/1"));
+		assertThat(outer.toString(), equalTo("/b"));
+		assertThat(position.mark().toString(), equalTo("/b/0"));
+	}
+}
@@ -0,0 +1,223 @@
+package com.zarbosoft.merman;
+
+import com.google.common.collect.ImmutableList;
+import com.zarbosoft.merman.document.Atom;
+import com.zarbosoft.merman.document.Document;
+import com.zarbosoft.merman.document.values.ValueArray;
+import com.zarbosoft.merman.document.values.ValuePrimitive;
+import com.zarbosoft.merman.editor.Context;
+import com.zarbosoft.merman.editor.history.Journal;
+import com.zarbosoft.merman.editor.history.changes.ChangeArray;
+import com.zarbosoft.merman.editor.history.changes.ChangePrimitiveAdd;
+import com.zarbosoft.merman.editor.serialization.Write;
+import com.zarbosoft.merman.helper.TreeBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static com.zarbosoft.merman.helper.Helper.buildDoc;
+import static com.zarbosoft.merman.helper.Helper.rootArray;
+import static com.zarbosoft.merman.helper.SyntaxLoadSave.*;
+import static com.zarbosoft.rendaw.common.Common.uncheck;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class TestJournal {
+	private Path directory;
+	private Path path;
+	private Journal journal;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("merman");
+		path = directory.resolve("document.luxem");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Journal.compactThreshold = 16 * 1024 * 1024;
+		Files.walk(directory).sorted(Comparator.reverseOrder()).forEach(p -> uncheck(() -> Files.delete(p)));
+	}
+
+	private static String dump(final Document document) {
+		final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		Write.write(document.root, document.syntax, stream);
+		return new String(stream.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private Context edit() throws IOException {
+		final Context context = buildDoc(syntax,
+				new TreeBuilder(dataPrimitive).add("value", "dog").build(),
+				new TreeBuilder(dataArray)
+						.addArray("value", new TreeBuilder(dataPrimitive).add("value", "cat").build())
+						.build()
+		);
+		context.document.write(path);
+		journal = new Journal(syntax, path, null);
+		context.history.setJournal(journal);
+		final ValueArray nested = (ValueArray) rootArray(context.document).data.get(1).data.get("value");
+		context.history.apply(context,
+				new ChangePrimitiveAdd((ValuePrimitive) nested.data.get(0).data.get("value"), 3, "fish")
+		);
+		context.history.finishChange(context);
+		context.history.apply(context,
+				new ChangeArray(rootArray(context.document),
+						0,
+						1,
+						ImmutableList.of(new TreeBuilder(dataPrimitive).add("value", "owl").build())
+				)
+		);
+		context.history.finishChange(context);
+		context.history.apply(context,
+				new ChangeArray(nested, 1, 0, ImmutableList.of(new TreeBuilder(typedPrimitive).build()))
+		);
+		context.history.finishChange(context);
+		context.history.undo(context);
+		return context;
+	}
+
+	private Context recover(final Journal.Recovery recovery) throws IOException {
+		final Document base = syntax.load(recovery.base);
+		final Context context = buildDoc(syntax, rootArray(base).data.toArray(new Atom[0]));
+		final Journal journal = new Journal(syntax, path, recovery);
+		journal.replay(context);
+		journal.close(true);
+		return context;
+	}
+
+	@Test
+	public void testRecover() throws IOException {
+		final Context context = edit();
+		journal.close(false);
+		final Journal.Recovery recovery = Journal.recover(path);
+		assertThat(recovery, notNullValue());
+		assertThat(dump(recover(recovery).document), equalTo(dump(context.document)));
+	}
+
+	private void save(final Context context) {
+		final long mark = journal.mark();
+		context.document.write(path);
+		journal.saved(mark, path);
+	}
+
+	private static void editFirst(final Context context, final String text) {
+		context.history.apply(context,
+				new ChangePrimitiveAdd((ValuePrimitive) rootArray(context.document).data.get(0).data.get("value"),
+						0,
+						text
+				)
+		);
+	}
+
+	@Test
+	public void testRecoverAfterSave() throws IOException {
+		final Context context = edit();
+		save(context);
+		editFirst(context, "sn");
+		journal.close(false);
+		// The header still names the document as it was before the save
+		final Journal.Recovery recovery = Journal.recover(path);
+		assertThat(recovery.base, equalTo(path.toAbsolutePath()));
+		assertThat(dump(recover(recovery).document), equalTo(dump(context.document)));
+	}
+
+	@Test
+	public void testRecoverAfterSaves() throws IOException {
+		final Context context = edit();
+		save(context);
+		editFirst(context, "sn");
+		save(context);
+		editFirst(context, "a");
+		journal.close(false);
+		assertThat(dump(recover(Journal.recover(path)).document), equalTo(dump(context.document)));
+	}
+
+	@Test
+	public void testRecoverContinued() throws IOException {
+		final Context context = edit();
+		save(context);
+		editFirst(context, "sn");
+		journal.close(false);
+		final Journal.Recovery recovery = Journal.recover(path);
+		final Document base = syntax.load(recovery.base);
+		final Context recovered = buildDoc(syntax, rootArray(base).data.toArray(new Atom[0]));
+		journal = new Journal(syntax, path, recovery);
+		journal.replay(recovered);
+		recovered.history.setJournal(journal);
+		editFirst(recovered, "a");
+		editFirst(context, "a");
+		journal.close(false);
+		assertThat(dump(recover(Journal.recover(path)).document), equalTo(dump(context.document)));
+	}
+
+	@Test
+	public void testDocumentChangedAfterSave() throws IOException {
+		final Context context = edit();
+		save(context);
+		editFirst(context, "sn");
+		journal.close(false);
+		Files.write(path, "[]".getBytes(StandardCharsets.UTF_8));
+		assertThat(Journal.recover(path), nullValue());
+	}
+
+	@Test
+	public void testCompactToSave() throws IOException {
+		final Context context = edit();
+		save(context);
+		// Exceeded by the next record, but the records since the save are far smaller
+		Journal.compactThreshold = (int) journal.mark();
+		editFirst(context, "sn");
+		editFirst(context, "a");
+		journal.close(false);
+		final Journal.Recovery recovery = Journal.recover(path);
+		assertThat(recovery.base, equalTo(path.toAbsolutePath()));
+		assertThat(dump(recover(recovery).document), equalTo(dump(context.document)));
+	}
+
+	@Test
+	public void testCompactToSnapshot() throws IOException {
+		final Context context = edit();
+		// Nothing saved, so the next record restarts the journal from a snapshot
+		Journal.compactThreshold = (int) journal.mark();
+		editFirst(context, "sn");
+		editFirst(context, "a");
+		journal.close(false);
+		final Journal.Recovery recovery = Journal.recover(path);
+		assertThat(recovery.base, not(equalTo(path.toAbsolutePath())));
+		assertTrue(recovery.base.getFileName().toString().startsWith("document.luxem.journal-base-"));
+		assertThat(dump(recover(recovery).document), equalTo(dump(context.document)));
+	}
+
+	@Test
+	public void testRecoverManyInserted() throws IOException {
+		final Context context = edit();
+		final List<Atom> inserted = new ArrayList<>();
+		for (int i = 0; i < 20; ++i)
+			inserted.add(new TreeBuilder(dataPrimitive).add("value", "bee" + i).build());
+		context.history.apply(context, new ChangeArray(rootArray(context.document), 1, 0, inserted));
+		journal.close(false);
+		final Document recovered = recover(Journal.recover(path)).document;
+		assertThat(rootArray(recovered).data.size(), equalTo(22));
+		assertThat(dump(recovered), equalTo(dump(context.document)));
+	}
+
+	@Test
+	public void testDiscard() throws IOException {
+		journal = new Journal(syntax, path, null);
+		journal.close(true);
+		assertThat(Journal.recover(path), nullValue());
+	}
+}
@@ -0,0 +1,59 @@
+package com.zarbosoft.merman;
+
+import com.zarbosoft.merman.document.values.ValuePrimitive;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class TestLargePrimitive {
+	private static String text(final Random random, final int length) {
+		final StringBuilder out = new StringBuilder(length);
+		for (int i = 0; i < length; ++i)
+			out.append((char) ('a' + random.nextInt(26)));
+		return out.toString();
+	}
+
+	@Test
+	public void testEdits() {
+		final Random random = new Random(7);
+		final ValuePrimitive value = new ValuePrimitive(null, "");
+		final StringBuilder expected = new StringBuilder();
+		for (int step = 0; step < 300; ++step) {
+			if (expected.length() > 0 && random.nextInt(5) == 0) {
+				final int begin = random.nextInt(expected.length());
+				final int end = Math.min(expected.length(), begin + random.nextInt(3000));
+				value.delete(begin, end);
+				expected.delete(begin, end);
+			} else {
+				final int index = random.nextInt(expected.length() + 1);
+				final String text = text(random, random.nextInt(2000));
+				value.insert(index, text);
+				expected.insert(index, text);
+			}
+			assertThat(value.length(), equalTo(expected.length()));
+			if (step % 10 == 0)
+				assertThat(value.get(), equalTo(expected.toString()));
+			if (expected.length() > 10) {
+				final int begin = random.nextInt(expected.length() - 10);
+				assertThat(value.substring(begin, begin + 10), equalTo(expected.substring(begin, begin + 10)));
+			}
+		}
+		assertThat(value.get(), equalTo(expected.toString()));
+	}
+
+	@Test
+	public void testCopyIndependent() {
+		final Random random = new Random(3);
+		final String original = text(random, ValuePrimitive.ROPE_THRESHOLD * 2);
+		final ValuePrimitive value = new ValuePrimitive(null, original);
+		value.insert(10, "x");
+		final ValuePrimitive copy = (ValuePrimitive) value.copy();
+		value.delete(0, 1000);
+		copy.insert(0, "y");
+		assertThat(value.get(), equalTo((original.substring(0, 10) + "x" + original.substring(10)).substring(1000)));
+		assertThat(copy.get(), equalTo("y" + original.substring(0, 10) + "x" + original.substring(10)));
+	}
+}
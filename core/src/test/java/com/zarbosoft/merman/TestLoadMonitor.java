@@ -0,0 +1,136 @@
+package com.zarbosoft.merman;
+
+import com.zarbosoft.merman.document.Document;
+import com.zarbosoft.merman.editor.serialization.Load;
+import com.zarbosoft.merman.editor.serialization.LoadMonitor;
+import com.zarbosoft.merman.editor.serialization.ParallelLoad;
+import com.zarbosoft.merman.helper.SyntaxFlatRoot;
+import com.zarbosoft.merman.helper.SyntaxLoadSave;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.zarbosoft.merman.helper.Helper.rootArray;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class TestLoadMonitor {
+	private long interval;
+	private Path path;
+
+	@Before
+	public void setUp() throws IOException {
+		interval = LoadMonitor.interval;
+		LoadMonitor.interval = 0;
+		path = Files.createTempFile("merman", ".luxem");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		LoadMonitor.interval = interval;
+		Files.deleteIfExists(path);
+	}
+
+	private void write(final String element, final int count) throws IOException {
+		final StringBuilder out = new StringBuilder();
+		for (int i = 0; i < count; ++i)
+			out.append(element);
+		Files.write(path, out.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static class Last {
+		final AtomicLong bytes = new AtomicLong(-1);
+		final AtomicLong total = new AtomicLong(-1);
+		final AtomicLong atoms = new AtomicLong(-1);
+		final AtomicInteger reports = new AtomicInteger();
+
+		LoadMonitor monitor() {
+			return new LoadMonitor((bytes, total, atoms, remaining) -> {
+				this.bytes.set(bytes);
+				this.total.set(total);
+				this.atoms.set(atoms);
+				reports.incrementAndGet();
+			});
+		}
+	}
+
+	@Test
+	public void testProgress() throws IOException {
+		write("a,", 3000);
+		final Last last = new Last();
+		final Document doc = Load.load(SyntaxFlatRoot.luxem, path, last.monitor());
+		assertThat(rootArray(doc).data.size(), equalTo(3000));
+		assertTrue(last.reports.get() > 1);
+		assertThat(last.bytes.get(), equalTo(Files.size(path)));
+		assertThat(last.total.get(), equalTo(Files.size(path)));
+		// Elements plus the root
+		assertThat(last.atoms.get(), equalTo(3001L));
+	}
+
+	@Test
+	public void testProgressParsed() throws IOException {
+		write("(z)x,", 100);
+		final Last last = new Last();
+		final Document doc = Load.load(SyntaxLoadSave.syntax, path, last.monitor());
+		assertThat(rootArray(doc).data.size(), equalTo(100));
+		assertThat(last.bytes.get(), equalTo(Files.size(path)));
+		assertThat(last.atoms.get(), equalTo(101L));
+	}
+
+	@Test
+	public void testProgressIndependent() throws IOException {
+		write("a,", 100);
+		final Last first = new Last();
+		final Last second = new Last();
+		Load.load(SyntaxFlatRoot.luxem, path, first.monitor());
+		Load.load(SyntaxFlatRoot.luxem, path, second.monitor());
+		assertThat(first.atoms.get(), equalTo(101L));
+		assertThat(second.atoms.get(), equalTo(101L));
+	}
+
+	@Test(expected = LoadMonitor.Cancelled.class)
+	public void testCancelBeforeStart() throws IOException {
+		write("a,", 100);
+		final LoadMonitor monitor = new LoadMonitor((bytes, total, atoms, remaining) -> {
+		});
+		monitor.cancel();
+		Load.load(SyntaxFlatRoot.luxem, path, monitor);
+	}
+
+	@Test
+	public void testCancelDuring() throws IOException {
+		write("a,", 100000);
+		final AtomicLong atomsAtCancel = new AtomicLong(-1);
+		final LoadMonitor[] monitor = new LoadMonitor[1];
+		monitor[0] = new LoadMonitor((bytes, total, atoms, remaining) -> {
+			if (atomsAtCancel.get() < 0) {
+				atomsAtCancel.set(atoms);
+				monitor[0].cancel();
+			}
+		});
+		try {
+			Load.load(SyntaxFlatRoot.luxem, path, monitor[0]);
+			throw new AssertionError("Load wasn't cancelled.");
+		} catch (final LoadMonitor.Cancelled e) {
+		}
+		assertTrue(monitor[0].isCancelled());
+		assertTrue(atomsAtCancel.get() < 100000);
+	}
+
+	@Test(expected = LoadMonitor.Cancelled.class)
+	public void testCancelParallel() throws IOException {
+		write("a,", 100);
+		final LoadMonitor monitor = new LoadMonitor((bytes, total, atoms, remaining) -> {
+		});
+		monitor.cancel();
+		ParallelLoad.load(SyntaxFlatRoot.luxem, path, monitor);
+	}
+}
@@ -0,0 +1,132 @@
+package com.zarbosoft.merman;
+
+import com.zarbosoft.merman.document.Document;
+import com.zarbosoft.merman.editor.serialization.Load;
+import com.zarbosoft.merman.editor.serialization.LuxemEventSource;
+import com.zarbosoft.merman.editor.serialization.MappedInputStream;
+import com.zarbosoft.merman.helper.SyntaxFlatRoot;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.zarbosoft.merman.helper.Helper.assertTreeEqual;
+import static com.zarbosoft.merman.helper.Helper.rootArray;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+public class TestMappedInputStream {
+	private static final String text = "[abc,\"d,e f\",{k:ghijk,l:[m,n],},],*x*o,";
+
+	private long regionSize;
+	private Path path;
+	private byte[] data;
+
+	@Before
+	public void setUp() throws IOException {
+		regionSize = MappedInputStream.regionSize;
+		MappedInputStream.regionSize = 7;
+		path = Files.createTempFile("merman", ".luxem");
+		final StringBuilder out = new StringBuilder();
+		for (int i = 0; i < 10; ++i)
+			out.append(text);
+		data = out.toString().getBytes(StandardCharsets.UTF_8);
+		Files.write(path, data);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		MappedInputStream.regionSize = regionSize;
+		Files.deleteIfExists(path);
+	}
+
+	@Test
+	public void testReadBytes() throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (
+				InputStream stream = new MappedInputStream(path)
+		) {
+			for (int b = stream.read(); b != -1; b = stream.read())
+				out.write(b);
+		}
+		assertArrayEquals(data, out.toByteArray());
+	}
+
+	@Test
+	public void testReadArrays() throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[5];
+		try (
+				InputStream stream = new MappedInputStream(path)
+		) {
+			for (int count = stream.read(buffer); count != -1; count = stream.read(buffer))
+				out.write(buffer, 0, count);
+		}
+		assertArrayEquals(data, out.toByteArray());
+	}
+
+	@Test
+	public void testSkip() throws IOException {
+		try (
+				InputStream stream = new MappedInputStream(path)
+		) {
+			assertThat(stream.skip(13), equalTo(13L));
+			assertThat(stream.read(), equalTo((int) data[13]));
+			assertThat(stream.skip(data.length), equalTo((long) data.length - 14));
+			assertThat(stream.read(), equalTo(-1));
+		}
+	}
+
+	@Test
+	public void testEmpty() throws IOException {
+		Files.write(path, new byte[0]);
+		try (
+				InputStream stream = new MappedInputStream(path)
+		) {
+			assertThat(stream.read(), equalTo(-1));
+			assertThat(stream.read(new byte[4]), equalTo(-1));
+		}
+	}
+
+	@Test
+	public void testLoadRegions() throws IOException {
+		final Document expected = Load.load(SyntaxFlatRoot.luxem, new ByteArrayInputStream(data));
+		assertThat(rootArray(expected).data.size(), equalTo(20));
+		try (
+				InputStream stream = new MappedInputStream(path)
+		) {
+			assertTreeEqual(rootArray(expected), rootArray(Load.load(SyntaxFlatRoot.luxem, stream)));
+		}
+	}
+
+	@Test
+	public void testLoadBuffer() throws IOException {
+		final Document expected = Load.load(SyntaxFlatRoot.luxem, new ByteArrayInputStream(data));
+		final ByteBuffer buffer = ByteBuffer.wrap(data);
+		assertTreeEqual(rootArray(expected), rootArray(Load.load(SyntaxFlatRoot.luxem, buffer)));
+		assertThat(buffer.position(), equalTo(0));
+		assertTreeEqual(rootArray(expected), rootArray(Load.load(SyntaxFlatRoot.luxem, path)));
+	}
+
+	@Test
+	public void testTokenizeBuffer() {
+		final LuxemEventSource stream = new LuxemEventSource(new ByteArrayInputStream(data));
+		final LuxemEventSource buffer = new LuxemEventSource(ByteBuffer.wrap(data));
+		while (true) {
+			final Object expected = stream.next();
+			final Object got = buffer.next();
+			assertThat(String.valueOf(got), equalTo(String.valueOf(expected)));
+			if (expected == null)
+				break;
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package com.zarbosoft.merman;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.zarbosoft.merman.helper.SyntaxFlatRoot;
+import com.zarbosoft.merman.modules.LuaActions;
+import com.zarbosoft.merman.syntax.InvalidSyntax;
+import com.zarbosoft.merman.syntax.Syntax;
+import com.zarbosoft.merman.syntax.SyntaxCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.luaj.vm2.LuaValue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.zarbosoft.rendaw.common.Common.uncheck;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class TestSyntaxCache {
+	private Path directory;
+	private Path syntaxes;
+	private Path path;
+	private SyntaxCache cache;
+	private int parses;
+	private boolean invalid;
+	private boolean actions;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("merman");
+		syntaxes = directory.resolve("syntaxes");
+		Files.createDirectories(syntaxes);
+		path = syntaxes.resolve("syntax_test.lua");
+		write("syntax_test.lua", "local _utils = require 'utils'");
+		write("utils.lua", "return {}");
+		cache = new SyntaxCache(directory.resolve("cache"), file -> {
+			parses += 1;
+			final Syntax out = SyntaxFlatRoot.builder(false).configured();
+			if (invalid)
+				out.groups.put("broken", ImmutableList.of("missing"));
+			if (actions) {
+				final LuaActions module = new LuaActions();
+				module.actions = ImmutableMap.of("hello", LuaValue.TRUE);
+				out.modules.add(module);
+			}
+			return out;
+		});
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(p -> uncheck(() -> Files.delete(p)));
+		}
+	}
+
+	private void write(final String name, final String text) throws IOException {
+		Files.write(syntaxes.resolve(name), text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private List<Path> entries() throws IOException {
+		if (!Files.exists(directory.resolve("cache")))
+			return ImmutableList.of();
+		try (Stream<Path> files = Files.list(directory.resolve("cache"))) {
+			return files.collect(Collectors.toList());
+		}
+	}
+
+	private void check(final Syntax syntax) {
+		assertThat(syntax.id, equalTo("test"));
+		assertThat(syntax.types.size(), equalTo(4));
+		assertThat(syntax.groups.keySet(), equalTo(SyntaxFlatRoot.luxem.groups.keySet()));
+	}
+
+	@Test
+	public void testHit() throws IOException {
+		check(cache.load("test", path));
+		assertThat(entries().size(), equalTo(1));
+		check(cache.load("test", path));
+		assertThat(parses, equalTo(1));
+	}
+
+	@Test
+	public void testRequiredChanged() throws IOException {
+		cache.load("test", path);
+		write("utils.lua", "return {a = 1}");
+		check(cache.load("test", path));
+		assertThat(parses, equalTo(2));
+		assertThat(entries().size(), equalTo(1));
+		cache.load("test", path);
+		assertThat(parses, equalTo(2));
+	}
+
+	@Test
+	public void testCorrupt() throws IOException {
+		cache.load("test", path);
+		Files.write(entries().get(0), new byte[] {1, 2, 3});
+		check(cache.load("test", path));
+		assertThat(parses, equalTo(2));
+		check(cache.load("test", path));
+		assertThat(parses, equalTo(2));
+	}
+
+	@Test
+	public void testInvalidNotCached() throws IOException {
+		invalid = true;
+		try {
+			cache.load("test", path);
+			throw new AssertionError();
+		} catch (final InvalidSyntax e) {
+		}
+		assertThat(entries().size(), equalTo(0));
+	}
+
+	@Test
+	public void testUnrelatedChanged() throws IOException {
+		write("other.lua", "return {}");
+		cache.load("test", path);
+		write("other.lua", "return {a = 1}");
+		check(cache.load("test", path));
+		assertThat(parses, equalTo(1));
+	}
+
+	@Test
+	public void testNestedRequireChanged() throws IOException {
+		write("utils.lua", "return require(\"deep.colors\")");
+		Files.createDirectories(syntaxes.resolve("deep"));
+		write("deep/colors.lua", "return {}");
+		cache.load("test", path);
+		write("deep/colors.lua", "return {a = 1}");
+		check(cache.load("test", path));
+		assertThat(parses, equalTo(2));
+	}
+
+	@Test
+	public void testComputedRequire() throws IOException {
+		write("syntax_test.lua", "local name = 'utils'\nlocal _utils = require(name)");
+		write("other.lua", "return {}");
+		cache.load("test", path);
+		write("other.lua", "return {a = 1}");
+		check(cache.load("test", path));
+		assertThat(parses, equalTo(2));
+	}
+
+	@Test
+	public void testLuaActionsNotCached() throws IOException {
+		actions = true;
+		cache.load("test", path);
+		assertThat(entries().size(), equalTo(0));
+		cache.load("test", path);
+		assertThat(parses, equalTo(2));
+	}
+}
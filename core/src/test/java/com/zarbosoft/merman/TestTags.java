@@ -0,0 +1,82 @@
+package com.zarbosoft.merman;
+
+import com.zarbosoft.merman.document.Atom;
+import com.zarbosoft.merman.editor.visual.tags.FreeTag;
+import com.zarbosoft.merman.editor.visual.tags.GlobalTag;
+import com.zarbosoft.merman.editor.visual.tags.PartTag;
+import com.zarbosoft.merman.editor.visual.tags.StateTag;
+import com.zarbosoft.merman.editor.visual.tags.Tag;
+import com.zarbosoft.merman.editor.visual.tags.TypeTag;
+import com.zarbosoft.merman.helper.GroupBuilder;
+import com.zarbosoft.merman.helper.Helper;
+import com.zarbosoft.merman.helper.MiscSyntax;
+import com.zarbosoft.merman.helper.StyleBuilder;
+import com.zarbosoft.merman.helper.SyntaxBuilder;
+import com.zarbosoft.merman.helper.TreeBuilder;
+import com.zarbosoft.merman.helper.TypeBuilder;
+import com.zarbosoft.merman.syntax.FreeAtomType;
+import com.zarbosoft.merman.syntax.Syntax;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class TestTags {
+	@Test
+	public void testInterned() {
+		assertThat(FreeTag.of("x"), sameInstance(FreeTag.of("x")));
+		assertThat(TypeTag.of("x"), sameInstance(TypeTag.of("x")));
+		assertThat(GlobalTag.of("x"), sameInstance(GlobalTag.of("x")));
+		assertThat(StateTag.of("x"), sameInstance(StateTag.of("x")));
+		assertThat(PartTag.of("x"), sameInstance(PartTag.of("x")));
+		assertThat(FreeTag.of("x"), not(sameInstance(FreeTag.of("y"))));
+	}
+
+	@Test
+	public void testKindsDistinct() {
+		final Tag free = FreeTag.of("x");
+		final Tag type = TypeTag.of("x");
+		assertThat(free, not(equalTo(type)));
+		assertThat(type, not(equalTo(free)));
+	}
+
+	@Test
+	public void testConfiguredEqual() {
+		assertThat(new StateTag("x"), equalTo(StateTag.of("x")));
+		assertThat(new StateTag("x").hashCode(), equalTo(StateTag.of("x").hashCode()));
+		assertThat(new StateTag("x").intern(), sameInstance(StateTag.of("x")));
+	}
+
+	@Test
+	public void testStylesInterned() {
+		final FreeAtomType one = new TypeBuilder("one").back(Helper.buildBackPrimitive("one")).frontMark("1").build();
+		final Syntax syntax = new SyntaxBuilder("any")
+				.type(one)
+				.group("any", new GroupBuilder().type(one).build())
+				.style(new StyleBuilder().tag(new StateTag("compact")).notag(new FreeTag("split")).build())
+				.build();
+		assertThat(syntax.styles.get(0).with.iterator().next(), sameInstance(StateTag.of("compact")));
+		assertThat(syntax.styles.get(0).without.iterator().next(), sameInstance(FreeTag.of("split")));
+	}
+
+	@Test
+	public void testSharedBaseTags() {
+		final Atom first = new TreeBuilder(MiscSyntax.one).build();
+		final Atom second = new TreeBuilder(MiscSyntax.one).build();
+		assertThat(first.tags, sameInstance(second.tags));
+		assertThat(first.tags, sameInstance(MiscSyntax.one.baseTags()));
+		assertThat(first.tags.contains(TypeTag.of("one")), equalTo(true));
+	}
+
+	@Test
+	public void testChangedTagsUnshared() {
+		final Atom first = new TreeBuilder(MiscSyntax.one).build();
+		final Atom second = new TreeBuilder(MiscSyntax.one).build();
+		first.tags = first.tags.plus(StateTag.of("changed"));
+		assertThat(first.tags, not(sameInstance(second.tags)));
+		assertThat(second.tags, sameInstance(MiscSyntax.one.baseTags()));
+		assertThat(second.tags.contains(StateTag.of("changed")), equalTo(false));
+	}
+}
@@ -24,8 +24,10 @@ import org.junit.ComparisonFailure;
 
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static com.zarbosoft.rendaw.common.Common.*;
 
@@ -213,6 +215,19 @@ public class Helper {
 						)
 				)
 		);
+		return buildDoc(addIteration, flushIteration, doc);
+	}
+
+	public static Context buildDoc(final Document doc) {
+		return buildDoc(idleTask -> {
+		}, limit -> {
+		}, doc);
+	}
+
+	public static Context buildDoc(
+			final Consumer<IterationTask> addIteration, final Consumer<Integer> flushIteration, final Document doc
+	) {
+		final Syntax syntax = doc.syntax;
 		final Context context = new Context(syntax,
 				doc,
 				new MockeryDisplay(),
@@ -222,24 +237,48 @@ public class Helper {
 				new ClipboardEngine() {
 					byte[] data = null;
 					String string = null;
+					List<Atom> atoms = null;
+					Supplier<byte[]> serialize = null;
 
 					@Override
-					public void set(final byte[] bytes) {
+					public void set(final Syntax.BackType backType, final byte[] bytes) {
+						atoms = null;
 						data = bytes;
 					}
 
 					@Override
 					public void setString(final String string) {
+						atoms = null;
+						data = null;
 						this.string = string;
 					}
 
 					@Override
-					public byte[] get() {
+					public void setAtoms(
+							final List<Atom> atoms, final Syntax.BackType backType, final Supplier<byte[]> serialize
+					) {
+						this.atoms = atoms;
+						this.serialize = serialize;
+						data = null;
+						string = null;
+					}
+
+					@Override
+					public List<Atom> getAtoms() {
+						return atoms;
+					}
+
+					@Override
+					public byte[] get(final Syntax.BackType backType) {
+						if (atoms != null)
+							return serialize.get();
 						return data;
 					}
 
 					@Override
 					public String getString() {
+						if (atoms != null)
+							return new String(serialize.get(), StandardCharsets.UTF_8);
 						return string;
 					}
 				}
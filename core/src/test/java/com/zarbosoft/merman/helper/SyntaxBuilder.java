@@ -29,6 +29,17 @@ public class SyntaxBuilder {
 		syntax.root.middle.put("value", middle);
 	}
 
+	public SyntaxBuilder json() {
+		syntax.backType = Syntax.BackType.JSON;
+		syntax.root.back = ImmutableList.of(Helper.buildBackDataArray("value"));
+		return this;
+	}
+
+	public SyntaxBuilder binary() {
+		syntax.backType = Syntax.BackType.BINARY;
+		return this;
+	}
+
 	public SyntaxBuilder type(final FreeAtomType type) {
 		syntax.types.add(type);
 		return this;
@@ -39,6 +50,13 @@ public class SyntaxBuilder {
 		return syntax;
 	}
 
+	/**
+	 * @return The syntax without finishing it, as if just read from a syntax file
+	 */
+	public Syntax configured() {
+		return syntax;
+	}
+
 	public SyntaxBuilder group(final String name, final List<String> subtypes) {
 		syntax.groups.put(name, subtypes);
 		return this;
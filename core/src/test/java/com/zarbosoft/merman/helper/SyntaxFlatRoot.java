@@ -0,0 +1,52 @@
+package com.zarbosoft.merman.helper;
+
+import com.zarbosoft.merman.syntax.FreeAtomType;
+import com.zarbosoft.merman.syntax.Syntax;
+
+/**
+ * Root elements each serialize as a single value, so documents can be split on root elements.
+ */
+public class SyntaxFlatRoot {
+	public final static Syntax luxem;
+	public final static Syntax json;
+
+	static {
+		luxem = builder(false).build();
+		json = builder(true).build();
+	}
+
+	public static SyntaxBuilder builder(final boolean json) {
+		final FreeAtomType dataPrimitive = new TypeBuilder("dataPrimitive")
+				.middlePrimitive("value")
+				.back(Helper.buildBackDataPrimitive("value"))
+				.frontDataPrimitive("value")
+				.build();
+		final FreeAtomType dataArray = new TypeBuilder("dataArray")
+				.middleArray("value", "value")
+				.back(Helper.buildBackDataArray("value"))
+				.frontDataArray("value")
+				.build();
+		final FreeAtomType dataRecord = new TypeBuilder("dataRecord")
+				.middleRecord("value", "dataRecordElement")
+				.back(Helper.buildBackDataRecord("value"))
+				.frontDataArray("value")
+				.build();
+		final FreeAtomType dataRecordElement = new TypeBuilder("dataRecordElement")
+				.middlePrimitive("key")
+				.middleAtom("value", "value")
+				.back(Helper.buildBackDataKey("key"))
+				.back(Helper.buildBackDataAtom("value"))
+				.frontDataPrimitive("key")
+				.frontDataNode("value")
+				.build();
+		final SyntaxBuilder builder = new SyntaxBuilder("value");
+		if (json)
+			builder.json();
+		return builder
+				.type(dataPrimitive)
+				.type(dataArray)
+				.type(dataRecord)
+				.type(dataRecordElement)
+				.group("value", new GroupBuilder().type(dataPrimitive).type(dataArray).type(dataRecord).build());
+	}
+}
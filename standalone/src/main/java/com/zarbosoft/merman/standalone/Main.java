@@ -9,6 +9,11 @@ import com.zarbosoft.merman.document.Document;
 import com.zarbosoft.merman.editor.*;
 import com.zarbosoft.merman.editor.display.javafx.JavaFXDisplay;
 import com.zarbosoft.merman.editor.history.History;
+import com.zarbosoft.merman.editor.history.Journal;
+import com.zarbosoft.merman.editor.serialization.Compression;
+import com.zarbosoft.merman.editor.serialization.LoadMonitor;
+import com.zarbosoft.merman.editor.serialization.StreamLoad;
+import com.zarbosoft.merman.editor.serialization.ParallelLoad;
 import com.zarbosoft.merman.syntax.Syntax;
 import javafx.application.Application;
 import javafx.application.Platform;
@@ -35,10 +40,13 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import static com.zarbosoft.rendaw.common.Common.last;
 import static com.zarbosoft.rendaw.common.Common.uncheck;
@@ -51,6 +59,7 @@ public class Main extends Application {
 
 	private final Logger logger = LoggerFactory.getLogger("main");
 	private final ScheduledThreadPoolExecutor worker = new ScheduledThreadPoolExecutor(1);
+	private final ExecutorService saveWorker = Executors.newSingleThreadExecutor();
 	private boolean iterationPending = false;
 	private ScheduledFuture<?> iterationTimer = null;
 	private IterationContext iterationContext = null;
@@ -59,6 +68,7 @@ public class Main extends Application {
 	private Stage stage;
 	private JavaFXDisplay display;
 	private Editor editor;
+	private Journal journal;
 
 	@FunctionalInterface
 	private interface Wrappable {
@@ -136,15 +146,118 @@ public class Main extends Application {
 					filename.toAbsolutePath().normalize()
 			));
 		setTitle();
-		final History history = new History();
+		stage.getIcons().add(new Image(getClass().getResourceAsStream("/com/zarbosoft/merman/resources/icon48.png")));
 		final Path path = Paths.get(getParameters().getUnnamed().get(0));
-		final String extension = last(path.getFileName().toString().split("\\."));
+		final String extension = last(Compression.strip(path.getFileName().toString()).split("\\."));
 		final Syntax syntax = global.getSyntax(extension);
-		final Document doc;
-		if (Files.exists(path))
-			doc = uncheck(() -> syntax.load(path));
+		for (final String conflict : syntax.getDirectLoad().conflicts)
+			logger.info(String.format("Using general loader: %s", conflict));
+		final Journal.Recovery recovery = uncheck(() -> Journal.recover(path));
+		final Path source;
+		if (recovery != null) {
+			logger.info("Recovering unsaved changes from journal.");
+			source = recovery.base;
+		} else if (Files.exists(path))
+			source = path;
+		else
+			source = null;
+		if (source == null)
+			open(syntax, path, syntax.create(), recovery);
+		else if (recovery == null && StreamLoad.available(syntax))
+			openStreaming(syntax, path);
 		else
-			doc = syntax.create();
+			loadWithProgress(syntax, source, doc -> open(syntax, path, doc, recovery));
+	}
+
+	/**
+	 * Open the editor once the start of the document is loaded and append the rest in the background.
+	 *
+	 * @param syntax
+	 * @param path
+	 */
+	private void openStreaming(final Syntax syntax, final Path path) {
+		final StreamLoad load = uncheck(() -> StreamLoad.open(syntax, path));
+		open(syntax, path, load.document, null);
+		editor.stream(load, command -> {
+			final Thread thread = new Thread(command, "load");
+			thread.setDaemon(true);
+			thread.start();
+		}, Platform::runLater).whenComplete((v, e) -> {
+			if (e == null)
+				return;
+			final Throwable cause = e.getCause() == null ? e : e.getCause();
+			Platform.runLater(() -> wrap(stage.getOwner(), () -> {
+				throw new Exception(String.format("Failed to load the rest of [%s], saving is disabled: %s",
+						path,
+						cause.getMessage()
+				), cause);
+			}));
+		});
+	}
+
+	/**
+	 * Load the document in the background, showing progress in the window until it's ready.  Cancelling or
+	 * failing to load quits.
+	 *
+	 * @param syntax
+	 * @param source
+	 * @param done   called on the ui thread with the loaded document
+	 */
+	private void loadWithProgress(final Syntax syntax, final Path source, final Consumer<Document> done) {
+		final Label status = new Label(String.format("Opening %s", source.getFileName()));
+		final ProgressBar bar = new ProgressBar(ProgressBar.INDETERMINATE_PROGRESS);
+		bar.setMaxWidth(Double.MAX_VALUE);
+		final Button cancel = new Button("Cancel");
+		final LoadMonitor monitor = new LoadMonitor((bytes, total, atoms, remaining) -> Platform.runLater(() -> {
+			if (total > 0)
+				bar.setProgress((double) bytes / total);
+			status.setText(String.format("Opening %s: %d MiB of %d MiB, %d elements%s",
+					source.getFileName(),
+					bytes / (1024 * 1024),
+					total / (1024 * 1024),
+					atoms,
+					remaining < 0 ? "" : String.format(", about %d s left", remaining / 1000 + 1)
+			));
+		}));
+		cancel.setOnAction(new EventHandler<>() {
+			@Override
+			public void handle(final ActionEvent event) {
+				monitor.cancel();
+			}
+		});
+		stage.setOnCloseRequest(new EventHandler<>() {
+			@Override
+			public void handle(final WindowEvent t) {
+				monitor.cancel();
+			}
+		});
+		final VBox layout = new VBox();
+		layout.setPadding(new Insets(10));
+		layout.setSpacing(8);
+		layout.getChildren().addAll(status, bar, cancel);
+		stage.setScene(new Scene(layout, 500, 110));
+		stage.show();
+		final Thread thread = new Thread(() -> {
+			try {
+				final Document doc = ParallelLoad.load(syntax, source, monitor);
+				Platform.runLater(() -> wrap(stage.getOwner(), () -> done.accept(doc)));
+			} catch (final LoadMonitor.Cancelled e) {
+				Platform.runLater(Platform::exit);
+			} catch (final Throwable e) {
+				Platform.runLater(() -> {
+					wrap(stage.getOwner(), () -> {
+						throw new Exception(String.format("Failed to open [%s]: %s", source, e.getMessage()), e);
+					});
+					Platform.exit();
+				});
+			}
+		}, "load");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private void open(final Syntax syntax, final Path path, final Document doc, final Journal.Recovery recovery) {
+		final History history = new History();
 		this.display = new JavaFXDisplay(syntax);
 		editor = new Editor(
 				syntax,
@@ -156,6 +269,8 @@ public class Main extends Application {
 				history,
 				new SimpleClipboardEngine()
 		);
+		journal = uncheck(() -> new Journal(syntax, path, recovery));
+		editor.setJournal(journal);
 		editor.addActions(this, ImmutableList.of(new ActionSave(), new ActionQuit(), new ActionDebug()));
 		final HBox filesystemLayout = new HBox();
 		filesystemLayout.setPadding(new Insets(3, 2, 3, 2));
@@ -209,7 +324,7 @@ public class Main extends Application {
 			@Override
 			public void handle(final ActionEvent event) {
 				wrap(stage.getOwner(), () -> {
-					editor.save(filename);
+					saveBackground();
 					editor.focus();
 				});
 			}
@@ -221,9 +336,11 @@ public class Main extends Application {
 					final Path dest = Paths.get(filenameEntry.getText());
 					if (Files.exists(dest) && !confirmOverwrite(stage.getOwner()))
 						return;
-					editor.save(filename);
-					Files.move(filename, dest);
-					filename = Paths.get(filenameEntry.getText());
+					if (Files.exists(filename))
+						Files.move(filename, dest);
+					filename = dest;
+					restartJournal(syntax);
+					saveBackground();
 					setTitle();
 					alignFilesystemLayout.changed(null, null, filename.toString());
 					editor.focus();
@@ -239,7 +356,8 @@ public class Main extends Application {
 						return;
 					filename = dest;
 					setTitle();
-					editor.save(dest);
+					restartJournal(syntax);
+					saveBackground();
 					alignFilesystemLayout.changed(null, null, filename.toString());
 					editor.focus();
 				});
@@ -252,7 +370,7 @@ public class Main extends Application {
 					final Path dest = Paths.get(filenameEntry.getText());
 					if (Files.exists(dest) && !confirmOverwrite(stage.getOwner()))
 						return;
-					editor.save(dest);
+					saveBackground(dest);
 					filenameEntry.setText(filename.toString());
 					editor.focus();
 				});
@@ -274,14 +392,42 @@ public class Main extends Application {
 					}
 				}
 				editor.destroy();
+				journal.close(true);
 				worker.shutdown();
+				saveWorker.shutdown();
 			}
 		});
-		stage.getIcons().add(new Image(getClass().getResourceAsStream("/com/zarbosoft/merman/resources/icon48.png")));
 		stage.show();
 		editor.focus();
 	}
 
+	private void restartJournal(final Syntax syntax) throws Exception {
+		journal.close(true);
+		journal = new Journal(syntax, filename, null);
+		editor.setJournal(journal);
+	}
+
+	private void saveBackground() {
+		saveBackground(filename);
+	}
+
+	/**
+	 * Write the document from saveWorker; failures are reported on the ui thread.  The journal records the save only
+	 * if dest is the journaled file, so restart the journal before saving to a new filename.
+	 *
+	 * @param dest
+	 */
+	private void saveBackground(final Path dest) {
+		editor.saveBackground(dest, saveWorker, Platform::runLater).whenComplete((v, e) -> {
+			if (e == null)
+				return;
+			final Throwable cause = e.getCause() == null ? e : e.getCause();
+			Platform.runLater(() -> wrap(stage.getOwner(), () -> {
+				throw new Exception(String.format("Failed to save [%s]: %s", dest, cause.getMessage()), cause);
+			}));
+		});
+	}
+
 	private void flushIteration(final int limit) {
 		final long start = System.currentTimeMillis();
 		// TODO measure pending event backlog, adjust batch size to accomodate
@@ -344,7 +490,7 @@ public class Main extends Application {
 	private class ActionSave extends ActionBase {
 		@Override
 		public boolean run(final Context context) {
-			editor.save(filename);
+			saveBackground();
 			return true;
 		}
 	}